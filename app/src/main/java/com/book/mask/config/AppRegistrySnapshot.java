@@ -0,0 +1,112 @@
+package com.book.mask.config;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 包名 → APP 的不可变索引，监测开关在构建时已折算好。由 {@link CustomAppManager} 在 APP 增删改、
+ * 导入以及监测开关变化后整体重建，并通过 volatile 引用整体替换；读取方拿到的始终是一份完整的快照，
+ * 无需加锁，也不访问存储，一次哈希查找即可判断前台包名是否为受监测的 APP。
+ */
+public final class AppRegistrySnapshot {
+
+    /**
+     * 监测开关来源；为 null 时快照只记录 APP，不折算开关。
+     */
+    public interface MonitoringLookup {
+        boolean shouldMonitor(String packageName);
+    }
+
+    static final AppRegistrySnapshot EMPTY =
+            new AppRegistrySnapshot(Collections.emptyMap(), false, 0);
+
+    private static final class Entry {
+        private final CustomApp app;
+        private final boolean monitored;
+
+        private Entry(CustomApp app, boolean monitored) {
+            this.app = app;
+            this.monitored = monitored;
+        }
+    }
+
+    private final Map<String, Entry> entries;
+    private final boolean monitoringResolved;
+    private final long version;
+
+    private AppRegistrySnapshot(Map<String, Entry> entries, boolean monitoringResolved,
+                                long version) {
+        this.entries = entries;
+        this.monitoringResolved = monitoringResolved;
+        this.version = version;
+    }
+
+    /**
+     * 按与逐表查找相同的优先级构建：预定义 APP 的修改版本 > 预定义 APP > 用户自定义 APP。
+     */
+    static AppRegistrySnapshot build(List<CustomApp> predefinedModifications,
+                                     List<CustomApp> predefinedApps,
+                                     List<CustomApp> customApps,
+                                     MonitoringLookup monitoringLookup,
+                                     long version) {
+        Map<String, CustomApp> apps = new HashMap<>();
+        // 低优先级先放入，高优先级覆盖；同一列表内保留第一个，与线性查找一致
+        putAll(apps, customApps);
+        putAll(apps, predefinedApps);
+        putAll(apps, predefinedModifications);
+
+        Map<String, Entry> entries = new HashMap<>(apps.size() * 2);
+        for (Map.Entry<String, CustomApp> app : apps.entrySet()) {
+            boolean monitored = monitoringLookup == null
+                    || monitoringLookup.shouldMonitor(app.getKey());
+            entries.put(app.getKey(), new Entry(app.getValue(), monitored));
+        }
+        return new AppRegistrySnapshot(Collections.unmodifiableMap(entries),
+                monitoringLookup != null, version);
+    }
+
+    private static void putAll(Map<String, CustomApp> target, List<CustomApp> apps) {
+        if (apps == null) {
+            return;
+        }
+        Map<String, CustomApp> firstOfList = new HashMap<>();
+        for (CustomApp app : apps) {
+            if (app != null && app.getPackageName() != null
+                    && !firstOfList.containsKey(app.getPackageName())) {
+                firstOfList.put(app.getPackageName(), app);
+            }
+        }
+        target.putAll(firstOfList);
+    }
+
+    /**
+     * 包名对应的 APP，不论监测开关；未登记返回 null。
+     */
+    public CustomApp get(String packageName) {
+        Entry entry = packageName == null ? null : entries.get(packageName);
+        return entry != null ? entry.app : null;
+    }
+
+    /**
+     * 包名对应且监测开启的 APP，否则返回 null。仅在 {@link #isMonitoringResolved()} 时可信。
+     */
+    public CustomApp getMonitored(String packageName) {
+        Entry entry = packageName == null ? null : entries.get(packageName);
+        return entry != null && entry.monitored ? entry.app : null;
+    }
+
+    public boolean isMonitoringResolved() {
+        return monitoringResolved;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /** 每次重建递增，便于日志中区分快照。 */
+    public long getVersion() {
+        return version;
+    }
+}
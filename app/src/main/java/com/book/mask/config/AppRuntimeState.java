@@ -0,0 +1,170 @@
+package com.book.mask.config;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 每个 APP 的运行时状态表：界面状态、手动隐藏、上次检测是否未命中、下次进入是否先检测。
+ * <p>
+ * 每个包名首次出现时分配一个小的连续编号（槽位），并缓存在 {@link CustomApp} 上，之后的读写都是数组下标访问，
+ * 不再做字符串哈希，也不装箱 Boolean。界面状态与各标志位合并存放在同一个 int 里。
+ * <p>
+ * 线程约定：读写均可在无障碍线程与界面线程任意调用。读取不加锁；状态与标志位的写入以 CAS 完成，
+ * 也不加锁。只有分配槽位与扩容走锁。扩容时先把旧数组逐个打上冻结位再复制，
+ * 写入方遇到冻结位就转到新数组重试，因此不会丢失与扩容并发的写入。
+ * 槽位不回收，注册的 APP 数量很小，表只会增长到 APP 总数。
+ */
+public final class AppRuntimeState {
+    public static final int STATE_UNKNOWN = 0; // 尚未检测或已离开
+    public static final int STATE_TARGET = 1; // 目标界面
+    public static final int STATE_NOT_TARGET = 2; // 非目标界面
+
+    private static final int STATE_MASK = 0b11;
+    private static final int FLAG_MANUALLY_HIDDEN = 1 << 2;
+    private static final int FLAG_LAST_DETECTION_NOT_TARGET = 1 << 3;
+    private static final int FLAG_DETECT_BEFORE_SHOW = 1 << 4;
+    // 扩容期间旧数组元素的标记：值本身仍有效，但写入必须转到新数组
+    private static final int FROZEN = 1 << 31;
+    private static final int INITIAL_CAPACITY = 16;
+
+    // 槽位分配与数组引用的替换均在 this 锁内
+    private final Map<String, Integer> slots = new HashMap<>();
+    private volatile AtomicIntegerArray words = new AtomicIntegerArray(INITIAL_CAPACITY);
+
+    // ---------- 界面状态 ----------
+
+    public int getState(CustomApp app) {
+        return read(app) & STATE_MASK;
+    }
+
+    public void setState(CustomApp app, int state) {
+        update(app, STATE_MASK, state & STATE_MASK);
+    }
+
+    // ---------- 标志位 ----------
+
+    public boolean isManuallyHidden(CustomApp app) {
+        return (read(app) & FLAG_MANUALLY_HIDDEN) != 0;
+    }
+
+    public void setManuallyHidden(CustomApp app, boolean hidden) {
+        update(app, FLAG_MANUALLY_HIDDEN, hidden ? FLAG_MANUALLY_HIDDEN : 0);
+    }
+
+    /** 最近一次完整检测该 APP 页面时是否未命中关键词。 */
+    public boolean isLastDetectionNotTarget(CustomApp app) {
+        return (read(app) & FLAG_LAST_DETECTION_NOT_TARGET) != 0;
+    }
+
+    public void setLastDetectionNotTarget(CustomApp app, boolean notTarget) {
+        update(app, FLAG_LAST_DETECTION_NOT_TARGET, notTarget ? FLAG_LAST_DETECTION_NOT_TARGET : 0);
+    }
+
+    /** 下次进入该 APP 时是否先检测页面文字，再决定是否显示悬浮窗。 */
+    public boolean shouldDetectBeforeShow(CustomApp app) {
+        return (read(app) & FLAG_DETECT_BEFORE_SHOW) != 0;
+    }
+
+    public void setDetectBeforeShow(CustomApp app, boolean detectBeforeShow) {
+        update(app, FLAG_DETECT_BEFORE_SHOW, detectBeforeShow ? FLAG_DETECT_BEFORE_SHOW : 0);
+    }
+
+    // ---------- 批量清除 ----------
+
+    /** 清除所有 APP 的界面状态与手动隐藏状态。 */
+    public void clearStates() {
+        clearAll(STATE_MASK | FLAG_MANUALLY_HIDDEN);
+    }
+
+    /** 解除所有 APP 的手动隐藏状态。 */
+    public void clearManuallyHidden() {
+        clearAll(FLAG_MANUALLY_HIDDEN);
+    }
+
+    /** 清除所有 APP 的检测历史（上次是否未命中、下次进入的显示顺序）。 */
+    public void clearEntryHistory() {
+        clearAll(FLAG_LAST_DETECTION_NOT_TARGET | FLAG_DETECT_BEFORE_SHOW);
+    }
+
+    /** 已分配槽位的 APP 数量。 */
+    public synchronized int size() {
+        return slots.size();
+    }
+
+    // ---------- 内部实现 ----------
+
+    private int read(CustomApp app) {
+        int slot = slotOf(app);
+        AtomicIntegerArray current = words;
+        return slot < current.length() ? current.get(slot) & ~FROZEN : 0;
+    }
+
+    private void update(CustomApp app, int mask, int value) {
+        int slot = slotOf(app);
+        while (true) {
+            AtomicIntegerArray current = words;
+            int word = current.get(slot);
+            if ((word & FROZEN) != 0) {
+                // 正在扩容：复制只有几十个元素，让出时间片后到新数组重试
+                Thread.yield();
+                continue;
+            }
+            int next = (word & ~mask) | value;
+            // 绝大多数写入与现值相同（标志位很少翻转），省去一次 CAS
+            if (next == word || current.compareAndSet(slot, word, next)) {
+                return;
+            }
+        }
+    }
+
+    private synchronized void clearAll(int mask) {
+        // 扩容与批量清除互斥，这里不会遇到冻结位
+        AtomicIntegerArray current = words;
+        for (int i = 0; i < current.length(); i++) {
+            int word;
+            do {
+                word = current.get(i);
+            } while (!current.compareAndSet(i, word, word & ~mask));
+        }
+    }
+
+    /**
+     * APP 对应的槽位；首次出现的包名在锁内分配，并保证数组容量足够。
+     */
+    private int slotOf(CustomApp app) {
+        int cached = app.getRuntimeSlot();
+        if (cached > 0) {
+            return cached - 1;
+        }
+        return assignSlot(app);
+    }
+
+    private synchronized int assignSlot(CustomApp app) {
+        String packageName = app.getPackageName();
+        Integer slot = slots.get(packageName);
+        if (slot == null) {
+            slot = slots.size();
+            slots.put(packageName, slot);
+            ensureCapacity(slot + 1);
+        }
+        // 同一包名的不同 CustomApp 实例（编辑、导入后重建）共用一个槽位
+        app.setRuntimeSlot(slot + 1);
+        return slot;
+    }
+
+    private void ensureCapacity(int required) {
+        AtomicIntegerArray currentWords = words;
+        if (required <= currentWords.length()) {
+            return;
+        }
+        int capacity = Math.max(required, currentWords.length() * 2);
+        AtomicIntegerArray grownWords = new AtomicIntegerArray(capacity);
+        for (int i = 0; i < currentWords.length(); i++) {
+            // 冻结后该元素不再变化，复制到的就是最终值
+            int word = currentWords.getAndUpdate(i, value -> value | FROZEN);
+            grownWords.set(i, word);
+        }
+        words = grownWords;
+    }
+}
@@ -1,5 +1,6 @@
 package com.book.mask.config;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -14,6 +15,14 @@ public class CustomApp {
     private String targetWord; // 改为非final，支持修改
     private int relaxedLimitCount; // 改为非final，支持修改
     private boolean globalBlock;
+    // 可选：关键词所在控件的 viewIdResourceName，多个用空格分隔；可只写 id/ 后面的部分
+    private String targetViewIds;
+    // 由 targetWord 预编译的匹配器；不参与 Gson 序列化，反序列化得到的实例在首次读取时构建
+    private transient volatile KeywordMatcher keywordMatcher;
+    // 由 targetViewIds 解析出的完整控件 ID，同样在首次读取时构建
+    private transient volatile String[] targetViewIdArray;
+    // 在 AppRuntimeState 中的槽位 + 1；0 表示尚未分配（Gson 反序列化不执行字段初始化，故不用 -1）
+    private transient volatile int runtimeSlot;
 
     public CustomApp(String appName, String packageName, String targetWord, int relaxedLimitCount) {
         this(appName, packageName, targetWord, relaxedLimitCount, false);
@@ -26,6 +35,7 @@ public class CustomApp {
         this.targetWord = targetWord;
         this.relaxedLimitCount = relaxedLimitCount;
         this.globalBlock = globalBlock;
+        this.keywordMatcher = KeywordMatcher.compile(targetWord);
     }
 
     /**
@@ -34,6 +44,7 @@ public class CustomApp {
     public CustomApp(CustomApp other) {
         this(other.appName, other.packageName, other.targetWord, other.relaxedLimitCount,
                 other.globalBlock);
+        this.targetViewIds = other.targetViewIds;
     }
     
     public String getAppName() {
@@ -43,6 +54,14 @@ public class CustomApp {
     public String getPackageName() {
         return packageName;
     }
+
+    int getRuntimeSlot() {
+        return runtimeSlot;
+    }
+
+    void setRuntimeSlot(int runtimeSlot) {
+        this.runtimeSlot = runtimeSlot;
+    }
     
     public String getTargetWord() {
         return targetWord;
@@ -66,6 +85,62 @@ public class CustomApp {
     
     public void setTargetWord(String targetWord) {
         this.targetWord = targetWord;
+        this.keywordMatcher = KeywordMatcher.compile(targetWord);
+    }
+
+    /**
+     * 页面关键词匹配器，随 {@link #setTargetWord} 重新编译，扫描时直接复用。
+     */
+    public KeywordMatcher getKeywordMatcher() {
+        KeywordMatcher matcher = keywordMatcher;
+        if (matcher == null) {
+            matcher = KeywordMatcher.compile(targetWord);
+            keywordMatcher = matcher;
+        }
+        return matcher;
+    }
+
+    public String getTargetViewIds() {
+        return targetViewIds;
+    }
+
+    public void setTargetViewIds(String targetViewIds) {
+        this.targetViewIds = targetViewIds == null || targetViewIds.trim().isEmpty()
+                ? null : targetViewIds.trim();
+        this.targetViewIdArray = null;
+    }
+
+    /**
+     * 配置的控件 ID，已补全为「包名:id/名称」形式；未配置时返回空数组。
+     */
+    public String[] getTargetViewIdArray() {
+        String[] viewIds = targetViewIdArray;
+        if (viewIds == null) {
+            viewIds = parseViewIds(packageName, targetViewIds);
+            targetViewIdArray = viewIds;
+        }
+        return viewIds;
+    }
+
+    private static String[] parseViewIds(String packageName, String targetViewIds) {
+        if (targetViewIds == null || targetViewIds.trim().isEmpty()) {
+            return new String[0];
+        }
+        List<String> viewIds = new ArrayList<>();
+        for (String token : targetViewIds.trim().split("\\s+")) {
+            String viewId;
+            if (token.contains(":id/")) {
+                viewId = token;
+            } else if (token.startsWith("id/")) {
+                viewId = packageName + ":" + token;
+            } else {
+                viewId = packageName + ":id/" + token;
+            }
+            if (!viewIds.contains(viewId)) {
+                viewIds.add(viewId);
+            }
+        }
+        return viewIds.toArray(new String[0]);
     }
 
     public boolean isGlobalBlock() {
@@ -6,7 +6,6 @@ import android.util.Log;
 import com.book.mask.personalize.RelaxManager;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
-import com.tencent.mmkv.MMKV;
 
 import java.lang.reflect.Type;
 import java.util.ArrayList;
@@ -28,7 +27,7 @@ public class CustomAppManager {
     public static final String ALIPAY_PACKAGE = "com.eg.android.AlipayGphone";
     private static CustomAppManager instance;
     private final Context context;
-    private MMKV mmkv;
+    private SettingsRepository settings;
     private final Gson gson;
     private List<CustomApp> customApps;
     
@@ -39,6 +38,10 @@ public class CustomAppManager {
     private final List<CustomApp> defaultApps = buildDefaultApps();
     // 预定义APP的修改记录
     private List<CustomApp> predefinedAppModifications;
+    // 包名索引快照：列表或监测开关变化后整体重建，读取方无锁访问
+    private volatile AppRegistrySnapshot registry = AppRegistrySnapshot.EMPTY;
+    private volatile AppRegistrySnapshot.MonitoringLookup monitoringLookup;
+    private long registryVersion = 0;
 
     private static List<CustomApp> buildDefaultApps() {
         List<CustomApp> copies = new ArrayList<>();
@@ -61,18 +64,19 @@ public class CustomAppManager {
     private CustomAppManager(Context context) {
         if (context != null) {
             this.context = context.getApplicationContext();
-            this.mmkv = MMKV.mmkvWithID(PREF_NAME);
+            this.settings = SettingsRepository.of(PREF_NAME);
             this.gson = new Gson();
             loadCustomApps();
             loadPredefinedAppModifications();
         } else {
             // 只读模式，用于静态上下文
             this.context = null;
-            this.mmkv = null;
+            this.settings = null;
             this.gson = new Gson();
             this.customApps = new ArrayList<>();
             this.predefinedAppModifications = new ArrayList<>();
         }
+        rebuildRegistry();
     }
 
     public static synchronized CustomAppManager getInstance() {
@@ -103,6 +107,12 @@ public class CustomAppManager {
 
     public boolean addCustomApp(String appName, String packageName, String targetWord,
                                 int relaxedLimitCount, boolean globalBlock) {
+        return addCustomApp(appName, packageName, targetWord, relaxedLimitCount, globalBlock, null);
+    }
+
+    public boolean addCustomApp(String appName, String packageName, String targetWord,
+                                int relaxedLimitCount, boolean globalBlock,
+                                String targetViewIds) {
         // 入口清洗：去除零宽字符等不可见字符，并校验包名合法性
         String cleanedPkg = sanitizePackageName(packageName);
         if (!isValidPackageName(cleanedPkg)) {
@@ -124,9 +134,10 @@ public class CustomAppManager {
         // 创建新的自定义APP
         CustomApp newApp = new CustomApp(
                 appName, packageName, targetWord, relaxedLimitCount, globalBlock);
+        newApp.setTargetViewIds(targetViewIds);
         customApps.add(newApp);
 
-        // 保存到MMKV
+        // 保存到设置仓库（同时重建包名索引）
         saveCustomApps();
 
         Log.d(TAG, "Added custom app: " + appName + " (" + packageName + ")");
@@ -166,56 +177,69 @@ public class CustomAppManager {
     }
     
     /**
-     * 根据包名获取APP
+     * 根据包名获取APP（预定义APP的修改版本优先，其次预定义APP，最后自定义APP）
      */
     public CustomApp getAppByPackageName(String packageName) {
-        // 先检查预定义应用的修改版本
-        CustomApp modifiedApp = getModifiedPredefinedApp(packageName);
-        if (modifiedApp != null) {
-            return modifiedApp;
-        }
-        
-        // 再检查原始预定义应用
-        for (CustomApp app : defaultApps) {
-            if (app.getPackageName().equals(packageName)) {
-                return app;
-            }
-        }
-        
-        // 最后检查自定义应用
-        for (CustomApp app : customApps) {
-            if (app.getPackageName().equals(packageName)) {
-                return app;
-            }
-        }
-        return null;
+        return registry.get(packageName);
     }
     
     /**
      * 检测包名对应的支持APP（统一使用CustomApp）
      * @param packageName 包名
-     * @param relaxManager 用于检查监测开关状态
+     * @param relaxManager 用于检查监测开关状态；首次传入后监测开关折算进包名索引
      * @return 支持的APP，如果不支持或监测关闭则返回null
      */
     public CustomApp detectSupportedApp(String packageName, RelaxManager relaxManager) {
-        // 检查所有APP（包括预定义和自定义）
         try {
-            CustomApp app = getAppByPackageName(packageName);
-            
-            if (app != null) {
-                // 检查该APP的监测开关状态
-                if (relaxManager != null && !relaxManager.shouldMonitorApp(packageName)) {
-                    Log.d("CustomAppManager", "APP " + app.getAppName() + " 监测已关闭，跳过检测");
-                    return null;
-                }
-                return app;
+            AppRegistrySnapshot snapshot = registry;
+            if (!snapshot.isMonitoringResolved() && relaxManager != null) {
+                monitoringLookup = relaxManager::shouldMonitorApp;
+                snapshot = rebuildRegistry();
             }
+
+            CustomApp app = snapshot.get(packageName);
+            if (app == null) {
+                return null;
+            }
+            boolean monitored = snapshot.isMonitoringResolved()
+                    ? snapshot.getMonitored(packageName) != null
+                    : relaxManager == null || relaxManager.shouldMonitorApp(packageName);
+            if (!monitored) {
+                Log.d("CustomAppManager", "APP " + app.getAppName() + " 监测已关闭，跳过检测");
+                return null;
+            }
+            return app;
         } catch (Exception e) {
             Log.w("CustomAppManager", "检查APP时出错", e);
         }
         
         return null;
     }
+
+    /**
+     * 监测开关被修改（设置页切换、清除 APP 设置、备份导入）后调用，重建包名索引。
+     */
+    public void onMonitoringSettingsChanged() {
+        rebuildRegistry();
+    }
+
+    public AppRegistrySnapshot getRegistrySnapshot() {
+        return registry;
+    }
+
+    /**
+     * 由当前三张列表与监测开关构建新快照并整体替换。写操作都在主线程，
+     * synchronized 只为防止极端情况下两次重建交错导致旧快照覆盖新快照。
+     */
+    private synchronized AppRegistrySnapshot rebuildRegistry() {
+        AppRegistrySnapshot snapshot = AppRegistrySnapshot.build(predefinedAppModifications,
+                defaultApps, customApps, monitoringLookup, ++registryVersion);
+        registry = snapshot;
+        Log.d(TAG, "包名索引已重建: version=" + snapshot.getVersion()
+                + ", apps=" + snapshot.size()
+                + ", monitoringResolved=" + snapshot.isMonitoringResolved());
+        return snapshot;
+    }
     
     /**
      * 获取当前活跃的APP
@@ -282,16 +306,16 @@ public class CustomAppManager {
     }
 
     /**
-     * 从MMKV加载自定义APP
+     * 从设置仓库加载自定义APP
      */
     private void loadCustomApps() {
-        if (mmkv == null) {
+        if (settings == null) {
             // 只读模式，使用空列表
             customApps = new ArrayList<>();
             return;
         }
 
-        String json = mmkv.getString(KEY_CUSTOM_APPS, "[]");
+        String json = settings.getString(KEY_CUSTOM_APPS, "[]");
         try {
             Type type = new TypeToken<List<CustomApp>>(){}.getType();
             customApps = gson.fromJson(json, type);
@@ -327,6 +351,7 @@ public class CustomAppManager {
                 CustomApp rebuilt = new CustomApp(
                         app.getAppName(), cleaned, app.getTargetWord(), app.getRelaxedLimitCount(),
                         app.isGlobalBlock());
+                rebuilt.setTargetViewIds(app.getTargetViewIds());
                 apps.set(i, rebuilt);
                 dirty = true;
             }
@@ -335,18 +360,20 @@ public class CustomAppManager {
     }
 
     /**
-     * 保存自定义APP到MMKV
+     * 保存自定义APP到设置仓库
      */
     private void saveCustomApps() {
-        if (mmkv == null) {
+        // 列表或其中 APP 的字段已变化，无论能否落盘都先更新内存索引
+        rebuildRegistry();
+        if (settings == null) {
             // 尝试重新初始化（如果有context的话）
             if (context != null) {
-                Log.w("CustomAppManager", "MMKV is null, attempting to reinitialize...");
+                Log.w("CustomAppManager", "Settings repository is null, attempting to reinitialize...");
                 try {
-                    mmkv = MMKV.mmkvWithID(PREF_NAME);
-                    Log.i("CustomAppManager", "Successfully reinitialized MMKV");
+                    settings = SettingsRepository.of(PREF_NAME);
+                    Log.i("CustomAppManager", "Successfully reinitialized settings repository");
                 } catch (Exception e) {
-                    Log.e("CustomAppManager", "Failed to reinitialize MMKV", e);
+                    Log.e("CustomAppManager", "Failed to reinitialize settings repository", e);
                     return;
                 }
             } else {
@@ -357,19 +384,10 @@ public class CustomAppManager {
         }
         
         try {
+            // 在调用方线程序列化，之后对列表的修改不影响本次保存；落盘由仓库合并后在后台完成
             String json = gson.toJson(customApps);
-            mmkv.putString(KEY_CUSTOM_APPS, json).commit();
-            
-            // 验证保存是否成功 - 从MMKV读取内容
-            String savedJson = mmkv.getString(KEY_CUSTOM_APPS, null);
-            if (savedJson != null && savedJson.equals(json)) {
-                Log.d(TAG, "Custom apps saved successfully. Data verified.");
-                Log.d(TAG, "Saved data: " + savedJson);
-            } else {
-                Log.e(TAG, "Failed to save custom apps - verification failed");
-                Log.e(TAG, "Expected: " + json);
-                Log.e(TAG, "Actual: " + savedJson);
-            }
+            settings.putString(KEY_CUSTOM_APPS, json);
+            Log.d(TAG, "Custom apps saved: " + json);
         } catch (Exception e) {
             Log.e("CustomAppManager", "Error saving custom apps", e);
         }
@@ -433,6 +451,7 @@ public class CustomAppManager {
             if (!found) {
                 predefinedAppModifications.add(modifiedApp);
             }
+            rebuildRegistry();
             
             // 保存修改
             savePredefinedAppModifications();
@@ -455,12 +474,12 @@ public class CustomAppManager {
      * 加载预定义APP的修改记录
      */
     private void loadPredefinedAppModifications() {
-        if (mmkv == null) {
+        if (settings == null) {
             predefinedAppModifications = new ArrayList<>();
             return;
         }
 
-        String json = mmkv.getString(KEY_DEFAULT_APP_MODIFY, "[]");
+        String json = settings.getString(KEY_DEFAULT_APP_MODIFY, "[]");
         try {
             Type type = new TypeToken<List<CustomApp>>(){}.getType();
             predefinedAppModifications = gson.fromJson(json, type);
@@ -482,14 +501,14 @@ public class CustomAppManager {
      * 保存预定义APP的修改记录
      */
     private void savePredefinedAppModifications() {
-        if (mmkv == null) {
+        if (settings == null) {
             Log.w("CustomAppManager", "Cannot save predefined app modifications in read-only mode");
             return;
         }
         
         try {
             String json = gson.toJson(predefinedAppModifications);
-            mmkv.putString(KEY_DEFAULT_APP_MODIFY, json).commit();
+            settings.putString(KEY_DEFAULT_APP_MODIFY, json);
         } catch (Exception e) {
             Log.e("CustomAppManager", "Error saving predefined app modifications", e);
         }
@@ -0,0 +1,280 @@
+package com.book.mask.config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 由 {@link CustomApp#getTargetWord()} 预编译出的多关键词匹配器，只在关键词变化时构建一次，
+ * 扫描时对每个节点文字直接在 CharSequence 上匹配，不做 toString 也不按关键词逐个查找。
+ * <p>
+ * 关键词以空格分隔，每个关键词可单独选择匹配方式：
+ * <ul>
+ *   <li>精确（默认）：节点文字去掉首尾空白后与关键词完全相同，如 {@code 推荐}；</li>
+ *   <li>包含：关键词首或尾带 {@code *}，节点文字中出现该关键词即命中，如 {@code *热榜*}。</li>
+ * </ul>
+ * 精确关键词放入按 String.hashCode 规则散列的开放寻址表；包含关键词构建 Aho-Corasick 自动机。
+ * 两者的单节点开销都只与节点文字长度有关，与关键词个数无关。实例不可变，可跨线程共享。
+ */
+public final class KeywordMatcher {
+    public static final char CONTAINS_MARK = '*';
+
+    private static final KeywordMatcher EMPTY = new KeywordMatcher(new String[0], new String[0]);
+
+    // 全部关键词（精确在前、包含在后），供 findAccessibilityNodeInfosByText 之类的按文字查询使用
+    private final List<String> keywords;
+
+    // 精确匹配：开放寻址散列表，容量为 2 的幂
+    private final String[] exactTable;
+    private final int[] exactHashes;
+    private final int exactMask;
+    private final int exactCount;
+
+    // 包含匹配：Aho-Corasick 自动机，状态 0 为根
+    private final char[][] edgeChars;
+    private final int[][] edgeTargets;
+    private final int[] failLinks;
+    private final boolean[] accepting;
+    private final int containsCount;
+
+    private KeywordMatcher(String[] exactKeywords, String[] containsKeywords) {
+        List<String> allKeywords = new ArrayList<>(Arrays.asList(exactKeywords));
+        allKeywords.addAll(Arrays.asList(containsKeywords));
+        keywords = Collections.unmodifiableList(allKeywords);
+
+        exactCount = exactKeywords.length;
+        int capacity = Integer.highestOneBit(Math.max(2, exactCount * 2 - 1)) << 1;
+        exactTable = new String[capacity];
+        exactHashes = new int[capacity];
+        exactMask = capacity - 1;
+        for (String keyword : exactKeywords) {
+            insertExact(keyword);
+        }
+
+        containsCount = containsKeywords.length;
+        Automaton automaton = new Automaton(containsKeywords);
+        edgeChars = automaton.edgeChars;
+        edgeTargets = automaton.edgeTargets;
+        failLinks = automaton.failLinks;
+        accepting = automaton.accepting;
+    }
+
+    /**
+     * 按空格拆分关键词并编译；空串、null 或只含空白时返回不匹配任何文字的实例。
+     */
+    public static KeywordMatcher compile(String targetWord) {
+        if (targetWord == null || targetWord.trim().isEmpty()) {
+            return EMPTY;
+        }
+        List<String> exact = new ArrayList<>();
+        List<String> contains = new ArrayList<>();
+        for (String token : targetWord.trim().split("\\s+")) {
+            int start = 0;
+            int end = token.length();
+            while (start < end && token.charAt(start) == CONTAINS_MARK) {
+                start++;
+            }
+            while (end > start && token.charAt(end - 1) == CONTAINS_MARK) {
+                end--;
+            }
+            if (start == end) {
+                continue;
+            }
+            String keyword = token.substring(start, end);
+            boolean containsMode = start > 0 || end < token.length();
+            List<String> target = containsMode ? contains : exact;
+            if (!target.contains(keyword)) {
+                target.add(keyword);
+            }
+        }
+        return new KeywordMatcher(exact.toArray(new String[0]), contains.toArray(new String[0]));
+    }
+
+    /**
+     * 节点文字是否命中任一关键词。
+     */
+    public boolean matches(CharSequence text) {
+        if (text == null || text.length() == 0) {
+            return false;
+        }
+        return (exactCount > 0 && matchesExact(text))
+                || (containsCount > 0 && matchesContains(text));
+    }
+
+    public List<String> getKeywords() {
+        return keywords;
+    }
+
+    public boolean isEmpty() {
+        return exactCount == 0 && containsCount == 0;
+    }
+
+    private void insertExact(String keyword) {
+        int hash = keyword.hashCode();
+        int index = spread(hash) & exactMask;
+        while (exactTable[index] != null) {
+            index = (index + 1) & exactMask;
+        }
+        exactTable[index] = keyword;
+        exactHashes[index] = hash;
+    }
+
+    private boolean matchesExact(CharSequence text) {
+        int start = 0;
+        int end = text.length();
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        if (start == end) {
+            return false;
+        }
+
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        int index = spread(hash) & exactMask;
+        String candidate;
+        while ((candidate = exactTable[index]) != null) {
+            if (exactHashes[index] == hash && regionEquals(candidate, text, start, end)) {
+                return true;
+            }
+            index = (index + 1) & exactMask;
+        }
+        return false;
+    }
+
+    private static boolean regionEquals(String keyword, CharSequence text, int start, int end) {
+        if (keyword.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < keyword.length(); i++) {
+            if (keyword.charAt(i) != text.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean matchesContains(CharSequence text) {
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int next;
+            while ((next = transition(state, c)) < 0 && state != 0) {
+                state = failLinks[state];
+            }
+            state = Math.max(next, 0);
+            if (accepting[state]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int transition(int state, char c) {
+        char[] chars = edgeChars[state];
+        int index = Arrays.binarySearch(chars, c);
+        return index >= 0 ? edgeTargets[state][index] : -1;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * 构建期使用的可变自动机，构建完成后压缩为按字符排序的边数组。
+     */
+    private static final class Automaton {
+        private char[][] edgeChars;
+        private int[][] edgeTargets;
+        private int[] failLinks;
+        private boolean[] accepting;
+
+        private Automaton(String[] keywords) {
+            List<StringBuilder> chars = new ArrayList<>();
+            List<List<Integer>> targets = new ArrayList<>();
+            List<Boolean> accept = new ArrayList<>();
+            chars.add(new StringBuilder());
+            targets.add(new ArrayList<>());
+            accept.add(false);
+
+            for (String keyword : keywords) {
+                int state = 0;
+                for (int i = 0; i < keyword.length(); i++) {
+                    char c = keyword.charAt(i);
+                    int edge = chars.get(state).indexOf(String.valueOf(c));
+                    if (edge >= 0) {
+                        state = targets.get(state).get(edge);
+                    } else {
+                        int created = chars.size();
+                        chars.add(new StringBuilder());
+                        targets.add(new ArrayList<>());
+                        accept.add(false);
+                        chars.get(state).append(c);
+                        targets.get(state).add(created);
+                        state = created;
+                    }
+                }
+                accept.set(state, true);
+            }
+
+            int stateCount = chars.size();
+            edgeChars = new char[stateCount][];
+            edgeTargets = new int[stateCount][];
+            accepting = new boolean[stateCount];
+            for (int state = 0; state < stateCount; state++) {
+                char[] stateChars = chars.get(state).toString().toCharArray();
+                Integer[] order = new Integer[stateChars.length];
+                for (int i = 0; i < order.length; i++) {
+                    order[i] = i;
+                }
+                Arrays.sort(order, (a, b) -> Character.compare(stateChars[a], stateChars[b]));
+                edgeChars[state] = new char[order.length];
+                edgeTargets[state] = new int[order.length];
+                for (int i = 0; i < order.length; i++) {
+                    edgeChars[state][i] = stateChars[order[i]];
+                    edgeTargets[state][i] = targets.get(state).get(order[i]);
+                }
+                accepting[state] = accept.get(state);
+            }
+            buildFailLinks(stateCount);
+        }
+
+        private void buildFailLinks(int stateCount) {
+            failLinks = new int[stateCount];
+            int[] queue = new int[stateCount];
+            int head = 0;
+            int tail = 0;
+            for (int child : edgeTargets[0]) {
+                failLinks[child] = 0;
+                queue[tail++] = child;
+            }
+            while (head < tail) {
+                int state = queue[head++];
+                for (int i = 0; i < edgeChars[state].length; i++) {
+                    char c = edgeChars[state][i];
+                    int child = edgeTargets[state][i];
+                    int fallback = failLinks[state];
+                    int next;
+                    while ((next = find(fallback, c)) < 0 && fallback != 0) {
+                        fallback = failLinks[fallback];
+                    }
+                    failLinks[child] = next >= 0 ? next : 0;
+                    // 某关键词是另一关键词的后缀时，经失败链可达的接受态同样算命中
+                    accepting[child] |= accepting[failLinks[child]];
+                    queue[tail++] = child;
+                }
+            }
+        }
+
+        private int find(int state, char c) {
+            int index = Arrays.binarySearch(edgeChars[state], c);
+            return index >= 0 ? edgeTargets[state][index] : -1;
+        }
+    }
+}
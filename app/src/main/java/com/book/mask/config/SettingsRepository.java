@@ -0,0 +1,451 @@
+package com.book.mask.config;
+
+import android.util.Log;
+
+import com.book.mask.constant.Const;
+import com.google.gson.Gson;
+import com.tencent.mmkv.MMKV;
+
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 进程内共享的设置仓库：每个 MMKV 存储只对应一个实例，读过的键缓存在内存里，之后的读取不再访问存储；
+ * 写入立即更新内存并通知监听者，落盘则攒到后台线程，在一个短窗口（{@link Const#SETTINGS_FLUSH_WINDOW_MS}）
+ * 内合并成一批写入再同步一次。
+ * <p>
+ * 存成 JSON 的列表类设置可用 {@link #getJson} 读取：解析结果按原始字符串缓存，字符串不变就不再解析，
+ * 返回的对象由多处共享，调用方不得修改。
+ * <p>
+ * 所有读写都应经过这里；绕过仓库直接写 MMKV 后需调用 {@link #reload()}。可在任意线程使用。
+ */
+public final class SettingsRepository {
+    private static final String TAG = "SettingsRepository";
+
+    /**
+     * 设置变化回调，在写入方所在线程同步调用。
+     */
+    public interface OnSettingChangedListener {
+        /**
+         * @param key 变化的键；整体重新加载时为 null
+         */
+        void onSettingChanged(SettingsRepository repository, String key);
+    }
+
+    /**
+     * 底层存储，生产环境为 MMKV，测试可替换为内存实现。
+     */
+    interface Backend {
+        boolean contains(String key);
+
+        String[] allKeys();
+
+        String getString(String key, String defaultValue);
+
+        int getInt(String key, int defaultValue);
+
+        long getLong(String key, long defaultValue);
+
+        float getFloat(String key, float defaultValue);
+
+        boolean getBoolean(String key, boolean defaultValue);
+
+        byte[] getBytes(String key);
+
+        /** 写入一个值（String / Integer / Long / Float / Boolean / byte[]）；value 为 null 表示删除。 */
+        void write(String key, Object value);
+
+        /** 一批写入结束后调用一次。 */
+        void sync();
+    }
+
+    private static final Map<String, SettingsRepository> INSTANCES = new HashMap<>();
+    private static ScheduledExecutorService flushExecutor;
+
+    // 已确认不存在的键
+    private static final Object ABSENT = new Object();
+
+    private static final class ParsedJson {
+        final String source;
+        final Type type;
+        final Object value;
+
+        ParsedJson(String source, Type type, Object value) {
+            this.source = source;
+            this.type = type;
+            this.value = value;
+        }
+    }
+
+    private final Backend backend;
+    private final ScheduledExecutorService executor;
+    private final long flushWindowMs;
+    private final Gson gson = new Gson();
+
+    // 键 → 当前值（含尚未落盘的写入）或 ABSENT
+    private final ConcurrentHashMap<String, Object> values = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ParsedJson> parsed = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<OnSettingChangedListener> listeners = new CopyOnWriteArrayList<>();
+
+    // 待落盘的写入，键 → 值（删除为 ABSENT）；与 flushScheduled 一起由 this 保护
+    private LinkedHashMap<String, Object> pending = new LinkedHashMap<>();
+    private boolean flushScheduled = false;
+    // 保证各批写入按产生顺序落盘
+    private final Object flushLock = new Object();
+
+    SettingsRepository(Backend backend, ScheduledExecutorService executor, long flushWindowMs) {
+        this.backend = backend;
+        this.executor = executor;
+        this.flushWindowMs = flushWindowMs;
+    }
+
+    /**
+     * 取得该 MMKV 存储对应的共享仓库。需在 MMKV 初始化之后调用。
+     */
+    public static synchronized SettingsRepository of(String storageId) {
+        SettingsRepository repository = INSTANCES.get(storageId);
+        if (repository == null) {
+            if (flushExecutor == null) {
+                flushExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "settings-flush");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            repository = new SettingsRepository(new MmkvBackend(MMKV.mmkvWithID(storageId)),
+                    flushExecutor, Const.SETTINGS_FLUSH_WINDOW_MS);
+            INSTANCES.put(storageId, repository);
+        }
+        return repository;
+    }
+
+    /**
+     * 立即把所有仓库尚未落盘的写入写入存储，用于进程可能被回收前。
+     */
+    public static void flushAll() {
+        SettingsRepository[] repositories;
+        synchronized (SettingsRepository.class) {
+            repositories = INSTANCES.values().toArray(new SettingsRepository[0]);
+        }
+        for (SettingsRepository repository : repositories) {
+            repository.flush();
+        }
+    }
+
+    // ===== 读取 =====
+
+    public boolean contains(String key) {
+        Object value = values.get(key);
+        if (value == null) {
+            return backend.contains(key);
+        }
+        return value != ABSENT;
+    }
+
+    public String getString(String key, String defaultValue) {
+        Object value = load(key, () -> backend.getString(key, null));
+        return value instanceof String ? (String) value : defaultValue;
+    }
+
+    public int getInt(String key, int defaultValue) {
+        Object value = load(key, () -> backend.getInt(key, defaultValue));
+        return value instanceof Number ? ((Number) value).intValue() : defaultValue;
+    }
+
+    public long getLong(String key, long defaultValue) {
+        Object value = load(key, () -> backend.getLong(key, defaultValue));
+        return value instanceof Number ? ((Number) value).longValue() : defaultValue;
+    }
+
+    public float getFloat(String key, float defaultValue) {
+        Object value = load(key, () -> backend.getFloat(key, defaultValue));
+        return value instanceof Number ? ((Number) value).floatValue() : defaultValue;
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        Object value = load(key, () -> backend.getBoolean(key, defaultValue));
+        return value instanceof Boolean ? (Boolean) value : defaultValue;
+    }
+
+    /**
+     * 读取二进制设置；返回的数组与缓存共享，不得修改。
+     */
+    public byte[] getBytes(String key) {
+        Object value = load(key, () -> backend.getBytes(key));
+        return value instanceof byte[] ? (byte[]) value : null;
+    }
+
+    /**
+     * 读取存成 JSON 的设置并解析为 type；未设置或解析失败时返回 fallback。
+     * 返回的对象是共享缓存，不得修改。
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getJson(String key, Type type, T fallback) {
+        String source = getString(key, null);
+        if (source == null) {
+            return fallback;
+        }
+        ParsedJson cached = parsed.get(key);
+        if (cached != null && cached.source == source && cached.type.equals(type)) {
+            return (T) cached.value;
+        }
+        Object value;
+        try {
+            value = gson.fromJson(source, type);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "解析设置失败: " + key, e);
+            return fallback;
+        }
+        if (value == null) {
+            return fallback;
+        }
+        parsed.put(key, new ParsedJson(source, type, value));
+        return (T) value;
+    }
+
+    /**
+     * 当前存在的全部键（含尚未落盘的写入）。
+     */
+    public String[] allKeys() {
+        Set<String> keys = new LinkedHashSet<>();
+        String[] stored = backend.allKeys();
+        if (stored != null) {
+            for (String key : stored) {
+                keys.add(key);
+            }
+        }
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            if (entry.getValue() == ABSENT) {
+                keys.remove(entry.getKey());
+            } else {
+                keys.add(entry.getKey());
+            }
+        }
+        return keys.toArray(new String[0]);
+    }
+
+    // ===== 写入 =====
+
+    public SettingsRepository putString(String key, String value) {
+        return write(key, value);
+    }
+
+    public SettingsRepository putInt(String key, int value) {
+        return write(key, value);
+    }
+
+    public SettingsRepository putLong(String key, long value) {
+        return write(key, value);
+    }
+
+    public SettingsRepository putFloat(String key, float value) {
+        return write(key, value);
+    }
+
+    public SettingsRepository putBoolean(String key, boolean value) {
+        return write(key, value);
+    }
+
+    /**
+     * 保存二进制设置；数组交由仓库持有，调用方之后不得再修改。
+     */
+    public SettingsRepository putBytes(String key, byte[] value) {
+        return write(key, value);
+    }
+
+    /**
+     * 以 JSON 字符串保存 value；序列化在调用方线程完成，之后对 value 的修改不影响已保存的内容。
+     */
+    public SettingsRepository putJson(String key, Object value) {
+        return write(key, gson.toJson(value));
+    }
+
+    public SettingsRepository remove(String key) {
+        return write(key, null);
+    }
+
+    // ===== 监听与落盘 =====
+
+    public void addListener(OnSettingChangedListener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    public void removeListener(OnSettingChangedListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 立即把尚未落盘的写入写入存储，并在调用方线程等待完成。
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            LinkedHashMap<String, Object> batch;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                pending = new LinkedHashMap<>();
+            }
+            try {
+                for (Map.Entry<String, Object> entry : batch.entrySet()) {
+                    Object value = entry.getValue();
+                    backend.write(entry.getKey(), value == ABSENT ? null : value);
+                }
+                backend.sync();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "设置落盘失败，共 " + batch.size() + " 项", e);
+            }
+        }
+    }
+
+    /**
+     * 丢弃内存中的缓存并从存储重新读取，用于绕过仓库直接改写了存储之后。尚未落盘的写入先落盘。
+     */
+    public void reload() {
+        flush();
+        values.clear();
+        parsed.clear();
+        for (OnSettingChangedListener listener : listeners) {
+            listener.onSettingChanged(this, null);
+        }
+    }
+
+    /** 尚未落盘的写入数，仅供测试观察。 */
+    synchronized int pendingCount() {
+        return pending.size();
+    }
+
+    private interface Loader {
+        Object load();
+    }
+
+    private Object load(String key, Loader loader) {
+        Object value = values.get(key);
+        if (value != null) {
+            return value;
+        }
+        return values.computeIfAbsent(key, k -> {
+            if (!backend.contains(k)) {
+                return ABSENT;
+            }
+            // 存在但按该类型读不出值时不缓存
+            return loader.load();
+        });
+    }
+
+    private SettingsRepository write(String key, Object value) {
+        Object stored = value != null ? value : ABSENT;
+        boolean changed;
+        synchronized (this) {
+            Object previous = values.put(key, stored);
+            // 之前没读过该键时无从比较，按已变化处理
+            changed = previous == null || !sameValue(previous, stored);
+            pending.put(key, stored);
+            if (!flushScheduled) {
+                flushScheduled = true;
+                executor.schedule(() -> {
+                    synchronized (this) {
+                        flushScheduled = false;
+                    }
+                    flush();
+                }, flushWindowMs, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (changed) {
+            for (OnSettingChangedListener listener : listeners) {
+                listener.onSettingChanged(this, key);
+            }
+        }
+        return this;
+    }
+
+    private static boolean sameValue(Object a, Object b) {
+        if (a instanceof byte[] && b instanceof byte[]) {
+            return Arrays.equals((byte[]) a, (byte[]) b);
+        }
+        return a.equals(b);
+    }
+
+    private static final class MmkvBackend implements Backend {
+        private final MMKV mmkv;
+
+        MmkvBackend(MMKV mmkv) {
+            this.mmkv = mmkv;
+        }
+
+        @Override
+        public boolean contains(String key) {
+            return mmkv.containsKey(key);
+        }
+
+        @Override
+        public String[] allKeys() {
+            return mmkv.allKeys();
+        }
+
+        @Override
+        public String getString(String key, String defaultValue) {
+            return mmkv.decodeString(key, defaultValue);
+        }
+
+        @Override
+        public int getInt(String key, int defaultValue) {
+            return mmkv.decodeInt(key, defaultValue);
+        }
+
+        @Override
+        public long getLong(String key, long defaultValue) {
+            return mmkv.decodeLong(key, defaultValue);
+        }
+
+        @Override
+        public float getFloat(String key, float defaultValue) {
+            return mmkv.getFloat(key, defaultValue);
+        }
+
+        @Override
+        public boolean getBoolean(String key, boolean defaultValue) {
+            return mmkv.decodeBool(key, defaultValue);
+        }
+
+        @Override
+        public byte[] getBytes(String key) {
+            return mmkv.decodeBytes(key);
+        }
+
+        @Override
+        public void write(String key, Object value) {
+            if (value == null) {
+                mmkv.removeValueForKey(key);
+            } else if (value instanceof String) {
+                mmkv.encode(key, (String) value);
+            } else if (value instanceof Integer) {
+                mmkv.encode(key, (Integer) value);
+            } else if (value instanceof Long) {
+                mmkv.encode(key, (Long) value);
+            } else if (value instanceof Float) {
+                mmkv.encode(key, (Float) value);
+            } else if (value instanceof Boolean) {
+                mmkv.encode(key, (Boolean) value);
+            } else if (value instanceof byte[]) {
+                mmkv.encode(key, (byte[]) value);
+            }
+        }
+
+        @Override
+        public void sync() {
+            mmkv.sync();
+        }
+    }
+}
@@ -3,17 +3,15 @@ package com.book.mask.config;
 import com.book.mask.constant.QuestionConst;
 
 import java.text.SimpleDateFormat;
-import java.util.HashMap;
 import java.util.Locale;
-import java.util.Map;
 import java.util.Set;
 
 public class Share {
     public static boolean MOTIVATE_CHANGE = false;
     public static long challengeStartTime = 0; // 答题验证开始时间
 
-    // 多APP状态管理
-    public static Map<String, String> appStates = new HashMap<>(); // 使用包名作为键
+    // 多APP状态管理：界面状态、手动隐藏等按 APP 槽位存放，可跨线程读取
+    public static final AppRuntimeState runtimeState = new AppRuntimeState();
     public static final String DEFAULT_SERVER_MODEL = "GLM";
     public static volatile String latestVersion = "";
     public static volatile long latestVersionTimestamp = 0L;
@@ -23,7 +21,6 @@ public class Share {
     public static volatile int appreciateImageCode = 0;
     public static CustomApp currentApp = null; // 当前活跃的APP（统一使用CustomApp）
     public static boolean isFloatingWindowVisible = false; // 悬浮窗是否显示
-    public static Map<String, Boolean> appManuallyHidden = new HashMap<>(); // 每个APP的手动隐藏状态（使用包名作为键）
 
     // 预置APP中默认开启监测的包名（微信、支付宝默认不开启）
     private static final Set<String> DEFAULT_ENABLED_PACKAGES = Set.of(
@@ -39,17 +36,25 @@ public class Share {
 
     /**
      * 获取指定APP的状态 - 统一使用CustomApp
+     *
+     * @return "target"、"not target"，尚未检测时为 null
      */
     public static String getAppState(CustomApp app) {
-        return appStates.get(app.getPackageName());
+        switch (runtimeState.getState(app)) {
+            case AppRuntimeState.STATE_TARGET:
+                return "target";
+            case AppRuntimeState.STATE_NOT_TARGET:
+                return "not target";
+            default:
+                return null;
+        }
     }
     
     /**
      * 清除所有APP状态
      */
     public static void clearAllAppStates() {
-        appStates.clear();
-        appManuallyHidden.clear();
+        runtimeState.clearStates();
         currentApp = null;
     }
     
@@ -57,27 +62,35 @@ public class Share {
      * 设置指定APP的手动隐藏状态
      */
     public static void setAppManuallyHidden(CustomApp app, boolean hidden) {
-        appManuallyHidden.put(app.getPackageName(), hidden);
+        runtimeState.setManuallyHidden(app, hidden);
     }
     
     /**
      * 获取指定APP的手动隐藏状态
      */
     public static boolean isAppManuallyHidden(CustomApp app) {
-        return appManuallyHidden.getOrDefault(app.getPackageName(), false);
+        return runtimeState.isManuallyHidden(app);
+    }
+
+    /**
+     * 解除所有APP的手动隐藏状态
+     */
+    public static void clearAllAppManuallyHidden() {
+        runtimeState.clearManuallyHidden();
     }
 
     /**
      * 设置指定APP的状态
      */
     public static void setAppState(CustomApp app, String state) {
-        appStates.put(app.getPackageName(), state);
+        runtimeState.setState(app, "target".equals(state)
+                ? AppRuntimeState.STATE_TARGET : AppRuntimeState.STATE_NOT_TARGET);
     }
     
     /**
      * 清除指定APP的状态
      */
     public static void clearAppState(CustomApp app) {
-        appStates.remove(app.getPackageName());
+        runtimeState.setState(app, AppRuntimeState.STATE_UNKNOWN);
     }
 }
@@ -0,0 +1,188 @@
+package com.book.mask.config;
+
+import android.util.Log;
+
+import com.book.mask.constant.Const;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.tencent.mmkv.MMKV;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 记录"点击后页面变为目标页面"的控件签名（包名 → 有序签名集合），用于 APP 内页面切换时抢先显示悬浮窗。
+ * <p>
+ * 签名由 viewId、类名与控件文字拼成，只是启发式标识：APP 升级、语言或灰度版本变化都可能让它失效，
+ * 因此按连续未命中次数淘汰，升级前学到的签名一次未命中即淘汰。控件文字只保存在本地。
+ */
+public class TriggerControlManager {
+    private static final String TAG = "TriggerControlManager";
+    private static final String PREF_NAME = "trigger_controls";
+    private static final String KEY_PREFIX = "controls_";
+    private static final int MAX_SIGNATURE_TEXT_LENGTH = 40;
+
+    private static volatile TriggerControlManager instance;
+
+    static final class Entry {
+        String signature;
+        long learnedAt;
+        long versionCode;
+        int hits;
+        int misses;
+    }
+
+    private final Gson gson = new Gson();
+    private final MMKV mmkv;
+    private final Map<String, List<Entry>> controls = new HashMap<>();
+
+    TriggerControlManager(MMKV mmkv) {
+        this.mmkv = mmkv;
+    }
+
+    public static TriggerControlManager getInstance() {
+        if (instance == null) {
+            synchronized (TriggerControlManager.class) {
+                if (instance == null) {
+                    MMKV storage;
+                    try {
+                        storage = MMKV.mmkvWithID(PREF_NAME);
+                    } catch (Exception e) {
+                        Log.w(TAG, "MMKV init failed", e);
+                        storage = null;
+                    }
+                    instance = new TriggerControlManager(storage);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 由点击事件的控件信息构造签名：viewId#className#文字。viewId 与文字都为空时无法可靠识别控件，返回 null。
+     */
+    public static String buildSignature(CharSequence viewId, CharSequence className,
+                                        CharSequence text) {
+        String id = viewId == null ? "" : viewId.toString().trim();
+        String label = text == null ? "" : text.toString().trim();
+        if (id.isEmpty() && label.isEmpty()) {
+            return null;
+        }
+        if (label.length() > MAX_SIGNATURE_TEXT_LENGTH) {
+            label = label.substring(0, MAX_SIGNATURE_TEXT_LENGTH);
+        }
+        String type = className == null ? "" : className.toString();
+        return id + "#" + type + "#" + label;
+    }
+
+    public synchronized boolean isLearned(String packageName, String signature) {
+        return find(packageName, signature) != null;
+    }
+
+    /**
+     * 记录一次"点击后命中目标页面"。已存在则清零未命中次数并更新版本号；超出上限时淘汰最早学习的签名。
+     */
+    public synchronized void learn(String packageName, String signature, long versionCode) {
+        if (packageName == null || packageName.isEmpty() || signature == null || signature.isEmpty()) {
+            return;
+        }
+        Entry entry = find(packageName, signature);
+        if (entry != null) {
+            entry.misses = 0;
+            entry.versionCode = versionCode;
+            save(packageName);
+            return;
+        }
+
+        List<Entry> entries = load(packageName);
+        entry = new Entry();
+        entry.signature = signature;
+        entry.learnedAt = System.currentTimeMillis();
+        entry.versionCode = versionCode;
+        entries.add(entry);
+        while (entries.size() > Const.TRIGGER_CONTROL_MAX_PER_APP) {
+            entries.remove(0);
+        }
+        save(packageName);
+        Log.d(TAG, "学习控件签名: " + packageName + " -> " + signature);
+    }
+
+    /**
+     * 抢先显示后关键词检测的最终结论：命中则累计命中次数，未命中累计到上限后淘汰。
+     */
+    public synchronized void recordOutcome(String packageName, String signature,
+                                           boolean confirmed, long versionCode) {
+        Entry entry = find(packageName, signature);
+        if (entry == null) {
+            return;
+        }
+        if (confirmed) {
+            entry.hits++;
+            entry.misses = 0;
+            entry.versionCode = versionCode;
+        } else {
+            entry.misses++;
+            boolean staleVersion = entry.versionCode != versionCode;
+            if (staleVersion || entry.misses >= Const.TRIGGER_CONTROL_MAX_MISSES) {
+                load(packageName).remove(entry);
+                Log.d(TAG, "淘汰控件签名: " + packageName + " -> " + signature
+                        + (staleVersion ? "（APP 已升级）" : "（连续未命中）"));
+            }
+        }
+        save(packageName);
+    }
+
+    public synchronized int getLearnedCount(String packageName) {
+        return load(packageName).size();
+    }
+
+    private Entry find(String packageName, String signature) {
+        if (signature == null) {
+            return null;
+        }
+        for (Entry entry : load(packageName)) {
+            if (signature.equals(entry.signature)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private List<Entry> load(String packageName) {
+        List<Entry> entries = controls.get(packageName);
+        if (entries != null) {
+            return entries;
+        }
+        entries = new ArrayList<>();
+        if (mmkv != null) {
+            String json = mmkv.getString(KEY_PREFIX + packageName, null);
+            if (json != null) {
+                try {
+                    Type type = new TypeToken<List<Entry>>() {}.getType();
+                    List<Entry> loaded = gson.fromJson(json, type);
+                    if (loaded != null) {
+                        entries.addAll(loaded);
+                    }
+                } catch (Exception e) {
+                    Log.w(TAG, "load failed: " + packageName, e);
+                }
+            }
+        }
+        controls.put(packageName, entries);
+        return entries;
+    }
+
+    private void save(String packageName) {
+        if (mmkv == null) {
+            return;
+        }
+        try {
+            mmkv.putString(KEY_PREFIX + packageName, gson.toJson(load(packageName)));
+        } catch (Exception e) {
+            Log.w(TAG, "save failed: " + packageName, e);
+        }
+    }
+}
@@ -6,13 +6,51 @@ public class Const {
      * 定期轮询
      */
     public static final int CHECK_SERVICE_RUNNING_DELAY = 30000; // 无障碍服务运行状态的定期检查间隔；发现服务未运行时通知上层尝试恢复。
-    public static final long APP_STATE_CHECK_INTERVAL = 2000; // 前台 APP 状态的兜底轮询间隔，用于补偿无障碍窗口事件未及时上报的情况。
+    public static final long APP_STATE_CHECK_INTERVAL = 2000; // 前台 APP 状态兜底轮询的最短间隔，用于补偿无障碍窗口事件未及时上报的情况；亮屏后与发现漏报后回到此值。
+    public static final long APP_STATE_POLL_MAX_ACTIVE_MS = 8000; // 处于目标 APP 内时兜底轮询退避的上限，漏报"离开"最多延迟此时长被纠正。
+    public static final long APP_STATE_POLL_MAX_IDLE_MS = 60000; // 不在目标 APP 内时兜底轮询退避的上限。
+    public static final int APP_STATE_POLL_REPORT_INTERVAL = 50; // 兜底轮询每执行此次数输出一次唤醒统计。
+    public static final long DEADLINE_ALARM_WINDOW_MS = 10000; // 无法使用精确闹钟时，到期自动显示闹钟允许系统推迟投递的窗口。
 
     /**
      * 内容检测防抖
      */
     public static final long CONTENT_CHECK_DEBOUNCE_MS = 200; // 页面内容停止变化后等待此时长再检测关键词，用于合并同一轮连续的内容变化事件。
     public static final long CONTENT_CHECK_MAX_WAIT_MS = 500; // 一轮页面内容连续变化允许等待的上限；达到上限后即使页面仍在变化也强制执行一次检测。
+    public static final boolean CONTENT_CHECK_ADAPTIVE_DEBOUNCE_ENABLED = false; // 开启后按 APP 实测的内容变化节奏自适应 debounce / max wait；关闭时使用上面两个固定值。两种策略的效果见"防抖统计"日志。
+    public static final int CONTENT_CHECK_MAX_SCANS_PER_SECOND = 8; // 自适应策略下每秒最多检测次数，决定 debounce 的下限。
+    public static final long ADAPTIVE_DEBOUNCE_MIN_MS = 80; // 自适应 debounce 的下限。
+    public static final long ADAPTIVE_DEBOUNCE_MAX_MS = 300; // 自适应 debounce 的上限，避免节奏很慢的 APP 出结论过晚。
+    public static final long ADAPTIVE_DEBOUNCE_GAP_CAP_MS = 600; // 相邻内容变化事件间隔超过此值视为新一轮变化，不计入轮内节奏。
+    public static final long ADAPTIVE_MAX_WAIT_MIN_MS = 250; // 自适应 max wait 的下限。
+    public static final long ADAPTIVE_MAX_WAIT_MAX_MS = 800; // 自适应 max wait 的上限。
+    public static final int DEBOUNCE_STATS_LOG_INTERVAL = 20; // 每个 APP 每累计此轮数输出一次防抖统计。
+
+    /**
+     * 无障碍事件限流
+     */
+    public static final int EVENT_GOVERNOR_BURST = 40; // 目标 APP 内容变化事件令牌桶容量，允许短时间内的突发事件全部放行。
+    public static final int EVENT_GOVERNOR_EVENTS_PER_SECOND = 20; // 令牌桶每秒补充的事件数；持续超出即丢弃多余事件并降级为定时扫描。
+    public static final long EVENT_GOVERNOR_DEGRADE_HOLD_MS = 2000; // 最近一次限流后保持降级的时长；此时长内不再超预算即恢复按事件检测。
+    public static final long EVENT_GOVERNOR_DEGRADED_SCAN_INTERVAL_MS = 1000; // 降级期间全量扫描的间隔。
+    public static final long EVENT_GOVERNOR_REPORT_INTERVAL_MS = 60000; // 事件限流与扫描负载汇总日志的输出间隔。
+
+    /**
+     * 页面文字扫描预算
+     */
+    public static final int TEXT_SCAN_MAX_NODES = 5000; // 单次关键词扫描最多访问的节点数；超出即提前结束并按"部分结果"处理，避免超大页面长时间占用扫描线程、拖慢对后续变化的响应。
+    public static final long TEXT_SCAN_MAX_MS = 150; // 单次关键词扫描允许的最长耗时；超时同样按"部分结果"处理，由下一轮内容变化事件继续检测。
+    public static final long PARTIAL_SCAN_RETRY_DELAY_MS = 500; // 部分结果且尚无界面状态时，隔此时长补扫一次。
+    public static final int PARTIAL_SCAN_MAX_RETRIES = 3; // 上述补扫的最多连续次数，用尽后等待后续内容变化事件。
+    public static final int INCREMENTAL_SCAN_MAX_SUBTREES = 8; // 一轮防抖内变化的子树超过此数时不再逐个重扫，直接全量扫描。
+    public static final long INCREMENTAL_SCAN_BASELINE_TTL_MS = 3000; // 全量扫描确认"无关键词"后，此时长内的内容变化只重扫变化子树；过期后强制全量扫描一次，兜底漏报的变化事件。
+    public static final int INCREMENTAL_SCAN_MAX_PATH_DEPTH = 64; // 缓存命中节点路径时向上回溯的最大层数，超出则不缓存路径。
+    public static final int KEYWORD_LOCATION_STATS_FLUSH_INTERVAL = 20; // 关键词位置缓存每探测此次数输出一次命中率并落盘统计。
+    public static final int TEXT_QUERY_MAX_KEYWORDS = 4; // 关键词不多于此数时，全量遍历前先用 findAccessibilityNodeInfosByText 按文字查询（每个关键词一次跨进程调用）。
+    public static final boolean TREE_SNAPSHOT_RECORDING_ENABLED = false; // 调试包扫描后录制节点树快照供离线回放；仅可调试包生效，发布前保持关闭。
+    public static final long TREE_SNAPSHOT_MIN_INTERVAL_MS = 10000; // 同一 APP 两次录制节点树快照的最小间隔。
+    public static final int TREE_SNAPSHOT_MAX_NODES = 8000; // 单个节点树快照最多录制的节点数，超出部分截断。
+    public static final int TREE_SNAPSHOT_MAX_FILES = 50; // 本地最多保留的节点树快照文件数，超出时删除最早的。
 
     /**
      * 进出 APP 场景的防抖
@@ -24,13 +62,43 @@ public class Const {
     public static final int TRANSITION_EARLY_RETURN_BUFFER_MS = 100; // 首次复核已返回目标 APP 时追加的暂停缓冲，避免动画尾段的包名抖动触发悬浮窗闪现。
     public static final long FLOATING_SHOW_PACKAGE_DETECTION_DEBOUNCE_MS = 500; // 悬浮窗由隐藏变为显示后的包名检测暂停时间，避免窗口创建阶段的瞬时事件干扰前台 APP 判断。
     public static final long BACKGROUND_WINDOW_EVENT_RECHECK_DELAY_MS = 300; // 窗口事件被判为后台窗口噪声而丢弃后的兜底复核延迟，用于纠正活动窗口偶尔滞后于真实切换的情况。
+    public static final boolean TRANSITION_CALIBRATION_ENABLED = true; // 是否按 APP 实测离开过渡的时长，样本足够后以 p95 推出的复核等待与动画时长代替上面两个全局常量。
+    public static final long TRANSITION_CALIBRATION_WINDOW_MS = 2500; // 离开目标 APP 后采集过渡时长样本的窗口，超出后到达的窗口事件不计入本次过渡。
+    public static final int TRANSITION_CALIBRATION_MAX_SAMPLES = 32; // 每个 APP 保留的最近过渡样本数。
+    public static final int TRANSITION_CALIBRATION_MIN_SAMPLES = 5; // 样本数达到此值才启用该 APP 的校准参数，之前沿用全局常量。
+    public static final long TRANSITION_CALIBRATION_MARGIN_MS = 50; // 在实测 p95 之上追加的余量。
+    public static final long TRANSITION_CHECK_DELAY_MIN_MS = 100; // 校准后首次复核等待的下限。
+    public static final long TRANSITION_CHECK_DELAY_MAX_MS = 600; // 校准后首次复核等待的上限。
+    public static final long TRANSITION_ANIMATION_MIN_MS = 300; // 校准后过渡动画时长的下限（且不小于复核等待）。
+    public static final long TRANSITION_ANIMATION_MAX_MS = 2000; // 校准后过渡动画时长的上限。
+    public static final boolean USAGE_STATS_FOREGROUND_ENABLED = true; // 已授予"使用情况访问权限"时，用 UsageEvents 的 Activity 切换记录佐证前台包名；两个来源一致即免去包名复核的等待。
+    public static final long USAGE_STATS_MIN_QUERY_INTERVAL_MS = 100; // 两次增量查询 UsageEvents 的最小间隔，期间直接复用上次结果，避免连串窗口事件反复跨进程查询。
+    public static final long USAGE_STATS_INITIAL_LOOKBACK_MS = 600000; // 首次查询 UsageEvents 时回看的时长，用于得到当前处于前台的 Activity。
+    public static final long USAGE_STATS_PERMISSION_CHECK_INTERVAL_MS = 30000; // 复查"使用情况访问权限"是否仍被授予的间隔。
 
     /**
      * 快速复用悬浮窗的配置
      */
     public static final long PAGE_TRANSITION_WINDOW_REUSE_MS = 1500; // 同一 APP 暂时离开目标页面时保留暖窗口的时长，期限内返回可直接复用，超时则释放。
     public static final long PACKAGE_TRANSITION_WINDOW_REUSE_MS = 2000; // 包名复核场景：离开目标 APP 后保留暖窗口的时长，期限内返回目标 APP 可快速复用。
-    public static final long SHOW_BEFORE_CONTENT_CHECK_DELAY_MS = 100; // 先显示悬浮窗后延迟此时长再执行阻塞式关键词检测，确保悬浮窗首帧能够先完成渲染。
+    public static final boolean FLOATING_VIEW_POOL_ENABLED = true; // 是否按最近使用的目标 APP 预创建悬浮窗 View，暖窗口释放后再次显示时免去 inflate。
+    public static final int FLOATING_VIEW_POOL_MAX_SIZE = 3; // 预创建悬浮窗 View 的最大数量。
+    public static final int FLOATING_VIEW_POOL_MEMORY_CLASS_PER_VIEW_MB = 128; // 进程内存等级每达到此值（MB）多预留一个 View；低于此值的设备不预创建。
+    public static final int LATENCY_TRACE_WINDOW = 200; // 悬浮窗显示耗时统计：每条显示路径的每个阶段保留最近多少次样本，在「备用按钮」页查看与复制。
+    public static final long SHOW_BEFORE_CONTENT_CHECK_DELAY_MS = 100; // 先显示悬浮窗后延迟此时长再提交关键词检测，让悬浮窗首帧先完成渲染、目标页面首屏内容先就绪。
+
+    /**
+     * APP 内页面切换的点击快速响应
+     */
+    public static final long TRIGGER_CONTROL_CLICK_FRESH_MS = 4000; // 点击后此时长内页面由非目标变为命中关键词，才把该点击的控件记为"通往目标页面的控件"。
+    public static final long TRIGGER_CONTROL_VERIFY_GRACE_MS = 800; // 点击已学习控件抢先显示悬浮窗后，关键词未命中的结论在此宽限期内暂不收回悬浮窗，到期再做最终检测。
+    public static final int TRIGGER_CONTROL_MAX_PER_APP = 30; // 每个 APP 最多记录的已学习控件数，超出时淘汰最早学习的。
+    public static final int TRIGGER_CONTROL_MAX_MISSES = 3; // 已学习控件连续多少次抢先显示后最终未命中关键词即淘汰；APP 升级后学到的旧控件一次未命中即淘汰。
+
+    /**
+     * 设置存储
+     */
+    public static final long SETTINGS_FLUSH_WINDOW_MS = 200; // 设置写入先更新内存，此窗口内的多次写入合并成一批在后台线程落盘。
 
     /**
      * 非核心逻辑的常量
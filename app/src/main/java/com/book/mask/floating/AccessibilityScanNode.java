@@ -0,0 +1,99 @@
+package com.book.mask.floating;
+
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link ScanNode} 的线上实现，逐个方法转发给 AccessibilityNodeInfo，recycle 时回收被包装的节点。
+ */
+final class AccessibilityScanNode implements ScanNode {
+    private final AccessibilityNodeInfo node;
+
+    private AccessibilityScanNode(AccessibilityNodeInfo node) {
+        this.node = node;
+    }
+
+    static AccessibilityScanNode wrap(AccessibilityNodeInfo node) {
+        return node == null ? null : new AccessibilityScanNode(node);
+    }
+
+    AccessibilityNodeInfo unwrap() {
+        return node;
+    }
+
+    @Override
+    public int getChildCount() {
+        return node.getChildCount();
+    }
+
+    @Override
+    public ScanNode getChild(int index) {
+        return wrap(node.getChild(index));
+    }
+
+    @Override
+    public ScanNode getParent() {
+        return wrap(node.getParent());
+    }
+
+    @Override
+    public CharSequence getText() {
+        return node.getText();
+    }
+
+    @Override
+    public CharSequence getContentDescription() {
+        return node.getContentDescription();
+    }
+
+    @Override
+    public String getViewIdResourceName() {
+        return node.getViewIdResourceName();
+    }
+
+    @Override
+    public boolean isVisibleToUser() {
+        return node.isVisibleToUser();
+    }
+
+    @Override
+    public List<ScanNode> findByViewId(String viewId) {
+        return wrapAll(node.findAccessibilityNodeInfosByViewId(viewId));
+    }
+
+    @Override
+    public List<ScanNode> findByText(String text) {
+        return wrapAll(node.findAccessibilityNodeInfosByText(text));
+    }
+
+    @Override
+    public void recycle() {
+        node.recycle();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof AccessibilityScanNode && node.equals(((AccessibilityScanNode) o).node);
+    }
+
+    @Override
+    public int hashCode() {
+        return node.hashCode();
+    }
+
+    private static List<ScanNode> wrapAll(List<AccessibilityNodeInfo> nodes) {
+        if (nodes == null) {
+            return Collections.emptyList();
+        }
+        List<ScanNode> wrapped = new ArrayList<>(nodes.size());
+        for (AccessibilityNodeInfo info : nodes) {
+            if (info != null) {
+                wrapped.add(new AccessibilityScanNode(info));
+            }
+        }
+        return wrapped;
+    }
+}
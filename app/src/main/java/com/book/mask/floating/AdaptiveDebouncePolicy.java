@@ -0,0 +1,112 @@
+package com.book.mask.floating;
+
+import com.book.mask.constant.Const;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 按 APP 学习内容变化节奏的防抖策略。
+ * <ul>
+ *   <li>debounce：同一轮内相邻事件间隔的均值加两倍平均偏差。页面安静超过这个时长，基本可以认为本轮变化已结束；</li>
+ *   <li>max wait：一轮变化从开始到最后一个事件的平均时长，即页面通常多久能稳定下来。</li>
+ * </ul>
+ * 两者都用指数滑动平均估计，并限制在 Const 给出的上下限内。debounce 与 max wait 都不低于
+ * 1000 / {@link Const#CONTENT_CHECK_MAX_SCANS_PER_SECOND}，保证每秒扫描次数有上限。
+ * 尚无样本的 APP 沿用固定策略的取值。
+ */
+final class AdaptiveDebouncePolicy implements DebouncePolicy {
+    private static final double SMOOTHING = 0.2;
+
+    private static final class Cadence {
+        private long lastEventAt;
+        private double gapMean;
+        private double gapDeviation;
+        private boolean hasGap;
+        private double burstMean;
+        private boolean hasBurst;
+    }
+
+    private final Map<String, Cadence> cadences = new HashMap<>();
+
+    @Override
+    public String getName() {
+        return "adaptive";
+    }
+
+    @Override
+    public void onContentEvent(String packageName, long now) {
+        Cadence cadence = cadenceOf(packageName);
+        if (cadence.lastEventAt > 0) {
+            long gap = now - cadence.lastEventAt;
+            // 间隔过长说明已是下一轮变化，不计入轮内节奏
+            if (gap >= 0 && gap <= Const.ADAPTIVE_DEBOUNCE_GAP_CAP_MS) {
+                if (!cadence.hasGap) {
+                    cadence.gapMean = gap;
+                    cadence.gapDeviation = 0;
+                    cadence.hasGap = true;
+                } else {
+                    double deviation = Math.abs(gap - cadence.gapMean);
+                    cadence.gapMean += SMOOTHING * (gap - cadence.gapMean);
+                    cadence.gapDeviation += SMOOTHING * (deviation - cadence.gapDeviation);
+                }
+            }
+        }
+        cadence.lastEventAt = now;
+    }
+
+    @Override
+    public long getDebounceMillis(String packageName) {
+        Cadence cadence = cadences.get(packageName);
+        if (cadence == null || !cadence.hasGap) {
+            return Const.CONTENT_CHECK_DEBOUNCE_MS;
+        }
+        long estimate = Math.round(cadence.gapMean + 2 * cadence.gapDeviation);
+        return clamp(estimate, minIntervalMillis(), Const.ADAPTIVE_DEBOUNCE_MAX_MS);
+    }
+
+    @Override
+    public long getMaxWaitMillis(String packageName) {
+        Cadence cadence = cadences.get(packageName);
+        if (cadence == null || !cadence.hasBurst) {
+            return Math.max(Const.CONTENT_CHECK_MAX_WAIT_MS, getDebounceMillis(packageName));
+        }
+        long lowerBound = Math.max(getDebounceMillis(packageName),
+                Const.ADAPTIVE_MAX_WAIT_MIN_MS);
+        return clamp(Math.round(cadence.burstMean), lowerBound, Const.ADAPTIVE_MAX_WAIT_MAX_MS);
+    }
+
+    @Override
+    public void onBurstFinished(String packageName, long burstStartedAt, long lastEventAt,
+                                int eventCount) {
+        if (eventCount < 2 || lastEventAt < burstStartedAt) {
+            return;
+        }
+        Cadence cadence = cadenceOf(packageName);
+        long duration = lastEventAt - burstStartedAt;
+        if (!cadence.hasBurst) {
+            cadence.burstMean = duration;
+            cadence.hasBurst = true;
+        } else {
+            cadence.burstMean += SMOOTHING * (duration - cadence.burstMean);
+        }
+    }
+
+    private Cadence cadenceOf(String packageName) {
+        Cadence cadence = cadences.get(packageName);
+        if (cadence == null) {
+            cadence = new Cadence();
+            cadences.put(packageName, cadence);
+        }
+        return cadence;
+    }
+
+    private static long minIntervalMillis() {
+        return Math.max(Const.ADAPTIVE_DEBOUNCE_MIN_MS,
+                1000L / Const.CONTENT_CHECK_MAX_SCANS_PER_SECOND);
+    }
+
+    private static long clamp(long value, long min, long max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
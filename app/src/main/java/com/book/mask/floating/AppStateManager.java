@@ -1,24 +1,26 @@
 package com.book.mask.floating;
 
 import android.accessibilityservice.AccessibilityService;
+import android.content.Context;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.PowerManager;
 import android.os.SystemClock;
 import android.util.Log;
 import android.view.accessibility.AccessibilityEvent;
 import android.view.accessibility.AccessibilityNodeInfo;
 
 import com.book.mask.constant.Const;
+import com.book.mask.config.AppRuntimeState;
 import com.book.mask.config.CustomApp;
 import com.book.mask.config.CustomAppManager;
 import com.book.mask.config.Share;
+import com.book.mask.config.TriggerControlManager;
 import com.book.mask.personalize.AppSettingsManager;
 import com.book.mask.personalize.LeisureTimeManager;
 import com.book.mask.personalize.RelaxManager;
-import com.book.mask.util.DateUtils;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 
 /**
  * 应用状态管理器
@@ -26,12 +28,13 @@ import java.util.Map;
  */
 public class AppStateManager {
     private static final String TAG = "AppStateManager";
-    private static final String SYSTEM_UI_PACKAGE = "com.android.systemui";
-    private static final long UNKNOWN_PACKAGE_RETRY_DELAY_MS = 150;
+    private static final String TRANSITION_CALIBRATION_TRIGGER = "transition_calibration";
+    private static final String PARTIAL_SCAN_RETRY_TRIGGER = "partial_scan_retry";
 
     private AccessibilityService service;
     private Handler handler;
-    private Handler autoShowHandler;
+    // 所有定时触发（到期自动显示、状态机定时器、过渡校准窗口）共用一个唤醒
+    private final TriggerScheduler triggers;
     private RelaxManager relaxManager;
     private LeisureTimeManager leisureTimeManager;
     private AppSettingsManager appSettingsManager;
@@ -40,35 +43,59 @@ public class AppStateManager {
     // 应用状态相关
     private CustomApp currentActiveApp = null;
     private long contentCheckBurstStartedAt = 0;
+    private long contentCheckLastEventAt = 0;
+    private int contentCheckBurstEvents = 0;
+    // 下一次检测是否由 max wait 到期强制提前
+    private boolean contentCheckForced = false;
     private String pendingContentCheckSource = "unknown";
-    private Runnable pendingPackageConfirmation;
-    private long packageConfirmationGeneration = 0;
+    private final DebouncePolicy debouncePolicy = Const.CONTENT_CHECK_ADAPTIVE_DEBOUNCE_ENABLED
+            ? new AdaptiveDebouncePolicy() : new FixedDebouncePolicy();
+    private final DebounceStats debounceStats = new DebounceStats(Const.DEBOUNCE_STATS_LOG_INTERVAL);
+    private final DebounceLearningBurst debounceLearning = new DebounceLearningBurst();
+    // 事件限流降级：最近一次被限流的时间与降级期间的定时全量扫描
+    private long contentEventsThrottledAt = 0;
+    private Runnable degradedScanRunnable;
+    // 尚无界面状态时，部分结果之后已连续补扫的 APP 与次数
+    private CustomApp partialScanRetryApp = null;
+    private int partialScanRetries = 0;
+    private final Runnable partialScanRetryRunnable =
+            () -> checkTextContentOptimized(false, "partial_retry");
+    // 前台包名状态机及其定时器（每类一个，随指令在 triggers 上安排 / 取消）
+    private final ForegroundPackageMachine packageMachine;
+    private final Runnable[] packageMachineTimers =
+            new Runnable[ForegroundPackageMachine.Timer.values().length];
+    private final String[] packageMachineTimerKeys =
+            new String[ForegroundPackageMachine.Timer.values().length];
+    // 已通知监听方的 SystemUI 暂停状态；状态机先于指令执行更新自身状态，进入 APP 时需以此为准
     private boolean suspendedForSystemUi = false;
-    private PendingPackageTransition pendingPackageTransition;
-    private Runnable pendingPackageTransitionStep;
-    private long packageTransitionGeneration = 0;
-    private long packageDetectPauseUtil = 0;
-    private Runnable floatingShowPackageDetectionResumeRunnable;
     private Runnable pendingBackgroundWindowRecheck;
-    private final Map<String, Boolean> lastDetectionNotTarget = new HashMap<>();
-    private final Map<String, Boolean> detectBeforeShowOnNextEntry = new HashMap<>();
-
-    private static final class PendingPackageTransition {
-        private final CustomApp targetApp;
-
-        private PendingPackageTransition(CustomApp targetApp) {
-            this.targetApp = targetApp;
-        }
-    }
+    // 前台包名的第二来源；关闭时为 null
+    private final ForegroundSource usageForegroundSource;
+    // 按 APP 实测离开过渡时长，为状态机提供复核参数
+    private final TransitionTimingCalibrator transitionCalibrator = new TransitionTimingCalibrator();
+    private final Runnable transitionCalibrationFinishRunnable = transitionCalibrator::finishSampling;
+    // 每个 APP 的检测历史与自动显示定时器，与界面状态共用一张表
+    private final AppRuntimeState runtimeState = Share.runtimeState;
 
     // 定时器相关
-    private Map<CustomApp, Runnable> appTimers = new HashMap<>();
     private Runnable contentCheckRunnable;
+    // 本轮防抖累积的内容变化，随检测请求交给扫描线程做增量扫描
+    private ContentChangeBatch pendingContentChanges;
+    private final KeywordScanWorker keywordScanWorker;
+    private long contentScanGeneration = 0;
+
+    // APP 内页面切换的点击快速响应：最近一次点击、抢先显示后待校验的点击
+    private final TriggerControlManager triggerControlManager;
+    private TriggerControlDecision.Click lastClick;
+    private TriggerControlDecision.Click pendingTriggerVerification;
+    private long triggerVerificationDeadline = 0;
+    private Runnable triggerVerificationRunnable;
     
     // 应用状态检测增强
     private Handler appStateHandler;
     private Runnable appStateCheckRunnable;
-    private long lastAppStateCheckTime = 0;
+    private final AppStatePollScheduler pollScheduler = new AppStatePollScheduler();
+    private long nextAppStateCheckAt = 0;
     
     // 回调接口
     private OnAppStateListener listener;
@@ -76,6 +103,7 @@ public class AppStateManager {
     public interface OnAppStateListener {
         void onAppStateChanged(CustomApp app, boolean isTargetInterface);
         void onTargetPackageEnteredBeforeContentCheck(CustomApp app);
+        void onTriggerControlClicked(CustomApp app);
         void onAppLeft(CustomApp app);
         void onTargetPackageTransitionLeft(CustomApp app);
         void onSystemUiSuspensionChanged(boolean suspended);
@@ -92,7 +120,45 @@ public class AppStateManager {
         this.appSettingsManager = new AppSettingsManager(service);
         this.windowInspector = new AccessibilityWindowInspector(service);
         this.handler = new Handler(Looper.getMainLooper());
-        this.autoShowHandler = new Handler(Looper.getMainLooper());
+        this.triggers = new TriggerScheduler(handler, new DeadlineScheduler(service));
+        this.keywordScanWorker = new KeywordScanWorker(service, handler);
+        AppVersionCodes.watchPackageChanges(service);
+        this.triggerControlManager = TriggerControlManager.getInstance();
+        this.packageMachine = new ForegroundPackageMachine(new ForegroundPackageMachine.Environment() {
+            @Override
+            public String getCurrentTargetPackage() {
+                return currentActiveApp != null ? currentActiveApp.getPackageName() : null;
+            }
+
+            @Override
+            public boolean isFloatingWindowVisible() {
+                return Share.isFloatingWindowVisible;
+            }
+
+            @Override
+            public boolean isAnimationDisabled() {
+                return windowInspector.isAnimationDisabled();
+            }
+
+            @Override
+            public String getActiveRootPackage() {
+                return windowInspector.getActiveRootPackage();
+            }
+
+            @Override
+            public boolean isIgnorablePackage(String packageName) {
+                return packageName.equals(service.getPackageName())
+                        || FloatHelper.isInputMethodApp(packageName);
+            }
+        }, transitionCalibrator);
+        this.usageForegroundSource = Const.USAGE_STATS_FOREGROUND_ENABLED
+                ? new UsageStatsForegroundSource(service) : null;
+        for (ForegroundPackageMachine.Timer timer : ForegroundPackageMachine.Timer.values()) {
+            packageMachineTimers[timer.ordinal()] = () -> execute(
+                    packageMachine.onTimer(timer, SystemClock.elapsedRealtime()));
+            packageMachineTimerKeys[timer.ordinal()] = "package_machine:" + timer.name();
+        }
+        restoreAutoShowTimers();
     }
     
     public void setOnAppStateListener(OnAppStateListener listener) {
@@ -105,10 +171,15 @@ public class AppStateManager {
     public void handleAccessibilityEvent(AccessibilityEvent event) {
         // 情况 1：窗口状态变化（包名变化）
         if (event.getEventType() == AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED) {
+            // 窗口切换后上一窗口的命中路径与未命中基线都不再可靠
+            keywordScanWorker.invalidateIncrementalState();
             handleWindowStateChanged(event);
         // 情况 2：界面内容变化
         } else if (event.getEventType() == AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED) {
             handleWindowContentChanged(event);
+        // 情况 3：点击控件（APP 内页面切换的快速响应）
+        } else if (event.getEventType() == AccessibilityEvent.TYPE_VIEW_CLICKED) {
+            handleViewClicked(event);
         }
     }
 
@@ -121,11 +192,20 @@ public class AppStateManager {
         if (packageName == null) {
             return;
         }
-        String foregroundPackage = resolveForegroundPackage(packageName);
-        if (foregroundPackage == null) {
+        if (transitionCalibrator.isSampling()) {
+            transitionCalibrator.onWindowEvent(windowInspector.getActiveRootPackage(),
+                    SystemClock.elapsedRealtime());
+        }
+        ForegroundFusion.Verdict verdict = resolveForegroundPackage(packageName);
+        if (verdict.isDropped()) {
             return;
         }
-        handleObservedPackage(foregroundPackage, "窗口事件");
+        execute(packageMachine.onPackageObserved(verdict.packageName, "窗口事件",
+                SystemClock.elapsedRealtime(), verdict.confirmed));
+        if (currentActiveApp != null) {
+            // 进入目标 APP 后，空闲时退避出的长间隔不能拖慢"离开"漏报的纠正
+            reschedulePollWithin(pollScheduler.clampForTarget());
+        }
     }
 
     /**
@@ -140,31 +220,40 @@ public class AppStateManager {
      *   <li>活动窗口仍是当前目标 APP：判为后台窗口事件并丢弃，另安排一次兜底复核；</li>
      *   <li>活动窗口是其他包名：以活动窗口为准，它比事件包名更贴近真实前台。</li>
      * </ul>
-     *
-     * @return 应交给 handleObservedPackage 的包名；null 表示本次事件应丢弃
+     * 已授予使用情况访问权限时再以 UsageEvents 佐证，两个来源一致则免去复核等待，规则见 {@link ForegroundFusion}。
      */
-    private String resolveForegroundPackage(String eventPackage) {
-        boolean mayLeaveCurrentTarget = currentActiveApp != null
-                && !currentActiveApp.getPackageName().equals(eventPackage);
-        if (!mayLeaveCurrentTarget) {
-            return eventPackage;
+    private ForegroundFusion.Verdict resolveForegroundPackage(String eventPackage) {
+        String currentTarget = currentActiveApp != null ? currentActiveApp.getPackageName() : null;
+        String activePackage = ForegroundFusion.needsActiveWindow(eventPackage, currentTarget)
+                ? windowInspector.getActiveRootPackage() : "";
+        String usagePackage = queryUsageForegroundPackage(eventPackage, currentTarget);
+
+        ForegroundFusion.Verdict verdict = ForegroundFusion.resolve(
+                eventPackage, activePackage, usagePackage, currentTarget);
+        if (verdict.decidedBy != ForegroundFusion.Source.EVENT || !usagePackage.isEmpty()) {
+            Log.d(TAG, "前台融合: 事件=" + eventPackage
+                    + "，活动窗口=" + AccessibilityWindowInspector.packageNameForLog(activePackage)
+                    + "，UsageEvents=" + AccessibilityWindowInspector.packageNameForLog(usagePackage)
+                    + " → " + (verdict.isDropped() ? "判为后台窗口事件并忽略" : "采信 " + verdict.packageName)
+                    + "（依据: " + verdict.decidedBy + (verdict.confirmed ? "，已佐证" : "") + "）");
         }
-
-        String activePackage = windowInspector.getActiveRootPackage();
-        if (activePackage.isEmpty() || activePackage.equals(eventPackage)) {
-            return eventPackage;
-        }
-
-        if (currentActiveApp.getPackageName().equals(activePackage)) {
-            Log.d(TAG, "窗口事件包名 " + eventPackage + " 与活动窗口 " + activePackage
-                    + " 不一致，判为后台窗口事件并忽略");
+        if (verdict.isDropped()) {
             scheduleBackgroundWindowEventRecheck();
-            return null;
         }
+        return verdict;
+    }
 
-        Log.d(TAG, "窗口事件包名 " + eventPackage + " 与活动窗口 " + activePackage
-                + " 不一致，改以活动窗口包名为准");
-        return activePackage;
+    /**
+     * 只在事件可能涉及目标 APP 时才查询 UsageEvents，普通 APP 之间的切换不产生额外跨进程调用。
+     */
+    private String queryUsageForegroundPackage(String eventPackage, String currentTarget) {
+        if (usageForegroundSource == null) {
+            return "";
+        }
+        boolean relevant = currentTarget != null
+                || packageMachine.isTransitionPending()
+                || detectSupportedApp(eventPackage) != null;
+        return relevant ? usageForegroundSource.getForegroundPackage() : "";
     }
 
     /**
@@ -206,13 +295,159 @@ public class AppStateManager {
         if (currentActiveApp != null && event.getPackageName() != null) {
             String packageName = event.getPackageName().toString();
             if (currentActiveApp.getPackageName().equals(packageName)) {
+                if (pendingContentChanges == null) {
+                    pendingContentChanges = new ContentChangeBatch();
+                }
+                pendingContentChanges.add(event);
+                long now = SystemClock.elapsedRealtime();
+                debounceLearning.onContentEvent(debouncePolicy, packageName, now);
+                debouncePolicy.onContentEvent(packageName, now);
+                contentCheckLastEventAt = now;
+                contentCheckBurstEvents++;
                 requestContentCheck("accessibility_content_changed");
             }
         }
     }
 
+    /**
+     * 记录当前目标 APP 内的点击；点击的是已学习的控件时抢先显示悬浮窗，关键词检测随后校验。
+     */
+    private void handleViewClicked(AccessibilityEvent event) {
+        if (currentActiveApp == null || event.getPackageName() == null) {
+            return;
+        }
+        String packageName = event.getPackageName().toString();
+        if (!currentActiveApp.getPackageName().equals(packageName)) {
+            return;
+        }
+
+        String signature = buildClickSignature(event);
+        if (signature == null) {
+            lastClick = null;
+            return;
+        }
+        lastClick = new TriggerControlDecision.Click(
+                packageName, signature, SystemClock.elapsedRealtime());
+        if (triggerControlManager.isLearned(packageName, signature)) {
+            tryShowForTriggerControl(currentActiveApp, lastClick);
+        }
+    }
+
+    private String buildClickSignature(AccessibilityEvent event) {
+        CharSequence viewId = null;
+        CharSequence className = event.getClassName();
+        // 点击事件稀少，这里在主线程取一次源节点只为读 viewId
+        AccessibilityNodeInfo source = event.getSource();
+        if (source != null) {
+            viewId = source.getViewIdResourceName();
+            if (className == null) {
+                className = source.getClassName();
+            }
+            source.recycle();
+        }
+
+        StringBuilder text = new StringBuilder();
+        for (CharSequence part : event.getText()) {
+            if (part != null) {
+                text.append(part);
+            }
+        }
+        CharSequence label = text.length() > 0 ? text : event.getContentDescription();
+        return TriggerControlManager.buildSignature(viewId, className, label);
+    }
+
+    private void tryShowForTriggerControl(CustomApp app, TriggerControlDecision.Click click) {
+        if ("target".equals(Share.getAppState(app))) {
+            return;
+        }
+        if (isDetectionPaused() || isPackageDetectPaused() || suspendedForSystemUi) {
+            return;
+        }
+        if (Share.isAppManuallyHidden(app) || leisureTimeManager.isAnyLeisureTimeActive()) {
+            return;
+        }
+        if (listener == null || listener.isChallengeActive()) {
+            return;
+        }
+
+        Log.d(TAG, "点击已学习控件，抢先显示悬浮窗，APP=" + app.getAppName()
+                + "，控件=" + click.signature);
+        // 逻辑状态置为未知：之后的检测结论无论命中与否都会下发，未命中时才能收回悬浮窗
+        Share.clearAppState(app);
+        startTriggerVerification(click);
+        listener.onTriggerControlClicked(app);
+        handler.postDelayed(
+                () -> checkTextContentOptimized(false, "trigger_control_first_check"),
+                getFirstContentCheckDelayMs(app));
+    }
+
+    /**
+     * 抢先显示后的校验：宽限期内未命中先不收回（目标页面文字可能尚未渲染），
+     * 宽限期结束时再强制检测一次，以该结论为准。
+     */
+    private void startTriggerVerification(TriggerControlDecision.Click click) {
+        clearTriggerVerification();
+        pendingTriggerVerification = click;
+        triggerVerificationDeadline =
+                SystemClock.elapsedRealtime() + Const.TRIGGER_CONTROL_VERIFY_GRACE_MS;
+        triggerVerificationRunnable = () -> {
+            triggerVerificationRunnable = null;
+            checkTextContentOptimized(false, "trigger_control_final_check");
+        };
+        handler.postDelayed(triggerVerificationRunnable, Const.TRIGGER_CONTROL_VERIFY_GRACE_MS);
+    }
+
+    private void clearTriggerVerification() {
+        pendingTriggerVerification = null;
+        triggerVerificationDeadline = 0;
+        if (triggerVerificationRunnable != null) {
+            handler.removeCallbacks(triggerVerificationRunnable);
+            triggerVerificationRunnable = null;
+        }
+    }
+
+    private void clearTriggerControlState() {
+        lastClick = null;
+        clearTriggerVerification();
+    }
+
+    /**
+     * 处理检测结论中与点击快速响应相关的部分：抢先显示的校验，或满足条件时学习刚点击的控件。
+     *
+     * @return false 表示本次未命中处于宽限期内，暂不下发结论
+     */
+    private boolean handleTriggerControlResult(CustomApp app, boolean matched, boolean partial) {
+        String packageName = app.getPackageName();
+        long now = SystemClock.elapsedRealtime();
+        TriggerControlDecision.Click verification = pendingTriggerVerification;
+        if (verification != null) {
+            TriggerControlDecision.Verdict verdict = TriggerControlDecision.onVerificationResult(
+                    matched, now, triggerVerificationDeadline);
+            if (verdict == TriggerControlDecision.Verdict.WAIT) {
+                Log.d(TAG, "抢先显示后检测暂未命中，宽限期内保持悬浮窗");
+                return false;
+            }
+            boolean confirmed = verdict == TriggerControlDecision.Verdict.CONFIRM;
+            Log.d(TAG, "点击快速响应校验结果: " + (confirmed ? "命中" : "未命中，收回悬浮窗"));
+            triggerControlManager.recordOutcome(packageName, verification.signature, confirmed,
+                    AppVersionCodes.get(service, packageName));
+            clearTriggerVerification();
+            lastClick = null;
+            return true;
+        }
+
+        if (!partial && TriggerControlDecision.shouldLearn(
+                lastClick, packageName, Share.getAppState(app), matched, now)) {
+            triggerControlManager.learn(packageName, lastClick.signature,
+                    AppVersionCodes.get(service, packageName));
+            lastClick = null;
+        }
+        return true;
+    }
+
     /**
      * 合并同一轮页面变化，在页面稳定后检测；连续变化超过上限时强制执行一次。
+     * 两个时长由 {@link DebouncePolicy} 按 APP 给出。
      */
     private void requestContentCheck(String source) {
         long now = SystemClock.elapsedRealtime();
@@ -224,25 +459,117 @@ public class AppStateManager {
         if (contentCheckRunnable == null) {
             contentCheckRunnable = () -> {
                 String triggerSource = pendingContentCheckSource;
-                contentCheckBurstStartedAt = 0;
-                pendingContentCheckSource = "unknown";
-                checkTextContentOptimized(false, triggerSource);
+                ContentChangeBatch changes = takePendingContentChanges();
+                finishContentCheckBurst();
+                checkTextContentOptimized(false, triggerSource, changes);
             };
         }
 
+        String packageName = currentDebouncePackage();
         long burstElapsed = now - contentCheckBurstStartedAt;
-        long maxWaitRemaining = Math.max(0, Const.CONTENT_CHECK_MAX_WAIT_MS - burstElapsed);
-        long delayMillis = Math.min(Const.CONTENT_CHECK_DEBOUNCE_MS, maxWaitRemaining);
+        long maxWaitRemaining = Math.max(0,
+                debouncePolicy.getMaxWaitMillis(packageName) - burstElapsed);
+        long debounceMillis = debouncePolicy.getDebounceMillis(packageName);
+        long delayMillis = Math.min(debounceMillis, maxWaitRemaining);
+        contentCheckForced = maxWaitRemaining < debounceMillis;
         handler.removeCallbacks(contentCheckRunnable);
         handler.postDelayed(contentCheckRunnable, delayMillis);
     }
 
-    private void cancelPendingContentCheck() {
+    /**
+     * 一轮变化结束并提交检测：计入统计；页面已安静的，把本轮节奏交给防抖策略学习，
+     * max wait 强制提前的则等这一轮真正结束再学（见 {@link DebounceLearningBurst}）。
+     */
+    private void finishContentCheckBurst() {
+        String packageName = currentDebouncePackage();
+        long now = SystemClock.elapsedRealtime();
+        debounceLearning.onCheckSubmitted(debouncePolicy, contentCheckForced);
+        if (contentCheckBurstEvents > 0) {
+            debounceStats.onBurstFinished(debouncePolicy, packageName, contentCheckBurstStartedAt,
+                    contentCheckLastEventAt, contentCheckBurstEvents, now);
+        }
+        resetContentCheckBurst();
+    }
+
+    private void resetContentCheckBurst() {
         contentCheckBurstStartedAt = 0;
+        contentCheckLastEventAt = 0;
+        contentCheckBurstEvents = 0;
+        contentCheckForced = false;
         pendingContentCheckSource = "unknown";
+    }
+
+    private String currentDebouncePackage() {
+        return currentActiveApp != null ? currentActiveApp.getPackageName() : "";
+    }
+
+    /**
+     * 当前目标 APP 的包名，供 {@link EventRateGovernor} 在处理事件前过滤；不在目标 APP 内时为 null。
+     */
+    String getCurrentActivePackageName() {
+        return currentActiveApp != null ? currentActiveApp.getPackageName() : null;
+    }
+
+    ScanLoadMetrics getScanLoadMetrics() {
+        return keywordScanWorker.getLoadMetrics();
+    }
+
+    /**
+     * 目标 APP 的内容变化事件超出预算被丢弃。被丢弃的事件不在变化批次里，只重扫变化子树可能漏检，
+     * 因此作废增量基线，并在降级期间按固定间隔全量扫描，直到一段时间内不再被限流。
+     */
+    void onContentEventsThrottled() {
+        contentEventsThrottledAt = SystemClock.elapsedRealtime();
+        if (degradedScanRunnable != null) {
+            return;
+        }
+        Log.d(TAG, "内容变化事件超出预算，降级为定时扫描");
+        keywordScanWorker.invalidateIncrementalState();
+        degradedScanRunnable = new Runnable() {
+            @Override
+            public void run() {
+                long sinceThrottled = SystemClock.elapsedRealtime() - contentEventsThrottledAt;
+                if (sinceThrottled >= Const.EVENT_GOVERNOR_DEGRADE_HOLD_MS) {
+                    degradedScanRunnable = null;
+                    Log.d(TAG, "内容变化事件恢复到预算内，退出降级");
+                    requestContentCheck("event_governor_recovered");
+                    return;
+                }
+                keywordScanWorker.invalidateIncrementalState();
+                checkTextContentOptimized(false, "event_governor_periodic");
+                handler.postDelayed(this, Const.EVENT_GOVERNOR_DEGRADED_SCAN_INTERVAL_MS);
+            }
+        };
+        handler.postDelayed(degradedScanRunnable, Const.EVENT_GOVERNOR_DEGRADED_SCAN_INTERVAL_MS);
+    }
+
+    private void stopDegradedScan() {
+        if (degradedScanRunnable != null) {
+            handler.removeCallbacks(degradedScanRunnable);
+            degradedScanRunnable = null;
+        }
+    }
+
+    private void cancelPendingContentCheck() {
+        partialScanRetries = 0;
+        triggers.cancel(PARTIAL_SCAN_RETRY_TRIGGER);
+        resetContentCheckBurst();
+        stopDegradedScan();
         if (contentCheckRunnable != null) {
             handler.removeCallbacks(contentCheckRunnable);
         }
+        ContentChangeBatch changes = takePendingContentChanges();
+        if (changes != null) {
+            // 这批变化不会再被扫描，未命中基线随之失效
+            keywordScanWorker.discardChanges(changes);
+        }
+        keywordScanWorker.cancel(++contentScanGeneration);
+    }
+
+    private ContentChangeBatch takePendingContentChanges() {
+        ContentChangeBatch changes = pendingContentChanges;
+        pendingContentChanges = null;
+        return changes;
     }
     
     /**
@@ -261,6 +588,15 @@ public class AppStateManager {
     }
 
     private void checkTextContentOptimized(boolean forceCheck, String triggerSource) {
+        checkTextContentOptimized(forceCheck, triggerSource, null);
+    }
+
+    /**
+     * @param changes 本轮累积的内容变化，由扫描线程负责回收；为 null 时做全量扫描
+     */
+    private void checkTextContentOptimized(boolean forceCheck, String triggerSource,
+                                           ContentChangeBatch changes) {
+        boolean submitted = false;
         try {
 //            检测防抖中 / 无活跃APP / 数学题正展示
             if (shouldSkipTextCheck()) {
@@ -277,54 +613,96 @@ public class AppStateManager {
             if (currentActiveApp.isGlobalBlock()
                     && !CustomAppManager.WECHAT_PACKAGE.equals(currentPackageName)) {
                 dispatchAppStateChange(currentActiveApp, true, forceCheck, appManuallyHidden);
-                lastDetectionNotTarget.put(currentPackageName, false);
+                runtimeState.setLastDetectionNotTarget(currentActiveApp, false);
                 Log.d(TAG, "全局屏蔽已开启，跳过页面关键词检测，APP="
                         + currentActiveApp.getAppName());
                 return;
             }
 
             Log.d(TAG, "当前有活跃的目标 APP，开始文本检测，触发来源=" + triggerSource);
-            TextScanDiagnostics diagnostics =
-                    TextScanDiagnostics.createIfEnabled(triggerSource, currentPackageName);
-            String targetWord = currentActiveApp.getTargetWord();
-            boolean hasTargetWord = false;
-            long rootStartNanos = SystemClock.elapsedRealtimeNanos();
-            AccessibilityNodeInfo rootNode = service.getRootInActiveWindow();
-            double rootElapsedMs = DateUtils.nanosToMillis(
-                    SystemClock.elapsedRealtimeNanos() - rootStartNanos);
-            if (rootNode != null) {
-                long traversalStartNanos = SystemClock.elapsedRealtimeNanos();
-                hasTargetWord = FloatHelper.findTargetText(rootNode, targetWord, diagnostics);
-                double traversalElapsedMs = DateUtils.nanosToMillis(
-                        SystemClock.elapsedRealtimeNanos() - traversalStartNanos);
-                if(currentPackageName.equals(CustomAppManager.WECHAT_PACKAGE)){
-                    hasTargetWord = true;
-                }
-                Log.d(TAG, "检测耗时：" + DateUtils.formatMillis(traversalElapsedMs / 1000.0));
-                if (diagnostics != null) {
-                    String rootPackageName = rootNode.getPackageName() == null
-                            ? "null" : rootNode.getPackageName().toString();
-                    diagnostics.log(rootPackageName, rootElapsedMs, traversalElapsedMs, hasTargetWord);
-                }
-                rootNode.recycle();
-            } else {
-                Log.d(TAG, "rootNode 为空");
-                if(currentPackageName.equals(CustomAppManager.WECHAT_PACKAGE)){
-                    hasTargetWord = true;
-                }
-                if (diagnostics != null) {
-                    diagnostics.log("null", rootElapsedMs, 0, hasTargetWord);
-                }
-            }
-            lastDetectionNotTarget.put(currentPackageName, !hasTargetWord);
-
-            // 添加详细调试信息
-            String appName = currentActiveApp.getAppName();
-            Log.d(TAG, "文本检测结果: " + targetWord + "=" + hasTargetWord + ", APP=" + appName);
-            dispatchAppStateChange(currentActiveApp, hasTargetWord, forceCheck, appManuallyHidden);
+            KeywordScanWorker.Request request = new KeywordScanWorker.Request(
+                    ++contentScanGeneration, currentActiveApp, triggerSource, forceCheck, changes);
+            submitted = true;
+            keywordScanWorker.submit(request, this::onKeywordScanFinished);
         } catch (Exception e) {
             Log.e(TAG, "优化版文本检测失败", e);
+        } finally {
+            if (!submitted && changes != null) {
+                // 跳过检测期间的变化同样未被扫描
+                keywordScanWorker.discardChanges(changes);
+            }
+        }
+    }
+
+    /**
+     * 部分结果且尚无界面状态时补扫。补扫次数有上限，超大页面始终扫不完时不再空转，
+     * 改由后续内容变化事件继续触发检测。
+     */
+    private void schedulePartialScanRetry() {
+        if (partialScanRetryApp != currentActiveApp) {
+            partialScanRetryApp = currentActiveApp;
+            partialScanRetries = 0;
+        }
+        if (partialScanRetries >= Const.PARTIAL_SCAN_MAX_RETRIES) {
+            Log.d(TAG, "文本检测仍为部分结果，补扫次数已用尽，等待后续内容变化, APP="
+                    + currentActiveApp.getAppName());
+            return;
         }
+        partialScanRetries++;
+        Log.d(TAG, "文本检测为部分结果且尚无界面状态，保持未决，第 " + partialScanRetries
+                + " 次补扫, APP=" + currentActiveApp.getAppName());
+        triggers.schedule(PARTIAL_SCAN_RETRY_TRIGGER, Const.PARTIAL_SCAN_RETRY_DELAY_MS,
+                partialScanRetryRunnable);
+    }
+
+    /**
+     * 扫描线程投递回主线程的结论。提交后若又发起了新的扫描、离开了该 APP 或进入了暂停检测阶段，
+     * 本次结论已过期，直接丢弃。
+     */
+    private void onKeywordScanFinished(KeywordScanWorker.Request request, TextScanResult result) {
+        if (request.generation != contentScanGeneration) {
+            Log.v(TAG, "关键词扫描结论已过期，丢弃，代号=" + request.generation);
+            return;
+        }
+        if (currentActiveApp != request.app || shouldSkipTextCheck()) {
+            return;
+        }
+
+        boolean appManuallyHidden = Share.isAppManuallyHidden(currentActiveApp);
+        if (appManuallyHidden && stillInHidePeriod()) {
+            return;
+        }
+
+        boolean hasTargetWord = result.isMatched();
+
+        // 预算耗尽的部分结果不能证明页面没有关键词：已有界面状态时沿用原结论，
+        // 交给下一轮内容变化事件继续检测；也不记入"上次未命中"，以免影响下次进入的显示顺序。
+        if (result.isPartial() && !hasTargetWord) {
+            String lastAppState = Share.getAppState(currentActiveApp);
+            if (lastAppState == null) {
+                // 尚无任何结论（如刚进入超大页面）：不当作"非目标"放行，保持未决并稍后补扫
+                schedulePartialScanRetry();
+                return;
+            }
+            hasTargetWord = "target".equals(lastAppState);
+            Log.d(TAG, "文本检测为部分结果，沿用当前界面状态: " + lastAppState
+                    + ", APP=" + currentActiveApp.getAppName());
+        } else {
+            partialScanRetries = 0;
+            triggers.cancel(PARTIAL_SCAN_RETRY_TRIGGER);
+        }
+        if (!handleTriggerControlResult(currentActiveApp, hasTargetWord, result.isPartial())) {
+            return;
+        }
+        if (!result.isPartial()) {
+            runtimeState.setLastDetectionNotTarget(currentActiveApp, !hasTargetWord);
+        }
+
+        // 添加详细调试信息
+        String appName = currentActiveApp.getAppName();
+        Log.d(TAG, "文本检测结果: " + request.targetWord + "=" + hasTargetWord + ", APP=" + appName);
+        dispatchAppStateChange(currentActiveApp, hasTargetWord, request.forceCheck,
+                appManuallyHidden);
     }
 
     private void dispatchAppStateChange(CustomApp app, boolean isTargetInterface,
@@ -441,6 +819,37 @@ public class AppStateManager {
         return nextShowTask;
     }
     
+    /**
+     * 进程被杀或服务重启后，内存中的手动隐藏状态与定时器都已丢失：按持久化的关闭时间与间隔
+     * 重新推出各 APP 剩余的解禁时长，恢复手动隐藏并重新登记到期自动显示。
+     */
+    private void restoreAutoShowTimers() {
+        boolean leisureActive = leisureTimeManager.isAnyLeisureTimeActive();
+        for (CustomApp app : CustomAppManager.getInstance().getAllApps()) {
+            long remainingMillis = relaxManager.getRecordedRemainingTime(app);
+            if (remainingMillis <= 0
+                    || triggers.isScheduled(TriggerScheduler.autoShowKey(app.getPackageName()))) {
+                continue;
+            }
+            Share.setAppManuallyHidden(app, true);
+            // 休闲解禁期间的关闭不消耗宽松模式，与 startLeisureTimer 一致
+            scheduleTimer(app, remainingMillis, !leisureActive);
+            Log.d(TAG, "恢复 APP " + app.getAppName() + " 的自动显示定时器，剩余 "
+                    + (remainingMillis / 1000) + " 秒");
+        }
+    }
+
+    /**
+     * 到期闹钟投递或用户解锁：按墙钟补发休眠期间已到期的自动显示。
+     */
+    public void reconcileDeadlines(boolean fromAlarm) {
+        if (fromAlarm) {
+            triggers.onAlarmDelivered();
+        } else {
+            triggers.reconcile("user_present");
+        }
+    }
+
     /**
      * 启动定时器
      */
@@ -457,16 +866,11 @@ public class AppStateManager {
 
     private void scheduleTimer(CustomApp app, long interval, boolean resetRelaxedModeOnTrigger) {
         // 如果已有当前 APP 的定时显示任务，则移除它
-        if (appTimers.get(app) != null) {
-            autoShowHandler.removeCallbacks(appTimers.get(app));
-        }
-
-        // 创建新的定时任务
-        Runnable nextShowTask = createTimerTask(app, resetRelaxedModeOnTrigger);
-
-        // 使用当前的时间间隔安排下次显示
-        autoShowHandler.postDelayed(nextShowTask, interval);
-        appTimers.put(app, nextShowTask);
+        // 使用当前的时间间隔安排下次显示；同一 APP 之前的定时显示任务随之作废。
+        // 按墙钟登记，息屏休眠拉长 Handler 延时后仍能经闹钟与解锁对账按时补发
+        triggers.scheduleAt(TriggerScheduler.autoShowKey(app.getPackageName()),
+                System.currentTimeMillis() + interval,
+                createTimerTask(app, resetRelaxedModeOnTrigger));
 
         String intervalText = RelaxManager.getIntervalDisplayText((int)(interval / 1000));
         Log.d(TAG, "计划在" + intervalText + "后自动重新显示悬浮窗 (APP: " + app.getAppName() + ")");
@@ -477,35 +881,87 @@ public class AppStateManager {
      */
     public void initAppStateEnhancement() {
         appStateHandler = new Handler(Looper.getMainLooper());
-        
+
         appStateCheckRunnable = new Runnable() {
             @Override
             public void run() {
-                long currentTime = System.currentTimeMillis();
-                if (currentTime - lastAppStateCheckTime > Const.APP_STATE_CHECK_INTERVAL) {
-                    lastAppStateCheckTime = currentTime;
-                    
-                    // 检查当前前台应用状态
-                    checkCurrentAppState();
+                boolean discrepancy = checkCurrentAppState();
+                long delay = pollScheduler.onPollFinished(discrepancy, currentActiveApp != null);
+                if (discrepancy) {
+                    Log.d(TAG, "兜底轮询发现窗口事件漏报，轮询间隔收紧为 " + delay + "ms");
                 }
-                
-                // 继续循环检查
-                appStateHandler.postDelayed(this, Const.APP_STATE_CHECK_INTERVAL);
+                if (pollScheduler.getPolls() % Const.APP_STATE_POLL_REPORT_INTERVAL == 0) {
+                    Log.d(TAG, "兜底轮询统计: " + getPollReport());
+                }
+                schedulePoll(delay);
             }
         };
-        
-        // 开始定期检查
-        appStateHandler.postDelayed(appStateCheckRunnable, Const.APP_STATE_CHECK_INTERVAL);
+
+        PowerManager powerManager = (PowerManager) service.getSystemService(Context.POWER_SERVICE);
+        if (powerManager == null || powerManager.isInteractive()) {
+            schedulePoll(pollScheduler.start(SystemClock.elapsedRealtime()));
+        }
         Log.d(TAG, "应用状态检测增强机制已启动");
     }
+
+    /**
+     * 息屏：前台 APP 不会变化，停止兜底轮询。
+     */
+    public void onScreenOff() {
+        if (appStateHandler == null) {
+            return;
+        }
+        appStateHandler.removeCallbacks(appStateCheckRunnable);
+        nextAppStateCheckAt = 0;
+        pollScheduler.stop(SystemClock.elapsedRealtime());
+        Log.d(TAG, "息屏，停止兜底轮询");
+    }
+
+    /**
+     * 亮屏：息屏期间的窗口变化可能没有事件，以最短间隔恢复兜底轮询。
+     */
+    public void onScreenOn() {
+        if (appStateHandler == null) {
+            return;
+        }
+        schedulePoll(pollScheduler.start(SystemClock.elapsedRealtime()));
+        Log.d(TAG, "亮屏，恢复兜底轮询");
+    }
+
+    /**
+     * 兜底轮询的唤醒统计：实际轮询次数与固定间隔下的轮询次数对比。
+     */
+    public String getPollReport() {
+        return pollScheduler.buildReport(SystemClock.elapsedRealtime());
+    }
+
+    private void schedulePoll(long delayMillis) {
+        appStateHandler.removeCallbacks(appStateCheckRunnable);
+        appStateHandler.postDelayed(appStateCheckRunnable, delayMillis);
+        nextAppStateCheckAt = SystemClock.elapsedRealtime() + delayMillis;
+    }
+
+    /**
+     * 下次轮询晚于 maxDelayMillis 之后时提前到该时刻；轮询已停止（息屏）时不做处理。
+     */
+    private void reschedulePollWithin(long maxDelayMillis) {
+        if (appStateHandler == null || !pollScheduler.isRunning() || nextAppStateCheckAt == 0) {
+            return;
+        }
+        if (nextAppStateCheckAt - SystemClock.elapsedRealtime() > maxDelayMillis) {
+            schedulePoll(maxDelayMillis);
+        }
+    }
     
     /**
-     * 检查当前前台应用状态
+     * 兜底轮询一次前台包名。
+     *
+     * @return 轮询看到的目标 APP 与事件得出的当前 APP 不一致，即窗口事件发生了漏报
      */
-    private void checkCurrentAppState() {
+    private boolean checkCurrentAppState() {
         try {
             if (isPackageDetectPaused()) {
-                return;
+                return false;
             }
 
             // 答题期间只暂停页面关键词扫描，前台包名检测必须继续运行。
@@ -515,158 +971,32 @@ public class AppStateManager {
             if (rootNode != null) {
                 String currentPackage = rootNode.getPackageName() != null ? 
                     rootNode.getPackageName().toString() : "";
+                rootNode.recycle();
                 Log.d(TAG, "定时轮询包名: " + currentPackage);
                 if (!currentPackage.equals(service.getPackageName())
                         && !FloatHelper.isInputMethodApp(currentPackage)) {
+                    CustomApp appBefore = currentActiveApp;
+                    boolean discrepancy = detectSupportedApp(currentPackage) != appBefore;
                     handleObservedPackage(currentPackage, "定时轮询");
+                    return discrepancy;
                 }
-                rootNode.recycle();
             }
         } catch (Exception e) {
             Log.w(TAG, "应用状态检测出错", e);
         }
+        return false;
     }
 
     /**
-     * 所有包名观察统一进入这里，避免窗口事件和定时轮询采用不同的离开规则。
+     * 所有包名观察统一进入这里，避免窗口事件和定时轮询采用不同的离开规则；
+     * 复核、SystemUI 延迟确认等规则见 {@link ForegroundPackageMachine}。
      */
     private void handleObservedPackage(String packageName, String source) {
-        if (packageName == null || packageName.isEmpty()) {
-            return;
-        }
-        if (isPackageDetectPaused()) {
-            Log.v(TAG, source + "处于悬浮窗显示防抖阶段，忽略包名变化: " + packageName);
-            return;
-        }
-
-        if (pendingPackageTransition != null) {
-            Log.v(TAG, source + "等待 300ms 包名复核，忽略中间包名事件: " + packageName);
-            return;
-        }
-
-        // SystemUI 沿用原有的延迟确认及 View 暂停/恢复逻辑。
-        if (currentActiveApp != null && SYSTEM_UI_PACKAGE.equals(packageName)) {
-            schedulePackageConfirmation(source, Const.SYSTEM_UI_CONFIRM_DELAY_MS);
-            return;
-        }
-
-        boolean leavesCurrentTargetWithVisibleFloatingWindow = currentActiveApp != null
-                && !currentActiveApp.getPackageName().equals(packageName)
-                && Share.isFloatingWindowVisible
-                && !suspendedForSystemUi;
-        if (leavesCurrentTargetWithVisibleFloatingWindow) {
-            startPackageTransitionConfirmation(source);
-            return;
-        }
-
-        cancelPendingPackageConfirmation();
-        applyConfirmedPackage(packageName, source);
-        setSuspendedForSystemUi(false);
-    }
-
-    private void startPackageTransitionConfirmation(String source) {
-        if (currentActiveApp == null || pendingPackageTransition != null) {
-            return;
-        }
-
-        cancelPendingPackageConfirmation();
-        cancelPendingContentCheck();
-
-        if (!Const.PACKAGE_TRANSITION_RECHECK_ENABLED) {
-            Log.d(TAG, source + "第300ms复核机制已关闭，离开目标 APP 立即隐藏悬浮窗");
-            confirmCurrentAppLeft("离开 APP 且复核已关闭", true);
-            setSuspendedForSystemUi(false);
-            return;
-        }
-
-        if (windowInspector.isAnimationDisabled()) {
-            Log.d(TAG, source + "系统已关闭过渡动画，跳过 300ms 复核，直接隐藏悬浮窗");
-            confirmCurrentAppLeft("离开 APP 且无过渡动画", true);
-            setSuspendedForSystemUi(false);
-            return;
-        }
-
-        // 离开目标 APP：先把悬浮窗降级为暖态（保留 Window 资源、透明且不可触摸），
-        // 保留目标包名并进入暂停检测阶段；用后续复核抑制过渡动画期间的误触发闪现，
-        // 复核期及 PACKAGE_TRANSITION_WINDOW_REUSE_MS 内返回目标 APP 可直接复用暖窗口。
-        pendingPackageTransition = new PendingPackageTransition(currentActiveApp);
-        confirmCurrentAppLeftKeepingWarmWindow(source + "离开目标 APP，保留窗口资源以便复用");
-        setSuspendedForSystemUi(false);
-
-        schedulePackageTransitionStep(
-                Const.PACKAGE_TRANSITION_CHECK_DELAY_MS,
-                this::confirmPackageAfterTransitionDelay
-        );
-        Log.d(TAG, source + "离开目标 APP 已将悬浮窗降级为暖态保留；"
-                + Const.PACKAGE_TRANSITION_CHECK_DELAY_MS + "ms 后复核包名");
-    }
-
-
-    private void confirmPackageAfterTransitionDelay() {
-        PendingPackageTransition transition = pendingPackageTransition;
-        if (transition == null) {
-            return;
-        }
-
-        String confirmedPackage = windowInspector.getActiveRootPackage();
-
-        PackageTransitionDecision.Action action = PackageTransitionDecision.decide(
-                transition.targetApp.getPackageName(),
-                confirmedPackage
-        );
-        if (action == PackageTransitionDecision.Action.PAUSE_AND_RECHECK) {
-            long pauseDuration = PackageTransitionTiming.getEarlyReturnPauseDuration();
-            schedulePackageTransitionStep(pauseDuration, this::resumeAfterEarlyReturnPause);
-            Log.d(TAG, "300ms 复核已重回目标 APP，继续暂停检测 "
-                    + pauseDuration + "ms 后再恢复，避免误触发闪现");
-            return;
-        }
-
-        cancelPackageTransition();
-        Log.d(TAG, "300ms 复核为非目标包名: " + AccessibilityWindowInspector.packageNameForLog(confirmedPackage)
-                + "，恢复检测");
-        resumeDetectionForPackage(confirmedPackage);
-    }
-
-    private void resumeAfterEarlyReturnPause() {
-        if (pendingPackageTransition == null) {
-            return;
-        }
-
-        String confirmedPackage = windowInspector.getActiveRootPackage();
-        cancelPackageTransition();
-        Log.d(TAG, "暂停检测结束，复核当前包名: " + AccessibilityWindowInspector.packageNameForLog(confirmedPackage)
-                + "，恢复检测");
-        resumeDetectionForPackage(confirmedPackage);
-    }
-
-    /**
-     * 暂停检测阶段结束后，按当前包名恢复常规检测；悬浮窗此前已隐藏，
-     * 若当前仍在目标 APP，applyConfirmedPackage 会重新显示悬浮窗并检测页面。
-     */
-    private void resumeDetectionForPackage(String packageName) {
-        if (packageName.isEmpty()) {
-            return;
-        }
-        applyConfirmedPackage(packageName, "暂停检测结束恢复");
-        setSuspendedForSystemUi(false);
+        execute(packageMachine.onPackageObserved(packageName, source, SystemClock.elapsedRealtime()));
     }
 
     public void startFloatingShowPackageDetectionDebounce() {
-        packageDetectPauseUtil = SystemClock.elapsedRealtime()
-                + Const.FLOATING_SHOW_PACKAGE_DETECTION_DEBOUNCE_MS;
-
-        if (floatingShowPackageDetectionResumeRunnable != null) {
-            handler.removeCallbacks(floatingShowPackageDetectionResumeRunnable);
-        }
-        floatingShowPackageDetectionResumeRunnable =
-                this::finishFloatingShowPackageDetectionDebounce;
-        handler.postDelayed(
-                floatingShowPackageDetectionResumeRunnable,
-                Const.FLOATING_SHOW_PACKAGE_DETECTION_DEBOUNCE_MS
-        );
-        Log.d(TAG, "悬浮窗由无/隐藏变为显示，暂停检测包名变化 "
-                + Const.FLOATING_SHOW_PACKAGE_DETECTION_DEBOUNCE_MS + "ms");
+        execute(packageMachine.onFloatingWindowShown(SystemClock.elapsedRealtime()));
     }
 
     /**
@@ -674,103 +1004,65 @@ public class AppStateManager {
      */
     public void pauseDetectionForLeisureTime(CustomApp app) {
         cancelPendingContentCheck();
-        cancelPendingPackageConfirmation();
-        cancelPackageTransition();
+        execute(packageMachine.onDetectionSuspended());
+        clearTriggerControlState();
         Log.d(TAG, "APP " + app.getAppName() + " 的休闲解禁已开始，暂停该 APP 页面检测");
     }
 
-    private void finishFloatingShowPackageDetectionDebounce() {
-        long remaining = packageDetectPauseUtil - SystemClock.elapsedRealtime();
-        if (remaining > 0) {
-            handler.postDelayed(floatingShowPackageDetectionResumeRunnable, remaining);
-            return;
-        }
-
-        packageDetectPauseUtil = 0;
-        floatingShowPackageDetectionResumeRunnable = null;
-        Log.d(TAG, "悬浮窗显示防抖结束，主动复核当前包名");
-
-        String confirmedPackage = windowInspector.getActiveRootPackage();
-        if (confirmedPackage.isEmpty()) {
-            Log.d(TAG, "悬浮窗显示防抖结束时包名不明确，等待后续事件或轮询复核");
+    /**
+     * 离开目标 APP 时开始采集一次过渡时长样本，采样窗口到期后结算。
+     */
+    private void startTransitionCalibration() {
+        if (currentActiveApp == null) {
             return;
         }
-
-        handleObservedPackage(confirmedPackage, "悬浮窗显示防抖结束");
-    }
-
-
-    private void schedulePackageTransitionStep(long delayMillis, Runnable step) {
-        long generation = packageTransitionGeneration;
-        pendingPackageTransitionStep = () -> {
-            if (generation != packageTransitionGeneration) {
-                return;
-            }
-            pendingPackageTransitionStep = null;
-            step.run();
-        };
-        handler.postDelayed(pendingPackageTransitionStep, Math.max(0L, delayMillis));
-    }
-
-    private void cancelPackageTransition() {
-        packageTransitionGeneration++;
-        if (pendingPackageTransitionStep != null) {
-            handler.removeCallbacks(pendingPackageTransitionStep);
-            pendingPackageTransitionStep = null;
-        }
-        pendingPackageTransition = null;
+        long now = SystemClock.elapsedRealtime();
+        transitionCalibrator.onTargetLeft(currentActiveApp.getPackageName(), now);
+        transitionCalibrator.onWindowEvent(windowInspector.getActiveRootPackage(), now);
+        triggers.schedule(TRANSITION_CALIBRATION_TRIGGER, Const.TRANSITION_CALIBRATION_WINDOW_MS,
+                transitionCalibrationFinishRunnable);
     }
 
     /**
-     * 第一次观察到待确认包名时启动一次确认；后续同类事件不会延长等待时间。
+     * 按顺序执行状态机下发的指令，定时器到期统一经 handler 送回。指令执行期间可能再次进入状态机
+     * （如显示悬浮窗触发显示防抖），此时上一次输入已处理完毕，嵌套的指令就地执行，与原先的调用顺序一致。
      */
-    private void schedulePackageConfirmation(String source, long delayMillis) {
-        if (pendingPackageConfirmation != null || suspendedForSystemUi) {
-            return;
-        }
-
-        CustomApp expectedApp = currentActiveApp;
-        long generation = ++packageConfirmationGeneration;
-        pendingPackageConfirmation = () -> {
-            if (generation != packageConfirmationGeneration) {
-                return;
-            }
-            pendingPackageConfirmation = null;
-            if (currentActiveApp != expectedApp || currentActiveApp == null) {
-                return;
-            }
-
-            String confirmedPackage = windowInspector.getActiveRootPackage();
-            if (confirmedPackage.isEmpty()
-                    || confirmedPackage.equals(service.getPackageName())
-                    || FloatHelper.isInputMethodApp(confirmedPackage)) {
-                Log.d(TAG, "延迟确认时包名不明确，保持遮罩并稍后重试");
-                schedulePackageConfirmation("包名不明确重试", UNKNOWN_PACKAGE_RETRY_DELAY_MS);
-                return;
-            }
-
-            if (expectedApp.getPackageName().equals(confirmedPackage)) {
-                Log.d(TAG, "在确认期限内回到目标 APP，保持悬浮窗");
-                setSuspendedForSystemUi(false);
-            } else if (SYSTEM_UI_PACKAGE.equals(confirmedPackage)) {
-                Log.d(TAG, "SystemUI 持续超过设定阈值，临时暂停悬浮窗");
-                setSuspendedForSystemUi(true);
-            } else {
-                Log.d(TAG, "延迟确认后进入其他包名: " + confirmedPackage);
-                applyConfirmedPackage(confirmedPackage, "包名延迟确认");
-                setSuspendedForSystemUi(false);
+    private void execute(List<ForegroundPackageMachine.Command> commands) {
+        for (ForegroundPackageMachine.Command command : commands) {
+            switch (command.type) {
+                case APPLY_PACKAGE:
+                    applyConfirmedPackage(command.packageName, command.message);
+                    break;
+                case LEAVE_TARGET:
+                    confirmCurrentAppLeft(command.message, true);
+                    break;
+                case LEAVE_TARGET_KEEP_WARM:
+                    startTransitionCalibration();
+                    confirmCurrentAppLeftKeepingWarmWindow(command.message);
+                    break;
+                case SET_SYSTEM_UI_SUSPENDED:
+                    setSuspendedForSystemUi(command.suspended);
+                    break;
+                case CANCEL_CONTENT_CHECK:
+                    cancelPendingContentCheck();
+                    break;
+                case SCHEDULE_TIMER:
+                    triggers.schedule(packageMachineTimerKeys[command.timer.ordinal()],
+                            command.delayMillis, packageMachineTimers[command.timer.ordinal()]);
+                    if (command.message != null) {
+                        Log.d(TAG, command.message);
+                    }
+                    break;
+                case CANCEL_TIMER:
+                    triggers.cancel(packageMachineTimerKeys[command.timer.ordinal()]);
+                    break;
+                case NOTE:
+                    Log.d(TAG, command.message);
+                    break;
+                case TRACE:
+                    Log.v(TAG, command.message);
+                    break;
             }
-        };
-
-        handler.postDelayed(pendingPackageConfirmation, delayMillis);
-        Log.d(TAG, source + "观察到待确认包名，" + delayMillis + "ms 后确认，期间保持悬浮窗");
-    }
-
-    private void cancelPendingPackageConfirmation() {
-        packageConfirmationGeneration++;
-        if (pendingPackageConfirmation != null) {
-            handler.removeCallbacks(pendingPackageConfirmation);
-            pendingPackageConfirmation = null;
         }
     }
 
@@ -785,12 +1077,12 @@ public class AppStateManager {
                 }
 
                 cancelPendingContentCheck();
+                clearTriggerControlState();
                 currentActiveApp = detectedApp;
                 Share.currentApp = currentActiveApp;
                 Log.d(TAG, source + "确认进入 APP: " + detectedApp.getAppName());
-                boolean shouldDetectBeforeShow = detectBeforeShowOnNextEntry.getOrDefault(
-                        detectedApp.getPackageName(), false);
-                lastDetectionNotTarget.remove(detectedApp.getPackageName());
+                boolean shouldDetectBeforeShow = runtimeState.shouldDetectBeforeShow(detectedApp);
+                runtimeState.setLastDetectionNotTarget(detectedApp, false);
                 boolean shouldShowBeforeContentCheck = !shouldDetectBeforeShow
                         && !suspendedForSystemUi
                         && !Share.isAppManuallyHidden(detectedApp);
@@ -803,10 +1095,9 @@ public class AppStateManager {
                     Log.d(TAG, "确认进入目标 " + detectedApp.getAppName()
                             + "，先显示悬浮窗，" + firstCheckDelayMs + "ms 后检测页面文字");
                     listener.onTargetPackageEnteredBeforeContentCheck(detectedApp);
-                    // 悬浮窗刚 addView，真正绘制排在下一次 vsync 的帧回调里；而文本检测会
-                    // 阻塞主线程数秒。0 延迟的 handler.post 会在下一帧回调之前就被取出执行，
-                    // 把首帧绘制一起卡住，导致悬浮窗“已显示成功”但要 1 秒后才真正渲染。
-                    // 因此延后一小段（跨过首帧）再跑阻塞式检测，先让主线程把悬浮窗画出来。
+                    // 悬浮窗刚 addView，真正绘制排在下一次 vsync 的帧回调里。文本检测已移到
+                    // 扫描线程，不再阻塞主线程，但跨进程取节点树仍会与首帧争抢系统资源，
+                    // 且目标页面首屏内容此时往往尚未就绪；因此仍延后一小段（跨过首帧）再提交检测。
                     handler.postDelayed(
                             () -> checkTextContentOptimized(false, "entry_show_before_check"),
                             firstCheckDelayMs);
@@ -843,6 +1134,7 @@ public class AppStateManager {
         rememberNextEntryDisplayOrder(leftApp);
         Share.clearAppState(leftApp);
         cancelPendingContentCheck();
+        clearTriggerControlState();
         currentActiveApp = null;
         Share.currentApp = null;
         if (notifyListener && listener != null) {
@@ -864,6 +1156,7 @@ public class AppStateManager {
         rememberNextEntryDisplayOrder(leftApp);
         Share.clearAppState(leftApp);
         cancelPendingContentCheck();
+        clearTriggerControlState();
         currentActiveApp = null;
         Share.currentApp = null;
         if (listener != null) {
@@ -872,11 +1165,10 @@ public class AppStateManager {
     }
 
     private void rememberNextEntryDisplayOrder(CustomApp app) {
-        boolean shouldDetectBeforeShow = lastDetectionNotTarget.getOrDefault(
-                        app.getPackageName(), false)
+        boolean shouldDetectBeforeShow = runtimeState.isLastDetectionNotTarget(app)
                 && !leisureTimeManager.isAnyLeisureTimeActive()
                 && !Share.isAppManuallyHidden(app);
-        detectBeforeShowOnNextEntry.put(app.getPackageName(), shouldDetectBeforeShow);
+        runtimeState.setDetectBeforeShow(app, shouldDetectBeforeShow);
         Log.d(TAG, "记录 " + app.getAppName() + " 下次进入策略: "
                 + (shouldDetectBeforeShow ? "先检测再决定是否显示" : "按常规抢先显示"));
     }
@@ -891,14 +1183,14 @@ public class AppStateManager {
         }
     }
 
+    /** 悬浮窗的定时触发（如页面过渡的临时保留期）也登记在这里。 */
+    TriggerScheduler getTriggers() {
+        return triggers;
+    }
+
     public void cleanup() {
-        // 清理所有APP的定时器
-        if (autoShowHandler != null && appTimers != null) {
-            for (Runnable timer : appTimers.values()) {
-                autoShowHandler.removeCallbacks(timer);
-            }
-            appTimers.clear();
-        }
+        // 清理所有定时触发（各 APP 的自动显示、状态机定时器、过渡校准窗口）
+        triggers.cancelAll();
         
         // 清理应用状态检测Handler
         if (appStateHandler != null && appStateCheckRunnable != null) {
@@ -907,16 +1199,12 @@ public class AppStateManager {
         
         // 清理内容检测Handler
         cancelPendingContentCheck();
-        cancelPendingPackageConfirmation();
-        cancelPackageTransition();
+        execute(packageMachine.reset());
         cancelBackgroundWindowEventRecheck();
-        packageDetectPauseUtil = 0;
-        if (floatingShowPackageDetectionResumeRunnable != null) {
-            handler.removeCallbacks(floatingShowPackageDetectionResumeRunnable);
-            floatingShowPackageDetectionResumeRunnable = null;
-        }
-        lastDetectionNotTarget.clear();
-        detectBeforeShowOnNextEntry.clear();
+        runtimeState.clearEntryHistory();
+        clearTriggerControlState();
+        keywordScanWorker.shutdown();
+        AppVersionCodes.stopWatching(service);
     }
 
     /**
@@ -928,14 +1216,10 @@ public class AppStateManager {
 
     private boolean isDetectionPaused() {
         // 休闲期间悬浮窗照常展示，仅点关闭时免答题；因此不因休闲暂停页面检测。
-        return isPackageTransitionDetectionPaused();
-    }
-
-    private boolean isPackageTransitionDetectionPaused() {
-        return pendingPackageTransition != null;
+        return packageMachine.isTransitionPending();
     }
 
     private boolean isPackageDetectPaused() {
-        return SystemClock.elapsedRealtime() < packageDetectPauseUtil;
+        return packageMachine.isPackageDetectPaused(SystemClock.elapsedRealtime());
     }
 }
@@ -0,0 +1,113 @@
+package com.book.mask.floating;
+
+import com.book.mask.constant.Const;
+
+/**
+ * 前台 APP 兜底轮询的节奏。窗口事件是主通道，轮询只用来补偿漏报：
+ * <ul>
+ *   <li>息屏时停止轮询，亮屏后立即以最短间隔恢复；</li>
+ *   <li>轮询结果与事件得出的状态一致时，间隔按倍数退避，在目标 APP 内与不在目标 APP 内分别封顶；</li>
+ *   <li>轮询发现了事件漏报的切换（可疑空档）时，间隔收紧回最短值。</li>
+ * </ul>
+ * 同时累计实际唤醒次数，并与固定 {@link Const#APP_STATE_CHECK_INTERVAL} 间隔下的唤醒次数对比。
+ * 时间由调用方传入，只在主线程调用。
+ */
+final class AppStatePollScheduler {
+    private boolean running;
+    private long intervalMs = Const.APP_STATE_CHECK_INTERVAL;
+    private long runningSince;
+    private long runningMs;
+
+    private long polls;
+    private long discrepancies;
+    private long screenOffCount;
+
+    /**
+     * 开始（或亮屏后恢复）轮询，返回首次轮询的延迟。
+     */
+    long start(long now) {
+        if (!running) {
+            running = true;
+            runningSince = now;
+        }
+        intervalMs = Const.APP_STATE_CHECK_INTERVAL;
+        return intervalMs;
+    }
+
+    /**
+     * 息屏：停止轮询并结算运行时长。
+     */
+    void stop(long now) {
+        if (!running) {
+            return;
+        }
+        running = false;
+        runningMs += Math.max(0, now - runningSince);
+        screenOffCount++;
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 一次轮询结束，返回下一次轮询的延迟。
+     *
+     * @param discrepancy 轮询看到的前台 APP 与事件得出的当前 APP 不一致
+     * @param targetActive 当前是否处于目标 APP 内（决定退避上限）
+     */
+    long onPollFinished(boolean discrepancy, boolean targetActive) {
+        polls++;
+        if (discrepancy) {
+            discrepancies++;
+            intervalMs = Const.APP_STATE_CHECK_INTERVAL;
+        } else {
+            intervalMs = Math.min(intervalMs * 2, getMaxInterval(targetActive));
+        }
+        return intervalMs;
+    }
+
+    /**
+     * 当前退避上限：在目标 APP 内时漏报"离开"会让悬浮窗停留，上限较低；否则可以退避得更久。
+     */
+    static long getMaxInterval(boolean targetActive) {
+        return targetActive ? Const.APP_STATE_POLL_MAX_ACTIVE_MS : Const.APP_STATE_POLL_MAX_IDLE_MS;
+    }
+
+    long getIntervalMs() {
+        return intervalMs;
+    }
+
+    /**
+     * 进入目标 APP 时把间隔压到目标 APP 内的上限以下，返回压缩后的间隔。
+     */
+    long clampForTarget() {
+        intervalMs = Math.min(intervalMs, Const.APP_STATE_POLL_MAX_ACTIVE_MS);
+        return intervalMs;
+    }
+
+    long getPolls() {
+        return polls;
+    }
+
+    long getDiscrepancies() {
+        return discrepancies;
+    }
+
+    /**
+     * 同样的亮屏时长内，固定间隔轮询会产生的唤醒次数。
+     */
+    long getFixedIntervalWakeups(long now) {
+        long total = runningMs + (running ? Math.max(0, now - runningSince) : 0);
+        return total / Const.APP_STATE_CHECK_INTERVAL;
+    }
+
+    String buildReport(long now) {
+        return "polls=" + polls
+                + ", fixedIntervalPolls=" + getFixedIntervalWakeups(now)
+                + ", discrepancies=" + discrepancies
+                + ", screenOffStops=" + screenOffCount
+                + ", intervalMs=" + intervalMs
+                + ", running=" + running;
+    }
+}
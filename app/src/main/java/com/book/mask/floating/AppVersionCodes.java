@@ -0,0 +1,95 @@
+package com.book.mask.floating;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.Uri;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.util.Log;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 目标 APP 的 versionCode，进程内按包名缓存。学到的关键词位置、控件签名都与布局绑定，
+ * 用版本号区分 APP 升级前后的数据。
+ * <p>
+ * APP 被升级、重装或卸载时经 {@link #watchPackageChanges} 注册的广播作废对应缓存，
+ * 否则进程存活期间一直拿到升级前的版本号。
+ */
+final class AppVersionCodes {
+    private static final String TAG = "AppStateManager";
+    static final long UNKNOWN = -1;
+
+    private static final Map<String, Long> VERSION_CODES = new ConcurrentHashMap<>();
+
+    private static final BroadcastReceiver PACKAGE_RECEIVER = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Uri data = intent.getData();
+            String packageName = data != null ? data.getSchemeSpecificPart() : null;
+            if (packageName != null && VERSION_CODES.remove(packageName) != null) {
+                Log.d(TAG, "APP 已变更，作废缓存的版本号: " + packageName + ", " + intent.getAction());
+            }
+        }
+    };
+    private static boolean watching;
+
+    private AppVersionCodes() {
+    }
+
+    /**
+     * 开始监听 APP 升级 / 重装 / 卸载。重复调用无副作用。
+     */
+    static synchronized void watchPackageChanges(Context context) {
+        if (watching) {
+            return;
+        }
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addDataScheme("package");
+        try {
+            context.getApplicationContext().registerReceiver(PACKAGE_RECEIVER, filter);
+            watching = true;
+        } catch (Exception e) {
+            Log.w(TAG, "注册 APP 变更广播失败，版本号缓存将持续到进程结束", e);
+        }
+    }
+
+    static synchronized void stopWatching(Context context) {
+        if (!watching) {
+            return;
+        }
+        try {
+            context.getApplicationContext().unregisterReceiver(PACKAGE_RECEIVER);
+        } catch (Exception e) {
+            Log.w(TAG, "注销 APP 变更广播失败", e);
+        }
+        watching = false;
+        // 不再收到变更通知，缓存也不再可信
+        VERSION_CODES.clear();
+    }
+
+    static long get(Context context, String packageName) {
+        Long cached = VERSION_CODES.get(packageName);
+        if (cached != null) {
+            return cached;
+        }
+        long versionCode = UNKNOWN;
+        try {
+            PackageInfo packageInfo = context.getPackageManager().getPackageInfo(packageName, 0);
+            versionCode = Build.VERSION.SDK_INT >= Build.VERSION_CODES.P
+                    ? packageInfo.getLongVersionCode()
+                    : packageInfo.versionCode;
+        } catch (PackageManager.NameNotFoundException e) {
+            Log.w(TAG, "获取 APP 版本号失败，按未知版本处理: " + packageName);
+        }
+        VERSION_CODES.put(packageName, versionCode);
+        return versionCode;
+    }
+}
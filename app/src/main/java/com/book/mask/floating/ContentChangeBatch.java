@@ -0,0 +1,77 @@
+package com.book.mask.floating;
+
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import com.book.mask.constant.Const;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一轮防抖期间累积的页面内容变化，供扫描线程只重扫发生变化的子树。
+ * <p>
+ * 主线程只保存事件副本（AccessibilityEvent.obtain），不在主线程调用 getSource；
+ * 取源节点的跨进程调用留给扫描线程。变化数超过 {@link Const#INCREMENTAL_SCAN_MAX_SUBTREES}
+ * 时整轮退化为全量扫描。批次由扫描线程在用完后 {@link #recycle()}。
+ */
+final class ContentChangeBatch {
+    private final List<AccessibilityEvent> changes = new ArrayList<>();
+    private boolean fullScanRequired;
+
+    /**
+     * 记录一次内容变化事件。事件由系统在回调返回后回收，因此这里保存副本。
+     */
+    void add(AccessibilityEvent event) {
+        if (fullScanRequired) {
+            return;
+        }
+        if (changes.size() >= Const.INCREMENTAL_SCAN_MAX_SUBTREES) {
+            markFullScanRequired();
+            return;
+        }
+        changes.add(AccessibilityEvent.obtain(event));
+    }
+
+    void markFullScanRequired() {
+        fullScanRequired = true;
+        recycleChanges();
+    }
+
+    boolean isFullScanRequired() {
+        return fullScanRequired || changes.isEmpty();
+    }
+
+    int size() {
+        return changes.size();
+    }
+
+    /**
+     * 第 index 个变化的源节点（调用方负责回收）；源节点已不可得时返回 null。
+     */
+    AccessibilityNodeInfo obtainSource(int index) {
+        return changes.get(index).getSource();
+    }
+
+    /**
+     * 第 index 个变化是否只涉及源节点自身的文字或内容描述，无需下探子树。
+     */
+    boolean isSelfOnlyChange(int index) {
+        int types = changes.get(index).getContentChangeTypes();
+        int selfOnlyTypes = AccessibilityEvent.CONTENT_CHANGE_TYPE_TEXT
+                | AccessibilityEvent.CONTENT_CHANGE_TYPE_CONTENT_DESCRIPTION;
+        return types != AccessibilityEvent.CONTENT_CHANGE_TYPE_UNDEFINED
+                && (types & ~selfOnlyTypes) == 0;
+    }
+
+    void recycle() {
+        recycleChanges();
+    }
+
+    private void recycleChanges() {
+        for (AccessibilityEvent change : changes) {
+            change.recycle();
+        }
+        changes.clear();
+    }
+}
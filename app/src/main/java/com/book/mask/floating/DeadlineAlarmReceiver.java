@@ -0,0 +1,24 @@
+package com.book.mask.floating;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+/**
+ * 接收 {@link DeadlineScheduler} 登记的到期闹钟并转交 {@link FloatService} 对账。
+ * 服务未运行时（进程刚被拉起）无需处理：服务启动时会按持久化的关闭时间重新推出所有到期时刻。
+ */
+public class DeadlineAlarmReceiver extends BroadcastReceiver {
+    private static final String TAG = "DeadlineScheduler";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (!DeadlineScheduler.ACTION_DEADLINE.equals(intent.getAction())) {
+            return;
+        }
+        if (!FloatService.onDeadlineAlarm()) {
+            Log.d(TAG, "到期闹钟投递时服务未运行，等待服务启动后重建");
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.book.mask.floating;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * 按键登记的到期任务队列：同一个键只保留最近一次安排，可按键取消，只对外暴露最早的一个到期时刻，
+ * 由调用方据此安排唯一一次唤醒。不涉及时钟与线程，时间单位由调用方决定，只在同一线程使用。
+ * <p>
+ * 重新安排或取消时不从堆中删除旧条目，而是在它浮到堆顶时按"是否仍是该键的当前条目"丢弃；
+ * 作废条目过多时整体重建一次。
+ */
+final class DeadlineQueue<K> {
+    static final long NONE = -1L;
+    // 堆中作废条目超过有效条目的数倍时整体重建，避免反复重新安排的键让堆无限增长
+    private static final int COMPACT_MIN_SIZE = 64;
+
+    private static final class Entry<K> {
+        final K key;
+        final long deadline;
+        final long sequence;
+        final Runnable action;
+
+        Entry(K key, long deadline, long sequence, Runnable action) {
+            this.key = key;
+            this.deadline = deadline;
+            this.sequence = sequence;
+            this.action = action;
+        }
+    }
+
+    // 同一时刻到期的按安排顺序执行，与 Handler 对同一时刻消息的处理顺序一致
+    private final PriorityQueue<Entry<K>> heap = new PriorityQueue<>((a, b) -> {
+        int byDeadline = Long.compare(a.deadline, b.deadline);
+        return byDeadline != 0 ? byDeadline : Long.compare(a.sequence, b.sequence);
+    });
+    private final Map<K, Entry<K>> current = new HashMap<>();
+    private long nextSequence = 0;
+
+    /**
+     * 安排或重新安排该键的任务，之前的安排作废。
+     */
+    void schedule(K key, long deadline, Runnable action) {
+        Entry<K> entry = new Entry<>(key, deadline, nextSequence++, action);
+        current.put(key, entry);
+        heap.add(entry);
+        if (heap.size() > COMPACT_MIN_SIZE && heap.size() > current.size() * 4) {
+            heap.clear();
+            heap.addAll(current.values());
+        }
+    }
+
+    /**
+     * @return 该键此前是否有未到期的安排
+     */
+    boolean cancel(K key) {
+        return current.remove(key) != null;
+    }
+
+    boolean isScheduled(K key) {
+        return current.containsKey(key);
+    }
+
+    /**
+     * 该键的到期时刻；未安排返回 {@link #NONE}。
+     */
+    long getDeadline(K key) {
+        Entry<K> entry = current.get(key);
+        return entry != null ? entry.deadline : NONE;
+    }
+
+    /**
+     * 最早的到期时刻；队列为空返回 {@link #NONE}。
+     */
+    long nextDeadline() {
+        Entry<K> head = peekLive();
+        return head != null ? head.deadline : NONE;
+    }
+
+    /**
+     * 取出下一个已到期的任务，没有则返回 null。逐个取出而非一次取完，
+     * 前一个任务中取消或重新安排的键对之后的取出立即生效。
+     */
+    Runnable pollDue(long now) {
+        Entry<K> head = peekLive();
+        if (head == null || head.deadline > now) {
+            return null;
+        }
+        heap.poll();
+        current.remove(head.key);
+        return head.action;
+    }
+
+    void clear() {
+        heap.clear();
+        current.clear();
+    }
+
+    int size() {
+        return current.size();
+    }
+
+    /** 堆中条目数（含尚未丢弃的作废条目），仅供测试观察。 */
+    int heapSize() {
+        return heap.size();
+    }
+
+    private Entry<K> peekLive() {
+        Entry<K> head = heap.peek();
+        while (head != null && current.get(head.key) != head) {
+            heap.poll();
+            head = heap.peek();
+        }
+        return head;
+    }
+}
@@ -0,0 +1,91 @@
+package com.book.mask.floating;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.util.Log;
+
+import com.book.mask.constant.Const;
+
+/**
+ * 以 AlarmManager 兜住最近一个按墙钟到期的触发。Handler 的延时按 uptime 计，深度休眠期间不走，
+ * 进程被杀后也随之丢失；这里始终只登记一个闹钟，指向最近的到期时刻，到期后经
+ * {@link DeadlineAlarmReceiver} 送回 {@link FloatService}，由 {@link TriggerScheduler} 对账补发。
+ * <p>
+ * 闹钟类型为 RTC（不唤醒设备）：息屏期间遮罩无需显示，闹钟会在设备下次被唤醒（通常是用户亮屏）时投递，
+ * 既不额外耗电，也保证用户回到前台时到期的触发已经补上。系统允许时用精确闹钟，否则用带窗口的非精确闹钟。
+ */
+final class DeadlineScheduler {
+    private static final String TAG = "DeadlineScheduler";
+    static final String ACTION_DEADLINE = "com.book.mask.action.DEADLINE";
+
+    private final Context context;
+    private final AlarmManager alarmManager;
+    private PendingIntent pendingIntent;
+    // 当前登记的闹钟时刻；未登记为 NONE
+    private long registeredAt = DeadlineQueue.NONE;
+
+    DeadlineScheduler(Context context) {
+        this.context = context.getApplicationContext() != null
+                ? context.getApplicationContext() : context;
+        this.alarmManager = (AlarmManager) this.context.getSystemService(Context.ALARM_SERVICE);
+    }
+
+    /**
+     * 把闹钟移到新的最近到期时刻；传入 NONE 取消。时刻不变时不重复登记。
+     */
+    void update(long wallDeadline) {
+        if (wallDeadline == registeredAt || alarmManager == null) {
+            return;
+        }
+        if (wallDeadline == DeadlineQueue.NONE) {
+            cancel();
+            return;
+        }
+        try {
+            if (canScheduleExact()) {
+                alarmManager.setExact(AlarmManager.RTC, wallDeadline, getPendingIntent());
+            } else {
+                alarmManager.setWindow(AlarmManager.RTC, wallDeadline,
+                        Const.DEADLINE_ALARM_WINDOW_MS, getPendingIntent());
+            }
+            registeredAt = wallDeadline;
+            Log.d(TAG, "登记到期闹钟，距今 "
+                    + (wallDeadline - System.currentTimeMillis()) + "ms"
+                    + (canScheduleExact() ? "（精确）" : "（窗口 " + Const.DEADLINE_ALARM_WINDOW_MS + "ms）"));
+        } catch (SecurityException e) {
+            Log.w(TAG, "登记到期闹钟失败，仅依赖 Handler 与亮屏对账", e);
+            registeredAt = DeadlineQueue.NONE;
+        }
+    }
+
+    void cancel() {
+        if (alarmManager != null && registeredAt != DeadlineQueue.NONE) {
+            alarmManager.cancel(getPendingIntent());
+        }
+        registeredAt = DeadlineQueue.NONE;
+    }
+
+    /**
+     * 闹钟已投递：登记的时刻作废，由对账后的 update 重新登记下一个。
+     */
+    void onAlarmDelivered() {
+        registeredAt = DeadlineQueue.NONE;
+    }
+
+    private boolean canScheduleExact() {
+        return Build.VERSION.SDK_INT < Build.VERSION_CODES.S || alarmManager.canScheduleExactAlarms();
+    }
+
+    private PendingIntent getPendingIntent() {
+        if (pendingIntent == null) {
+            Intent intent = new Intent(context, DeadlineAlarmReceiver.class)
+                    .setAction(ACTION_DEADLINE);
+            pendingIntent = PendingIntent.getBroadcast(context, 0, intent,
+                    PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+        }
+        return pendingIntent;
+    }
+}
@@ -0,0 +1,55 @@
+package com.book.mask.floating;
+
+/**
+ * 交给 {@link DebouncePolicy} 学习的一轮内容变化。
+ * <p>
+ * 连续变化超过 max wait 时检测会被强制提前执行，但这一轮其实还没结束。若按检测切分，学到的时长
+ * 总被截断在 max wait 以内，自适应策略的 max wait 只会越学越短。这里跨过强制检测继续累计，
+ * 直到页面安静超过 debounce、或切到别的 APP，才把完整的一轮交给策略。只在主线程调用。
+ */
+final class DebounceLearningBurst {
+    private String packageName;
+    private long startedAt = 0;
+    private long lastEventAt = 0;
+    private int events = 0;
+
+    /**
+     * 一次内容变化事件，须在 {@link DebouncePolicy#onContentEvent} 之前调用，
+     * 先按此前的 debounce 结算已因安静而结束的一轮。
+     */
+    void onContentEvent(DebouncePolicy policy, String packageName, long now) {
+        if (events > 0 && (!packageName.equals(this.packageName)
+                || now - lastEventAt > policy.getDebounceMillis(this.packageName))) {
+            finish(policy);
+        }
+        if (events == 0) {
+            this.packageName = packageName;
+            startedAt = now;
+        }
+        lastEventAt = now;
+        events++;
+    }
+
+    /**
+     * 检测已提交。forced 表示 max wait 到期强制执行：本轮尚未结束，继续累计。
+     */
+    void onCheckSubmitted(DebouncePolicy policy, boolean forced) {
+        if (!forced) {
+            finish(policy);
+        }
+    }
+
+    private void reset() {
+        packageName = null;
+        startedAt = 0;
+        lastEventAt = 0;
+        events = 0;
+    }
+
+    private void finish(DebouncePolicy policy) {
+        if (events > 0) {
+            policy.onBurstFinished(packageName, startedAt, lastEventAt, events);
+        }
+        reset();
+    }
+}
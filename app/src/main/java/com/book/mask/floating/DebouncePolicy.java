@@ -0,0 +1,26 @@
+package com.book.mask.floating;
+
+/**
+ * 页面内容检测的防抖策略：决定一轮连续内容变化结束后等多久再扫描（debounce），
+ * 以及连续变化不停时最多等多久强制扫描一次（max wait）。只在主线程调用。
+ */
+interface DebouncePolicy {
+    /** 策略名，写入统计日志以便对比不同策略。 */
+    String getName();
+
+    /** 目标 APP 每收到一次内容变化事件调用一次。 */
+    void onContentEvent(String packageName, long now);
+
+    long getDebounceMillis(String packageName);
+
+    long getMaxWaitMillis(String packageName);
+
+    /**
+     * 一轮变化结束（页面安静超过 debounce）时调用。被 max wait 强制提前的检测不算结束，
+     * burstStartedAt 到 lastEventAt 是整轮未截断的时长。
+     *
+     * @param eventCount 本轮收到的内容变化事件数
+     */
+    void onBurstFinished(String packageName, long burstStartedAt, long lastEventAt,
+                         int eventCount);
+}
@@ -0,0 +1,59 @@
+package com.book.mask.floating;
+
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 按 APP 统计内容检测防抖的效果，用于对比不同 {@link DebouncePolicy}：
+ * 每轮事件数、从变化开始到提交检测的耗时（出结论耗时）、最后一个事件之后多等的时长，
+ * 以及每秒检测次数。每累计若干轮输出一行。只在主线程调用。
+ */
+final class DebounceStats {
+    private static final String TAG = "AppStateManager";
+
+    private static final class AppStats {
+        private int bursts;
+        private long events;
+        private long timeToVerdictMs;
+        private long settleDelayMs;
+        private long firstBurstAt;
+    }
+
+    private final int logInterval;
+    private final Map<String, AppStats> stats = new HashMap<>();
+
+    DebounceStats(int logInterval) {
+        this.logInterval = logInterval;
+    }
+
+    void onBurstFinished(DebouncePolicy policy, String packageName, long burstStartedAt,
+                         long lastEventAt, int eventCount, long checkAt) {
+        AppStats appStats = stats.get(packageName);
+        if (appStats == null) {
+            appStats = new AppStats();
+            appStats.firstBurstAt = burstStartedAt;
+            stats.put(packageName, appStats);
+        }
+        appStats.bursts++;
+        appStats.events += eventCount;
+        appStats.timeToVerdictMs += checkAt - burstStartedAt;
+        appStats.settleDelayMs += lastEventAt > 0 ? checkAt - lastEventAt : 0;
+        if (appStats.bursts < logInterval) {
+            return;
+        }
+
+        long windowMs = Math.max(1, checkAt - appStats.firstBurstAt);
+        Log.d(TAG, "防抖统计: policy=" + policy.getName()
+                + ", APP=" + packageName
+                + ", bursts=" + appStats.bursts
+                + ", avgEvents=" + appStats.events / appStats.bursts
+                + ", avgTimeToVerdictMs=" + appStats.timeToVerdictMs / appStats.bursts
+                + ", avgSettleDelayMs=" + appStats.settleDelayMs / appStats.bursts
+                + ", checksPerMinute=" + appStats.bursts * 60000L / windowMs
+                + ", debounceMs=" + policy.getDebounceMillis(packageName)
+                + ", maxWaitMs=" + policy.getMaxWaitMillis(packageName));
+        stats.remove(packageName);
+    }
+}
@@ -0,0 +1,163 @@
+package com.book.mask.floating;
+
+import android.view.accessibility.AccessibilityEvent;
+
+import com.book.mask.constant.Const;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 无障碍事件的入口闸门，位于 {@link FloatService#onAccessibilityEvent} 与
+ * {@link AppStateManager#handleAccessibilityEvent} 之间。
+ * <ul>
+ *   <li>窗口状态变化、点击事件总是放行，它们决定进出 APP 与页面切换；</li>
+ *   <li>内容变化事件先看包名，不是当前目标 APP 的直接跳过，不做任何字符串比较之外的工作；</li>
+ *   <li>目标 APP 的内容变化按包名令牌桶限流，超出预算的事件丢弃，并进入降级：
+ *       由 AppStateManager 按固定间隔全量扫描，直到一段时间内不再超预算。</li>
+ * </ul>
+ * 同时累计放行 / 跳过 / 限流次数与降级次数，和扫描线程的 {@link ScanLoadMetrics} 一起定期汇总。
+ * 只在主线程调用。
+ */
+final class EventRateGovernor {
+    enum Verdict {
+        // 交给 AppStateManager 处理
+        PASS,
+        // 非当前目标 APP 的内容变化，直接跳过
+        NOT_TARGET,
+        // 超出该 APP 的事件预算，丢弃并由降级扫描兜底
+        THROTTLED
+    }
+
+    private static final class Bucket {
+        private double tokens = Const.EVENT_GOVERNOR_BURST;
+        private long refilledAt;
+        private long throttledAt;
+        private boolean degraded;
+    }
+
+    private final Map<String, Bucket> buckets = new HashMap<>();
+    private long passed;
+    private long skippedNotTarget;
+    private long throttled;
+    private long degradations;
+
+    private long reportedAt;
+    private long reportedScans;
+    private long reportedScanCpuMs;
+
+    /**
+     * @param targetPackage 当前目标 APP 的包名；不在目标 APP 内时为 null
+     */
+    Verdict admit(int eventType, String packageName, String targetPackage, long now) {
+        if (eventType != AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED) {
+            passed++;
+            return Verdict.PASS;
+        }
+        if (packageName == null || !packageName.equals(targetPackage)) {
+            skippedNotTarget++;
+            return Verdict.NOT_TARGET;
+        }
+
+        Bucket bucket = buckets.get(packageName);
+        if (bucket == null) {
+            bucket = new Bucket();
+            bucket.refilledAt = now;
+            buckets.put(packageName, bucket);
+        }
+        refill(bucket, now);
+        if (bucket.degraded && now - bucket.throttledAt >= Const.EVENT_GOVERNOR_DEGRADE_HOLD_MS) {
+            bucket.degraded = false;
+        }
+        if (bucket.tokens >= 1) {
+            bucket.tokens -= 1;
+            passed++;
+            return Verdict.PASS;
+        }
+
+        throttled++;
+        bucket.throttledAt = now;
+        if (!bucket.degraded) {
+            bucket.degraded = true;
+            degradations++;
+        }
+        return Verdict.THROTTLED;
+    }
+
+    /**
+     * 该 APP 最近一次被限流后，降级保持时长内仍视为降级中。
+     */
+    boolean isDegraded(String packageName, long now) {
+        Bucket bucket = buckets.get(packageName);
+        return bucket != null && bucket.degraded
+                && now - bucket.throttledAt < Const.EVENT_GOVERNOR_DEGRADE_HOLD_MS;
+    }
+
+    long getPassed() {
+        return passed;
+    }
+
+    long getSkippedNotTarget() {
+        return skippedNotTarget;
+    }
+
+    long getThrottled() {
+        return throttled;
+    }
+
+    long getDegradations() {
+        return degradations;
+    }
+
+    /**
+     * 距上次汇总已满 {@link Const#EVENT_GOVERNOR_REPORT_INTERVAL_MS} 时返回 true。
+     */
+    boolean shouldReport(long now) {
+        if (reportedAt == 0) {
+            reportedAt = now;
+            return false;
+        }
+        return now - reportedAt >= Const.EVENT_GOVERNOR_REPORT_INTERVAL_MS;
+    }
+
+    /**
+     * 汇总累计计数与上次汇总以来的扫描负载（每分钟扫描次数、扫描线程 CPU 耗时），不影响下次汇总的统计窗口。
+     */
+    String buildReport(long now, ScanLoadMetrics scanMetrics) {
+        long scans = scanMetrics != null ? scanMetrics.getScans() : 0;
+        long scanCpuMs = scanMetrics != null ? scanMetrics.getCpuTimeMs() : 0;
+        long windowMs = reportedAt == 0 ? 0 : Math.max(1, now - reportedAt);
+        long scanDelta = scans - reportedScans;
+        long cpuDelta = scanCpuMs - reportedScanCpuMs;
+
+        return "passed=" + passed
+                + ", skippedNotTarget=" + skippedNotTarget
+                + ", throttled=" + throttled
+                + ", degradations=" + degradations
+                + ", scansPerMinute=" + (windowMs == 0 ? 0 : scanDelta * 60000L / windowMs)
+                + ", scanCpuMsPerMinute=" + (windowMs == 0 ? 0 : cpuDelta * 60000L / windowMs)
+                + ", totalScans=" + scans
+                + ", totalScanCpuMs=" + scanCpuMs;
+    }
+
+    /**
+     * 输出定期汇总并开始新的统计窗口。
+     */
+    String report(long now, ScanLoadMetrics scanMetrics) {
+        String report = buildReport(now, scanMetrics);
+        reportedAt = now;
+        reportedScans = scanMetrics != null ? scanMetrics.getScans() : 0;
+        reportedScanCpuMs = scanMetrics != null ? scanMetrics.getCpuTimeMs() : 0;
+        return report;
+    }
+
+    private static void refill(Bucket bucket, long now) {
+        long elapsed = now - bucket.refilledAt;
+        if (elapsed <= 0) {
+            return;
+        }
+        bucket.tokens = Math.min(Const.EVENT_GOVERNOR_BURST,
+                bucket.tokens + elapsed * Const.EVENT_GOVERNOR_EVENTS_PER_SECOND / 1000.0);
+        bucket.refilledAt = now;
+    }
+}
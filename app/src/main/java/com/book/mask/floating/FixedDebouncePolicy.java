@@ -0,0 +1,32 @@
+package com.book.mask.floating;
+
+import com.book.mask.constant.Const;
+
+/**
+ * 默认策略：所有 APP 使用 {@link Const#CONTENT_CHECK_DEBOUNCE_MS} 与 {@link Const#CONTENT_CHECK_MAX_WAIT_MS}。
+ */
+final class FixedDebouncePolicy implements DebouncePolicy {
+    @Override
+    public String getName() {
+        return "fixed";
+    }
+
+    @Override
+    public void onContentEvent(String packageName, long now) {
+    }
+
+    @Override
+    public long getDebounceMillis(String packageName) {
+        return Const.CONTENT_CHECK_DEBOUNCE_MS;
+    }
+
+    @Override
+    public long getMaxWaitMillis(String packageName) {
+        return Const.CONTENT_CHECK_MAX_WAIT_MS;
+    }
+
+    @Override
+    public void onBurstFinished(String packageName, long burstStartedAt, long lastEventAt,
+                                int eventCount) {
+    }
+}
@@ -1,6 +1,7 @@
 package com.book.mask.floating;
 
 import android.graphics.PixelFormat;
+import android.os.CancellationSignal;
 import android.util.DisplayMetrics;
 import android.util.Log;
 import android.view.Gravity;
@@ -8,8 +9,13 @@ import android.view.WindowManager;
 import android.view.accessibility.AccessibilityNodeInfo;
 
 import com.book.mask.config.InputMethodPackageManager;
+import com.book.mask.config.KeywordMatcher;
 import com.book.mask.personalize.AppSettingsManager;
 
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+
 
 public class FloatHelper {
     private static final String TAG = "FloatingAccessibility";
@@ -47,15 +53,338 @@ public class FloatHelper {
 //        "com.bbk.inputmethod"       // vivo输入法（旧版本）
     }
 
-    static boolean findTargetText(AccessibilityNodeInfo node, String targetText,
-                                  TextScanDiagnostics diagnostics) {
-        return findTargetTextInNode(node, targetText, 0, diagnostics);
+    // 每访问多少个节点读取一次时钟与取消标记，避免逐节点检查的额外开销
+    private static final int TIME_CHECK_INTERVAL = 32;
+
+    /**
+     * 显式栈的一帧：节点、深度以及下一个待访问的子节点下标。
+     * 子节点按需逐个 getChild，命中后不会再为剩余兄弟节点发起 binder 调用。
+     */
+    private static final class ScanFrame {
+        private final ScanNode node;
+        private final int depth;
+        private final int childCount;
+        private int nextChildIndex;
+
+        private ScanFrame(ScanNode node, int depth) {
+            this.node = node;
+            this.depth = depth;
+            this.childCount = node.getChildCount();
+        }
+    }
+
+    static TextScanResult findTargetText(AccessibilityNodeInfo root, KeywordMatcher matcher,
+                                         TextScanBudget budget,
+                                         CancellationSignal cancellationSignal,
+                                         TextScanDiagnostics diagnostics) {
+        return findTargetText(AccessibilityScanNode.wrap(root), matcher, budget,
+                cancellationSignal, diagnostics);
+    }
+
+    /**
+     * 以显式栈先序遍历节点树查找目标文字，遍历顺序与原递归实现一致。
+     * 访问节点数或耗时超出 budget 时提前结束，返回 {@link TextScanResult.Outcome#BUDGET_EXHAUSTED}；
+     * cancellationSignal 被取消时返回 {@link TextScanResult.Outcome#CANCELLED}（可为 null）。
+     * 根节点由调用方回收，遍历中取得的子节点均在此处回收。
+     */
+    static TextScanResult findTargetText(ScanNode root, KeywordMatcher matcher,
+                                         TextScanBudget budget,
+                                         CancellationSignal cancellationSignal,
+                                         TextScanDiagnostics diagnostics) {
+        if (root == null) {
+            return new TextScanResult(TextScanResult.Outcome.NOT_FOUND, 0);
+        }
+
+        // 单次扫描内的耗时预算只需单调时钟；用 System.nanoTime 使离线回放也能在 JVM 上运行
+        long deadlineNanos = System.nanoTime() + budget.getMaxNanos();
+        ArrayDeque<ScanFrame> stack = new ArrayDeque<>();
+        int visitedNodes = 0;
+        try {
+            visitedNodes++;
+            if (visitNode(root, matcher, 0, diagnostics)) {
+                return new TextScanResult(TextScanResult.Outcome.MATCHED, visitedNodes,
+                        new int[0], root.getViewIdResourceName());
+            }
+            stack.push(new ScanFrame(root, 0));
+
+            while (!stack.isEmpty()) {
+                ScanFrame frame = stack.peek();
+                if (frame.nextChildIndex >= frame.childCount) {
+                    stack.pop();
+                    if (frame.node != root) {
+                        frame.node.recycle();
+                    }
+                    continue;
+                }
+
+                ScanNode child = frame.node.getChild(frame.nextChildIndex++);
+                if (child == null) {
+                    continue;
+                }
+
+                boolean checkpoint = visitedNodes % TIME_CHECK_INTERVAL == 0;
+                if (checkpoint && cancellationSignal != null && cancellationSignal.isCanceled()) {
+                    child.recycle();
+                    return new TextScanResult(TextScanResult.Outcome.CANCELLED, visitedNodes);
+                }
+                if (visitedNodes >= budget.getMaxNodes()
+                        || (checkpoint && System.nanoTime() > deadlineNanos)) {
+                    child.recycle();
+                    if (diagnostics != null) {
+                        diagnostics.onBudgetExhausted();
+                    }
+                    return new TextScanResult(
+                            TextScanResult.Outcome.BUDGET_EXHAUSTED, visitedNodes);
+                }
+
+                visitedNodes++;
+                int childDepth = frame.depth + 1;
+                if (visitNode(child, matcher, childDepth, diagnostics)) {
+                    String hitViewId = child.getViewIdResourceName();
+                    child.recycle();
+                    return new TextScanResult(TextScanResult.Outcome.MATCHED, visitedNodes,
+                            hitPathOf(stack), hitViewId);
+                }
+                stack.push(new ScanFrame(child, childDepth));
+            }
+            return new TextScanResult(TextScanResult.Outcome.NOT_FOUND, visitedNodes);
+        } finally {
+            // 提前结束（命中 / 预算耗尽 / 取消 / 异常）时释放栈中尚未回收的子节点
+            while (!stack.isEmpty()) {
+                ScanFrame frame = stack.pop();
+                if (frame.node != root) {
+                    frame.node.recycle();
+                }
+            }
+        }
+    }
+
+    /**
+     * 栈中自底（扫描起点）向顶每一帧刚取出的子节点下标，即命中节点的路径。
+     */
+    private static int[] hitPathOf(ArrayDeque<ScanFrame> stack) {
+        int[] path = new int[stack.size()];
+        int i = 0;
+        Iterator<ScanFrame> frames = stack.descendingIterator();
+        while (frames.hasNext()) {
+            path[i++] = frames.next().nextChildIndex - 1;
+        }
+        return path;
     }
 
-    private static boolean findTargetTextInNode(AccessibilityNodeInfo node, String targetText,
-                                                int depth, TextScanDiagnostics diagnostics) {
-        if (node == null) return false;
+    /**
+     * 只检查 node 自身的文字，不下探子节点；用于仅文字 / 内容描述变化的节点。
+     */
+    static boolean matchesNode(AccessibilityNodeInfo node, KeywordMatcher matcher) {
+        return matchesNode(AccessibilityScanNode.wrap(node), matcher);
+    }
+
+    static boolean matchesNode(ScanNode node, KeywordMatcher matcher) {
+        return node != null && visitNode(node, matcher, 0, null);
+    }
 
+    static boolean probePath(AccessibilityNodeInfo root, int[] path, String expectedViewId,
+                             KeywordMatcher matcher) {
+        return probePath(AccessibilityScanNode.wrap(root), path, expectedViewId, matcher);
+    }
+
+    /**
+     * 沿子节点下标路径从 root 逐层取子节点，判断路径末端的节点是否仍命中关键词；
+     * 开销为 O(路径深度) 次 getChild。路径中途断开（节点已消失）返回 false。
+     * expectedViewId 非空时末端节点的 viewIdResourceName 也须一致，避免列表复用后同一下标换成了别的控件。
+     */
+    static boolean probePath(ScanNode root, int[] path, String expectedViewId,
+                             KeywordMatcher matcher) {
+        if (root == null || path == null) {
+            return false;
+        }
+        ScanNode current = root;
+        try {
+            for (int index : path) {
+                if (index < 0 || index >= current.getChildCount()) {
+                    return false;
+                }
+                ScanNode child = current.getChild(index);
+                if (current != root) {
+                    current.recycle();
+                }
+                current = child;
+                if (current == null) {
+                    return false;
+                }
+            }
+            if (expectedViewId != null
+                    && !expectedViewId.equals(current.getViewIdResourceName())) {
+                return false;
+            }
+            return visitNode(current, matcher, path.length, null);
+        } finally {
+            if (current != null && current != root) {
+                current.recycle();
+            }
+        }
+    }
+
+    /**
+     * 按 viewId 查找仍命中关键词的节点（布局层级变化但控件仍在时路径会失效），
+     * 找到时返回其新的子节点下标路径，否则返回 null。
+     */
+    static int[] relocateByViewId(AccessibilityNodeInfo root, String viewId,
+                                  KeywordMatcher matcher, int maxDepth) {
+        return relocateByViewId(AccessibilityScanNode.wrap(root), viewId, matcher, maxDepth);
+    }
+
+    static int[] relocateByViewId(ScanNode root, String viewId, KeywordMatcher matcher,
+                                  int maxDepth) {
+        if (root == null || viewId == null) {
+            return null;
+        }
+        int[] path = null;
+        for (ScanNode candidate : root.findByViewId(viewId)) {
+            if (path == null && matchesNode(candidate, matcher)) {
+                path = pathFromRoot(candidate, maxDepth);
+            }
+            candidate.recycle();
+        }
+        return path;
+    }
+
+    static TextScanResult findByViewIds(AccessibilityNodeInfo root, String[] viewIds,
+                                        KeywordMatcher matcher) {
+        return findByViewIds(AccessibilityScanNode.wrap(root), viewIds, matcher);
+    }
+
+    /**
+     * 按配置的控件 ID 查询关键词节点，查找在目标 APP 进程内完成，只需每个 ID 一次跨进程调用。
+     * 查到的控件中有命中关键词的返回 MATCHED；查到了控件但都未命中返回 NOT_FOUND；
+     * 所有 ID 都查不到控件（未上报 ID、布局已变）返回 null，由调用方回退遍历。
+     */
+    static TextScanResult findByViewIds(ScanNode root, String[] viewIds, KeywordMatcher matcher) {
+        if (root == null || viewIds == null || viewIds.length == 0) {
+            return null;
+        }
+        int foundNodes = 0;
+        boolean matched = false;
+        String hitViewId = null;
+        for (String viewId : viewIds) {
+            for (ScanNode node : root.findByViewId(viewId)) {
+                foundNodes++;
+                if (!matched && matchesNode(node, matcher)) {
+                    matched = true;
+                    hitViewId = viewId;
+                }
+                node.recycle();
+            }
+            if (matched) {
+                break;
+            }
+        }
+        if (foundNodes == 0) {
+            return null;
+        }
+        return matched
+                ? new TextScanResult(TextScanResult.Outcome.MATCHED, foundNodes, null, hitViewId)
+                : new TextScanResult(TextScanResult.Outcome.NOT_FOUND, foundNodes);
+    }
+
+    static TextScanResult findByText(AccessibilityNodeInfo root, KeywordMatcher matcher,
+                                     int maxKeywords) {
+        return findByText(AccessibilityScanNode.wrap(root), matcher, maxKeywords);
+    }
+
+    /**
+     * 按关键词文字查询节点，每个关键词一次跨进程调用。系统按"包含、忽略大小写"查找，
+     * 结果再用 matcher 复核精确 / 包含规则。自绘或 Compose 页面可能查不到节点，
+     * 因此只有命中是可信的：未命中返回 null，由调用方回退遍历。
+     */
+    static TextScanResult findByText(ScanNode root, KeywordMatcher matcher, int maxKeywords) {
+        List<String> keywords = matcher.getKeywords();
+        if (root == null || keywords.isEmpty() || keywords.size() > maxKeywords) {
+            return null;
+        }
+        int foundNodes = 0;
+        TextScanResult result = null;
+        for (String keyword : keywords) {
+            for (ScanNode node : root.findByText(keyword)) {
+                foundNodes++;
+                if (result == null && matchesNode(node, matcher)) {
+                    result = new TextScanResult(TextScanResult.Outcome.MATCHED, foundNodes,
+                            null, node.getViewIdResourceName());
+                }
+                node.recycle();
+            }
+            if (result != null) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 沿 getParent 链回溯出 node 相对活动窗口根节点的子节点下标路径，供下次按路径探测。
+     * 每层需在父节点的子节点中定位自身，只在命中时调用；超过 maxDepth 或定位失败返回 null。
+     */
+    static int[] pathFromRoot(AccessibilityNodeInfo node, int maxDepth) {
+        return pathFromRoot(AccessibilityScanNode.wrap(node), maxDepth);
+    }
+
+    /**
+     * 同 {@link #pathFromRoot(AccessibilityNodeInfo, int)}；node 本身不会被回收。
+     */
+    static int[] pathFromRoot(ScanNode node, int maxDepth) {
+        if (node == null) {
+            return null;
+        }
+        int[] reversed = new int[maxDepth];
+        int depth = 0;
+        ScanNode current = node;
+        try {
+            ScanNode parent;
+            while ((parent = current.getParent()) != null) {
+                if (depth >= maxDepth) {
+                    parent.recycle();
+                    return null;
+                }
+                int index = indexInParent(parent, current);
+                if (current != node) {
+                    current.recycle();
+                }
+                current = parent;
+                if (index < 0) {
+                    return null;
+                }
+                reversed[depth++] = index;
+            }
+        } finally {
+            if (current != node) {
+                current.recycle();
+            }
+        }
+
+        int[] path = new int[depth];
+        for (int i = 0; i < depth; i++) {
+            path[i] = reversed[depth - 1 - i];
+        }
+        return path;
+    }
+
+    private static int indexInParent(ScanNode parent, ScanNode node) {
+        for (int i = 0; i < parent.getChildCount(); i++) {
+            ScanNode sibling = parent.getChild(i);
+            if (sibling == null) {
+                continue;
+            }
+            boolean same = sibling.equals(node);
+            sibling.recycle();
+            if (same) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean visitNode(ScanNode node, KeywordMatcher matcher,
+                                     int depth, TextScanDiagnostics diagnostics) {
         // 排查模式下逐节点判定可见性以统计诊断信息；正常模式跳过这次开销，只在命中节点再判可见性
         boolean visible = diagnostics != null && node.isVisibleToUser();
         if (diagnostics != null) {
@@ -65,31 +394,12 @@ public class FloatHelper {
         CharSequence text = node.getText();
         text = !isEmpty(text) ? text : node.getContentDescription();
 
-        if (!isEmpty(text) && targetText.contains(text.toString())) {
-            if (diagnostics == null) {
-                visible = node.isVisibleToUser();
-            } else {
+        if (matcher.matches(text)) {
+            if (diagnostics != null) {
                 diagnostics.onTargetHit(depth, visible);
             }
             return true;
-//            if (visible) {
-//                Log.d(TAG, "找到目标文本: " + targetText + " (可见)");
-//                return true;
-//            }
-//            Log.d(TAG, "找到目标文本: " + targetText + " (不可见，忽略)");
         }
-
-        for (int i = 0; i < node.getChildCount(); i++) {
-            AccessibilityNodeInfo child = node.getChild(i);
-            if (child != null) {
-                if (findTargetTextInNode(child, targetText, depth + 1, diagnostics)) {
-                    child.recycle();
-                    return true;
-                }
-                child.recycle();
-            }
-        }
-
         return false;
     }
 
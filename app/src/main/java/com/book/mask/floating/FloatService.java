@@ -5,6 +5,7 @@ import android.accessibilityservice.AccessibilityServiceInfo;
 import android.content.Intent;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.WindowManager;
 import android.view.accessibility.AccessibilityEvent;
@@ -17,6 +18,7 @@ import com.book.mask.personalize.RelaxManager;
 import com.book.mask.personalize.AppSettingsManager;
 import com.book.mask.personalize.LeisureTimeManager;
 import com.book.mask.config.CustomApp;
+import com.book.mask.config.SettingsRepository;
 import com.book.mask.network.DeviceInfoReporter;
 import com.book.mask.network.TextFetcher;
 import com.book.mask.util.DateUtils;
@@ -35,6 +37,7 @@ public class FloatService extends AccessibilityService
     // 核心管理器
     private FloatingWindowManager floatingWindowManager;
     private AppStateManager appStateManager;
+    private final EventRateGovernor eventGovernor = new EventRateGovernor();
     
     // 保活管理器
     private ServiceKeepAliveManager keepAliveManager;
@@ -71,9 +74,13 @@ public class FloatService extends AccessibilityService
         
         // 配置无障碍服务
         AccessibilityServiceInfo info = new AccessibilityServiceInfo();
-        info.eventTypes = AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED | AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED;
+        info.eventTypes = AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED
+                | AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED
+                | AccessibilityEvent.TYPE_VIEW_CLICKED;
         info.feedbackType = AccessibilityServiceInfo.FEEDBACK_GENERIC;
-        info.flags = AccessibilityServiceInfo.FLAG_INCLUDE_NOT_IMPORTANT_VIEWS;
+        // 上报 viewIdResourceName：按控件 ID 查询与关键词位置缓存都依赖它
+        info.flags = AccessibilityServiceInfo.FLAG_INCLUDE_NOT_IMPORTANT_VIEWS
+                | AccessibilityServiceInfo.FLAG_REPORT_VIEW_IDS;
         setServiceInfo(info);
         
         // 初始化设置管理器
@@ -105,11 +112,58 @@ public class FloatService extends AccessibilityService
 
     @Override
     public void onAccessibilityEvent(AccessibilityEvent event) {
-        if (appStateManager != null) {
+        if (appStateManager == null) {
+            return;
+        }
+        long now = SystemClock.elapsedRealtime();
+        CharSequence packageName = event.getPackageName();
+        EventRateGovernor.Verdict verdict = eventGovernor.admit(event.getEventType(),
+                packageName != null ? packageName.toString() : null,
+                appStateManager.getCurrentActivePackageName(), now);
+        if (eventGovernor.shouldReport(now)) {
+            Log.d(TAG, "事件限流与扫描负载: "
+                    + eventGovernor.report(now, appStateManager.getScanLoadMetrics()));
+        }
+        if (verdict == EventRateGovernor.Verdict.THROTTLED) {
+            appStateManager.onContentEventsThrottled();
+            return;
+        }
+        if (verdict == EventRateGovernor.Verdict.PASS) {
             appStateManager.handleAccessibilityEvent(event);
         }
     }
 
+    /**
+     * 前台 APP 兜底轮询的唤醒统计，服务未运行时返回 null。
+     */
+    public static String getPollReport() {
+        if (instance == null || instance.appStateManager == null) {
+            return null;
+        }
+        return instance.appStateManager.getPollReport();
+    }
+
+    /**
+     * 事件限流与扫描负载的当前汇总，服务未运行时返回 null。
+     */
+    public static String getEventGovernorReport() {
+        if (instance == null || instance.appStateManager == null) {
+            return null;
+        }
+        return instance.eventGovernor.buildReport(SystemClock.elapsedRealtime(),
+                instance.appStateManager.getScanLoadMetrics());
+    }
+
+    /**
+     * 悬浮窗各显示路径的逐阶段耗时直方图，服务未运行时返回 null。只在主线程调用。
+     */
+    public static String getLatencyReport() {
+        if (instance == null || instance.floatingWindowManager == null) {
+            return null;
+        }
+        return instance.floatingWindowManager.getLatencyReport();
+    }
+
     /**
      * 记录答题验证开始时间
      */
@@ -173,6 +227,15 @@ public class FloatService extends AccessibilityService
                 floatingWindowManager.showFloatingWindow(app);
             }
             
+            @Override
+            public void onTriggerControlClicked(CustomApp app) {
+                // 暖窗口（页面切换暂停中）同样需要经 showFloatingWindow 恢复，不能只看是否已挂载
+                if (floatingWindowManager.isSuspendedForPageTransition()
+                        || !floatingWindowManager.isFloatingWindowVisible()) {
+                    floatingWindowManager.showFloatingWindow(app);
+                }
+            }
+
             @Override
             public void onAppLeft(CustomApp app) {
                 floatingWindowManager.hideFloatingWindow();
@@ -204,7 +267,8 @@ public class FloatService extends AccessibilityService
         floatingWindowManager = new FloatingWindowManager(this, windowManager, 
                                                         appSettingsManager, leisureTimeManager,
                                                         relaxManager,
-                                                        textFetcher, handler);
+                                                        textFetcher, handler,
+                                                        appStateManager.getTriggers());
         floatingWindowManager.setOnFloatingWindowListener(new FloatingWindowManager.OnFloatingWindowListener() {
             @Override
             public void onChallengeCorrect() {
@@ -357,6 +421,8 @@ public class FloatService extends AccessibilityService
             @Override
             public void onUserPresent() {
                 Log.d(TAG, "用户解锁设备，重新检查应用状态");
+                // 息屏期间 Handler 延时不走，先补发已到期的自动显示
+                appStateManager.reconcileDeadlines(false);
                 // 用户解锁后，重新检测当前是否在支持的APP
                 CustomApp currentActiveApp = Share.currentApp;
                 if (currentActiveApp != null) {
@@ -372,6 +438,20 @@ public class FloatService extends AccessibilityService
                 // AccessibilityService由系统管理，这里主要是记录日志
                 // 用户需要手动到设置中重新开启无障碍服务
             }
+
+            @Override
+            public void onScreenOff() {
+                if (appStateManager != null) {
+                    appStateManager.onScreenOff();
+                }
+            }
+
+            @Override
+            public void onScreenOn() {
+                if (appStateManager != null) {
+                    appStateManager.onScreenOn();
+                }
+            }
         });
         
         // 启动保活机制
@@ -423,13 +503,37 @@ public class FloatService extends AccessibilityService
         // 清理多APP状态
         Share.clearAllAppStates();
 
+        // 设置仓库中尚未落盘的写入立即写入
+        SettingsRepository.flushAll();
+
         Log.d(TAG, "AccessibilityService 已销毁");
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (floatingWindowManager != null) {
+            floatingWindowManager.onTrimMemory(level);
+        }
+    }
+
     public static boolean isServiceRunning() {
         return instance != null;
     }
 
+    /**
+     * 到期闹钟投递，见 {@link DeadlineScheduler}。
+     *
+     * @return 服务是否在运行并已处理
+     */
+    static boolean onDeadlineAlarm() {
+        if (instance == null || instance.appStateManager == null) {
+            return false;
+        }
+        instance.appStateManager.reconcileDeadlines(true);
+        return true;
+    }
+
     /**
      * 通知时间间隔设置已更新，立即应用新的间隔
      */
@@ -0,0 +1,107 @@
+package com.book.mask.floating;
+
+import android.content.ComponentCallbacks2;
+
+import com.book.mask.constant.Const;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 预先创建、尚未添加到 WindowManager 的悬浮窗 View，按最近使用的目标 APP 各保留一个，LRU 淘汰。
+ * <p>
+ * 已添加的暖窗口仍由 {@link WindowSuspensionState} 暂停复用（第一级）；暖窗口到期或悬浮窗被隐藏后，
+ * 再次显示时从这里取出现成的 View 直接 addView，省去 inflate（第二级）。容量按进程内存等级推出，
+ * 内存紧张时按 onTrimMemory 的级别收缩。只在主线程使用。
+ */
+final class FloatingViewPool<V> {
+    // accessOrder：迭代顺序从最久未用到最近使用
+    private final LinkedHashMap<String, V> views = new LinkedHashMap<>(4, 0.75f, true);
+    private final int capacity;
+
+    FloatingViewPool(int capacity) {
+        this.capacity = Math.max(0, capacity);
+    }
+
+    /**
+     * 按进程内存等级（MB，即 ActivityManager#getMemoryClass）推出池容量；低内存设备不预留。
+     */
+    static int capacityForMemoryClass(int memoryClassMb) {
+        return Math.max(0, Math.min(Const.FLOATING_VIEW_POOL_MAX_SIZE,
+                memoryClassMb / Const.FLOATING_VIEW_POOL_MEMORY_CLASS_PER_VIEW_MB));
+    }
+
+    /**
+     * 收到 onTrimMemory 后池中最多保留的数量：前台运行但内存偏低时只留最近一个，
+     * 内存严重不足或进程已进入后台 LRU 列表时全部释放。
+     */
+    static int sizeAfterTrim(int level, int currentSize) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            return 0;
+        }
+        if (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            return Math.min(currentSize, 1);
+        }
+        return currentSize;
+    }
+
+    /**
+     * 取出该 APP 的 View；没有时取最久未用的一个（布局相同，显示前会按新 APP 重新填充内容与几何）。
+     *
+     * @return 池为空时返回 null
+     */
+    V acquire(String packageName) {
+        V view = packageName != null ? views.remove(packageName) : null;
+        if (view != null || views.isEmpty()) {
+            return view;
+        }
+        Iterator<Map.Entry<String, V>> eldest = views.entrySet().iterator();
+        view = eldest.next().getValue();
+        eldest.remove();
+        return view;
+    }
+
+    /**
+     * 把可复用的 View 放回池中，记为该 APP 最近使用；超出容量时淘汰最久未用的。
+     *
+     * @return 是否已放入（容量为 0 时不保留）
+     */
+    boolean release(String packageName, V view) {
+        if (capacity == 0 || packageName == null || view == null) {
+            return false;
+        }
+        views.put(packageName, view);
+        trimTo(capacity);
+        return true;
+    }
+
+    boolean contains(String packageName) {
+        return views.containsKey(packageName);
+    }
+
+    /**
+     * 淘汰最久未用的 View 直到不超过 size。
+     *
+     * @return 淘汰的数量
+     */
+    int trimTo(int size) {
+        int evicted = 0;
+        Iterator<V> eldest = views.values().iterator();
+        while (views.size() > Math.max(0, size) && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+            evicted++;
+        }
+        return evicted;
+    }
+
+    int size() {
+        return views.size();
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+}
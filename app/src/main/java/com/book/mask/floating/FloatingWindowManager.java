@@ -1,10 +1,13 @@
 package com.book.mask.floating;
 
+import android.app.ActivityManager;
 import android.content.Context;
 import android.util.DisplayMetrics;
 import android.util.Log;
 import android.view.LayoutInflater;
+import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewTreeObserver;
 import android.view.WindowManager;
 import android.widget.Button;
 import android.widget.TextView;
@@ -31,6 +34,7 @@ import com.book.mask.util.DateUtils;
  */
 public class FloatingWindowManager {
     private static final String TAG = "FloatingWindowManager";
+    private static final String PAGE_TRANSITION_EXPIRY_TRIGGER = "page_transition_expiry";
     
     private Context context;
     private WindowManager windowManager;
@@ -43,12 +47,16 @@ public class FloatingWindowManager {
     private float suspensionOriginalWindowAlpha = 1.0f;
     private int suspensionOriginalWindowFlags = 0;
     private String pageTransitionTargetPackage;
-    private Runnable pageTransitionExpiryRunnable;
-    private long pageTransitionGeneration = 0;
     private CustomApp systemUiRecoveryApp;
     // 用户改目标后阻塞等待新提醒文字：待刷新期间悬浮窗展示占位文案，预取完成再替换
     private boolean awaitingGoalReminderRefresh = false;
     private int goalReminderPrefetchGeneration = 0;
+    // 预创建的悬浮窗 View；当前 View 展示过答题界面后不再放回，改为空闲时补一个新的
+    private final FloatingViewPool<View> viewPool;
+    private boolean floatingViewUsedForChallenge = false;
+    private String pendingPoolRefillPackage;
+    // 每次显示 / 恢复的决策→addView→首帧→首次触摸耗时，按显示路径统计
+    private final LatencyTracer latencyTracer = new LatencyTracer(Const.LATENCY_TRACE_WINDOW);
 
     private enum SuspensionMode {
         NONE,
@@ -63,6 +71,8 @@ public class FloatingWindowManager {
     private RelaxManager relaxManager;
     private TextFetcher textFetcher;
     private Handler handler;
+    // 与 AppStateManager 共用，悬浮窗的定时触发都登记在同一个队列里
+    private final TriggerScheduler triggers;
     
     // 回调接口
     private OnFloatingWindowListener listener;
@@ -83,7 +93,8 @@ public class FloatingWindowManager {
                                 AppSettingsManager appSettingsManager,
                                 LeisureTimeManager leisureTimeManager,
                                 RelaxManager relaxManager,
-                                TextFetcher textFetcher, Handler handler) {
+                                TextFetcher textFetcher, Handler handler,
+                                TriggerScheduler triggers) {
         this.context = context;
         this.windowManager = windowManager;
         this.appSettingsManager = appSettingsManager;
@@ -91,6 +102,13 @@ public class FloatingWindowManager {
         this.relaxManager = relaxManager;
         this.textFetcher = textFetcher;
         this.handler = handler;
+        this.triggers = triggers;
+        ActivityManager activityManager =
+                (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int poolCapacity = Const.FLOATING_VIEW_POOL_ENABLED && activityManager != null
+                ? FloatingViewPool.capacityForMemoryClass(activityManager.getMemoryClass()) : 0;
+        this.viewPool = new FloatingViewPool<>(poolCapacity);
+        Log.d(TAG, "悬浮窗 View 池容量: " + poolCapacity);
     }
     
     public void setOnFloatingWindowListener(OnFloatingWindowListener listener) {
@@ -110,22 +128,27 @@ public class FloatingWindowManager {
             return;
         }
         Log.d(TAG, "开始显示悬浮窗");
+        long decidedAt = SystemClock.elapsedRealtimeNanos();
         
-        // 移除现有悬浮窗（如果存在）
+        // 移除现有悬浮窗（如果存在），与隐藏时一样放回池中
         if (floatingView != null) {
             try {
                 windowManager.removeView(floatingView);
+                recycleFloatingView(floatingView);
             } catch (Exception e) {
                 Log.w(TAG, "移除旧悬浮窗时出错", e);
             }
             floatingView = null;
         }
         
-        // 创建悬浮窗布局
-        LayoutInflater inflater = LayoutInflater.from(context);
-        floatingView = inflater.inflate(R.layout.floating_window_layout, null);
-        currentWindowApp = currentActiveApp;
+        // 创建悬浮窗布局：优先取预创建的 View
         String currentPackageName = currentActiveApp == null ? null : currentActiveApp.getPackageName();
+        // 池非空时必定取到现成的 View
+        LatencyTracer.ShowPath showPath = viewPool.size() > 0
+                ? LatencyTracer.ShowPath.POOLED_VIEW : LatencyTracer.ShowPath.COLD_INFLATE;
+        floatingView = obtainFloatingView(currentPackageName);
+        floatingViewUsedForChallenge = false;
+        currentWindowApp = currentActiveApp;
         layoutParams = FloatHelper.getLayoutParams(windowManager, appSettingsManager, currentPackageName);
         
         // 初始化数学题验证管理器
@@ -163,6 +186,7 @@ public class FloatingWindowManager {
             Button closeButton = floatingView.findViewById(R.id.btn_close);
             closeButton.setOnClickListener(v -> {
                 Log.d(TAG, "用户点击关闭按钮");
+                floatingViewUsedForChallenge = true;
 
                 boolean wechatChallengeRequired = currentWindowApp != null
                         && CustomAppManager.WECHAT_PACKAGE.equals(
@@ -199,6 +223,15 @@ public class FloatingWindowManager {
                     challengeManager.showChallenge();
                 }
             });
+            // 只观察不消费：关闭按钮与遮罩空白处的按下都计入首次触摸
+            View.OnTouchListener touchTracer = (v, event) -> {
+                if (event.getActionMasked() == MotionEvent.ACTION_DOWN) {
+                    latencyTracer.onTouch(SystemClock.elapsedRealtimeNanos());
+                }
+                return false;
+            };
+            floatingView.setOnTouchListener(touchTracer);
+            closeButton.setOnTouchListener(touchTracer);
 
             // 添加悬浮窗到窗口管理器
             try {
@@ -207,6 +240,7 @@ public class FloatingWindowManager {
                 clearAllSuspensionState();
                 Share.isFloatingWindowVisible = true; // 同步状态
                 Log.d(TAG, "悬浮窗显示成功");
+                traceShown(showPath, decidedAt);
                 notifyShownFromHidden();
             } catch (Exception e) {
                 Log.e(TAG, "显示悬浮窗失败", e);
@@ -226,6 +260,7 @@ public class FloatingWindowManager {
     public void hideFloatingWindow() {
         if (isFloatingWindowVisible) {
             Log.d(TAG, "开始隐藏悬浮窗");
+            latencyTracer.onHidden();
             
             // 永久移除窗口，同时释放答题会话持有的线程、播放器和语音引擎资源。
             if (challengeManager != null) {
@@ -235,6 +270,7 @@ public class FloatingWindowManager {
             try {
                 if (floatingView != null && windowManager != null) {
                     windowManager.removeView(floatingView);
+                    recycleFloatingView(floatingView);
                     floatingView = null;
 
                     challengeManager = null; // 清理管理器引用
@@ -252,6 +288,123 @@ public class FloatingWindowManager {
         }
     }
 
+    /**
+     * 取出该 APP 预创建的 View，没有时当场 inflate。取出的 View 在悬浮窗隐藏时放回（或补一个新的），
+     * 显示期间无需再为同一 APP 预留。
+     */
+    private View obtainFloatingView(String packageName) {
+        View view = viewPool.acquire(packageName);
+        if (view != null) {
+            Log.d(TAG, "复用预创建的悬浮窗 View，池中剩余 " + viewPool.size());
+        } else {
+            long startedAt = SystemClock.elapsedRealtimeNanos();
+            view = inflateFloatingView();
+            Log.d(TAG, "新建悬浮窗 View，inflate 耗时 " + elapsedMillisSince(startedAt) + "ms");
+        }
+        return view;
+    }
+
+    private View inflateFloatingView() {
+        return LayoutInflater.from(context).inflate(R.layout.floating_window_layout, null);
+    }
+
+    /**
+     * 已从 WindowManager 移除的 View：未展示过答题界面则原样放回池中，供下次显示直接 addView；
+     * 否则答题会话可能改动过子 View 的状态，丢弃后在空闲时补一个新的。
+     */
+    private void recycleFloatingView(View view) {
+        String packageName = currentWindowApp == null ? null : currentWindowApp.getPackageName();
+        if (!floatingViewUsedForChallenge) {
+            view.setVisibility(View.VISIBLE);
+            if (viewPool.release(packageName, view)) {
+                return;
+            }
+        }
+        scheduleViewPoolRefill(packageName);
+    }
+
+    /**
+     * 主线程空闲时为该 APP 预创建一个 View，不占用显示悬浮窗的关键路径。
+     */
+    private void scheduleViewPoolRefill(String packageName) {
+        if (packageName == null || viewPool.getCapacity() == 0 || viewPool.contains(packageName)) {
+            return;
+        }
+        boolean idleHandlerPending = pendingPoolRefillPackage != null;
+        pendingPoolRefillPackage = packageName;
+        if (idleHandlerPending) {
+            return;
+        }
+        handler.getLooper().getQueue().addIdleHandler(() -> {
+            String refillPackage = pendingPoolRefillPackage;
+            pendingPoolRefillPackage = null;
+            if (refillPackage != null && !viewPool.contains(refillPackage)) {
+                long startedAt = SystemClock.elapsedRealtimeNanos();
+                viewPool.release(refillPackage, inflateFloatingView());
+                Log.d(TAG, "空闲时预创建悬浮窗 View，inflate 耗时 " + elapsedMillisSince(startedAt)
+                        + "ms，池中共 " + viewPool.size());
+            }
+            return false;
+        });
+    }
+
+    /**
+     * 悬浮窗已添加或已恢复为可见：记下决策到此刻的耗时，并挂一次性的绘制监听等待首帧。
+     * 暖窗口恢复（改 Window 透明度或 View 可见性）不一定重绘 View 树，这里主动 invalidate，
+     * 以恢复后的下一帧作为首帧。悬浮窗是系统 overlay，没有 Activity Window 可挂 FrameMetrics，
+     * 首帧取 View 树开始绘制的时刻。
+     */
+    private void traceShown(LatencyTracer.ShowPath path, long decidedAtNanos) {
+        View view = floatingView;
+        if (view == null) {
+            return;
+        }
+        long traceId = latencyTracer.onShown(path, decidedAtNanos, SystemClock.elapsedRealtimeNanos());
+        view.getViewTreeObserver().addOnDrawListener(new ViewTreeObserver.OnDrawListener() {
+            private boolean removalPosted = false;
+
+            @Override
+            public void onDraw() {
+                long drawnAt = SystemClock.elapsedRealtimeNanos();
+                if (latencyTracer.onFirstDraw(traceId, drawnAt)) {
+                    Log.d(TAG, "悬浮窗首帧（" + path.label + "），决策后 "
+                            + elapsedMillisSince(decidedAtNanos) + "ms");
+                }
+                if (removalPosted) {
+                    return;
+                }
+                removalPosted = true;
+                // 绘制回调中不能移除监听，推到下一条消息；过期的监听也在下次绘制时顺带移除
+                ViewTreeObserver.OnDrawListener self = this;
+                handler.post(() -> {
+                    ViewTreeObserver observer = view.getViewTreeObserver();
+                    if (observer.isAlive()) {
+                        observer.removeOnDrawListener(self);
+                    }
+                });
+            }
+        });
+        view.invalidate();
+    }
+
+    /**
+     * 各显示路径的耗时直方图，供设置页导出。
+     */
+    public String getLatencyReport() {
+        return latencyTracer.buildReport();
+    }
+
+    /**
+     * 按系统内存压力收缩预创建的 View。
+     */
+    public void onTrimMemory(int level) {
+        int keep = FloatingViewPool.sizeAfterTrim(level, viewPool.size());
+        int evicted = viewPool.trimTo(keep);
+        if (evicted > 0) {
+            Log.d(TAG, "内存紧张（level=" + level + "），释放预创建的悬浮窗 View " + evicted + " 个");
+        }
+    }
+
     /**
      * 同一 APP 暂时离开目标页面时保留已绘制 Window；超过保留期仍未返回则释放。
      */
@@ -323,6 +476,11 @@ public class FloatingWindowManager {
         }
         currentWindowApp = targetApp;
         clearPageTransitionMetadata();
+        if (!windowSuspensionState.isSuspended()) {
+            traceShown(switchingTargetApp
+                    ? LatencyTracer.ShowPath.TRANSITION_REUSE
+                    : LatencyTracer.ShowPath.WARM_RESUME, startedAt);
+        }
         Log.d(TAG, (switchingTargetApp
                         ? "悬浮窗跨目标 APP 复用暖窗口完成，耗时 "
                         : "悬浮窗从页面切换临时隐藏中恢复完成，耗时 ")
@@ -357,17 +515,14 @@ public class FloatingWindowManager {
     }
 
     private void schedulePageTransitionExpiry(long reuseMs) {
-        clearPageTransitionExpiryCallback();
-        long generation = ++pageTransitionGeneration;
-        pageTransitionExpiryRunnable = () -> {
-            if (generation != pageTransitionGeneration || !isSuspendedForPageTransition()) {
+        // 同一键重新安排即作废上一次
+        triggers.schedule(PAGE_TRANSITION_EXPIRY_TRIGGER, reuseMs, () -> {
+            if (!isSuspendedForPageTransition()) {
                 return;
             }
-            pageTransitionExpiryRunnable = null;
             Log.d(TAG, "临时保留期结束，移除悬浮窗");
             finishPageTransitionHide();
-        };
-        handler.postDelayed(pageTransitionExpiryRunnable, reuseMs);
+        });
     }
 
     private void finishPageTransitionHide() {
@@ -383,14 +538,11 @@ public class FloatingWindowManager {
     }
 
     private void clearPageTransitionExpiryCallback() {
-        pageTransitionGeneration++;
-        if (pageTransitionExpiryRunnable != null) {
-            handler.removeCallbacks(pageTransitionExpiryRunnable);
-            pageTransitionExpiryRunnable = null;
-        }
+        triggers.cancel(PAGE_TRANSITION_EXPIRY_TRIGGER);
     }
 
     private boolean suspendAttachedWindow(WindowSuspensionState.Reason reason) {
+        latencyTracer.onHidden();
         boolean shouldApplyPhysicalHide = windowSuspensionState.suspend(reason);
         if (!shouldApplyPhysicalHide) {
             return true;
@@ -517,6 +669,7 @@ public class FloatingWindowManager {
             return;
         }
 
+        long decidedAt = SystemClock.elapsedRealtimeNanos();
         CustomApp recoveryApp = currentWindowApp;
         if (!resumeAttachedWindow(WindowSuspensionState.Reason.SYSTEM_UI)) {
             hideFloatingWindow();
@@ -526,6 +679,9 @@ public class FloatingWindowManager {
             return;
         }
         Log.d(TAG, "回到目标 APP，恢复悬浮窗");
+        if (!windowSuspensionState.isSuspended()) {
+            traceShown(LatencyTracer.ShowPath.SYSTEM_UI_RESUME, decidedAt);
+        }
         notifyIfWindowActuallyShown();
     }
     
@@ -753,5 +909,7 @@ public class FloatingWindowManager {
     
     public void cleanup() {
         hideFloatingWindow();
+        pendingPoolRefillPackage = null;
+        viewPool.trimTo(0);
     }
 }
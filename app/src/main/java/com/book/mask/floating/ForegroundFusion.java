@@ -0,0 +1,83 @@
+package com.book.mask.floating;
+
+/**
+ * 窗口事件包名、活动窗口根包名与 UsageEvents 前台包名三者的融合规则。
+ * <p>
+ * 单一来源都可能滞后：窗口事件会带来后台窗口的包名，活动窗口在切换动画期间仍指向旧 APP，
+ * UsageEvents 偶尔晚于窗口事件写入。因此 UsageEvents 只用来"佐证"，不单独否决：
+ * 它与采信的包名一致时结论记为已确认，包名状态机据此免去离开 / 返回目标 APP 时的固定复核等待；
+ * 不一致或不可用时完全沿用原有的窗口事件 + 活动窗口规则。
+ */
+final class ForegroundFusion {
+    enum Source {
+        // 沿用窗口事件包名
+        EVENT,
+        // 以活动窗口根包名为准（含判为后台窗口事件而丢弃）
+        ACTIVE_WINDOW,
+        // UsageEvents 与采信的包名一致
+        USAGE_EVENTS
+    }
+
+    static final class Verdict {
+        // 应交给包名状态机的包名；null 表示本次事件应丢弃
+        final String packageName;
+        final Source decidedBy;
+        // 两个来源一致，可免去复核等待
+        final boolean confirmed;
+
+        private Verdict(String packageName, Source decidedBy, boolean confirmed) {
+            this.packageName = packageName;
+            this.decidedBy = decidedBy;
+            this.confirmed = confirmed;
+        }
+
+        boolean isDropped() {
+            return packageName == null;
+        }
+    }
+
+    private ForegroundFusion() {
+    }
+
+    /**
+     * 只有可能离开当前目标 APP 的事件才需要活动窗口根包名，其余情况调用方可省去这次跨进程查询。
+     */
+    static boolean needsActiveWindow(String eventPackage, String currentTarget) {
+        return currentTarget != null && !currentTarget.equals(eventPackage);
+    }
+
+    /**
+     * @param eventPackage   窗口事件包名
+     * @param activePackage  活动窗口根包名，不明确或无需查询时为空字符串
+     * @param usagePackage   UsageEvents 前台包名，不可用或切换中时为空字符串
+     * @param currentTarget  当前所在目标 APP 的包名，不在目标 APP 时为 null
+     */
+    static Verdict resolve(String eventPackage, String activePackage, String usagePackage,
+                           String currentTarget) {
+        boolean leaving = needsActiveWindow(eventPackage, currentTarget);
+
+        // 活动窗口仍是当前目标 APP：判为后台窗口事件；UsageEvents 与事件一致也不推翻，
+        // 后台窗口所属的 APP 可能刚在 UsageEvents 中留下过前台记录
+        if (leaving && currentTarget.equals(activePackage)) {
+            return new Verdict(null, Source.ACTIVE_WINDOW, false);
+        }
+
+        if (!usagePackage.isEmpty() && usagePackage.equals(eventPackage)) {
+            return new Verdict(eventPackage, Source.USAGE_EVENTS, true);
+        }
+
+        // 进入方向不校验，以免活动窗口滞后拖慢悬浮窗抢先显示
+        if (!leaving) {
+            return new Verdict(eventPackage, Source.EVENT, false);
+        }
+
+        // 活动窗口不明确：沿用事件包名，宁可误判也不漏判离开
+        if (activePackage.isEmpty() || activePackage.equals(eventPackage)) {
+            return new Verdict(eventPackage, Source.EVENT, false);
+        }
+
+        boolean confirmed = activePackage.equals(usagePackage);
+        return new Verdict(activePackage,
+                confirmed ? Source.USAGE_EVENTS : Source.ACTIVE_WINDOW, confirmed);
+    }
+}
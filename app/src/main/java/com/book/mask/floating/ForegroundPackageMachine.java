@@ -0,0 +1,494 @@
+package com.book.mask.floating;
+
+import com.book.mask.constant.Const;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 前台包名状态机：把"观察到某包名 / 某个定时器到期 / 悬浮窗刚显示"这几类输入，
+ * 转换为对悬浮窗与检测流程的指令序列。
+ * <p>
+ * 只持有包名复核、SystemUI 延迟确认、悬浮窗显示防抖三组状态，不访问 Handler、时钟和 Android API：
+ * 时间由调用方以 elapsedRealtime 传入，定时器只以 {@link Timer} 标识发出"安排 / 取消"指令，
+ * 由 AppStateManager 落到 Handler 上执行，到期后再以 {@link #onTimer} 送回。
+ * 因此同一段事件序列在真机和单元测试里得到完全相同的指令。只在主线程调用。
+ */
+final class ForegroundPackageMachine {
+    static final String SYSTEM_UI_PACKAGE = "com.android.systemui";
+    static final long UNKNOWN_PACKAGE_RETRY_DELAY_MS = 150;
+
+    enum Timer {
+        // 离开目标 APP 后的包名复核，以及复核已返回目标 APP 时的追加暂停
+        TRANSITION_STEP,
+        // 观察到 SystemUI 后的延迟确认（含包名不明确时的重试）
+        PACKAGE_CONFIRMATION,
+        // 悬浮窗由隐藏变为显示后的包名检测暂停
+        FLOATING_SHOW_DEBOUNCE
+    }
+
+    enum Phase {
+        // 常规检测
+        IDLE,
+        // 已离开目标 APP，等待首次复核
+        AWAIT_RECHECK,
+        // 首次复核已返回目标 APP，等待过渡动画尾段结束
+        EARLY_RETURN_PAUSE
+    }
+
+    /**
+     * 状态机读取的外部状态，均为调用时刻的即时值。
+     */
+    interface Environment {
+        /** 当前确认所在的目标 APP 包名；不在目标 APP 时返回 null。 */
+        String getCurrentTargetPackage();
+
+        boolean isFloatingWindowVisible();
+
+        boolean isAnimationDisabled();
+
+        /** 活动窗口根节点的包名；不明确时返回空字符串。 */
+        String getActiveRootPackage();
+
+        /** 本应用或输入法等不能代表前台 APP 的包名。 */
+        boolean isIgnorablePackage(String packageName);
+    }
+
+    static final class Command {
+        enum Type {
+            // 按常规规则采信包名：进入 / 切换 / 离开目标 APP
+            APPLY_PACKAGE,
+            // 离开目标 APP 并销毁悬浮窗
+            LEAVE_TARGET,
+            // 离开目标 APP，悬浮窗降级为暖态保留
+            LEAVE_TARGET_KEEP_WARM,
+            SET_SYSTEM_UI_SUSPENDED,
+            CANCEL_CONTENT_CHECK,
+            SCHEDULE_TIMER,
+            CANCEL_TIMER,
+            // 仅输出日志
+            NOTE,
+            // 仅输出 verbose 日志，用于高频的忽略事件
+            TRACE
+        }
+
+        final Type type;
+        final String packageName;
+        final Timer timer;
+        final long delayMillis;
+        final boolean suspended;
+        // APPLY_PACKAGE / LEAVE_TARGET*：触发来源，随日志输出；其余类型：日志内容，可为 null
+        final String message;
+
+        private Command(Type type, String packageName, Timer timer, long delayMillis,
+                        boolean suspended, String message) {
+            this.type = type;
+            this.packageName = packageName;
+            this.timer = timer;
+            this.delayMillis = delayMillis;
+            this.suspended = suspended;
+            this.message = message;
+        }
+
+        @Override
+        public String toString() {
+            switch (type) {
+                case APPLY_PACKAGE:
+                    return type + "(" + packageName + ")";
+                case SET_SYSTEM_UI_SUSPENDED:
+                    return type + "(" + suspended + ")";
+                case SCHEDULE_TIMER:
+                    return type + "(" + timer + ", " + delayMillis + ")";
+                case CANCEL_TIMER:
+                    return type + "(" + timer + ")";
+                default:
+                    return type.toString();
+            }
+        }
+    }
+
+    private final Environment environment;
+    private final boolean recheckEnabled;
+    private final PackageTransitionTiming.Provider timingProvider;
+    private final long[] timerDeadlines = new long[Timer.values().length];
+
+    private Phase phase = Phase.IDLE;
+    private String transitionTargetPackage;
+    private PackageTransitionTiming.Profile transitionProfile = PackageTransitionTiming.DEFAULT;
+    private String confirmationExpectedPackage;
+    private boolean suspendedForSystemUi;
+    private long packageDetectPauseUntil;
+    private long eventTime;
+    private List<Command> out;
+
+    ForegroundPackageMachine(Environment environment, PackageTransitionTiming.Provider timingProvider) {
+        this(environment, Const.PACKAGE_TRANSITION_RECHECK_ENABLED, timingProvider);
+    }
+
+    ForegroundPackageMachine(Environment environment, boolean recheckEnabled) {
+        this(environment, recheckEnabled, PackageTransitionTiming.DEFAULT_PROVIDER);
+    }
+
+    /**
+     * @param timingProvider 按 APP 给出离开过渡的复核等待与动画时长
+     */
+    ForegroundPackageMachine(Environment environment, boolean recheckEnabled,
+                             PackageTransitionTiming.Provider timingProvider) {
+        this.environment = environment;
+        this.recheckEnabled = recheckEnabled;
+        this.timingProvider = timingProvider;
+        Arrays.fill(timerDeadlines, -1L);
+    }
+
+    /**
+     * 窗口事件、定时轮询等观察到的包名统一进入这里，避免不同来源采用不同的离开规则。
+     */
+    List<Command> onPackageObserved(String packageName, String source, long now) {
+        return onPackageObserved(packageName, source, now, false);
+    }
+
+    /**
+     * @param confirmed 另一独立来源（UsageEvents）佐证该包名确已切到前台：离开目标 APP 时不必等待复核，
+     *                  复核期间观察到的包名也直接采信
+     */
+    List<Command> onPackageObserved(String packageName, String source, long now, boolean confirmed) {
+        begin(now);
+        observe(packageName, source, confirmed);
+        return end();
+    }
+
+    /**
+     * 定时器到期。已被取消或重新安排过的定时器返回空指令。
+     */
+    List<Command> onTimer(Timer timer, long now) {
+        begin(now);
+        long deadline = timerDeadlines[timer.ordinal()];
+        if (deadline >= 0) {
+            timerDeadlines[timer.ordinal()] = -1L;
+            switch (timer) {
+                case TRANSITION_STEP:
+                    onTransitionStep();
+                    break;
+                case PACKAGE_CONFIRMATION:
+                    onPackageConfirmation();
+                    break;
+                case FLOATING_SHOW_DEBOUNCE:
+                    onFloatingShowDebounceFinished();
+                    break;
+            }
+        }
+        return end();
+    }
+
+    /**
+     * 悬浮窗由无 / 隐藏变为显示：窗口创建阶段的瞬时事件不能用来判断前台 APP，暂停一段时间后再主动复核。
+     */
+    List<Command> onFloatingWindowShown(long now) {
+        begin(now);
+        packageDetectPauseUntil = now + Const.FLOATING_SHOW_PACKAGE_DETECTION_DEBOUNCE_MS;
+        schedule(Timer.FLOATING_SHOW_DEBOUNCE, Const.FLOATING_SHOW_PACKAGE_DETECTION_DEBOUNCE_MS,
+                "悬浮窗由无/隐藏变为显示，暂停检测包名变化 "
+                        + Const.FLOATING_SHOW_PACKAGE_DETECTION_DEBOUNCE_MS + "ms");
+        return end();
+    }
+
+    /**
+     * 休闲解禁开始：放弃排队中的包名确认与复核。
+     */
+    List<Command> onDetectionSuspended() {
+        begin(0);
+        cancelPendingPackageConfirmation();
+        cancelPackageTransition();
+        return end();
+    }
+
+    /**
+     * 服务销毁：取消全部定时器并清除显示防抖。SystemUI 暂停标记随悬浮窗一起销毁，不在此处下发。
+     */
+    List<Command> reset() {
+        begin(0);
+        cancelPendingPackageConfirmation();
+        cancelPackageTransition();
+        cancelTimer(Timer.FLOATING_SHOW_DEBOUNCE);
+        packageDetectPauseUntil = 0;
+        return end();
+    }
+
+    Phase getPhase() {
+        return phase;
+    }
+
+    /** 离开目标 APP 后的复核阶段内暂停页面检测。 */
+    boolean isTransitionPending() {
+        return phase != Phase.IDLE;
+    }
+
+    /** 悬浮窗显示防抖阶段内忽略包名变化。 */
+    boolean isPackageDetectPaused(long now) {
+        return now < packageDetectPauseUntil;
+    }
+
+    boolean isSuspendedForSystemUi() {
+        return suspendedForSystemUi;
+    }
+
+    boolean isTimerScheduled(Timer timer) {
+        return timerDeadlines[timer.ordinal()] >= 0;
+    }
+
+    /** 定时器的到期时刻；未安排时返回 -1。 */
+    long getTimerDeadline(Timer timer) {
+        return timerDeadlines[timer.ordinal()];
+    }
+
+    private void observe(String packageName, String source, boolean confirmed) {
+        if (packageName == null || packageName.isEmpty()) {
+            return;
+        }
+        if (isPackageDetectPaused(eventTime)) {
+            emit(Command.Type.TRACE, null, null, 0,
+                    source + "处于悬浮窗显示防抖阶段，忽略包名变化: " + packageName);
+            return;
+        }
+        if (phase != Phase.IDLE && confirmed) {
+            cancelPackageTransition();
+            note(source + "包名复核期间已佐证前台为 " + packageName + "，提前结束复核");
+            emit(Command.Type.APPLY_PACKAGE, packageName, null, 0, source);
+            setSuspendedForSystemUi(false);
+            return;
+        }
+        if (phase != Phase.IDLE) {
+            emit(Command.Type.TRACE, null, null, 0,
+                    source + "等待包名复核，忽略中间包名事件: " + packageName);
+            return;
+        }
+
+        String currentTarget = environment.getCurrentTargetPackage();
+        // SystemUI 沿用延迟确认及 View 暂停/恢复逻辑
+        if (currentTarget != null && SYSTEM_UI_PACKAGE.equals(packageName)) {
+            schedulePackageConfirmation(source, Const.SYSTEM_UI_CONFIRM_DELAY_MS);
+            return;
+        }
+
+        boolean leavesCurrentTargetWithVisibleFloatingWindow = currentTarget != null
+                && !currentTarget.equals(packageName)
+                && environment.isFloatingWindowVisible()
+                && !suspendedForSystemUi;
+        if (leavesCurrentTargetWithVisibleFloatingWindow && confirmed) {
+            leaveConfirmedTarget(packageName, source);
+            return;
+        }
+        if (leavesCurrentTargetWithVisibleFloatingWindow) {
+            startPackageTransitionConfirmation(currentTarget, source);
+            return;
+        }
+
+        cancelPendingPackageConfirmation();
+        emit(Command.Type.APPLY_PACKAGE, packageName, null, 0, source);
+        setSuspendedForSystemUi(false);
+    }
+
+    private void startPackageTransitionConfirmation(String currentTarget, String source) {
+        cancelPendingPackageConfirmation();
+        emit(Command.Type.CANCEL_CONTENT_CHECK, null, null, 0, null);
+
+        if (!recheckEnabled) {
+            note(source + "包名复核机制已关闭，离开目标 APP 立即隐藏悬浮窗");
+            emit(Command.Type.LEAVE_TARGET, null, null, 0, "离开 APP 且复核已关闭");
+            setSuspendedForSystemUi(false);
+            return;
+        }
+
+        if (environment.isAnimationDisabled()) {
+            note(source + "系统已关闭过渡动画，跳过包名复核，直接隐藏悬浮窗");
+            emit(Command.Type.LEAVE_TARGET, null, null, 0, "离开 APP 且无过渡动画");
+            setSuspendedForSystemUi(false);
+            return;
+        }
+
+        // 离开目标 APP：先把悬浮窗降级为暖态（保留 Window 资源、透明且不可触摸），
+        // 保留目标包名并进入暂停检测阶段；用后续复核抑制过渡动画期间的误触发闪现，
+        // 复核期及 PACKAGE_TRANSITION_WINDOW_REUSE_MS 内返回目标 APP 可直接复用暖窗口。
+        phase = Phase.AWAIT_RECHECK;
+        transitionTargetPackage = currentTarget;
+        transitionProfile = timingProvider.get(currentTarget);
+        emit(Command.Type.LEAVE_TARGET_KEEP_WARM, null, null, 0,
+                source + "离开目标 APP，保留窗口资源以便复用");
+        setSuspendedForSystemUi(false);
+        schedule(Timer.TRANSITION_STEP, transitionProfile.checkDelayMs,
+                source + "离开目标 APP 已将悬浮窗降级为暖态保留；"
+                        + transitionProfile.checkDelayMs + "ms 后复核包名");
+    }
+
+    /**
+     * 离开已被佐证：仍把悬浮窗降级为暖态，以便随即返回时复用，但不进入复核阶段，直接采信新包名。
+     */
+    private void leaveConfirmedTarget(String packageName, String source) {
+        cancelPendingPackageConfirmation();
+        emit(Command.Type.CANCEL_CONTENT_CHECK, null, null, 0, null);
+        emit(Command.Type.LEAVE_TARGET_KEEP_WARM, null, null, 0,
+                source + "离开目标 APP 已佐证，跳过包名复核");
+        setSuspendedForSystemUi(false);
+        emit(Command.Type.APPLY_PACKAGE, packageName, null, 0, source);
+    }
+
+    private void onTransitionStep() {
+        if (phase == Phase.AWAIT_RECHECK) {
+            String confirmedPackage = environment.getActiveRootPackage();
+            PackageTransitionDecision.Action action = PackageTransitionDecision.decide(
+                    transitionTargetPackage, confirmedPackage);
+            if (action == PackageTransitionDecision.Action.PAUSE_AND_RECHECK) {
+                long pauseDuration = transitionProfile.getEarlyReturnPauseDuration();
+                phase = Phase.EARLY_RETURN_PAUSE;
+                schedule(Timer.TRANSITION_STEP, pauseDuration,
+                        transitionProfile.checkDelayMs + "ms 复核已重回目标 APP，继续暂停检测 "
+                                + pauseDuration + "ms 后再恢复，避免误触发闪现");
+                return;
+            }
+            cancelPackageTransition();
+            note(transitionProfile.checkDelayMs + "ms 复核为非目标包名: "
+                    + AccessibilityWindowInspector.packageNameForLog(confirmedPackage) + "，恢复检测");
+            resumeDetectionForPackage(confirmedPackage);
+        } else if (phase == Phase.EARLY_RETURN_PAUSE) {
+            String confirmedPackage = environment.getActiveRootPackage();
+            cancelPackageTransition();
+            note("暂停检测结束，复核当前包名: "
+                    + AccessibilityWindowInspector.packageNameForLog(confirmedPackage) + "，恢复检测");
+            resumeDetectionForPackage(confirmedPackage);
+        }
+    }
+
+    /**
+     * 暂停检测阶段结束后，按当前包名恢复常规检测；悬浮窗此前已降级，
+     * 若当前仍在目标 APP，APPLY_PACKAGE 会重新显示悬浮窗并检测页面。
+     */
+    private void resumeDetectionForPackage(String packageName) {
+        if (packageName.isEmpty()) {
+            return;
+        }
+        emit(Command.Type.APPLY_PACKAGE, packageName, null, 0, "暂停检测结束恢复");
+        setSuspendedForSystemUi(false);
+    }
+
+    /**
+     * 第一次观察到待确认包名时启动一次确认；后续同类事件不会延长等待时间。
+     */
+    private void schedulePackageConfirmation(String source, long delayMillis) {
+        if (isTimerScheduled(Timer.PACKAGE_CONFIRMATION) || suspendedForSystemUi) {
+            return;
+        }
+        confirmationExpectedPackage = environment.getCurrentTargetPackage();
+        schedule(Timer.PACKAGE_CONFIRMATION, delayMillis,
+                source + "观察到待确认包名，" + delayMillis + "ms 后确认，期间保持悬浮窗");
+    }
+
+    private void onPackageConfirmation() {
+        String expectedPackage = confirmationExpectedPackage;
+        confirmationExpectedPackage = null;
+        String currentTarget = environment.getCurrentTargetPackage();
+        if (currentTarget == null || !currentTarget.equals(expectedPackage)) {
+            return;
+        }
+
+        String confirmedPackage = environment.getActiveRootPackage();
+        if (confirmedPackage.isEmpty() || environment.isIgnorablePackage(confirmedPackage)) {
+            note("延迟确认时包名不明确，保持遮罩并稍后重试");
+            schedulePackageConfirmation("包名不明确重试", UNKNOWN_PACKAGE_RETRY_DELAY_MS);
+            return;
+        }
+
+        if (expectedPackage.equals(confirmedPackage)) {
+            note("在确认期限内回到目标 APP，保持悬浮窗");
+            setSuspendedForSystemUi(false);
+        } else if (SYSTEM_UI_PACKAGE.equals(confirmedPackage)) {
+            note("SystemUI 持续超过设定阈值，临时暂停悬浮窗");
+            setSuspendedForSystemUi(true);
+        } else {
+            note("延迟确认后进入其他包名: " + confirmedPackage);
+            emit(Command.Type.APPLY_PACKAGE, confirmedPackage, null, 0, "包名延迟确认");
+            setSuspendedForSystemUi(false);
+        }
+    }
+
+    private void onFloatingShowDebounceFinished() {
+        long remaining = packageDetectPauseUntil - eventTime;
+        if (remaining > 0) {
+            schedule(Timer.FLOATING_SHOW_DEBOUNCE, remaining, null);
+            return;
+        }
+
+        packageDetectPauseUntil = 0;
+        String confirmedPackage = environment.getActiveRootPackage();
+        if (confirmedPackage.isEmpty()) {
+            note("悬浮窗显示防抖结束时包名不明确，等待后续事件或轮询复核");
+            return;
+        }
+        note("悬浮窗显示防抖结束，主动复核当前包名");
+        observe(confirmedPackage, "悬浮窗显示防抖结束", false);
+    }
+
+    private void cancelPackageTransition() {
+        cancelTimer(Timer.TRANSITION_STEP);
+        phase = Phase.IDLE;
+        transitionTargetPackage = null;
+        transitionProfile = PackageTransitionTiming.DEFAULT;
+    }
+
+    private void cancelPendingPackageConfirmation() {
+        cancelTimer(Timer.PACKAGE_CONFIRMATION);
+        confirmationExpectedPackage = null;
+    }
+
+    private void setSuspendedForSystemUi(boolean suspended) {
+        if (suspendedForSystemUi == suspended) {
+            return;
+        }
+        suspendedForSystemUi = suspended;
+        Command command = new Command(Command.Type.SET_SYSTEM_UI_SUSPENDED, null, null, 0,
+                suspended, null);
+        out.add(command);
+    }
+
+    /**
+     * 重新安排同一定时器时先取消旧的，保证每类定时器同时只有一个在排队。
+     * 截止时刻只用于查询，到期判定以 onTimer 为准。
+     */
+    private void schedule(Timer timer, long delayMillis, String message) {
+        long delay = Math.max(0L, delayMillis);
+        if (isTimerScheduled(timer)) {
+            emit(Command.Type.CANCEL_TIMER, null, timer, 0, null);
+        }
+        timerDeadlines[timer.ordinal()] = eventTime + delay;
+        emit(Command.Type.SCHEDULE_TIMER, null, timer, delay, message);
+    }
+
+    private void cancelTimer(Timer timer) {
+        if (!isTimerScheduled(timer)) {
+            return;
+        }
+        timerDeadlines[timer.ordinal()] = -1L;
+        emit(Command.Type.CANCEL_TIMER, null, timer, 0, null);
+    }
+
+    private void note(String message) {
+        emit(Command.Type.NOTE, null, null, 0, message);
+    }
+
+    private void emit(Command.Type type, String packageName, Timer timer, long delayMillis,
+                      String message) {
+        out.add(new Command(type, packageName, timer, delayMillis, false, message));
+    }
+
+    private void begin(long now) {
+        eventTime = now;
+        out = new ArrayList<>(4);
+    }
+
+    private List<Command> end() {
+        List<Command> commands = out;
+        out = null;
+        return commands.isEmpty() ? Collections.emptyList() : commands;
+    }
+}
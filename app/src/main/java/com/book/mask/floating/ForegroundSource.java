@@ -0,0 +1,11 @@
+package com.book.mask.floating;
+
+/**
+ * 无障碍窗口事件之外的前台包名来源，用于与窗口事件、活动窗口相互佐证。
+ */
+interface ForegroundSource {
+    /**
+     * 当前处于前台的包名；来源不可用或前台正在切换、无法确定时返回空字符串。只在主线程调用。
+     */
+    String getForegroundPackage();
+}
@@ -0,0 +1,41 @@
+package com.book.mask.floating;
+
+/**
+ * 增量扫描依赖的"未命中基线"，只记当前目标 APP 一份：最近一次全量扫描确认页面没有关键词的时间，
+ * 基线有效期内只需重扫变化的子树。命中位置另由 {@link KeywordLocationCache} 按 APP 持久化。
+ * <p>
+ * 扫描线程读写，主线程在窗口切换时作废，因此方法均加锁。
+ */
+final class IncrementalScanState {
+    private String packageName;
+    private long notFoundBaselineAt;
+
+    synchronized boolean hasNotFoundBaseline(String packageName, long now, long ttlMillis) {
+        return packageName.equals(this.packageName)
+                && notFoundBaselineAt > 0
+                && now - notFoundBaselineAt <= ttlMillis;
+    }
+
+    synchronized void rememberNotFound(String packageName, long now) {
+        this.packageName = packageName;
+        this.notFoundBaselineAt = now;
+    }
+
+    /**
+     * 命中、窗口切换、部分结果等无法确认"整页无关键词"的场合，下次扫描从全量开始。
+     */
+    synchronized void invalidate() {
+        packageName = null;
+        notFoundBaselineAt = 0;
+    }
+
+    /**
+     * 一批内容变化未经扫描即被丢弃（请求过期、扫描被取消）：基线之后这些子树可能已出现关键词，
+     * 后续请求只带各自的变化，不会再覆盖它们，因此基线不再可信。
+     */
+    synchronized void onChangesDiscarded(ContentChangeBatch changes) {
+        if (changes != null) {
+            invalidate();
+        }
+    }
+}
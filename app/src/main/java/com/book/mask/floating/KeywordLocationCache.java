@@ -0,0 +1,177 @@
+package com.book.mask.floating;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.book.mask.constant.Const;
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.tencent.mmkv.MMKV;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按 APP 学习"关键词通常出现在哪个节点"：记录上次命中节点的子节点下标路径（有则附带 viewId），
+ * 下次扫描先按位置探测，只在未命中时才全量遍历。
+ * <p>
+ * 位置以「包名@versionCode」为键持久化到 MMKV，APP 升级后布局可能变化，自然换用新键重新学习。
+ * 同时按 APP 统计探测命中 / 未命中次数，定期输出命中率，用于核实各 APP 的实际收益。
+ * 只在扫描线程读写。
+ */
+final class KeywordLocationCache {
+    private static final String TAG = "AppStateManager";
+    private static final String PREF_NAME = "keyword_location_cache";
+    private static final String KEY_LOCATION_PREFIX = "location_";
+    private static final String KEY_HITS_PREFIX = "stats_hits_";
+    private static final String KEY_MISSES_PREFIX = "stats_misses_";
+
+    /**
+     * 一次命中的位置。path 为相对活动窗口根节点的子节点下标路径。
+     */
+    static final class Location {
+        final int[] path;
+        final String viewId;
+
+        Location(int[] path, String viewId) {
+            this.path = path;
+            this.viewId = viewId;
+        }
+    }
+
+    /**
+     * 单个 APP 的探测统计，累计值跨进程保留。
+     */
+    static final class Stats {
+        private long hits;
+        private long misses;
+        private int unsavedProbes;
+
+        long getHits() {
+            return hits;
+        }
+
+        long getMisses() {
+            return misses;
+        }
+
+        double getHitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    private final Context context;
+    private final Gson gson = new Gson();
+    private MMKV mmkv;
+    private final Map<String, Location> locations = new ConcurrentHashMap<>();
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+    KeywordLocationCache(Context context) {
+        this.context = context.getApplicationContext() != null
+                ? context.getApplicationContext() : context;
+        try {
+            mmkv = MMKV.mmkvWithID(PREF_NAME);
+        } catch (Exception e) {
+            Log.w(TAG, "关键词位置缓存初始化失败，仅使用内存缓存", e);
+            mmkv = null;
+        }
+    }
+
+    /**
+     * 当前版本下该 APP 上次命中的位置；尚未学习过时返回 null。
+     */
+    Location get(String packageName) {
+        String key = locationKey(packageName);
+        Location location = locations.get(key);
+        if (location != null || mmkv == null) {
+            return location;
+        }
+        String json = mmkv.getString(key, null);
+        if (json == null) {
+            return null;
+        }
+        try {
+            location = gson.fromJson(json, Location.class);
+        } catch (JsonSyntaxException e) {
+            Log.w(TAG, "关键词位置缓存数据损坏，已丢弃: " + packageName, e);
+            mmkv.removeValueForKey(key);
+            return null;
+        }
+        if (location == null || location.path == null) {
+            return null;
+        }
+        locations.put(key, location);
+        return location;
+    }
+
+    /**
+     * 记录最新一次命中的位置；与已有位置相同时不重复写入。
+     */
+    void remember(String packageName, int[] path, String viewId) {
+        if (path == null) {
+            return;
+        }
+        String key = locationKey(packageName);
+        Location previous = get(packageName);
+        if (previous != null && Arrays.equals(previous.path, path)
+                && (viewId == null ? previous.viewId == null : viewId.equals(previous.viewId))) {
+            return;
+        }
+        Location location = new Location(path, viewId);
+        locations.put(key, location);
+        if (mmkv != null) {
+            mmkv.putString(key, gson.toJson(location));
+        }
+    }
+
+    /**
+     * 记录一次位置探测的结果；每累计若干次输出一行命中率并落盘统计。
+     */
+    void recordProbe(String packageName, boolean hit) {
+        Stats appStats = getStats(packageName);
+        synchronized (appStats) {
+            if (hit) {
+                appStats.hits++;
+            } else {
+                appStats.misses++;
+            }
+            if (++appStats.unsavedProbes < Const.KEYWORD_LOCATION_STATS_FLUSH_INTERVAL) {
+                return;
+            }
+            appStats.unsavedProbes = 0;
+            if (mmkv != null) {
+                mmkv.putLong(KEY_HITS_PREFIX + packageName, appStats.hits);
+                mmkv.putLong(KEY_MISSES_PREFIX + packageName, appStats.misses);
+            }
+            Log.d(TAG, "关键词位置缓存命中率: APP=" + packageName
+                    + ", hits=" + appStats.hits
+                    + ", misses=" + appStats.misses
+                    + ", hitRate=" + String.format(Locale.US, "%.1f%%",
+                    appStats.getHitRate() * 100));
+        }
+    }
+
+    /**
+     * 该 APP 的累计探测统计（含以往进程落盘的部分）。
+     */
+    Stats getStats(String packageName) {
+        Stats appStats = stats.get(packageName);
+        if (appStats != null) {
+            return appStats;
+        }
+        Stats loaded = new Stats();
+        if (mmkv != null) {
+            loaded.hits = mmkv.getLong(KEY_HITS_PREFIX + packageName, 0);
+            loaded.misses = mmkv.getLong(KEY_MISSES_PREFIX + packageName, 0);
+        }
+        appStats = stats.putIfAbsent(packageName, loaded);
+        return appStats != null ? appStats : loaded;
+    }
+
+    private String locationKey(String packageName) {
+        return KEY_LOCATION_PREFIX + packageName + "@" + AppVersionCodes.get(context, packageName);
+    }
+}
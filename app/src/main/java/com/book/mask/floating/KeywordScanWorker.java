@@ -0,0 +1,413 @@
+package com.book.mask.floating;
+
+import android.accessibilityservice.AccessibilityService;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import com.book.mask.config.CustomApp;
+import com.book.mask.config.CustomAppManager;
+import com.book.mask.config.KeywordMatcher;
+import com.book.mask.constant.Const;
+import com.book.mask.util.DateUtils;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 页面关键词扫描线程：getRootInActiveWindow 与节点树遍历都是跨进程调用，耗时随前台 APP 的
+ * 页面规模增长。放在独立线程执行，主线程上的包名确认、定时器和悬浮窗增删不再被其阻塞。
+ * <p>
+ * 每次提交携带递增的代号：新请求提交时取消仍在执行的旧扫描，排队中的旧请求开始前即被丢弃；
+ * 结论通过 resultHandler 投递回主线程，由调用方再按代号判断是否已过期。
+ */
+final class KeywordScanWorker {
+    private static final String TAG = "AppStateManager";
+
+    interface Callback {
+        /** 在 resultHandler 所在线程回调；被取消或过期的扫描不会回调。 */
+        void onScanFinished(Request request, TextScanResult result);
+    }
+
+    static final class Request {
+        final long generation;
+        final CustomApp app;
+        final String targetWord;
+        final KeywordMatcher matcher;
+        final String triggerSource;
+        final boolean forceCheck;
+        // 本轮累积的内容变化；null 表示非内容变化触发（进入 APP、定时器等），按全量扫描处理
+        final ContentChangeBatch changes;
+
+        Request(long generation, CustomApp app, String triggerSource, boolean forceCheck,
+                ContentChangeBatch changes) {
+            this.generation = generation;
+            this.app = app;
+            this.targetWord = app.getTargetWord();
+            this.matcher = app.getKeywordMatcher();
+            this.triggerSource = triggerSource;
+            this.forceCheck = forceCheck;
+            this.changes = changes;
+        }
+
+        void recycle() {
+            if (changes != null) {
+                changes.recycle();
+            }
+        }
+    }
+
+    /**
+     * 丢弃未完成扫描的请求：所带变化未被确认，先作废未命中基线再回收。
+     */
+    private void discard(Request request) {
+        scanState.onChangesDiscarded(request.changes);
+        request.recycle();
+    }
+
+    private final AccessibilityService service;
+    private final Handler resultHandler;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "keyword-scan");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Object lock = new Object();
+    private final IncrementalScanState scanState = new IncrementalScanState();
+    private final KeywordLocationCache locationCache;
+    private final ScanLoadMetrics loadMetrics = new ScanLoadMetrics();
+    private final TreeSnapshotRecorder snapshotRecorder;
+    private long latestGeneration = 0;
+    private CancellationSignal inFlightSignal;
+
+    KeywordScanWorker(AccessibilityService service, Handler resultHandler) {
+        this.service = service;
+        this.resultHandler = resultHandler;
+        this.locationCache = new KeywordLocationCache(service);
+        this.snapshotRecorder = new TreeSnapshotRecorder(service);
+    }
+
+    void submit(Request request, Callback callback) {
+        CancellationSignal signal = new CancellationSignal();
+        synchronized (lock) {
+            latestGeneration = request.generation;
+            if (inFlightSignal != null) {
+                inFlightSignal.cancel();
+            }
+            inFlightSignal = signal;
+        }
+        try {
+            executor.execute(() -> runScan(request, signal, callback));
+        } catch (RejectedExecutionException e) {
+            discard(request);
+            Log.w(TAG, "扫描线程已关闭，丢弃关键词扫描请求", e);
+        }
+    }
+
+    ScanLoadMetrics getLoadMetrics() {
+        return loadMetrics;
+    }
+
+    /**
+     * 前台窗口发生切换时调用：未命中基线属于旧窗口，下次扫描不再只看变化子树。
+     * 学到的关键词位置不受影响，探测失败时自会回退。
+     */
+    void invalidateIncrementalState() {
+        scanState.invalidate();
+    }
+
+    /**
+     * 调用方丢弃尚未提交的内容变化时调用：作废未命中基线并回收批次。
+     */
+    void discardChanges(ContentChangeBatch changes) {
+        scanState.onChangesDiscarded(changes);
+        changes.recycle();
+    }
+
+    /**
+     * 作废所有已提交的扫描：排队中的请求不再执行，执行中的遍历在下一次检查点结束。
+     */
+    void cancel(long generation) {
+        synchronized (lock) {
+            latestGeneration = generation;
+            if (inFlightSignal != null) {
+                inFlightSignal.cancel();
+                inFlightSignal = null;
+            }
+        }
+    }
+
+    void shutdown() {
+        cancel(Long.MAX_VALUE);
+        executor.shutdownNow();
+    }
+
+    private boolean isStale(Request request, CancellationSignal signal) {
+        synchronized (lock) {
+            return signal.isCanceled() || request.generation != latestGeneration;
+        }
+    }
+
+    private void runScan(Request request, CancellationSignal signal, Callback callback) {
+        if (isStale(request, signal)) {
+            discard(request);
+            Log.v(TAG, "关键词扫描请求已过期，开始前丢弃，代号=" + request.generation);
+            return;
+        }
+
+        String packageName = request.app.getPackageName();
+        TextScanResult result;
+        long cpuStartedAt = SystemClock.currentThreadTimeMillis();
+        long startedAt = SystemClock.elapsedRealtime();
+        try {
+            result = scan(request, packageName, signal);
+        } catch (RuntimeException e) {
+            scanState.invalidate();
+            request.recycle();
+            Log.e(TAG, "关键词扫描失败", e);
+            return;
+        } finally {
+            loadMetrics.recordScan(SystemClock.currentThreadTimeMillis() - cpuStartedAt,
+                    SystemClock.elapsedRealtime() - startedAt);
+            synchronized (lock) {
+                if (inFlightSignal == signal) {
+                    inFlightSignal = null;
+                }
+            }
+        }
+
+        if (result.getOutcome() == TextScanResult.Outcome.CANCELLED) {
+            // 被取消的扫描未看完这批变化
+            discard(request);
+            Log.v(TAG, "关键词扫描已被取消，丢弃结果，代号=" + request.generation);
+            return;
+        }
+        // 扫描已完整结束，基线已按结论更新，过期的只是结论本身
+        request.recycle();
+        if (isStale(request, signal)) {
+            Log.v(TAG, "关键词扫描已被更新的请求取代，丢弃结果，代号=" + request.generation);
+            return;
+        }
+        final TextScanResult finalResult = result;
+        resultHandler.post(() -> callback.onScanFinished(request, finalResult));
+    }
+
+    private TextScanResult scan(Request request, String packageName, CancellationSignal signal) {
+        boolean alwaysTarget = CustomAppManager.WECHAT_PACKAGE.equals(packageName);
+        TextScanDiagnostics diagnostics =
+                TextScanDiagnostics.createIfEnabled(request.triggerSource, packageName);
+        long rootStartNanos = SystemClock.elapsedRealtimeNanos();
+        AccessibilityNodeInfo rootNode = service.getRootInActiveWindow();
+        double rootElapsedMs = DateUtils.nanosToMillis(
+                SystemClock.elapsedRealtimeNanos() - rootStartNanos);
+        if (rootNode == null) {
+            Log.d(TAG, "rootNode 为空");
+            if (diagnostics != null) {
+                diagnostics.log("null", rootElapsedMs, 0, alwaysTarget);
+            }
+            return new TextScanResult(alwaysTarget
+                    ? TextScanResult.Outcome.MATCHED
+                    : TextScanResult.Outcome.NOT_FOUND, 0);
+        }
+
+        try {
+            TextScanBudget budget = TextScanBudget.forPackage(packageName);
+            long traversalStartNanos = SystemClock.elapsedRealtimeNanos();
+            ScanPass pass = new ScanPass();
+            TextScanResult result = scanIncrementally(
+                    rootNode, request, packageName, budget, signal, diagnostics, pass);
+            double traversalElapsedMs = DateUtils.nanosToMillis(
+                    SystemClock.elapsedRealtimeNanos() - traversalStartNanos);
+            Log.d(TAG, "扫描方式=" + pass.mode + "，访问节点=" + result.getVisitedNodes()
+                    + "，结论=" + result.getOutcome());
+            if (diagnostics != null) {
+                diagnostics.setScanMode(pass.mode);
+            }
+            if (result.isPartial()) {
+                TextScanDiagnostics.reportBudgetExhausted(packageName, budget,
+                        result.getVisitedNodes(), traversalElapsedMs);
+            }
+            if (alwaysTarget && result.getOutcome() != TextScanResult.Outcome.CANCELLED) {
+                result = new TextScanResult(
+                        TextScanResult.Outcome.MATCHED, result.getVisitedNodes());
+            }
+            Log.d(TAG, "检测耗时：" + DateUtils.formatMillis(traversalElapsedMs / 1000.0));
+            if (diagnostics != null) {
+                String rootPackageName = rootNode.getPackageName() == null
+                        ? "null" : rootNode.getPackageName().toString();
+                diagnostics.log(rootPackageName, rootElapsedMs, traversalElapsedMs,
+                        result.isMatched());
+            }
+            snapshotRecorder.maybeRecord(rootNode, request, result);
+            return result;
+        } finally {
+            rootNode.recycle();
+        }
+    }
+
+    /**
+     * 记录本次扫描实际采用的方式，供日志与诊断区分 view_id / cached_path / incremental / by_text / full。
+     */
+    private static final class ScanPass {
+        private String mode = "full";
+    }
+
+    /**
+     * 按开销从低到高依次尝试：配置的控件 ID → 学到的关键词位置 → 只重扫变化子树（页面此前已确认
+     * 无关键词时）→ 系统按文字查询 → 全量遍历。前面的方式无法给出可信结论时才进入下一种，
+     * 全量遍历的结论再反过来更新位置缓存与未命中基线。
+     */
+    private TextScanResult scanIncrementally(AccessibilityNodeInfo rootNode, Request request,
+                                             String packageName, TextScanBudget budget,
+                                             CancellationSignal signal,
+                                             TextScanDiagnostics diagnostics, ScanPass pass) {
+        String[] viewIds = request.app.getTargetViewIdArray();
+        if (viewIds.length > 0) {
+            TextScanResult viewIdResult =
+                    FloatHelper.findByViewIds(rootNode, viewIds, request.matcher);
+            if (viewIdResult != null) {
+                pass.mode = "view_id";
+                return viewIdResult;
+            }
+            Log.d(TAG, "配置的控件 ID 均未找到，回退按文字检测");
+        }
+
+        KeywordLocationCache.Location location = locationCache.get(packageName);
+        if (location != null) {
+            TextScanResult probed = probeLocation(rootNode, request, packageName, location);
+            if (probed != null) {
+                pass.mode = "cached_path";
+                return probed;
+            }
+            Log.d(TAG, "缓存的关键词位置未命中，继续扫描");
+        }
+        if (request.changes != null && !request.changes.isFullScanRequired()
+                && scanState.hasNotFoundBaseline(packageName, SystemClock.elapsedRealtime(),
+                Const.INCREMENTAL_SCAN_BASELINE_TTL_MS)) {
+            TextScanResult subtreeResult = scanChangedSubtrees(
+                    request, packageName, budget, signal, diagnostics);
+            if (subtreeResult != null) {
+                pass.mode = "incremental";
+                return subtreeResult;
+            }
+        }
+
+        TextScanResult textQueryResult = FloatHelper.findByText(
+                rootNode, request.matcher, Const.TEXT_QUERY_MAX_KEYWORDS);
+        if (textQueryResult != null) {
+            pass.mode = "by_text";
+            scanState.invalidate();
+            return textQueryResult;
+        }
+
+        TextScanResult result = FloatHelper.findTargetText(
+                rootNode, request.matcher, budget, signal, diagnostics);
+        switch (result.getOutcome()) {
+            case MATCHED:
+                scanState.invalidate();
+                locationCache.remember(packageName, result.getHitPath(), result.getHitViewId());
+                break;
+            case NOT_FOUND:
+                scanState.rememberNotFound(packageName, SystemClock.elapsedRealtime());
+                break;
+            default:
+                scanState.invalidate();
+                break;
+        }
+        return result;
+    }
+
+    /**
+     * 按路径探测学到的位置，路径失效但有 viewId 时再按 viewId 找回；命中时返回结论，否则返回 null。
+     * 每次探测计入命中率统计。
+     */
+    private TextScanResult probeLocation(AccessibilityNodeInfo rootNode, Request request,
+                                         String packageName,
+                                         KeywordLocationCache.Location location) {
+        int[] path = null;
+        if (FloatHelper.probePath(rootNode, location.path, location.viewId, request.matcher)) {
+            path = location.path;
+        } else if (location.viewId != null) {
+            path = FloatHelper.relocateByViewId(rootNode, location.viewId, request.matcher,
+                    Const.INCREMENTAL_SCAN_MAX_PATH_DEPTH);
+            if (path != null) {
+                locationCache.remember(packageName, path, location.viewId);
+            }
+        }
+        locationCache.recordProbe(packageName, path != null);
+        if (path == null) {
+            return null;
+        }
+        scanState.invalidate();
+        return new TextScanResult(TextScanResult.Outcome.MATCHED, path.length + 1, path,
+                location.viewId);
+    }
+
+    /**
+     * 逐个重扫本轮变化的源节点：仅文字变化的节点只看自身，其余下探其子树。
+     * 任一源节点不可得或扫描不完整时返回 null，由调用方回退全量扫描。
+     */
+    private TextScanResult scanChangedSubtrees(Request request, String packageName,
+                                               TextScanBudget budget, CancellationSignal signal,
+                                               TextScanDiagnostics diagnostics) {
+        ContentChangeBatch changes = request.changes;
+        int visitedNodes = 0;
+        for (int i = 0; i < changes.size(); i++) {
+            AccessibilityNodeInfo source = changes.obtainSource(i);
+            if (source == null) {
+                return null;
+            }
+            try {
+                TextScanResult subtreeResult;
+                if (changes.isSelfOnlyChange(i)) {
+                    boolean matched = FloatHelper.matchesNode(source, request.matcher);
+                    subtreeResult = new TextScanResult(matched
+                            ? TextScanResult.Outcome.MATCHED
+                            : TextScanResult.Outcome.NOT_FOUND, 1, matched ? new int[0] : null,
+                            matched ? source.getViewIdResourceName() : null);
+                } else {
+                    subtreeResult = FloatHelper.findTargetText(
+                            source, request.matcher, budget, signal, diagnostics);
+                }
+                visitedNodes += subtreeResult.getVisitedNodes();
+
+                switch (subtreeResult.getOutcome()) {
+                    case MATCHED:
+                        scanState.invalidate();
+                        int[] path = rememberSubtreeHit(packageName, source, subtreeResult);
+                        return new TextScanResult(TextScanResult.Outcome.MATCHED, visitedNodes,
+                                path, subtreeResult.getHitViewId());
+                    case CANCELLED:
+                        return new TextScanResult(TextScanResult.Outcome.CANCELLED, visitedNodes);
+                    case BUDGET_EXHAUSTED:
+                        return null;
+                    default:
+                        break;
+                }
+            } finally {
+                source.recycle();
+            }
+        }
+        return new TextScanResult(TextScanResult.Outcome.NOT_FOUND, visitedNodes);
+    }
+
+    /**
+     * 子树内命中时拼出相对根节点的完整路径并记入位置缓存；无法回溯到根时只是不缓存位置。
+     */
+    private int[] rememberSubtreeHit(String packageName, AccessibilityNodeInfo source,
+                                     TextScanResult subtreeResult) {
+        int[] pathInSubtree = subtreeResult.getHitPath();
+        int[] sourcePath = FloatHelper.pathFromRoot(source, Const.INCREMENTAL_SCAN_MAX_PATH_DEPTH);
+        if (sourcePath == null || pathInSubtree == null) {
+            return null;
+        }
+        int[] path = new int[sourcePath.length + pathInSubtree.length];
+        System.arraycopy(sourcePath, 0, path, 0, sourcePath.length);
+        System.arraycopy(pathInSubtree, 0, path, sourcePath.length, pathInSubtree.length);
+        locationCache.remember(packageName, path, subtreeResult.getHitViewId());
+        return path;
+    }
+}
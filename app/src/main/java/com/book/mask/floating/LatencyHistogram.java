@@ -0,0 +1,104 @@
+package com.book.mask.floating;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * 最近 N 次耗时样本（毫秒）的滚动直方图：按帧间隔附近划分的固定分桶计数，加上窗口内精确的分位数。
+ * 新样本挤出最旧的一个，分桶计数随之回退，只反映最近的表现。不涉及时钟与线程，只在同一线程使用。
+ */
+final class LatencyHistogram {
+    // 分桶上界（含），约为 60Hz 下 1/4、1/2、1、2、3 帧及更长；最后一桶收纳其余
+    static final double[] BUCKET_UPPER_BOUNDS_MS = {4, 8, 16.7, 33.4, 50, 100, 250, 500, 1000};
+
+    private final double[] samples;
+    private final int[] bucketCounts = new int[BUCKET_UPPER_BOUNDS_MS.length + 1];
+    private int next = 0;
+    private int count = 0;
+    private long totalRecorded = 0;
+
+    LatencyHistogram(int window) {
+        this.samples = new double[Math.max(1, window)];
+    }
+
+    void record(double millis) {
+        double value = Math.max(0.0, millis);
+        if (count == samples.length) {
+            bucketCounts[bucketOf(samples[next])]--;
+        } else {
+            count++;
+        }
+        samples[next] = value;
+        bucketCounts[bucketOf(value)]++;
+        next = (next + 1) % samples.length;
+        totalRecorded++;
+    }
+
+    static int bucketOf(double millis) {
+        for (int i = 0; i < BUCKET_UPPER_BOUNDS_MS.length; i++) {
+            if (millis <= BUCKET_UPPER_BOUNDS_MS[i]) {
+                return i;
+            }
+        }
+        return BUCKET_UPPER_BOUNDS_MS.length;
+    }
+
+    /** 窗口内的样本数。 */
+    int count() {
+        return count;
+    }
+
+    /** 累计记录过的样本数（含已被挤出窗口的）。 */
+    long totalRecorded() {
+        return totalRecorded;
+    }
+
+    int[] getBucketCounts() {
+        return bucketCounts.clone();
+    }
+
+    /**
+     * 窗口内样本的分位数（最近秩法）。
+     *
+     * @param fraction 0~1，如 0.9 表示 p90
+     * @return 没有样本时返回 0
+     */
+    double percentile(double fraction) {
+        if (count == 0) {
+            return 0.0;
+        }
+        double[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(Math.max(0.0, Math.min(1.0, fraction)) * count);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    double max() {
+        return percentile(1.0);
+    }
+
+    /**
+     * 形如 "n=12 p50=9.1 p90=18.0 p99=40.2 max=40.2 | ≤4:0 ≤8:3 ..."，空桶也列出，便于逐行对比。
+     */
+    String format() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "n=%d p50=%.1f p90=%.1f p99=%.1f max=%.1f |",
+                count, percentile(0.5), percentile(0.9), percentile(0.99), max()));
+        for (int i = 0; i < bucketCounts.length; i++) {
+            sb.append(' ');
+            if (i < BUCKET_UPPER_BOUNDS_MS.length) {
+                sb.append('≤').append(formatBound(BUCKET_UPPER_BOUNDS_MS[i]));
+            } else {
+                sb.append('>').append(formatBound(BUCKET_UPPER_BOUNDS_MS[i - 1]));
+            }
+            sb.append(':').append(bucketCounts[i]);
+        }
+        return sb.toString();
+    }
+
+    private static String formatBound(double bound) {
+        return bound == Math.rint(bound)
+                ? String.valueOf((long) bound)
+                : String.format(Locale.US, "%.1f", bound);
+    }
+}
@@ -0,0 +1,161 @@
+package com.book.mask.floating;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 悬浮窗每次显示 / 恢复的逐阶段耗时：决定显示 → addView（或恢复暖窗口）→ 首帧绘制 → 首次触摸，
+ * 按显示路径分别记入 {@link LatencyHistogram}。时间戳由调用方传入（纳秒，同一时钟），
+ * 首帧与触摸由 {@link FloatingWindowManager} 的一次性监听回报；本类不涉及 View 与线程，只在主线程使用。
+ * <p>
+ * 同一时刻只跟踪一次显示：新的显示开始或悬浮窗被隐藏时，上一次尚未走完的阶段直接作废，
+ * 迟到的首帧回报按显示序号识别后忽略。
+ */
+final class LatencyTracer {
+
+    enum ShowPath {
+        COLD_INFLATE("新建 View"),
+        POOLED_VIEW("预创建 View"),
+        WARM_RESUME("暖窗口恢复"),
+        TRANSITION_REUSE("暖窗口跨 APP 复用"),
+        SYSTEM_UI_RESUME("SystemUI 后恢复");
+
+        final String label;
+
+        ShowPath(String label) {
+            this.label = label;
+        }
+    }
+
+    enum Stage {
+        DECISION_TO_ATTACH("决策→addView/恢复"),
+        ATTACH_TO_DRAW("addView/恢复→首帧"),
+        DECISION_TO_DRAW("决策→首帧"),
+        DRAW_TO_TOUCH("首帧→首次触摸");
+
+        final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+    }
+
+    private final int window;
+    private final Map<ShowPath, Map<Stage, LatencyHistogram>> histograms = new EnumMap<>(ShowPath.class);
+
+    // 当前跟踪的显示；没有时 activePath 为 null
+    private long traceId = 0;
+    private ShowPath activePath;
+    private long decidedAt;
+    private long attachedAt;
+    private long drawnAt;
+    private boolean drawn;
+
+    LatencyTracer(int window) {
+        this.window = window;
+    }
+
+    /**
+     * 悬浮窗已 addView 或暖窗口已恢复为可见，开始等待首帧。
+     *
+     * @return 本次显示的序号，首帧回报时带回
+     */
+    long onShown(ShowPath path, long decidedAtNanos, long attachedAtNanos) {
+        traceId++;
+        activePath = path;
+        decidedAt = decidedAtNanos;
+        attachedAt = attachedAtNanos;
+        drawn = false;
+        histogram(path, Stage.DECISION_TO_ATTACH).record(millisBetween(decidedAt, attachedAt));
+        return traceId;
+    }
+
+    /**
+     * 该次显示后的第一帧开始绘制。
+     *
+     * @return 是否被记入（序号过期或已记过时为 false）
+     */
+    boolean onFirstDraw(long id, long drawnAtNanos) {
+        if (id != traceId || activePath == null || drawn) {
+            return false;
+        }
+        drawn = true;
+        drawnAt = drawnAtNanos;
+        histogram(activePath, Stage.ATTACH_TO_DRAW).record(millisBetween(attachedAt, drawnAt));
+        histogram(activePath, Stage.DECISION_TO_DRAW).record(millisBetween(decidedAt, drawnAt));
+        return true;
+    }
+
+    /**
+     * 悬浮窗上的触摸；只记首帧之后的第一次，之后本次显示结束跟踪。
+     */
+    boolean onTouch(long touchedAtNanos) {
+        if (activePath == null || !drawn) {
+            return false;
+        }
+        histogram(activePath, Stage.DRAW_TO_TOUCH).record(millisBetween(drawnAt, touchedAtNanos));
+        activePath = null;
+        return true;
+    }
+
+    /**
+     * 悬浮窗被隐藏或暂停：本次显示未走完的阶段不再记录。
+     */
+    void onHidden() {
+        activePath = null;
+    }
+
+    boolean isAwaitingDraw() {
+        return activePath != null && !drawn;
+    }
+
+    LatencyHistogram getHistogram(ShowPath path, Stage stage) {
+        Map<Stage, LatencyHistogram> byStage = histograms.get(path);
+        return byStage != null ? byStage.get(stage) : null;
+    }
+
+    /**
+     * 按路径、阶段逐行列出直方图；没有样本的路径不列出。
+     */
+    String buildReport() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("悬浮窗显示耗时（每项最近 ").append(window).append(" 次，单位 ms）");
+        boolean any = false;
+        for (ShowPath path : ShowPath.values()) {
+            Map<Stage, LatencyHistogram> byStage = histograms.get(path);
+            if (byStage == null) {
+                continue;
+            }
+            any = true;
+            sb.append("\n[").append(path.label).append(']');
+            for (Stage stage : Stage.values()) {
+                LatencyHistogram histogram = byStage.get(stage);
+                if (histogram != null) {
+                    sb.append("\n  ").append(stage.label).append(": ").append(histogram.format());
+                }
+            }
+        }
+        if (!any) {
+            sb.append("\n暂无记录");
+        }
+        return sb.toString();
+    }
+
+    private LatencyHistogram histogram(ShowPath path, Stage stage) {
+        Map<Stage, LatencyHistogram> byStage = histograms.get(path);
+        if (byStage == null) {
+            byStage = new EnumMap<>(Stage.class);
+            histograms.put(path, byStage);
+        }
+        LatencyHistogram histogram = byStage.get(stage);
+        if (histogram == null) {
+            histogram = new LatencyHistogram(window);
+            byStage.put(stage, histogram);
+        }
+        return histogram;
+    }
+
+    private static double millisBetween(long fromNanos, long toNanos) {
+        return (toNanos - fromNanos) / 1_000_000.0;
+    }
+}
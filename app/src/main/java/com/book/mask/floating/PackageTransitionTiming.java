@@ -6,15 +6,46 @@ import com.book.mask.constant.Const;
  * 普通包名切换的时间计算，所有入参和返回值单位均为毫秒。
  */
 public final class PackageTransitionTiming {
+    /**
+     * 某个 APP 的过渡时长参数：离开后首次复核的等待时间与过渡动画总时长。
+     * 默认取全局常量，积累到足够的实测样本后由 {@link TransitionTimingCalibrator} 按 APP 给出。
+     */
+    static final class Profile {
+        final long checkDelayMs;
+        final long animationDurationMs;
+
+        Profile(long checkDelayMs, long animationDurationMs) {
+            this.checkDelayMs = checkDelayMs;
+            this.animationDurationMs = animationDurationMs;
+        }
+
+        long getEarlyReturnPauseDuration() {
+            return PackageTransitionTiming.getEarlyReturnPauseDuration(
+                    animationDurationMs, checkDelayMs);
+        }
+    }
+
+    interface Provider {
+        Profile get(String packageName);
+    }
+
+    static final Profile DEFAULT = new Profile(
+            Const.PACKAGE_TRANSITION_CHECK_DELAY_MS,
+            Const.PACKAGE_TRANSITION_ANIMATION_DURATION_MS);
+
+    static final Provider DEFAULT_PROVIDER = packageName -> DEFAULT;
+
     private PackageTransitionTiming() {
     }
 
     public static long getEarlyReturnPauseDuration() {
+        return DEFAULT.getEarlyReturnPauseDuration();
+    }
+
+    static long getEarlyReturnPauseDuration(long animationDurationMs, long checkDelayMs) {
         return Math.max(
                 0L,
-                (long) Const.PACKAGE_TRANSITION_ANIMATION_DURATION_MS
-                        - Const.PACKAGE_TRANSITION_CHECK_DELAY_MS
-                        + Const.TRANSITION_EARLY_RETURN_BUFFER_MS
+                animationDurationMs - checkDelayMs + Const.TRANSITION_EARLY_RETURN_BUFFER_MS
         );
     }
 }
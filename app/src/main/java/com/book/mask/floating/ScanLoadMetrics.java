@@ -0,0 +1,30 @@
+package com.book.mask.floating;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 关键词扫描的累计负载：扫描次数、扫描线程 CPU 耗时与墙钟耗时。扫描线程写入，主线程读取汇总。
+ */
+final class ScanLoadMetrics {
+    private final AtomicLong scans = new AtomicLong();
+    private final AtomicLong cpuTimeMs = new AtomicLong();
+    private final AtomicLong wallTimeMs = new AtomicLong();
+
+    void recordScan(long cpuMs, long wallMs) {
+        scans.incrementAndGet();
+        cpuTimeMs.addAndGet(Math.max(0, cpuMs));
+        wallTimeMs.addAndGet(Math.max(0, wallMs));
+    }
+
+    long getScans() {
+        return scans.get();
+    }
+
+    long getCpuTimeMs() {
+        return cpuTimeMs.get();
+    }
+
+    long getWallTimeMs() {
+        return wallTimeMs.get();
+    }
+}
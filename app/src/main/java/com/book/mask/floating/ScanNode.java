@@ -0,0 +1,35 @@
+package com.book.mask.floating;
+
+import java.util.List;
+
+/**
+ * 关键词检测所需的最小节点接口。线上由 {@link AccessibilityScanNode} 包装 AccessibilityNodeInfo，
+ * 离线由 {@link TreeSnapshot.Node} 回放录制的节点树，使 {@link FloatHelper} 的检测方式可以在 JVM 单测中
+ * 复现与对比。getChild 与两个 find 方法在线上都是跨进程调用。
+ */
+interface ScanNode {
+    int getChildCount();
+
+    /** 节点已消失时返回 null。 */
+    ScanNode getChild(int index);
+
+    /** 已是根节点时返回 null。判断两个节点是否为同一控件用 equals。 */
+    ScanNode getParent();
+
+    CharSequence getText();
+
+    CharSequence getContentDescription();
+
+    String getViewIdResourceName();
+
+    boolean isVisibleToUser();
+
+    /** 在以本节点为根的子树中按 viewId 查找，语义同 findAccessibilityNodeInfosByViewId。 */
+    List<ScanNode> findByViewId(String viewId);
+
+    /** 在以本节点为根的子树中按文字（含内容描述）查找，忽略大小写的包含匹配。 */
+    List<ScanNode> findByText(String text);
+
+    /** 释放节点；离线实现为空操作。 */
+    void recycle();
+}
@@ -0,0 +1,49 @@
+package com.book.mask.floating;
+
+import com.book.mask.constant.Const;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 单次页面文字扫描的预算：最多访问多少节点、最多耗时多久。任一项用尽即提前结束扫描，
+ * 由调用方按"部分结果"处理。默认值取自 {@link Const}；个别 APP 的页面规模差异很大，
+ * 可依据 {@link TextScanDiagnostics} 输出的预算耗尽日志在 {@link #PACKAGE_OVERRIDES} 中单独调整。
+ */
+final class TextScanBudget {
+    static final TextScanBudget DEFAULT =
+            new TextScanBudget(Const.TEXT_SCAN_MAX_NODES, Const.TEXT_SCAN_MAX_MS);
+
+    // 包名 -> 专属预算；未登记的 APP 使用 DEFAULT
+    private static final Map<String, TextScanBudget> PACKAGE_OVERRIDES = new HashMap<>();
+
+    private final int maxNodes;
+    private final long maxMillis;
+
+    TextScanBudget(int maxNodes, long maxMillis) {
+        this.maxNodes = maxNodes;
+        this.maxMillis = maxMillis;
+    }
+
+    static TextScanBudget forPackage(String packageName) {
+        TextScanBudget budget = packageName == null ? null : PACKAGE_OVERRIDES.get(packageName);
+        return budget != null ? budget : DEFAULT;
+    }
+
+    int getMaxNodes() {
+        return maxNodes;
+    }
+
+    long getMaxMillis() {
+        return maxMillis;
+    }
+
+    long getMaxNanos() {
+        return maxMillis * 1_000_000L;
+    }
+
+    @Override
+    public String toString() {
+        return "maxNodes=" + maxNodes + ", maxMs=" + maxMillis;
+    }
+}
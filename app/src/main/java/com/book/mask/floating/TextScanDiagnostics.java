@@ -21,6 +21,8 @@ final class TextScanDiagnostics {
     private int lastHitNodeIndex = -1;
     private int lastHitDepth = -1;
     private boolean lastHitVisible;
+    private boolean budgetExhausted;
+    private String scanMode = "full";
 
     private TextScanDiagnostics(String source, String activePackage) {
         this.source = source;
@@ -49,10 +51,31 @@ final class TextScanDiagnostics {
         lastHitVisible = visible;
     }
 
+    void onBudgetExhausted() {
+        budgetExhausted = true;
+    }
+
+    void setScanMode(String scanMode) {
+        this.scanMode = scanMode;
+    }
+
+    /**
+     * 预算耗尽与 APP 无关地始终输出一行告警：访问节点数与耗时可用于在
+     * {@link TextScanBudget} 中按 APP 调整预算。
+     */
+    static void reportBudgetExhausted(String activePackage, TextScanBudget budget,
+                                      int visitedNodes, double traversalMs) {
+        Log.w(TAG, "文字扫描预算耗尽: activePackage=" + activePackage
+                + ", " + budget
+                + ", visitedNodes=" + visitedNodes
+                + ", traversalMs=" + com.book.mask.util.DateUtils.formatMillis(traversalMs));
+    }
+
     void log(String rootPackage, double rootMs, double traversalMs, boolean matched) {
         Log.d(TAG, "文字扫描诊断: source=" + source
                 + ", activePackage=" + activePackage
                 + ", rootPackage=" + rootPackage
+                + ", scanMode=" + scanMode
                 + ", rootMs=" + com.book.mask.util.DateUtils.formatMillis(rootMs)
                 + ", traversalMs=" + com.book.mask.util.DateUtils.formatMillis(traversalMs)
                 + ", visitedNodes=" + visitedNodeCount
@@ -61,6 +84,7 @@ final class TextScanDiagnostics {
                 + ", lastHitIndex=" + lastHitNodeIndex
                 + ", lastHitDepth=" + lastHitDepth
                 + ", lastHitVisible=" + lastHitVisible
+                + ", budgetExhausted=" + budgetExhausted
                 + ", matched=" + matched);
     }
 }
@@ -0,0 +1,61 @@
+package com.book.mask.floating;
+
+/**
+ * 一次页面文字扫描的结论。预算耗尽时扫描并未覆盖整棵节点树，未命中不代表页面没有目标关键词，
+ * 调用方应将其视为"部分结果"，而不是可靠的"非目标页面"；被更新的扫描请求取代时结论为
+ * {@link Outcome#CANCELLED}，应直接丢弃。
+ */
+final class TextScanResult {
+    enum Outcome {
+        MATCHED,
+        NOT_FOUND,
+        BUDGET_EXHAUSTED,
+        CANCELLED
+    }
+
+    private final Outcome outcome;
+    private final int visitedNodes;
+    // 命中节点相对扫描起点的子节点下标路径；未命中时为 null
+    private final int[] hitPath;
+    // 命中节点的 viewIdResourceName；APP 未提供或未命中时为 null
+    private final String hitViewId;
+
+    TextScanResult(Outcome outcome, int visitedNodes) {
+        this(outcome, visitedNodes, null, null);
+    }
+
+    TextScanResult(Outcome outcome, int visitedNodes, int[] hitPath) {
+        this(outcome, visitedNodes, hitPath, null);
+    }
+
+    TextScanResult(Outcome outcome, int visitedNodes, int[] hitPath, String hitViewId) {
+        this.outcome = outcome;
+        this.visitedNodes = visitedNodes;
+        this.hitPath = hitPath;
+        this.hitViewId = hitViewId;
+    }
+
+    Outcome getOutcome() {
+        return outcome;
+    }
+
+    int getVisitedNodes() {
+        return visitedNodes;
+    }
+
+    int[] getHitPath() {
+        return hitPath;
+    }
+
+    String getHitViewId() {
+        return hitViewId;
+    }
+
+    boolean isMatched() {
+        return outcome == Outcome.MATCHED;
+    }
+
+    boolean isPartial() {
+        return outcome == Outcome.BUDGET_EXHAUSTED;
+    }
+}
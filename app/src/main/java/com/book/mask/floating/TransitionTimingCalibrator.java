@@ -0,0 +1,137 @@
+package com.book.mask.floating;
+
+import android.util.Log;
+
+import com.book.mask.constant.Const;
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.tencent.mmkv.MMKV;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 按 APP 校准离开过渡的复核参数：每次离开目标 APP 时采集一次实测样本（见 {@link TransitionTimingStats}），
+ * 以包名为键把最近的样本持久化到 MMKV，供 {@link ForegroundPackageMachine} 取用 p95 推出的复核等待与动画时长。
+ * 快设备因此更早恢复遮罩，慢设备不再因复核过早而闪现。只在主线程调用。
+ */
+final class TransitionTimingCalibrator implements PackageTransitionTiming.Provider {
+    private static final String TAG = "AppStateManager";
+    private static final String PREF_NAME = "transition_timing";
+    private static final String KEY_PREFIX = "samples_";
+
+    private final Gson gson = new Gson();
+    private final MMKV mmkv;
+    private final Map<String, TransitionTimingStats> stats = new HashMap<>();
+    private TransitionTimingStats.Sampling sampling;
+
+    TransitionTimingCalibrator() {
+        MMKV storage;
+        try {
+            storage = MMKV.mmkvWithID(PREF_NAME);
+        } catch (Exception e) {
+            Log.w(TAG, "过渡时长校准数据初始化失败，仅使用内存样本", e);
+            storage = null;
+        }
+        this.mmkv = storage;
+    }
+
+    @Override
+    public PackageTransitionTiming.Profile get(String packageName) {
+        if (!Const.TRANSITION_CALIBRATION_ENABLED || packageName == null) {
+            return PackageTransitionTiming.DEFAULT;
+        }
+        return load(packageName).toProfile();
+    }
+
+    /**
+     * 离开目标 APP：结束上一次未完成的采样，开始新的采样。
+     */
+    void onTargetLeft(String packageName, long now) {
+        finishSampling();
+        if (Const.TRANSITION_CALIBRATION_ENABLED && packageName != null) {
+            sampling = new TransitionTimingStats.Sampling(packageName, now);
+        }
+    }
+
+    boolean isSampling() {
+        return sampling != null;
+    }
+
+    /**
+     * 采样期间的窗口事件。调用方只在 {@link #isSampling()} 时读取活动窗口，避免平时多一次跨进程查询。
+     */
+    void onWindowEvent(String activeRootPackage, long now) {
+        if (sampling == null) {
+            return;
+        }
+        if (sampling.isExpired(now)) {
+            finishSampling();
+            return;
+        }
+        sampling.onWindowEvent(activeRootPackage, now);
+    }
+
+    /**
+     * 采样窗口到期或再次离开时结算本次样本。
+     */
+    void finishSampling() {
+        TransitionTimingStats.Sampling finished = sampling;
+        sampling = null;
+        if (finished == null) {
+            return;
+        }
+        int[] sample = finished.finish();
+        if (sample == null) {
+            return;
+        }
+
+        TransitionTimingStats appStats = load(finished.packageName);
+        appStats.add(sample[0], sample[1]);
+        save(finished.packageName, appStats);
+
+        PackageTransitionTiming.Profile profile = appStats.toProfile();
+        Log.d(TAG, "过渡时长校准: APP=" + finished.packageName
+                + ", 活动窗口切换=" + sample[0] + "ms, 过渡结束=" + sample[1] + "ms"
+                + ", 样本数=" + appStats.size()
+                + ", p95=" + TransitionTimingStats.percentile(appStats.activeRootLag, 95)
+                + "/" + TransitionTimingStats.percentile(appStats.settle, 95) + "ms"
+                + (appStats.isCalibrated()
+                ? ", 复核等待=" + profile.checkDelayMs + "ms, 动画时长=" + profile.animationDurationMs + "ms"
+                : ", 样本不足，沿用默认参数"));
+    }
+
+    private TransitionTimingStats load(String packageName) {
+        TransitionTimingStats appStats = stats.get(packageName);
+        if (appStats != null) {
+            return appStats;
+        }
+        if (mmkv != null) {
+            String json = mmkv.getString(KEY_PREFIX + packageName, null);
+            if (json != null) {
+                try {
+                    appStats = gson.fromJson(json, TransitionTimingStats.class);
+                } catch (JsonSyntaxException e) {
+                    Log.w(TAG, "过渡时长校准数据损坏，已丢弃: " + packageName, e);
+                    mmkv.removeValueForKey(KEY_PREFIX + packageName);
+                }
+            }
+        }
+        if (appStats == null || appStats.activeRootLag == null || appStats.settle == null) {
+            appStats = new TransitionTimingStats();
+        }
+        stats.put(packageName, appStats);
+        return appStats;
+    }
+
+    private void save(String packageName, TransitionTimingStats appStats) {
+        if (mmkv == null) {
+            return;
+        }
+        try {
+            mmkv.putString(KEY_PREFIX + packageName, gson.toJson(appStats));
+        } catch (Exception e) {
+            Log.w(TAG, "过渡时长校准数据保存失败: " + packageName, e);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.book.mask.floating;
+
+import com.book.mask.constant.Const;
+
+import java.util.Arrays;
+
+/**
+ * 单个 APP 离开过渡的实测样本，以及由样本推出的复核参数。只保留最近若干次，旧样本依次淘汰，
+ * 因此设备变慢（省电模式、系统升级）或 APP 升级改了转场后会自然跟上。
+ * <p>
+ * 每次离开目标 APP 采集两个时长（均从离开时刻起算）：
+ * <ul>
+ *   <li>activeRootLag：活动窗口根包名最后一次变化的时间，此后它不再跳动；始终未变为 0。
+ *       离开后又回到该 APP 的短暂过渡同样计入，这类过渡恰是复核最容易读错的情况。
+ *       首次复核读的就是活动窗口，等到 p95 之后再读，绝大多数情况下读到的已是真实前台；</li>
+ *   <li>settle：过渡期间最后一个窗口事件到达的时间，即过渡动画实际结束的时刻。</li>
+ * </ul>
+ * 样本不足时沿用全局常量；推出的参数均按 Const 中的上下限截断，避免个别异常样本把复核拉得过短或过长。
+ */
+final class TransitionTimingStats {
+    int[] activeRootLag = new int[0];
+    int[] settle = new int[0];
+
+    void add(int activeRootLagMs, int settleMs) {
+        activeRootLag = append(activeRootLag, activeRootLagMs);
+        settle = append(settle, settleMs);
+    }
+
+    int size() {
+        return Math.min(activeRootLag.length, settle.length);
+    }
+
+    boolean isCalibrated() {
+        return size() >= Const.TRANSITION_CALIBRATION_MIN_SAMPLES;
+    }
+
+    /**
+     * 样本足够时按 p95 推出复核参数，否则返回默认参数。
+     */
+    PackageTransitionTiming.Profile toProfile() {
+        if (!isCalibrated()) {
+            return PackageTransitionTiming.DEFAULT;
+        }
+        long checkDelay = clamp(percentile(activeRootLag, 95) + Const.TRANSITION_CALIBRATION_MARGIN_MS,
+                Const.TRANSITION_CHECK_DELAY_MIN_MS, Const.TRANSITION_CHECK_DELAY_MAX_MS);
+        long animation = clamp(percentile(settle, 95) + Const.TRANSITION_CALIBRATION_MARGIN_MS,
+                Math.max(checkDelay, Const.TRANSITION_ANIMATION_MIN_MS),
+                Const.TRANSITION_ANIMATION_MAX_MS);
+        return new PackageTransitionTiming.Profile(checkDelay, animation);
+    }
+
+    /** 最近秩百分位；无样本时返回 0。 */
+    static int percentile(int[] values, int percentile) {
+        if (values.length == 0) {
+            return 0;
+        }
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    private static int[] append(int[] values, int value) {
+        int max = Const.TRANSITION_CALIBRATION_MAX_SAMPLES;
+        int keep = Math.min(values.length, max - 1);
+        int[] next = new int[keep + 1];
+        System.arraycopy(values, values.length - keep, next, 0, keep);
+        next[keep] = value;
+        return next;
+    }
+
+    private static long clamp(long value, long min, long max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * 一次离开过渡的采样：从离开时刻起，在采样窗口内记录窗口事件到达时间与活动窗口根包名的变化。
+     * 离开时刻本身也应以当时的活动窗口调用一次 {@link #onWindowEvent}。
+     */
+    static final class Sampling {
+        final String packageName;
+        final long leftAt;
+        private long lastEventAt = -1;
+        // 离开时刻活动窗口仍应是该 APP，之后的每次变化都算
+        private String lastActiveRoot;
+        private long activeRootChangedAt;
+
+        Sampling(String packageName, long leftAt) {
+            this.packageName = packageName;
+            this.leftAt = leftAt;
+            this.lastActiveRoot = packageName;
+            this.activeRootChangedAt = leftAt;
+        }
+
+        boolean isExpired(long now) {
+            return now - leftAt > Const.TRANSITION_CALIBRATION_WINDOW_MS;
+        }
+
+        void onWindowEvent(String activeRootPackage, long now) {
+            if (isExpired(now) || now < leftAt) {
+                return;
+            }
+            lastEventAt = now;
+            // 不明确的读数既不算离开也不算变化
+            if (activeRootPackage.isEmpty() || activeRootPackage.equals(lastActiveRoot)) {
+                return;
+            }
+            lastActiveRoot = activeRootPackage;
+            activeRootChangedAt = now;
+        }
+
+        /**
+         * 采样窗口内没有任何窗口事件时无从测量，返回 null 丢弃；
+         * 活动窗口离开后又回到该 APP 的短暂过渡照常计入。
+         *
+         * @return {activeRootLag, settle}
+         */
+        int[] finish() {
+            if (lastEventAt < 0) {
+                return null;
+            }
+            int lag = (int) (activeRootChangedAt - leftAt);
+            int settleMs = (int) Math.max(lag, lastEventAt - leftAt);
+            return new int[]{lag, settleMs};
+        }
+    }
+}
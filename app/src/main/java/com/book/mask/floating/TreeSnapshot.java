@@ -0,0 +1,205 @@
+package com.book.mask.floating;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.annotations.SerializedName;
+
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 一次扫描时的节点树快照：只保留关键词检测用到的文字、内容描述、viewId、可见性与子节点结构。
+ * 由 {@link TreeSnapshotRecorder} 在调试包中录制为 JSON（字段名缩写、空值省略），
+ * 单测再读回并以 {@link ScanNode} 回放给 {@link FloatHelper}，不依赖真机与第三方 APP。
+ */
+final class TreeSnapshot {
+    static final int FORMAT_VERSION = 1;
+
+    private static final Gson GSON = new Gson();
+
+    @SerializedName("format")
+    int formatVersion = FORMAT_VERSION;
+    @SerializedName("pkg")
+    String packageName;
+    @SerializedName("ver")
+    long versionCode;
+    @SerializedName("at")
+    long recordedAt;
+    @SerializedName("src")
+    String triggerSource;
+    // 录制时该 APP 配置的关键词与控件 ID，回放时据此重建匹配规则
+    @SerializedName("kw")
+    String targetWord;
+    @SerializedName("ids")
+    String[] targetViewIds;
+    // 录制时因节点数上限截断的，回放结论可能与线上不同
+    @SerializedName("cut")
+    boolean truncated;
+    // 录制时线上扫描的结论；部分结果（预算耗尽）为 null
+    @SerializedName("hit")
+    Boolean matched;
+    @SerializedName("root")
+    Node root;
+
+    /**
+     * 快照中的一个节点。可见节点不写 hidden 字段，叶子节点不写 children 字段；
+     * children 中的 null 表示录制时 getChild 返回了 null。
+     */
+    static final class Node implements ScanNode {
+        @SerializedName("t")
+        String text;
+        @SerializedName("d")
+        String contentDescription;
+        @SerializedName("id")
+        String viewId;
+        @SerializedName("h")
+        Boolean hidden;
+        @SerializedName("c")
+        List<Node> children;
+        // 不录制，读入后由 children 重建
+        transient Node parent;
+
+        Node() {
+        }
+
+        Node(String text, String viewId) {
+            this.text = text;
+            this.viewId = viewId;
+        }
+
+        Node add(Node child) {
+            if (children == null) {
+                children = new ArrayList<>();
+            }
+            children.add(child);
+            if (child != null) {
+                child.parent = this;
+            }
+            return this;
+        }
+
+        @Override
+        public int getChildCount() {
+            return children == null ? 0 : children.size();
+        }
+
+        @Override
+        public ScanNode getChild(int index) {
+            return index >= 0 && index < getChildCount() ? children.get(index) : null;
+        }
+
+        @Override
+        public ScanNode getParent() {
+            return parent;
+        }
+
+        @Override
+        public CharSequence getText() {
+            return text;
+        }
+
+        @Override
+        public CharSequence getContentDescription() {
+            return contentDescription;
+        }
+
+        @Override
+        public String getViewIdResourceName() {
+            return viewId;
+        }
+
+        @Override
+        public boolean isVisibleToUser() {
+            return hidden == null || !hidden;
+        }
+
+        @Override
+        public List<ScanNode> findByViewId(String targetViewId) {
+            List<ScanNode> result = new ArrayList<>();
+            for (Node node : preorder()) {
+                if (targetViewId != null && targetViewId.equals(node.viewId)) {
+                    result.add(node);
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public List<ScanNode> findByText(String query) {
+            if (query == null || query.isEmpty()) {
+                return Collections.emptyList();
+            }
+            String needle = query.toLowerCase(Locale.ROOT);
+            List<ScanNode> result = new ArrayList<>();
+            for (Node node : preorder()) {
+                if (containsIgnoreCase(node.text, needle)
+                        || containsIgnoreCase(node.contentDescription, needle)) {
+                    result.add(node);
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public void recycle() {
+        }
+
+        private List<Node> preorder() {
+            List<Node> nodes = new ArrayList<>();
+            ArrayDeque<Node> stack = new ArrayDeque<>();
+            stack.push(this);
+            while (!stack.isEmpty()) {
+                Node node = stack.pop();
+                nodes.add(node);
+                for (int i = node.getChildCount() - 1; i >= 0; i--) {
+                    Node child = node.children.get(i);
+                    if (child != null) {
+                        stack.push(child);
+                    }
+                }
+            }
+            return nodes;
+        }
+
+        private static boolean containsIgnoreCase(String value, String lowerNeedle) {
+            return value != null && value.toLowerCase(Locale.ROOT).contains(lowerNeedle);
+        }
+    }
+
+    String toJson() {
+        return GSON.toJson(this);
+    }
+
+    /**
+     * 读取录制文件；格式不符或版本不支持时抛出 {@link JsonParseException}。
+     */
+    static TreeSnapshot fromJson(Reader reader) {
+        TreeSnapshot snapshot = GSON.fromJson(reader, TreeSnapshot.class);
+        if (snapshot == null || snapshot.root == null) {
+            throw new JsonParseException("节点树快照为空");
+        }
+        if (snapshot.formatVersion > FORMAT_VERSION) {
+            throw new JsonParseException("不支持的节点树快照版本: " + snapshot.formatVersion);
+        }
+        for (Node node : snapshot.root.preorder()) {
+            for (int i = 0; i < node.getChildCount(); i++) {
+                Node child = node.children.get(i);
+                if (child != null) {
+                    child.parent = node;
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * 快照中的节点总数。
+     */
+    int countNodes() {
+        return root == null ? 0 : root.preorder().size();
+    }
+}
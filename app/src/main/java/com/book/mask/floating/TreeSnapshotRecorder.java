@@ -0,0 +1,166 @@
+package com.book.mask.floating;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.util.Log;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import com.book.mask.constant.Const;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 调试包专用：扫描结束后把当前节点树录制为 {@link TreeSnapshot} 文件，供离线回放测试扫描性能与结论。
+ * 仅在 {@link Const#TREE_SNAPSHOT_RECORDING_ENABLED} 打开且为可调试包时生效；同一 APP 按间隔限频，
+ * 文件数超过上限时删除最早的。文件位于 Android/data/&lt;包名&gt;/files/tree_snapshots，可直接 adb pull。
+ * 快照含页面文字，只保存在本地。只在扫描线程调用。
+ */
+final class TreeSnapshotRecorder {
+    private static final String TAG = "AppStateManager";
+    private static final String DIR_NAME = "tree_snapshots";
+
+    private final Context context;
+    private final boolean enabled;
+    private final Map<String, Long> lastRecordedAt = new ConcurrentHashMap<>();
+
+    TreeSnapshotRecorder(Context context) {
+        this.context = context.getApplicationContext() != null
+                ? context.getApplicationContext() : context;
+        boolean debuggable =
+                (this.context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+        this.enabled = Const.TREE_SNAPSHOT_RECORDING_ENABLED && debuggable;
+    }
+
+    /**
+     * 录制 root 所在的节点树；root 由调用方回收。被取消的扫描不录制。
+     */
+    void maybeRecord(AccessibilityNodeInfo root, KeywordScanWorker.Request request,
+                     TextScanResult result) {
+        if (!enabled || root == null
+                || result.getOutcome() == TextScanResult.Outcome.CANCELLED) {
+            return;
+        }
+        String packageName = request.app.getPackageName();
+        long now = System.currentTimeMillis();
+        Long last = lastRecordedAt.get(packageName);
+        if (last != null && now - last < Const.TREE_SNAPSHOT_MIN_INTERVAL_MS) {
+            return;
+        }
+        lastRecordedAt.put(packageName, now);
+
+        TreeSnapshot snapshot = new TreeSnapshot();
+        snapshot.packageName = packageName;
+        snapshot.versionCode = AppVersionCodes.get(context, packageName);
+        snapshot.recordedAt = now;
+        snapshot.triggerSource = request.triggerSource;
+        snapshot.targetWord = request.targetWord;
+        snapshot.targetViewIds = request.app.getTargetViewIdArray();
+        snapshot.matched = result.isPartial() ? null : result.isMatched();
+        snapshot.root = capture(root, Const.TREE_SNAPSHOT_MAX_NODES, snapshot);
+
+        File dir = snapshotDir();
+        File file = new File(dir, packageName + "_" + now + ".json");
+        try (Writer writer = new OutputStreamWriter(
+                new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(snapshot.toJson());
+        } catch (IOException e) {
+            Log.w(TAG, "节点树快照写入失败: " + file, e);
+            return;
+        }
+        Log.d(TAG, "已录制节点树快照: " + file.getName() + "，节点数=" + snapshot.countNodes()
+                + (snapshot.truncated ? "（已截断）" : ""));
+        pruneOldFiles(dir);
+    }
+
+    /**
+     * 先序复制节点树，超过 maxNodes 的部分丢弃并标记截断；取得的子节点在此回收。
+     */
+    private static TreeSnapshot.Node capture(AccessibilityNodeInfo root, int maxNodes,
+                                             TreeSnapshot snapshot) {
+        TreeSnapshot.Node rootCopy = copyOf(root);
+        ArrayDeque<AccessibilityNodeInfo> sources = new ArrayDeque<>();
+        ArrayDeque<TreeSnapshot.Node> copies = new ArrayDeque<>();
+        sources.push(root);
+        copies.push(rootCopy);
+        int nodes = 1;
+        try {
+            while (!sources.isEmpty()) {
+                AccessibilityNodeInfo source = sources.pop();
+                TreeSnapshot.Node copy = copies.pop();
+                try {
+                    for (int i = 0; i < source.getChildCount(); i++) {
+                        AccessibilityNodeInfo child = source.getChild(i);
+                        if (child == null) {
+                            // 保留空位，使回放时的子节点下标与 getChild 返回 null 的情况都与线上一致
+                            copy.add(null);
+                            continue;
+                        }
+                        if (nodes >= maxNodes) {
+                            child.recycle();
+                            snapshot.truncated = true;
+                            continue;
+                        }
+                        nodes++;
+                        TreeSnapshot.Node childCopy = copyOf(child);
+                        copy.add(childCopy);
+                        sources.push(child);
+                        copies.push(childCopy);
+                    }
+                } finally {
+                    if (source != root) {
+                        source.recycle();
+                    }
+                }
+            }
+        } finally {
+            while (!sources.isEmpty()) {
+                AccessibilityNodeInfo source = sources.pop();
+                if (source != root) {
+                    source.recycle();
+                }
+            }
+        }
+        return rootCopy;
+    }
+
+    private static TreeSnapshot.Node copyOf(AccessibilityNodeInfo node) {
+        TreeSnapshot.Node copy = new TreeSnapshot.Node();
+        copy.text = node.getText() == null ? null : node.getText().toString();
+        copy.contentDescription = node.getContentDescription() == null
+                ? null : node.getContentDescription().toString();
+        copy.viewId = node.getViewIdResourceName();
+        copy.hidden = node.isVisibleToUser() ? null : Boolean.TRUE;
+        return copy;
+    }
+
+    private File snapshotDir() {
+        File base = context.getExternalFilesDir(null);
+        File dir = new File(base != null ? base : context.getFilesDir(), DIR_NAME);
+        if (!dir.exists() && !dir.mkdirs()) {
+            Log.w(TAG, "节点树快照目录创建失败: " + dir);
+        }
+        return dir;
+    }
+
+    private static void pruneOldFiles(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null || files.length <= Const.TREE_SNAPSHOT_MAX_FILES) {
+            return;
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (int i = 0; i < files.length - Const.TREE_SNAPSHOT_MAX_FILES; i++) {
+            if (!files[i].delete()) {
+                Log.w(TAG, "节点树快照删除失败: " + files[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.book.mask.floating;
+
+import com.book.mask.constant.Const;
+
+/**
+ * 点击快速响应的判定规则：何时把点击的控件记为"通往目标页面的控件"，
+ * 以及抢先显示后关键词检测结论如何处理。
+ */
+final class TriggerControlDecision {
+    enum Verdict {
+        // 关键词命中：保持显示，记一次命中
+        CONFIRM,
+        // 宽限期内未命中：页面文字可能尚未就绪，暂不收回，等后续检测
+        WAIT,
+        // 宽限期已过仍未命中：按常规结论收回悬浮窗，记一次未命中
+        REJECT
+    }
+
+    /**
+     * 最近一次点击。时间取 elapsedRealtime，不受用户修改系统时间影响。
+     */
+    static final class Click {
+        final String packageName;
+        final String signature;
+        final long clickedAt;
+
+        Click(String packageName, String signature, long clickedAt) {
+            this.packageName = packageName;
+            this.signature = signature;
+            this.clickedAt = clickedAt;
+        }
+    }
+
+    private TriggerControlDecision() {
+    }
+
+    static boolean isFresh(Click click, String packageName, long now) {
+        return click != null
+                && click.signature != null
+                && click.packageName.equals(packageName)
+                && now - click.clickedAt <= Const.TRIGGER_CONTROL_CLICK_FRESH_MS;
+    }
+
+    /**
+     * 只在"非目标 → 目标"且之前有同 APP 的新鲜点击时学习。首次进入 APP（状态为 null）不学习，
+     * 以免把启动页或自动跳转前的无关点击记成首页入口。
+     */
+    static boolean shouldLearn(Click click, String packageName, String stateBeforeCheck,
+                               boolean matched, long now) {
+        return matched
+                && "not target".equals(stateBeforeCheck)
+                && isFresh(click, packageName, now);
+    }
+
+    static Verdict onVerificationResult(boolean matched, long now, long deadline) {
+        if (matched) {
+            return Verdict.CONFIRM;
+        }
+        return now < deadline ? Verdict.WAIT : Verdict.REJECT;
+    }
+}
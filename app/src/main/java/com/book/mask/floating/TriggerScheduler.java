@@ -0,0 +1,185 @@
+package com.book.mask.floating;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 悬浮窗相关的所有定时触发（到期自动显示、包名过渡各阶段、过渡校准窗口、页面过渡的临时保留期）统一登记在一个
+ * {@link DeadlineQueue} 里，主线程 Handler 上始终只挂一个唤醒任务，指向最早的到期时刻。
+ * 按键取消与重新安排只改队列，不再逐个 post / remove Runnable。
+ * <p>
+ * 时钟取 {@link SystemClock#uptimeMillis()}，与 Handler 的 postDelayed 相同：深度休眠期间不计时。
+ * 以墙钟时刻登记的触发（{@link #scheduleAt}，如手动关闭后的解禁）另由 {@link DeadlineScheduler}
+ * 的闹钟兜住最近的一个，闹钟投递或用户解锁时 {@link #reconcile} 按墙钟重新折算、补发已到期的触发。
+ * 每次墙钟触发执行时记录计划时刻与实际时刻的偏差。进程被杀后的时刻由调用方从持久化的墙钟时间重新推出后再登记。
+ * 只在 Handler 所在线程调用。
+ */
+final class TriggerScheduler {
+    private static final String TAG = "TriggerScheduler";
+    private static final String AUTO_SHOW_PREFIX = "auto_show:";
+
+    private static final class WallTrigger {
+        final long wallDeadline;
+        final Runnable action;
+
+        WallTrigger(long wallDeadline, Runnable action) {
+            this.wallDeadline = wallDeadline;
+            this.action = action;
+        }
+    }
+
+    private final Handler handler;
+    private final DeadlineScheduler alarm;
+    private final DeadlineQueue<String> queue = new DeadlineQueue<>();
+    // 以墙钟时刻登记的键
+    private final Map<String, WallTrigger> wallTriggers = new HashMap<>();
+    private final Runnable wakeup = () -> fireDue("handler");
+    // 当前挂在 Handler 上的唤醒时刻；未挂为 NONE
+    private long armedAt = DeadlineQueue.NONE;
+    private boolean firing = false;
+    // 本轮到期处理的来源，写入偏差日志
+    private String fireSource = "handler";
+
+    TriggerScheduler(Handler handler, DeadlineScheduler alarm) {
+        this.handler = handler;
+        this.alarm = alarm;
+    }
+
+    /** 某个 APP 的到期自动显示（严格 / 宽松间隔与休闲解禁共用，同一 APP 只有一个）。 */
+    static String autoShowKey(String packageName) {
+        return AUTO_SHOW_PREFIX + packageName;
+    }
+
+    /**
+     * 在 delayMillis 后执行 action；同一键之前的安排作废。
+     */
+    void schedule(String key, long delayMillis, Runnable action) {
+        if (wallTriggers.remove(key) != null) {
+            updateAlarm();
+        }
+        queue.schedule(key, SystemClock.uptimeMillis() + Math.max(0L, delayMillis), action);
+        rearm();
+    }
+
+    /**
+     * 在墙钟时刻 wallDeadline 执行 action；深度休眠或 Handler 延后时由闹钟与对账兜底。
+     */
+    void scheduleAt(String key, long wallDeadline, Runnable action) {
+        wallTriggers.put(key, new WallTrigger(wallDeadline, action));
+        enqueueWallTrigger(key, System.currentTimeMillis());
+        rearm();
+        updateAlarm();
+    }
+
+    void cancel(String key) {
+        boolean wall = wallTriggers.remove(key) != null;
+        if (queue.cancel(key)) {
+            rearm();
+        }
+        if (wall) {
+            updateAlarm();
+        }
+    }
+
+    /**
+     * 按当前墙钟重新折算所有墙钟触发的剩余时长，已到期的立即执行。
+     * 用于闹钟投递、用户解锁等 Handler 延时可能已被休眠拉长的时机。
+     */
+    void reconcile(String source) {
+        long now = System.currentTimeMillis();
+        for (String key : new ArrayList<>(wallTriggers.keySet())) {
+            enqueueWallTrigger(key, now);
+        }
+        // 处理结束后重新挂唤醒并把闹钟移到下一个墙钟时刻
+        fireDue(source);
+    }
+
+    /**
+     * 闹钟已投递：它登记的时刻作废，对账后重新登记下一个。
+     */
+    void onAlarmDelivered() {
+        alarm.onAlarmDelivered();
+        reconcile("alarm");
+    }
+
+    boolean isScheduled(String key) {
+        return queue.isScheduled(key);
+    }
+
+    void cancelAll() {
+        queue.clear();
+        wallTriggers.clear();
+        handler.removeCallbacks(wakeup);
+        armedAt = DeadlineQueue.NONE;
+        alarm.cancel();
+    }
+
+    private void enqueueWallTrigger(String key, long now) {
+        WallTrigger trigger = wallTriggers.get(key);
+        long delayMillis = Math.max(0L, trigger.wallDeadline - now);
+        queue.schedule(key, SystemClock.uptimeMillis() + delayMillis, () -> {
+            if (wallTriggers.get(key) != trigger) {
+                return;
+            }
+            wallTriggers.remove(key);
+            long actual = System.currentTimeMillis();
+            Log.d(TAG, "墙钟触发: " + key + ", 计划=" + trigger.wallDeadline
+                    + ", 实际=" + actual + ", 偏差=" + (actual - trigger.wallDeadline)
+                    + "ms, 来源=" + fireSource);
+            trigger.action.run();
+        });
+    }
+
+    private void updateAlarm() {
+        long earliest = DeadlineQueue.NONE;
+        for (WallTrigger trigger : wallTriggers.values()) {
+            if (earliest == DeadlineQueue.NONE || trigger.wallDeadline < earliest) {
+                earliest = trigger.wallDeadline;
+            }
+        }
+        alarm.update(earliest);
+    }
+
+    private void fireDue(String source) {
+        armedAt = DeadlineQueue.NONE;
+        boolean nested = firing;
+        String previousSource = fireSource;
+        firing = true;
+        fireSource = source;
+        try {
+            Runnable action;
+            // 逐个取出：任务中对其他键的取消、重新安排立即生效
+            while ((action = queue.pollDue(SystemClock.uptimeMillis())) != null) {
+                action.run();
+            }
+        } finally {
+            fireSource = previousSource;
+            firing = nested;
+            if (!nested) {
+                rearm();
+                updateAlarm();
+            }
+        }
+    }
+
+    private void rearm() {
+        if (firing) {
+            // 到期处理结束后统一重新挂唤醒
+            return;
+        }
+        long next = queue.nextDeadline();
+        if (next == armedAt) {
+            return;
+        }
+        handler.removeCallbacks(wakeup);
+        armedAt = next;
+        if (next != DeadlineQueue.NONE) {
+            handler.postAtTime(wakeup, next);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.book.mask.floating;
+
+import android.Manifest;
+import android.app.AppOpsManager;
+import android.app.usage.UsageEvents;
+import android.app.usage.UsageStatsManager;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.book.mask.constant.Const;
+
+/**
+ * 基于 UsageEvents 的前台包名来源：系统在 Activity 切到前台 / 后台时即时记录，
+ * 不受窗口事件滞后与后台窗口事件的影响。
+ * <p>
+ * 从上次读到的最后一条事件时间起增量查询，只维护"最近切到前台、且尚未切到后台"的包名；
+ * 前台 Activity 已 PAUSED 而下一个尚未 RESUMED 时视为切换中，返回空字符串。
+ * 需要用户在系统设置中授予"使用情况访问权限"，未授予时始终返回空字符串，不影响原有判断。
+ */
+final class UsageStatsForegroundSource implements ForegroundSource {
+    private static final String TAG = "AppStateManager";
+    // API 29 起更名为 ACTIVITY_RESUMED / ACTIVITY_PAUSED，取值不变
+    private static final int ACTIVITY_RESUMED = UsageEvents.Event.MOVE_TO_FOREGROUND;
+    private static final int ACTIVITY_PAUSED = UsageEvents.Event.MOVE_TO_BACKGROUND;
+
+    private final Context context;
+    private final UsageStatsManager usageStatsManager;
+    private final UsageEvents.Event event = new UsageEvents.Event();
+
+    // UsageEvents 时间戳为墙钟时间
+    private long lastEventTimestamp = 0;
+    private String resumedPackage = "";
+    private boolean resumedPackagePaused = false;
+
+    private long lastQueryAt = -1;
+    private long permissionCheckedAt = -1;
+    private boolean permitted = false;
+
+    UsageStatsForegroundSource(Context context) {
+        this.context = context.getApplicationContext() != null
+                ? context.getApplicationContext() : context;
+        this.usageStatsManager =
+                (UsageStatsManager) this.context.getSystemService(Context.USAGE_STATS_SERVICE);
+    }
+
+    @Override
+    public String getForegroundPackage() {
+        if (usageStatsManager == null || !isPermitted()) {
+            return "";
+        }
+
+        long now = SystemClock.elapsedRealtime();
+        if (lastQueryAt < 0 || now - lastQueryAt >= Const.USAGE_STATS_MIN_QUERY_INTERVAL_MS) {
+            lastQueryAt = now;
+            queryNewEvents();
+        }
+        return resumedPackagePaused ? "" : resumedPackage;
+    }
+
+    /**
+     * 从最后一条已读事件的时间戳（含）查起：同一毫秒内晚到的事件不会漏掉，
+     * 重复读到的事件再应用一次结果相同。
+     */
+    private void queryNewEvents() {
+        long end = System.currentTimeMillis();
+        long begin = lastEventTimestamp > 0
+                ? lastEventTimestamp
+                : end - Const.USAGE_STATS_INITIAL_LOOKBACK_MS;
+        UsageEvents events;
+        try {
+            events = usageStatsManager.queryEvents(begin, end + 1);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "查询 UsageEvents 失败", e);
+            return;
+        }
+        if (events == null) {
+            return;
+        }
+
+        while (events.hasNextEvent()) {
+            if (!events.getNextEvent(event)) {
+                break;
+            }
+            int type = event.getEventType();
+            if (type != ACTIVITY_RESUMED && type != ACTIVITY_PAUSED) {
+                continue;
+            }
+            String packageName = event.getPackageName();
+            if (packageName == null) {
+                continue;
+            }
+            lastEventTimestamp = Math.max(lastEventTimestamp, event.getTimeStamp());
+            if (type == ACTIVITY_RESUMED) {
+                resumedPackage = packageName;
+                resumedPackagePaused = false;
+            } else if (packageName.equals(resumedPackage)) {
+                resumedPackagePaused = true;
+            }
+        }
+    }
+
+    private boolean isPermitted() {
+        long now = SystemClock.elapsedRealtime();
+        if (permissionCheckedAt >= 0
+                && now - permissionCheckedAt < Const.USAGE_STATS_PERMISSION_CHECK_INTERVAL_MS) {
+            return permitted;
+        }
+        permissionCheckedAt = now;
+        boolean granted = hasUsageAccess(context);
+        if (granted != permitted) {
+            Log.d(TAG, "使用情况访问权限" + (granted ? "已授予，启用" : "未授予，停用")
+                    + " UsageEvents 前台佐证");
+            if (!granted) {
+                lastEventTimestamp = 0;
+                resumedPackage = "";
+                resumedPackagePaused = false;
+            }
+        }
+        permitted = granted;
+        return permitted;
+    }
+
+    static boolean hasUsageAccess(Context context) {
+        AppOpsManager appOps = (AppOpsManager) context.getSystemService(Context.APP_OPS_SERVICE);
+        if (appOps == null) {
+            return false;
+        }
+        int mode;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            mode = appOps.unsafeCheckOpNoThrow(AppOpsManager.OPSTR_GET_USAGE_STATS,
+                    Process.myUid(), context.getPackageName());
+        } else {
+            mode = appOps.checkOpNoThrow(AppOpsManager.OPSTR_GET_USAGE_STATS,
+                    Process.myUid(), context.getPackageName());
+        }
+        if (mode == AppOpsManager.MODE_DEFAULT) {
+            return context.checkCallingOrSelfPermission(Manifest.permission.PACKAGE_USAGE_STATS)
+                    == PackageManager.PERMISSION_GRANTED;
+        }
+        return mode == AppOpsManager.MODE_ALLOWED;
+    }
+}
@@ -23,6 +23,8 @@ public class ServiceKeepAliveManager {
         void onScreenUnlocked();
         void onUserPresent();
         void onServiceNeedRestart();
+        void onScreenOff();
+        void onScreenOn();
     }
     
     private OnServiceStateListener listener;
@@ -74,7 +76,15 @@ public class ServiceKeepAliveManager {
                 String action = intent.getAction();
                 Log.d(TAG, "收到系统广播: " + action);
                 
-                if (Intent.ACTION_USER_PRESENT.equals(action)) {
+                if (Intent.ACTION_SCREEN_OFF.equals(action)) {
+                    if (listener != null) {
+                        listener.onScreenOff();
+                    }
+                } else if (Intent.ACTION_SCREEN_ON.equals(action)) {
+                    if (listener != null) {
+                        listener.onScreenOn();
+                    }
+                } else if (Intent.ACTION_USER_PRESENT.equals(action)) {
                     handleUserPresent();
                 } else if (Intent.ACTION_BOOT_COMPLETED.equals(action)) {
                     handleBootCompleted();
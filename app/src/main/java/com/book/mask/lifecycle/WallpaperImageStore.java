@@ -11,6 +11,7 @@ import android.util.DisplayMetrics;
 import android.util.Log;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -96,6 +97,36 @@ public final class WallpaperImageStore {
         }
     }
 
+    /**
+     * 用备份中的照片文件替换当前壁纸照片，原样复制、不再重新压缩。耗时操作，须在后台线程调用。
+     */
+    public static void restoreFromFile(Context context, File source) throws IOException {
+        File imageFile = getImageFile(context);
+        File dir = imageFile.getParentFile();
+        if (dir == null) {
+            throw new IOException("壁纸目录路径无效");
+        }
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("无法创建壁纸目录");
+        }
+
+        File tempFile = new File(dir, TEMP_FILE_NAME);
+        try {
+            try (InputStream in = new FileInputStream(source);
+                 OutputStream out = new FileOutputStream(tempFile)) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            }
+            replaceFile(tempFile, imageFile);
+        } finally {
+            tempFile.delete();
+        }
+        onImageFileChanged();
+    }
+
     public static void clear(Context context) {
         File file = getImageFile(context);
         if (file.exists() && !file.delete()) {
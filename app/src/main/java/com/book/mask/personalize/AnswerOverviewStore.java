@@ -1,57 +1,69 @@
 package com.book.mask.personalize;
 
+import android.util.Log;
+
 import com.book.mask.constant.QuestionConst;
-import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
-import com.tencent.mmkv.MMKV;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 
 /**
- * 答题「概况」记录持久化：以 Gson JSON 数组存于 MMKV，新的在前。
- * 各题型分别裁剪到 QuestionConst 中 *_OVERVIEW_MAX（详情量的 10 倍），超出丢弃该题型最旧一条。
+ * 答题「概况」记录持久化：追加写入 {@link RecordLog}，新的在前，每条追加为常数时间。
+ * 各题型分别保留 QuestionConst 中 *_OVERVIEW_MAX（详情量的 10 倍）条，超出淘汰该题型最旧一条。
+ * 旧版本存于 MMKV 的 Gson JSON 数组在首次使用时迁入。
  */
 public final class AnswerOverviewStore {
 
+    private static final String TAG = "AnswerOverviewStore";
+    // 旧版本的 MMKV 键，同时用作日志目录名
     private static final String KEY = "answer_overview_records";
 
-    private final MMKV mmkv;
-    private final Gson gson = new Gson();
-    private final Type listType = new TypeToken<ArrayList<AnswerOverviewRecord>>() {
-    }.getType();
+    private static final RecordLog.Retention<AnswerOverviewRecord> PER_TYPE_RETENTION =
+            new RecordLog.Retention<AnswerOverviewRecord>() {
+                @Override
+                public String groupOf(AnswerOverviewRecord record) {
+                    return record.type;
+                }
 
-    public AnswerOverviewStore() {
-        this.mmkv = SettingsStorage.open();
-    }
+                @Override
+                public int limitOf(String type) {
+                    return maxForType(type);
+                }
+            };
 
-    /** 读取全部概况记录（新的在前）；无记录时返回空列表。 */
-    public synchronized List<AnswerOverviewRecord> getRecords() {
-        String json = mmkv.getString(KEY, null);
-        if (json == null || json.isEmpty()) {
-            return new ArrayList<>();
+    private static RecordLog<AnswerOverviewRecord> sharedLog;
+
+    static synchronized RecordLog<AnswerOverviewRecord> recordLog() throws IOException {
+        if (sharedLog == null) {
+            sharedLog = SettingsStorage.openRecordLog(KEY, AnswerOverviewRecord.class,
+                    new TypeToken<ArrayList<AnswerOverviewRecord>>() {
+                    }.getType(), KEY, PER_TYPE_RETENTION);
         }
+        return sharedLog;
+    }
+
+    /** 读取全部概况记录（新的在前）；无记录或读取失败时返回空列表。 */
+    public List<AnswerOverviewRecord> getRecords() {
         try {
-            List<AnswerOverviewRecord> list = gson.fromJson(json, listType);
-            return list == null ? new ArrayList<>() : list;
-        } catch (Exception e) {
+            return recordLog().readNewestFirst(Integer.MAX_VALUE);
+        } catch (IOException e) {
+            Log.w(TAG, "读取答题概况失败", e);
             return new ArrayList<>();
         }
     }
 
-    /** 新增一条概况记录，插入到最前，按题型裁剪到对应上限后持久化。 */
-    public synchronized void addRecord(AnswerOverviewRecord record) {
+    /** 新增一条概况记录，追加到日志末尾，该题型超出上限的最旧一条随之淘汰。 */
+    public void addRecord(AnswerOverviewRecord record) {
         if (record == null || record.type == null || record.type.isEmpty()) {
             return;
         }
-        List<AnswerOverviewRecord> records = getRecords();
-        records.add(0, record);
-        trimToPerTypeLimit(records);
-        mmkv.putString(KEY, gson.toJson(records)).commit();
+        try {
+            recordLog().append(record);
+        } catch (IOException e) {
+            Log.w(TAG, "保存答题概况失败", e);
+        }
     }
 
     private static int maxForType(String type) {
@@ -68,21 +80,12 @@ public final class AnswerOverviewStore {
         }
     }
 
-    /** 列表新的在前：按题型从前往后数，超过该题型上限的最旧记录裁掉。 */
-    private static void trimToPerTypeLimit(List<AnswerOverviewRecord> records) {
-        Map<String, Integer> seen = new HashMap<>();
-        for (Iterator<AnswerOverviewRecord> it = records.iterator(); it.hasNext(); ) {
-            AnswerOverviewRecord r = it.next();
-            int count = seen.getOrDefault(r.type, 0) + 1;
-            seen.put(r.type, count);
-            if (count > maxForType(r.type)) {
-                it.remove();
-            }
-        }
-    }
-
     /** 清空全部概况记录。 */
-    public synchronized void clear() {
-        mmkv.removeValueForKey(KEY);
+    public void clear() {
+        try {
+            recordLog().clear();
+        } catch (IOException e) {
+            Log.w(TAG, "清空答题概况失败", e);
+        }
     }
 }
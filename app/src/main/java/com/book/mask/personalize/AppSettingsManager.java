@@ -2,10 +2,10 @@ package com.book.mask.personalize;
 
 import android.content.Context;
 
+import com.book.mask.config.CustomAppManager;
+import com.book.mask.config.SettingsRepository;
 import com.book.mask.constant.Const;
-import com.google.gson.Gson;
 import com.book.mask.config.Share;
-import com.tencent.mmkv.MMKV;
 
 /**
  * 应用设置管理器
@@ -13,10 +13,6 @@ import com.tencent.mmkv.MMKV;
  */
 public class AppSettingsManager {
 
-    // 每个APP独立的悬浮窗警示语来源相关
-    static final String KEY_APP_HINT_SOURCE = "app_hint_source_";
-    static final String KEY_APP_HINT_CUSTOM = "app_hint_custom_";
-
     // 悬浮窗额外显示日常提醒
     static final String KEY_FLOATING_STRICT_REMINDER = "floating_strict_reminder";
     static final String KEY_FLOATING_STRICT_REMINDER_SETTINGS_CLICKED = "floating_strict_reminder_settings_clicked";
@@ -51,16 +47,17 @@ public class AppSettingsManager {
     // 悬浮窗位置相关
     static final String KEY_FLOATING_TOP_OFFSET = "floating_top_offset";
     static final String KEY_FLOATING_BOTTOM_OFFSET = "floating_bottom_offset";
-    static final String KEY_APP_FLOATING_TOP_OFFSET = "app_floating_top_offset_";
-    static final String KEY_APP_FLOATING_BOTTOM_OFFSET = "app_floating_bottom_offset_";
 
     // 首页权限卡片是否折叠隐藏
     static final String KEY_PERMISSION_CARD_COLLAPSED = "permission_card_collapsed";
 
-    private MMKV mmkv;
+    private final SettingsRepository settings;
+    // 每个APP独立的设置（警示语来源、悬浮窗位置等），见 PerAppSettingsStore
+    private final PerAppSettingsStore perApp;
 
     public AppSettingsManager(Context context) {
-        mmkv = SettingsStorage.open();
+        settings = SettingsStorage.open();
+        perApp = PerAppSettingsStore.get();
     }
 
     // ===== 首页权限卡片折叠状态 =====
@@ -69,14 +66,14 @@ public class AppSettingsManager {
      * 设置首页权限卡片是否折叠隐藏
      */
     public void setPermissionCardCollapsed(boolean collapsed) {
-        mmkv.putBoolean(KEY_PERMISSION_CARD_COLLAPSED, collapsed).commit();
+        settings.putBoolean(KEY_PERMISSION_CARD_COLLAPSED, collapsed);
     }
 
     /**
      * 获取首页权限卡片是否折叠隐藏（默认展开）
      */
     public boolean isPermissionCardCollapsed() {
-        return mmkv.getBoolean(KEY_PERMISSION_CARD_COLLAPSED, false);
+        return settings.getBoolean(KEY_PERMISSION_CARD_COLLAPSED, false);
     }
 
     // ===== 悬浮窗警示语来源相关方法 =====
@@ -85,7 +82,7 @@ public class AppSettingsManager {
      * 设置指定APP的悬浮窗警示语来源
      */
     public void setAppHintSource(String packageName, String source) {
-        mmkv.putString(KEY_APP_HINT_SOURCE + packageName, source).commit();
+        perApp.update(packageName, s -> s.hintSource = source);
         android.util.Log.d("SettingsManager", "设置APP " + packageName + " 悬浮窗警示语来源: " + source);
     }
 
@@ -93,14 +90,15 @@ public class AppSettingsManager {
      * 获取指定APP的悬浮窗警示语来源
      */
     public String getAppHintSource(String packageName) {
-        return mmkv.getString(KEY_APP_HINT_SOURCE + packageName, Const.DEFAULT_HINT_SOURCE);
+        String source = perApp.read(packageName).hintSource;
+        return source != null ? source : Const.DEFAULT_HINT_SOURCE;
     }
 
     /**
      * 设置指定APP的自定义悬浮窗警示语
      */
     public void setAppHintCustomText(String packageName, String customText) {
-        mmkv.putString(KEY_APP_HINT_CUSTOM + packageName, customText).commit();
+        perApp.update(packageName, s -> s.hintCustom = customText);
         android.util.Log.d("SettingsManager", "设置APP " + packageName + " 自定义悬浮窗警示语: " + customText);
     }
 
@@ -108,60 +106,48 @@ public class AppSettingsManager {
      * 获取指定APP的自定义悬浮窗警示语
      */
     public String getAppHintCustomText(String packageName) {
-        return mmkv.getString(KEY_APP_HINT_CUSTOM + packageName, "");
+        String customText = perApp.read(packageName).hintCustom;
+        return customText != null ? customText : "";
     }
 
     /**
-     * 清除指定APP在本管理器中的所有持久化设置（悬浮窗警示语来源、自定义文字等）
+     * 删除指定APP的全部每-APP设置（警示语、悬浮窗位置、监测开关、间隔、关闭记录、宽松计数等）
      */
     public void clearAppSettings(String packageName) {
         if (packageName == null) return;
-        mmkv.removeValueForKey(KEY_APP_HINT_SOURCE + packageName);
-        mmkv.removeValueForKey(KEY_APP_HINT_CUSTOM + packageName);
-        mmkv.removeValueForKey(KEY_APP_FLOATING_TOP_OFFSET + packageName);
-        mmkv.removeValueForKey(KEY_APP_FLOATING_BOTTOM_OFFSET + packageName);
-        android.util.Log.d("SettingsManager", "清除APP在AppSettingsManager中的所有设置: " + packageName);
+        perApp.remove(packageName);
+        CustomAppManager.getInstance().onMonitoringSettingsChanged();
+        android.util.Log.d("SettingsManager", "清除APP的所有每-APP设置: " + packageName);
     }
 
     /**
-     * 把指定APP在本管理器中已显式设置过的每-APP项读入快照（未设置的键保持 null）。
+     * 把指定APP已显式设置过的用户配置项读入快照（未设置的项保持 null），只读一次记录。
      */
-    public void captureInto(AppSettingsSnapshot snapshot, String packageName) {
-        if (packageName == null) return;
-        String hintSourceKey = KEY_APP_HINT_SOURCE + packageName;
-        if (mmkv.contains(hintSourceKey)) {
-            snapshot.hintSource = mmkv.getString(hintSourceKey, Const.DEFAULT_HINT_SOURCE);
-        }
-        String hintCustomKey = KEY_APP_HINT_CUSTOM + packageName;
-        if (mmkv.contains(hintCustomKey)) {
-            snapshot.hintCustom = mmkv.getString(hintCustomKey, "");
-        }
-        String topKey = KEY_APP_FLOATING_TOP_OFFSET + packageName;
-        if (mmkv.contains(topKey)) {
-            snapshot.floatingTopOffset = mmkv.getInt(topKey, getFloatingTopOffset());
-        }
-        String bottomKey = KEY_APP_FLOATING_BOTTOM_OFFSET + packageName;
-        if (mmkv.contains(bottomKey)) {
-            snapshot.floatingBottomOffset = mmkv.getInt(bottomKey, getFloatingBottomOffset());
-        }
+    public AppSettingsSnapshot captureAppSettings(String packageName) {
+        AppSettingsSnapshot snapshot = new AppSettingsSnapshot();
+        PerAppSettings s = perApp.read(packageName);
+        snapshot.hintSource = s.hintSource;
+        snapshot.hintCustom = s.hintCustom;
+        snapshot.floatingTopOffset = s.floatingTopOffset;
+        snapshot.floatingBottomOffset = s.floatingBottomOffset;
+        snapshot.monitoringEnabled = s.monitoringEnabled;
+        return snapshot;
     }
 
     /**
-     * 从快照恢复指定APP的每-APP项（仅恢复删除前确实设置过的项）。
+     * 从快照恢复指定APP的用户配置项（仅恢复删除前确实设置过的项），整条记录只写一次。
      */
-    public void restoreFrom(AppSettingsSnapshot snapshot, String packageName) {
+    public void restoreAppSettings(String packageName, AppSettingsSnapshot snapshot) {
         if (packageName == null) return;
-        if (snapshot.hintSource != null) {
-            setAppHintSource(packageName, snapshot.hintSource);
-        }
-        if (snapshot.hintCustom != null) {
-            setAppHintCustomText(packageName, snapshot.hintCustom);
-        }
-        if (snapshot.floatingTopOffset != null) {
-            setAppFloatingTopOffset(packageName, snapshot.floatingTopOffset);
-        }
-        if (snapshot.floatingBottomOffset != null) {
-            setAppFloatingBottomOffset(packageName, snapshot.floatingBottomOffset);
+        perApp.update(packageName, s -> {
+            if (snapshot.hintSource != null) s.hintSource = snapshot.hintSource;
+            if (snapshot.hintCustom != null) s.hintCustom = snapshot.hintCustom;
+            if (snapshot.floatingTopOffset != null) s.floatingTopOffset = snapshot.floatingTopOffset;
+            if (snapshot.floatingBottomOffset != null) s.floatingBottomOffset = snapshot.floatingBottomOffset;
+            if (snapshot.monitoringEnabled != null) s.monitoringEnabled = snapshot.monitoringEnabled;
+        });
+        if (snapshot.monitoringEnabled != null) {
+            CustomAppManager.getInstance().onMonitoringSettingsChanged();
         }
     }
 
@@ -171,7 +157,7 @@ public class AppSettingsManager {
      * 设置悬浮窗额外显示日常提醒文字
      */
     public void setFloatingStrictReminder(String reminder) {
-        mmkv.putString(KEY_FLOATING_STRICT_REMINDER, reminder).commit();
+        settings.putString(KEY_FLOATING_STRICT_REMINDER, reminder);
         android.util.Log.d("SettingsManager", "设置悬浮窗日常提醒: " + reminder);
     }
 
@@ -179,14 +165,14 @@ public class AppSettingsManager {
      * 获取悬浮窗额外显示日常提醒文字
      */
     public String getFloatingStrictReminder() {
-        return mmkv.getString(KEY_FLOATING_STRICT_REMINDER, "");
+        return settings.getString(KEY_FLOATING_STRICT_REMINDER, "");
     }
 
     /**
      * 记录用户是否点击过设置按钮
      */
     public void setFloatingStrictReminderSettingsClicked(boolean clicked) {
-        mmkv.putBoolean(KEY_FLOATING_STRICT_REMINDER_SETTINGS_CLICKED, clicked).commit();
+        settings.putBoolean(KEY_FLOATING_STRICT_REMINDER_SETTINGS_CLICKED, clicked);
         android.util.Log.d("SettingsManager", "设置悬浮窗日常提醒设置按钮点击状态: " + clicked);
     }
 
@@ -194,14 +180,14 @@ public class AppSettingsManager {
      * 获取用户是否点击过设置按钮
      */
     public boolean getFloatingStrictReminderSettingsClicked() {
-        return mmkv.getBoolean(KEY_FLOATING_STRICT_REMINDER_SETTINGS_CLICKED, false);
+        return settings.getBoolean(KEY_FLOATING_STRICT_REMINDER_SETTINGS_CLICKED, false);
     }
 
     /**
      * 设置悬浮窗良好习惯提醒字体大小
      */
     public void setFloatingStrictReminderFontSize(int fontSize) {
-        mmkv.putInt(KEY_FLOATING_STRICT_REMINDER_FONT_SIZE, fontSize).commit();
+        settings.putInt(KEY_FLOATING_STRICT_REMINDER_FONT_SIZE, fontSize);
         android.util.Log.d("SettingsManager", "设置悬浮窗良好习惯提醒字体大小: " + fontSize);
     }
 
@@ -209,14 +195,14 @@ public class AppSettingsManager {
      * 获取悬浮窗良好习惯提醒字体大小
      */
     public int getFloatingStrictReminderFontSize() {
-        return mmkv.getInt(KEY_FLOATING_STRICT_REMINDER_FONT_SIZE, 28); // 默认28sp
+        return settings.getInt(KEY_FLOATING_STRICT_REMINDER_FONT_SIZE, 28); // 默认28sp
     }
 
     /**
      * 设置悬浮窗座右铭字体颜色
      */
     public void setFloatingStrictReminderFontColor(int color) {
-        mmkv.putInt(KEY_FLOATING_STRICT_REMINDER_FONT_COLOR, color).commit();
+        settings.putInt(KEY_FLOATING_STRICT_REMINDER_FONT_COLOR, color);
         android.util.Log.d("SettingsManager", "设置悬浮窗座右铭字体颜色: " + color);
     }
 
@@ -224,7 +210,7 @@ public class AppSettingsManager {
      * 获取悬浮窗座右铭字体颜色
      */
     public int getFloatingStrictReminderFontColor() {
-        return mmkv.getInt(KEY_FLOATING_STRICT_REMINDER_FONT_COLOR, DEFAULT_STRICT_REMINDER_FONT_COLOR);
+        return settings.getInt(KEY_FLOATING_STRICT_REMINDER_FONT_COLOR, DEFAULT_STRICT_REMINDER_FONT_COLOR);
     }
 
     // ===== 个人目标相关方法 =====
@@ -233,7 +219,7 @@ public class AppSettingsManager {
      * 设置个人目标标签
      */
     public void setMotivationTag(String tag) {
-        mmkv.putString(KEY_MOTIVATION_TAG, tag).commit();
+        settings.putString(KEY_MOTIVATION_TAG, tag);
         Share.MOTIVATE_CHANGE = true;
     }
 
@@ -241,14 +227,14 @@ public class AppSettingsManager {
      * 获取个人目标标签
      */
     public String getMotivationTag() {
-        return mmkv.getString(KEY_MOTIVATION_TAG, Const.TARGET_TO_BE_SET);
+        return settings.getString(KEY_MOTIVATION_TAG, Const.TARGET_TO_BE_SET);
     }
 
     /**
      * 设置目标完成日期
      */
     public void setTargetCompletionDate(String date) {
-        mmkv.putString(KEY_TARGET_COMPLETION_DATE, date).commit();
+        settings.putString(KEY_TARGET_COMPLETION_DATE, date);
         Share.MOTIVATE_CHANGE = true;
     }
 
@@ -256,40 +242,34 @@ public class AppSettingsManager {
      * 获取目标完成日期
      */
     public String getTargetCompletionDate() {
-        return mmkv.getString(KEY_TARGET_COMPLETION_DATE, Const.TARGET_TO_BE_SET);
+        return settings.getString(KEY_TARGET_COMPLETION_DATE, Const.TARGET_TO_BE_SET);
     }
 
     public void setReminderStyle(String style) {
-        mmkv.putString(KEY_REMINDER_STYLE, style).commit();
+        settings.putString(KEY_REMINDER_STYLE, style);
     }
 
     public String getReminderStyle() {
-        String style = mmkv.getString(KEY_REMINDER_STYLE, DEFAULT_REMINDER_STYLE);
+        String style = settings.getString(KEY_REMINDER_STYLE, DEFAULT_REMINDER_STYLE);
         return style == null || style.isEmpty() ? DEFAULT_REMINDER_STYLE : style;
     }
 
     public void setReminderCustomStyle(String style) {
-        mmkv.putString(KEY_REMINDER_CUSTOM_STYLE, style).commit();
+        settings.putString(KEY_REMINDER_CUSTOM_STYLE, style);
     }
 
     public String getReminderCustomStyle() {
-        return mmkv.getString(KEY_REMINDER_CUSTOM_STYLE, "");
+        return settings.getString(KEY_REMINDER_CUSTOM_STYLE, "");
     }
 
     public String[] getCustomReminderStyles() {
         java.util.List<String> styles = new java.util.ArrayList<>();
-        try {
-            String storedStyles = mmkv.getString(KEY_REMINDER_CUSTOM_STYLES, "[]");
-            String[] customStyles = new Gson().fromJson(storedStyles, String[].class);
-            if (customStyles != null) {
-                for (String style : customStyles) {
-                    if (style != null && !style.isEmpty() && !styles.contains(style)) {
-                        styles.add(style);
-                    }
-                }
+        // 解析结果由仓库按原始字符串缓存，只读不改
+        String[] customStyles = settings.getJson(KEY_REMINDER_CUSTOM_STYLES, String[].class, new String[0]);
+        for (String style : customStyles) {
+            if (style != null && !style.isEmpty() && !styles.contains(style)) {
+                styles.add(style);
             }
-        } catch (Exception e) {
-            android.util.Log.w("SettingsManager", "解析自定义警示语风格列表失败", e);
         }
 
         String currentStyle = getReminderCustomStyle();
@@ -307,7 +287,7 @@ public class AppSettingsManager {
                 java.util.Arrays.asList(getCustomReminderStyles()));
         if (!styles.contains(style)) {
             styles.add(style);
-            mmkv.putString(KEY_REMINDER_CUSTOM_STYLES, new Gson().toJson(styles)).commit();
+            settings.putJson(KEY_REMINDER_CUSTOM_STYLES, styles);
         }
     }
 
@@ -315,7 +295,7 @@ public class AppSettingsManager {
         java.util.List<String> styles = new java.util.ArrayList<>(
                 java.util.Arrays.asList(getCustomReminderStyles()));
         if (styles.remove(style)) {
-            mmkv.putString(KEY_REMINDER_CUSTOM_STYLES, new Gson().toJson(styles)).commit();
+            settings.putJson(KEY_REMINDER_CUSTOM_STYLES, styles);
         }
         if (style.equals(getReminderCustomStyle())) {
             setReminderCustomStyle("");
@@ -373,25 +353,18 @@ public class AppSettingsManager {
 
     private java.util.List<String> getCustomMotivationTags() {
         java.util.List<String> tags = new java.util.ArrayList<>();
-        try {
-            String storedTags = mmkv.getString(KEY_CUSTOM_MOTIVATION_TAGS, "[]");
-            String[] customTags = new Gson().fromJson(storedTags, String[].class);
-            if (customTags != null) {
-                for (String tag : customTags) {
-                    if (tag != null && !tag.isEmpty() && !isPredefinedMotivationTag(tag)
-                            && !tags.contains(tag)) {
-                        tags.add(tag);
-                    }
-                }
+        String[] customTags = settings.getJson(KEY_CUSTOM_MOTIVATION_TAGS, String[].class, new String[0]);
+        for (String tag : customTags) {
+            if (tag != null && !tag.isEmpty() && !isPredefinedMotivationTag(tag)
+                    && !tags.contains(tag)) {
+                tags.add(tag);
             }
-        } catch (Exception e) {
-            android.util.Log.w("SettingsManager", "解析自定义目标列表失败", e);
         }
         return tags;
     }
 
     private void saveCustomMotivationTags(java.util.List<String> tags) {
-        mmkv.putString(KEY_CUSTOM_MOTIVATION_TAGS, new Gson().toJson(tags)).commit();
+        settings.putJson(KEY_CUSTOM_MOTIVATION_TAGS, tags);
     }
 
     public static boolean isPredefinedMotivationTag(String tag) {
@@ -401,11 +374,11 @@ public class AppSettingsManager {
     // ===== 临时诊断配置 =====
 
     public void setDouyinFirstTextCheckDelayMs(int delayMs) {
-        mmkv.putInt(KEY_DOUYIN_FIRST_TEXT_CHECK_DELAY_MS, delayMs).commit();
+        settings.putInt(KEY_DOUYIN_FIRST_TEXT_CHECK_DELAY_MS, delayMs);
     }
 
     public int getDouyinFirstTextCheckDelayMs() {
-        return mmkv.getInt(KEY_DOUYIN_FIRST_TEXT_CHECK_DELAY_MS,
+        return settings.getInt(KEY_DOUYIN_FIRST_TEXT_CHECK_DELAY_MS,
                 DEFAULT_DOUYIN_FIRST_TEXT_CHECK_DELAY_MS);
     }
 
@@ -415,35 +388,35 @@ public class AppSettingsManager {
      * 设置悬浮窗上边缘距离顶部的距离
      */
     public void setFloatingTopOffset(int offset) {
-        mmkv.putInt(KEY_FLOATING_TOP_OFFSET, offset).commit();
+        settings.putInt(KEY_FLOATING_TOP_OFFSET, offset);
     }
 
     /**
      * 获取悬浮窗上边缘距离顶部的距离
      */
     public int getFloatingTopOffset() {
-        return mmkv.getInt(KEY_FLOATING_TOP_OFFSET, DEFAULT_TOP_OFFSET);
+        return settings.getInt(KEY_FLOATING_TOP_OFFSET, DEFAULT_TOP_OFFSET);
     }
 
     /**
      * 设置悬浮窗下边缘距离底部的距离
      */
     public void setFloatingBottomOffset(int offset) {
-        mmkv.putInt(KEY_FLOATING_BOTTOM_OFFSET, offset).commit();
+        settings.putInt(KEY_FLOATING_BOTTOM_OFFSET, offset);
     }
 
     /**
      * 获取悬浮窗下边缘距离底部的距离
      */
     public int getFloatingBottomOffset() {
-        return mmkv.getInt(KEY_FLOATING_BOTTOM_OFFSET, DEFAULT_BOTTOM_OFFSET);
+        return settings.getInt(KEY_FLOATING_BOTTOM_OFFSET, DEFAULT_BOTTOM_OFFSET);
     }
 
     /**
      * 设置指定APP的悬浮窗上边缘距离。
      */
     public void setAppFloatingTopOffset(String packageName, int offset) {
-        mmkv.putInt(KEY_APP_FLOATING_TOP_OFFSET + packageName, offset).commit();
+        perApp.update(packageName, s -> s.floatingTopOffset = offset);
     }
 
     /**
@@ -453,14 +426,15 @@ public class AppSettingsManager {
         if (packageName == null || packageName.isEmpty()) {
             return getFloatingTopOffset();
         }
-        return mmkv.getInt(KEY_APP_FLOATING_TOP_OFFSET + packageName, getFloatingTopOffset());
+        Integer offset = perApp.read(packageName).floatingTopOffset;
+        return offset != null ? offset : getFloatingTopOffset();
     }
 
     /**
      * 设置指定APP的悬浮窗下边缘距离。
      */
     public void setAppFloatingBottomOffset(String packageName, int offset) {
-        mmkv.putInt(KEY_APP_FLOATING_BOTTOM_OFFSET + packageName, offset).commit();
+        perApp.update(packageName, s -> s.floatingBottomOffset = offset);
     }
 
     /**
@@ -470,7 +444,8 @@ public class AppSettingsManager {
         if (packageName == null || packageName.isEmpty()) {
             return getFloatingBottomOffset();
         }
-        return mmkv.getInt(KEY_APP_FLOATING_BOTTOM_OFFSET + packageName, getFloatingBottomOffset());
+        Integer offset = perApp.read(packageName).floatingBottomOffset;
+        return offset != null ? offset : getFloatingBottomOffset();
     }
 
 }
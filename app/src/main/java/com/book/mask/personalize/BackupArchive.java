@@ -0,0 +1,379 @@
+package com.book.mask.personalize;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 备份归档：zip 容器，第一个条目是清单 {@link #MANIFEST_ENTRY}，其后是按内容寻址的数据块
+ * {@link #BLOB_PREFIX} + SHA-256。
+ * <p>
+ * 每个区块（首页配置、答题记录、壁纸照片等）先写入临时文件并同时算出哈希，内容相同的区块只存一份数据块。
+ * 增量导出时，与上次导出哈希相同的区块只在清单中登记哈希及其数据块所在归档的导出时间，不再写入数据块。
+ * <p>
+ * 读取时逐个暂存并校验所需数据块的长度与哈希，全部通过后才交给调用方应用，
+ * 损坏或被篡改的归档不会恢复出半截数据。
+ */
+final class BackupArchive {
+    static final int FORMAT_VERSION = 1;
+    static final String MANIFEST_ENTRY = "manifest.json";
+    static final String BLOB_PREFIX = "blobs/";
+
+    private static final String TEMP_PREFIX = "blob";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int BUFFER_SIZE = 8192;
+    private static final Gson GSON = new Gson();
+
+    /**
+     * 把一个区块的内容写入 out；不得关闭 out。
+     */
+    interface BlobWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
+    /**
+     * 清单中的一个区块。
+     */
+    static final class Section {
+        String hash;
+        long size;
+        // 数据块所在归档的导出时间；与清单的 exportTime 相同即数据块就在本归档中
+        long archiveTime;
+    }
+
+    static final class Manifest {
+        int format = FORMAT_VERSION;
+        int backupVersion;
+        long exportTime;
+        // 按写出顺序排列，恢复时也按此顺序应用
+        LinkedHashMap<String, Section> sections = new LinkedHashMap<>();
+
+        /** 该区块的数据块是否就在本归档中（而不是在更早的归档里）。 */
+        boolean contains(String name) {
+            Section section = sections.get(name);
+            return section != null && section.archiveTime == exportTime;
+        }
+
+        /**
+         * 数据块不在本归档中的区块 → 其数据块所在归档的导出时间，按清单顺序。
+         * 这些区块不会出现在可选列表里，恢复时须另行导入对应的归档。
+         */
+        Map<String, Long> elsewhere() {
+            Map<String, Long> missing = new LinkedHashMap<>();
+            for (Map.Entry<String, Section> entry : sections.entrySet()) {
+                if (!contains(entry.getKey())) {
+                    missing.put(entry.getKey(), entry.getValue().archiveTime);
+                }
+            }
+            return missing;
+        }
+    }
+
+    private BackupArchive() {
+    }
+
+    /**
+     * 写归档：逐个 {@link #add} 区块（暂存到临时目录），最后 {@link #writeTo} 一次写出。
+     */
+    static final class Writer implements Closeable {
+        private final File tempDir;
+        private final Manifest manifest = new Manifest();
+        // 哈希 → 暂存的数据块，同一内容只存一份
+        private final Map<String, File> blobs = new LinkedHashMap<>();
+
+        Writer(File tempDir, int backupVersion, long exportTime) throws IOException {
+            if (!tempDir.isDirectory() && !tempDir.mkdirs()) {
+                throw new IOException("无法创建临时目录: " + tempDir);
+            }
+            this.tempDir = tempDir;
+            manifest.backupVersion = backupVersion;
+            manifest.exportTime = exportTime;
+        }
+
+        Manifest manifest() {
+            return manifest;
+        }
+
+        /**
+         * 写出一个区块并算出哈希。previous 为上次导出时该区块的记录，哈希相同时沿用其所在归档，
+         * 本归档不再存这份数据块。
+         *
+         * @return 该区块的数据块是否写入本归档
+         */
+        boolean add(String name, BlobWriter content, Section previous) throws IOException {
+            File temp = File.createTempFile(TEMP_PREFIX, TEMP_SUFFIX, tempDir);
+            MessageDigest digest = sha256();
+            Section section = new Section();
+            try {
+                try (DigestingOutputStream out = new DigestingOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(temp), BUFFER_SIZE), digest)) {
+                    content.write(out);
+                    section.size = out.count;
+                }
+            } catch (IOException | RuntimeException e) {
+                temp.delete();
+                throw e;
+            }
+            section.hash = hex(digest.digest());
+
+            boolean included = previous == null || !section.hash.equals(previous.hash);
+            section.archiveTime = included ? manifest.exportTime : previous.archiveTime;
+            if (included && !blobs.containsKey(section.hash)) {
+                blobs.put(section.hash, temp);
+            } else {
+                temp.delete();
+            }
+            manifest.sections.put(name, section);
+            return included;
+        }
+
+        /**
+         * 写出清单与全部数据块。不关闭 out。
+         */
+        void writeTo(OutputStream out) throws IOException {
+            ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+            zip.putNextEntry(new ZipEntry(MANIFEST_ENTRY));
+            zip.write(GSON.toJson(manifest).getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+            for (Map.Entry<String, File> blob : blobs.entrySet()) {
+                zip.putNextEntry(new ZipEntry(BLOB_PREFIX + blob.getKey()));
+                try (InputStream in = new FileInputStream(blob.getValue())) {
+                    copy(in, zip);
+                }
+                zip.closeEntry();
+            }
+            zip.finish();
+            zip.flush();
+        }
+
+        @Override
+        public void close() {
+            for (File blob : blobs.values()) {
+                blob.delete();
+            }
+            blobs.clear();
+        }
+    }
+
+    /**
+     * 读归档：所需数据块已全部暂存并校验通过，按区块名取用；用完须 {@link #close} 清理临时文件。
+     */
+    static final class Reader implements Closeable {
+        private final Manifest manifest;
+        // 哈希 → 已校验的数据块
+        private final Map<String, File> blobs = new HashMap<>();
+
+        private Reader(Manifest manifest) {
+            this.manifest = manifest;
+        }
+
+        /**
+         * 只读清单，不校验数据块，用于在恢复前列出可选区块。
+         *
+         * @throws IOException 不是有效的备份归档
+         */
+        static Manifest readManifest(InputStream in) throws IOException {
+            return readManifest(new ZipInputStream(new BufferedInputStream(in, BUFFER_SIZE)));
+        }
+
+        /**
+         * 读取归档，暂存并校验 wanted 中数据块位于本归档的区块。
+         *
+         * @param wanted 需要的区块，null 表示全部
+         * @throws IOException 不是有效的备份归档、缺少数据块或校验失败
+         */
+        static Reader read(InputStream in, Set<String> wanted, File tempDir) throws IOException {
+            if (!tempDir.isDirectory() && !tempDir.mkdirs()) {
+                throw new IOException("无法创建临时目录: " + tempDir);
+            }
+            ZipInputStream zip = new ZipInputStream(new BufferedInputStream(in, BUFFER_SIZE));
+            Reader reader = new Reader(readManifest(zip));
+            try {
+                Map<String, Long> needed = new HashMap<>();
+                for (Map.Entry<String, Section> entry : reader.manifest.sections.entrySet()) {
+                    if ((wanted == null || wanted.contains(entry.getKey()))
+                            && reader.manifest.contains(entry.getKey())) {
+                        needed.put(entry.getValue().hash, entry.getValue().size);
+                    }
+                }
+                ZipEntry entry;
+                while (!needed.isEmpty() && (entry = zip.getNextEntry()) != null) {
+                    String name = entry.getName();
+                    if (!name.startsWith(BLOB_PREFIX)) {
+                        continue;
+                    }
+                    String hash = name.substring(BLOB_PREFIX.length());
+                    Long size = needed.remove(hash);
+                    if (size != null) {
+                        reader.blobs.put(hash, stageVerified(zip, hash, size, tempDir));
+                    }
+                }
+                if (!needed.isEmpty()) {
+                    throw new IOException("备份归档不完整：缺少 " + needed.size() + " 个数据块");
+                }
+                return reader;
+            } catch (IOException | RuntimeException e) {
+                reader.close();
+                throw e;
+            }
+        }
+
+        Manifest manifest() {
+            return manifest;
+        }
+
+        /**
+         * @return 该区块已校验的数据块；区块不在本归档中或读取时未选中则返回 null
+         */
+        File blob(String section) {
+            Section s = manifest.sections.get(section);
+            return s != null && manifest.contains(section) ? blobs.get(s.hash) : null;
+        }
+
+        @Override
+        public void close() {
+            for (File blob : blobs.values()) {
+                blob.delete();
+            }
+            blobs.clear();
+        }
+
+        private static Manifest readManifest(ZipInputStream zip) throws IOException {
+            ZipEntry first = zip.getNextEntry();
+            if (first == null || !MANIFEST_ENTRY.equals(first.getName())) {
+                throw new IOException("不是有效的备份归档");
+            }
+            Manifest manifest;
+            try {
+                manifest = GSON.fromJson(new InputStreamReader(zip, StandardCharsets.UTF_8), Manifest.class);
+            } catch (JsonParseException e) {
+                throw new IOException("备份归档清单损坏", e);
+            }
+            if (manifest == null || manifest.sections == null) {
+                throw new IOException("备份归档清单损坏");
+            }
+            if (manifest.format < 1 || manifest.format > FORMAT_VERSION) {
+                throw new IOException("不支持的备份归档版本: " + manifest.format);
+            }
+            for (Section section : manifest.sections.values()) {
+                if (section == null || section.hash == null) {
+                    throw new IOException("备份归档清单损坏");
+                }
+            }
+            return manifest;
+        }
+
+        private static File stageVerified(InputStream in, String hash, long size, File tempDir)
+                throws IOException {
+            File temp = File.createTempFile(TEMP_PREFIX, TEMP_SUFFIX, tempDir);
+            MessageDigest digest = sha256();
+            long written = 0;
+            try {
+                try (OutputStream out = new BufferedOutputStream(new FileOutputStream(temp), BUFFER_SIZE)) {
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        written += read;
+                        // 超出清单登记的长度即可判定损坏，不必读完
+                        if (written > size) {
+                            throw new IOException("备份归档数据块校验失败: " + hash);
+                        }
+                        digest.update(buffer, 0, read);
+                        out.write(buffer, 0, read);
+                    }
+                }
+                if (written != size || !hash.equals(hex(digest.digest()))) {
+                    throw new IOException("备份归档数据块校验失败: " + hash);
+                }
+                return temp;
+            } catch (IOException | RuntimeException e) {
+                temp.delete();
+                throw e;
+            }
+        }
+    }
+
+    static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // 所有 Java / Android 平台都必须提供 SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 边写边更新摘要并计数。
+     */
+    private static final class DigestingOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final MessageDigest digest;
+        long count;
+
+        DigestingOutputStream(OutputStream out, MessageDigest digest) {
+            this.out = out;
+            this.digest = digest;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            digest.update((byte) b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            digest.update(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
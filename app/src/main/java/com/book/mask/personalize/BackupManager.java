@@ -5,22 +5,45 @@ import android.util.Log;
 
 import com.book.mask.config.CustomApp;
 import com.book.mask.config.CustomAppManager;
+import com.book.mask.config.SettingsRepository;
 import com.book.mask.config.Share;
 import com.book.mask.constant.Const;
+import com.book.mask.lifecycle.WallpaperImageStore;
 import com.book.mask.reminder.config.ProviderSecretStore;
 import com.book.mask.reminder.config.ReminderProviderConfig;
 import com.book.mask.reminder.config.ReminderProviderConfigStore;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonArray;
+import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
-import com.tencent.mmkv.MMKV;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
 
 /**
  * 备份导出：把用户可自定义的配置（首页、个性化、更多）汇总为 JSON 文本。
@@ -30,10 +53,16 @@ import java.util.Map;
  * 大模型 Provider 配置（endpoint/model/名称/家选择）纳入备份，但密钥（ProviderSecretStore）
  * 默认排除，导入后需用户重填密钥再启用。
  * <p>
- * 如需把密钥一并带走（Provider API Key / SOE 凭据 / 豆包 TTS API Key），调用
- * {@link #exportToJson(boolean)} 并传 {@code true}。导出入口按 {@link #hasSensitiveData()}
+ * 如需把密钥一并带走（Provider API Key / SOE 凭据 / 豆包 TTS API Key），导出时置
+ * {@link ExportOptions#includeSecrets}。导出入口按 {@link #hasSensitiveData()}
  * 决定按钮形态：无密钥时仅提供「导出」；有密钥时提供「导出(含密钥) / 导出(不含密钥)」
  * 两个按钮，并在界面提示导出风险，由用户自行决定。
+ * <p>
+ * 答题记录默认不导出，置 {@link ExportOptions#includeAnswerHistory} 时按题型附在末尾。
+ * 导出与导入都以流的方式逐条读写，记录再多也不会在内存中拼出整份文档。
+ * <p>
+ * 另可导出为备份归档（{@link #exportArchive}）：各区块按内容哈希存放并整体压缩，额外带上壁纸照片；
+ * 再次导出时可只写入有变化的区块，恢复时可只选部分区块，并在应用前校验数据完整性。
  */
 public class BackupManager {
 
@@ -86,64 +115,186 @@ public class BackupManager {
             AppSettingsManager.KEY_FLOATING_BOTTOM_OFFSET,
     };
 
-    // 首页各卡片：每 APP 独立的键前缀
-    private static final String PREFIX_HINT_SOURCE = AppSettingsManager.KEY_APP_HINT_SOURCE;
-    private static final String PREFIX_HINT_CUSTOM = AppSettingsManager.KEY_APP_HINT_CUSTOM;
-    private static final String PREFIX_FLOATING_TOP = AppSettingsManager.KEY_APP_FLOATING_TOP_OFFSET;
-    private static final String PREFIX_FLOATING_BOTTOM =
-            AppSettingsManager.KEY_APP_FLOATING_BOTTOM_OFFSET;
-    private static final String PREFIX_MONITORING = RelaxManager.KEY_APP_MONITORING_ENABLED;
-    private static final String PREFIX_SHOW_INTERVAL = RelaxManager.KEY_SHOW_INTERVAL;
+    // 区块名：JSON 备份中的顶层字段名，也是备份归档清单中的区块名
+    public static final String SECTION_HOME = "home";
+    public static final String SECTION_PERSONALIZE = "personalize";
+    public static final String SECTION_MORE = "more";
+    public static final String SECTION_REMINDER_PROVIDER = "reminderProvider";
+    public static final String SECTION_DOUBAO_TTS = "doubaoTts";
+    public static final String SECTION_SECRETS = "secrets";
+    public static final String SECTION_ANSWER_HISTORY = "answerHistory";
+    // 壁纸照片，仅备份归档含此区块
+    public static final String SECTION_WALLPAPER = "wallpaper";
+
+    // 上次导出备份归档时各区块的哈希与所在归档，供增量导出比对
+    private static final String KEY_ARCHIVE_SECTIONS = "backup_archive_sections";
+    // 导出/导入归档时暂存数据块的缓存子目录
+    private static final String ARCHIVE_TEMP_DIR = "backup_archive";
 
+    // 答题记录：各题型在备份中的数组名
+    private static final String HISTORY_CHALLENGE = "challenge";
+    private static final String HISTORY_LISTENING = "listening";
+    private static final String HISTORY_RETELLING = "retelling";
+    private static final String HISTORY_OVERVIEW = "overview";
+
+    private final Gson gson = new Gson();
     private final Context context;
-    private final MMKV settings;
-    private final MMKV customApps;
+    private final SettingsRepository settings;
+    private final SettingsRepository customApps;
     private final ReminderProviderConfigStore providerStore;
     private final AppSettingsManager appSettingsManager;
+    private final PerAppSettingsStore perApp;
 
     public BackupManager(Context context) {
         this.context = context.getApplicationContext();
         this.settings = SettingsStorage.open();
-        this.customApps = MMKV.mmkvWithID(CUSTOM_APPS_STORAGE_ID);
+        this.customApps = SettingsRepository.of(CUSTOM_APPS_STORAGE_ID);
         this.providerStore = new ReminderProviderConfigStore();
         this.appSettingsManager = new AppSettingsManager(context);
+        this.perApp = PerAppSettingsStore.get();
     }
 
     /**
-     * 汇总所有可备份配置并序列化为带缩进的 JSON，不含任何密钥。
+     * 导出选项。
      */
-    public String exportToJson() {
-        return exportToJson(false);
+    public static class ExportOptions {
+        // 是否携带密钥（Provider API Key / SOE 凭据 / 豆包 TTS API Key），仅应在用户确认后置为 true
+        public boolean includeSecrets;
+        // 是否携带答题记录（各题型详情与概况）
+        public boolean includeAnswerHistory;
+        // 仅对备份归档有效：与上次导出的归档相比未变化的区块只在清单中登记，不再写入
+        public boolean incremental;
     }
 
     /**
-     * 汇总所有可备份配置并序列化为带缩进的 JSON。
-     *
-     * @param includeSecrets 是否携带密钥（Provider API Key / SOE 凭据 / 豆包 TTS API Key）。
-     *                       为 true 时生成额外的 {@code secrets} 区块，仅应在用户确认后调用。
+     * 写出一个区块的 JSON 值。
+     */
+    private interface SectionWriter {
+        void write(JsonWriter writer) throws IOException;
+    }
+
+    /**
+     * 汇总所有可备份配置，以带缩进的 JSON 直接写入 out：各区块边读边写，
+     * 每-APP 设置与答题记录逐条输出，不在内存中拼出整份文档。不关闭 out。
+     */
+    public void exportTo(OutputStream out, ExportOptions options) throws IOException {
+        JsonWriter writer = new JsonWriter(
+                new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+        writer.setIndent("  ");
+        writer.beginObject();
+        writer.name("version").value(BACKUP_VERSION);
+        writer.name("exportTime").value(System.currentTimeMillis());
+        for (Map.Entry<String, SectionWriter> section : sections(options).entrySet()) {
+            writer.name(section.getKey());
+            section.getValue().write(writer);
+        }
+        writer.endObject();
+        writer.flush();
+    }
+
+    /**
+     * 导出为备份归档（见 {@link BackupArchive}）：区块与 {@link #exportTo} 相同，另含壁纸照片，
+     * 整体压缩。置 {@link ExportOptions#incremental} 时，与上次导出的归档相比未变化的区块只登记、
+     * 不写入，恢复这些区块还需要当时导出的那份归档。不关闭 out。
+     * <p>
+     * 写完不代表文件已保存：调用方关闭 out 成功后须调用返回值的 {@link ArchiveExport#commit}，
+     * 才把本次各区块记为下次增量导出的比对基准；否则下次会把已丢失的归档当作基准。
+     */
+    public ArchiveExport exportArchive(OutputStream out, ExportOptions options) throws IOException {
+        Map<String, BackupArchive.Section> last = lastArchiveSections();
+        Map<String, BackupArchive.Section> previous =
+                options.incremental ? last : Collections.emptyMap();
+        try (BackupArchive.Writer archive = new BackupArchive.Writer(
+                archiveTempDir(), BACKUP_VERSION, System.currentTimeMillis())) {
+            for (Map.Entry<String, SectionWriter> section : sections(options).entrySet()) {
+                SectionWriter content = section.getValue();
+                archive.add(section.getKey(), blob -> writeJsonBlob(blob, content),
+                        previous.get(section.getKey()));
+            }
+            if (WallpaperImageStore.hasImage(context)) {
+                File wallpaper = WallpaperImageStore.getImageFile(context);
+                archive.add(SECTION_WALLPAPER, blob -> {
+                    try (InputStream in = new FileInputStream(wallpaper)) {
+                        BackupArchive.copy(in, blob);
+                    }
+                }, previous.get(SECTION_WALLPAPER));
+            }
+            archive.writeTo(out);
+
+            // 本次未导出的区块（如不含密钥）保留上次的记录，下次再导出时仍可比对
+            Map<String, BackupArchive.Section> recorded = new LinkedHashMap<>(last);
+            recorded.putAll(archive.manifest().sections);
+            return new ArchiveExport(recorded);
+        }
+    }
+
+    /**
+     * 一次已写出的归档导出，确认文件保存成功后 {@link #commit}。
      */
-    public String exportToJson(boolean includeSecrets) {
-        Map<String, Object> root = new LinkedHashMap<>();
-        root.put("version", BACKUP_VERSION);
-        root.put("exportTime", System.currentTimeMillis());
-        root.put("home", buildHome());
-        root.put("personalize", buildPersonalize());
-        root.put("more", buildMore());
+    public final class ArchiveExport {
+        private final Map<String, BackupArchive.Section> sections;
+
+        private ArchiveExport(Map<String, BackupArchive.Section> sections) {
+            this.sections = sections;
+        }
+
+        /** 记下本次各区块的哈希与所在归档，作为下次增量导出的比对基准。 */
+        public void commit() {
+            settings.putJson(KEY_ARCHIVE_SECTIONS, sections);
+        }
+    }
+
+    /**
+     * 按导出选项列出要导出的区块，顺序即写出顺序；没有内容的区块不列出。
+     * 密钥区块依赖 Provider 定义，须排在 reminderProvider 之后。
+     */
+    private Map<String, SectionWriter> sections(ExportOptions options) {
+        Map<String, SectionWriter> sections = new LinkedHashMap<>();
+        sections.put(SECTION_HOME, this::writeHome);
+        Map<String, Object> personalize = buildPersonalize();
+        sections.put(SECTION_PERSONALIZE, writer -> writeMap(writer, personalize));
+        Map<String, Object> more = buildMore();
+        sections.put(SECTION_MORE, writer -> writeMap(writer, more));
         Map<String, Object> reminderProvider = buildReminderProvider();
         if (reminderProvider != null) {
-            root.put("reminderProvider", reminderProvider);
+            sections.put(SECTION_REMINDER_PROVIDER, writer -> writeMap(writer, reminderProvider));
         }
         Map<String, Object> doubaoTts = buildDoubaoTtsConfig();
         if (doubaoTts != null) {
-            root.put("doubaoTts", doubaoTts);
+            sections.put(SECTION_DOUBAO_TTS, writer -> writeMap(writer, doubaoTts));
         }
-        if (includeSecrets) {
+        if (options.includeSecrets) {
             Map<String, Object> secrets = buildSecrets();
             if (secrets != null) {
-                root.put("secrets", secrets);
+                sections.put(SECTION_SECRETS, writer -> writeMap(writer, secrets));
             }
         }
-        return new GsonBuilder().setPrettyPrinting().create().toJson(root);
+        if (options.includeAnswerHistory) {
+            sections.put(SECTION_ANSWER_HISTORY, this::writeAnswerHistory);
+        }
+        return sections;
+    }
+
+    private static void writeJsonBlob(OutputStream blob, SectionWriter section) throws IOException {
+        JsonWriter writer = new JsonWriter(
+                new BufferedWriter(new OutputStreamWriter(blob, StandardCharsets.UTF_8)));
+        section.write(writer);
+        writer.flush();
+    }
+
+    private Map<String, BackupArchive.Section> lastArchiveSections() {
+        Map<String, BackupArchive.Section> sections = settings.getJson(KEY_ARCHIVE_SECTIONS,
+                new TypeToken<LinkedHashMap<String, BackupArchive.Section>>() {
+                }.getType(), null);
+        return sections != null ? sections : Collections.emptyMap();
+    }
+
+    private File archiveTempDir() {
+        return new File(context.getCacheDir(), ARCHIVE_TEMP_DIR);
+    }
+
+    private void writeMap(JsonWriter writer, Map<String, Object> map) {
+        gson.toJson(map, Map.class, writer);
     }
 
     /**
@@ -289,63 +440,72 @@ public class BackupManager {
         return map.isEmpty() ? null : map;
     }
 
-    private Map<String, Object> buildHome() {
-        Map<String, Object> home = new LinkedHashMap<>();
+    private void writeHome(JsonWriter writer) throws IOException {
+        writer.beginObject();
         // 手动添加的 APP、以及预定义 APP 的关键词等修改，原样保留其 JSON 串
-        home.put("customAppsList", customApps.getString(KEY_CUSTOM_APPS_LIST, "[]"));
-        home.put("predefinedModifications",
-                customApps.getString(KEY_PREDEFINED_MODIFICATIONS, "[]"));
+        writer.name("customAppsList").value(customApps.getString(KEY_CUSTOM_APPS_LIST, "[]"));
+        writer.name("predefinedModifications")
+                .value(customApps.getString(KEY_PREDEFINED_MODIFICATIONS, "[]"));
         // 各卡片的警示语来源、悬浮窗大小
-        home.put("appSettings", buildPerAppSettings());
-        return home;
+        writer.name("appSettings");
+        writePerAppSettings(writer);
+        writer.endObject();
     }
 
     /**
-     * 扫描 app_settings 中带每-APP 前缀的键，按包名归拢成结构化数据。
-     * 只收录用户实际设置过的键，未设置的走各自默认值、不占备份。
+     * 逐个读取每-APP 设置记录（每个 APP 一次查找）并直接写出，只收录用户实际设置过的配置项，
+     * 未设置的走各自默认值、不占备份；关闭记录、宽松计数等运行态数据不备份。
      */
-    private Map<String, Object> buildPerAppSettings() {
-        Map<String, Object> byPackage = new LinkedHashMap<>();
-        String[] allKeys = settings.allKeys();
-        if (allKeys == null) {
-            return byPackage;
-        }
-        for (String key : allKeys) {
-            if (key.startsWith(PREFIX_HINT_SOURCE)) {
-                perApp(byPackage, key.substring(PREFIX_HINT_SOURCE.length()))
-                        .put("hintSource", settings.getString(key, null));
-            } else if (key.startsWith(PREFIX_HINT_CUSTOM)) {
-                perApp(byPackage, key.substring(PREFIX_HINT_CUSTOM.length()))
-                        .put("hintCustomText", settings.getString(key, null));
-            } else if (key.startsWith(PREFIX_FLOATING_TOP)) {
-                perApp(byPackage, key.substring(PREFIX_FLOATING_TOP.length()))
-                        .put("floatingTopOffset", settings.getInt(key, 0));
-            } else if (key.startsWith(PREFIX_FLOATING_BOTTOM)) {
-                perApp(byPackage, key.substring(PREFIX_FLOATING_BOTTOM.length()))
-                        .put("floatingBottomOffset", settings.getInt(key, 0));
-            } else if (key.startsWith(PREFIX_MONITORING)) {
-                perApp(byPackage, key.substring(PREFIX_MONITORING.length()))
-                        .put("monitoringEnabled", settings.getBoolean(key, false));
-            } else if (key.startsWith(PREFIX_SHOW_INTERVAL)) {
-                perApp(byPackage, key.substring(PREFIX_SHOW_INTERVAL.length()))
-                        .put("showInterval", settings.getInt(key, 0));
-            }
-        }
+    private void writePerAppSettings(JsonWriter writer) throws IOException {
+        writer.beginObject();
         // 剔除孤儿包名：删除自定义 APP 但残留的每-APP 设置，不应污染备份。
         // 只保留当前真实存在的 APP（预定义 + 当前自定义列表）。
         CustomAppManager appManager = CustomAppManager.getInstance();
-        byPackage.keySet().removeIf(pkg -> !appManager.isPackageNameExists(pkg));
-        return byPackage;
+        // 按包名排序，内容不变时输出也不变，备份归档增量导出才不会误判为有变化
+        List<String> packages = perApp.packages();
+        Collections.sort(packages);
+        for (String pkg : packages) {
+            if (!appManager.isPackageNameExists(pkg)) {
+                continue;
+            }
+            PerAppSettings s = perApp.read(pkg);
+            if (!s.hasUserSettings()) {
+                continue;
+            }
+            writer.name(pkg).beginObject();
+            if (s.hintSource != null) writer.name("hintSource").value(s.hintSource);
+            if (s.hintCustom != null) writer.name("hintCustomText").value(s.hintCustom);
+            if (s.floatingTopOffset != null) writer.name("floatingTopOffset").value(s.floatingTopOffset);
+            if (s.floatingBottomOffset != null) writer.name("floatingBottomOffset").value(s.floatingBottomOffset);
+            if (s.monitoringEnabled != null) writer.name("monitoringEnabled").value(s.monitoringEnabled);
+            if (s.showInterval != null) writer.name("showInterval").value(s.showInterval);
+            writer.endObject();
+        }
+        writer.endObject();
     }
 
-    @SuppressWarnings("unchecked")
-    private static Map<String, Object> perApp(Map<String, Object> byPackage, String pkg) {
-        Map<String, Object> map = (Map<String, Object>) byPackage.get(pkg);
-        if (map == null) {
-            map = new LinkedHashMap<>();
-            byPackage.put(pkg, map);
-        }
-        return map;
+    /**
+     * 答题记录按题型分组，每组从旧到新逐条写出，导入时按原顺序追加即可。
+     */
+    private void writeAnswerHistory(JsonWriter writer) throws IOException {
+        writer.beginObject();
+        writeHistory(writer, HISTORY_CHALLENGE, ChallengeRecordStore::recordLog, ChallengeRecord.class);
+        writeHistory(writer, HISTORY_LISTENING, ListeningRecordStore::recordLog, ListeningRecord.class);
+        writeHistory(writer, HISTORY_RETELLING, RetellingRecordStore::recordLog, RetellingRecord.class);
+        writeHistory(writer, HISTORY_OVERVIEW, AnswerOverviewStore::recordLog, AnswerOverviewRecord.class);
+        writer.endObject();
+    }
+
+    private <T> void writeHistory(JsonWriter writer, String name, HistoryLog<T> history,
+                                  Class<T> type) throws IOException {
+        RecordLog<T> log = history.open();
+        writer.name(name).beginArray();
+        // 写出失败时 Gson 抛出 JsonIOException，由此中断遍历
+        log.forEachOldestFirst(record -> {
+            gson.toJson(record, type, writer);
+            return true;
+        });
+        writer.endArray();
     }
 
     private Map<String, Object> buildPersonalize() {
@@ -385,92 +545,270 @@ public class BackupManager {
     public static class ImportResult {
         public int imported;
         public int skipped;
+        // 增量归档中未随本归档导出的区块 → 其数据所在归档的导出时间，需另行导入那份归档
+        public final Map<String, Long> missingSections = new LinkedHashMap<>();
     }
 
     /**
-     * 从备份 JSON 逐条恢复配置。任一条目解析或写入失败都只跳过该条、继续其余，
-     * 不会因个别脏数据中断整个导入。
+     * 从备份 JSON 流逐条恢复配置：边读边应用，不把整份文档解析进内存。任一条目解析或写入失败
+     * 都只跳过该条、继续其余，不会因个别脏数据中断整个导入。不关闭 in。
+     * <p>
+     * 密钥区块依赖 reminderProvider 先恢复出 Provider 定义，读完整份后才处理。
+     * 文件在中途出现语法错误时，此前已应用的条目保留。
      *
-     * @throws IllegalArgumentException 整个 JSON 无法解析时抛出
+     * @throws IllegalArgumentException JSON 语法或结构不正确时抛出
+     * @throws IOException              读取失败时抛出
      */
-    public ImportResult importFromJson(String json) {
-        JsonObject root;
+    public ImportResult importFrom(InputStream in) throws IOException {
+        ImportResult result = new ImportResult();
+        JsonReader reader = new JsonReader(
+                new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
         try {
-            root = JsonParser.parseString(json).getAsJsonObject();
-        } catch (Exception e) {
+            JsonObject secrets = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (SECTION_SECRETS.equals(name)) {
+                    secrets = readObject(reader);
+                } else if (!importSection(name, reader, result)) {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (secrets != null) {
+                importSecrets(secrets, result);
+            }
+            // 手动导入备份说明用户已熟悉个性化设置，不再显示悬浮窗设置途径提示
+            settings.putBoolean(AppSettingsManager.KEY_FLOATING_STRICT_REMINDER_SETTINGS_CLICKED, true);
+        } catch (MalformedJsonException | EOFException | JsonParseException | IllegalStateException e) {
             throw new IllegalArgumentException("备份文件格式不正确");
+        } finally {
+            // 导入是一次性的大批写入，不等合并窗口，直接落盘
+            settings.flush();
+            // 目标/日期等可能已变化，标记让首页倒计时与激励文案重新计算
+            Share.MOTIVATE_CHANGE = true;
         }
+        return result;
+    }
 
-        ImportResult result = new ImportResult();
+    /**
+     * 判断是否为备份归档（而非 JSON 备份）。只预读文件头，读后复位，in 须支持 mark。
+     */
+    public static boolean isArchive(InputStream in) throws IOException {
+        in.mark(4);
+        try {
+            // zip 本地文件头魔数 PK\3\4
+            return in.read() == 'P' && in.read() == 'K' && in.read() == 3 && in.read() == 4;
+        } finally {
+            in.reset();
+        }
+    }
 
-        JsonObject home = optObject(root, "home");
-        if (home != null) {
-            importCustomApps(home, result);
-            importPredefinedModifications(home, result);
-            importPerAppSettings(home, result);
+    /**
+     * 列出备份归档中可恢复的区块（数据就在该归档中的），供用户选择要恢复哪些。不关闭 in。
+     *
+     * @throws IOException 不是有效的备份归档或读取失败
+     */
+    public List<String> listArchiveSections(InputStream in) throws IOException {
+        BackupArchive.Manifest manifest = BackupArchive.Reader.readManifest(in);
+        List<String> sections = new ArrayList<>();
+        for (String name : manifest.sections.keySet()) {
+            if (manifest.contains(name)) {
+                sections.add(name);
+            }
         }
+        return sections;
+    }
+
+    /**
+     * 从备份归档恢复选中的区块，第一步：暂存所需数据块并逐个校验长度与哈希，不改动任何配置。
+     * 只涉及文件读写，可在后台线程调用；返回值在主线程 {@link PreparedArchive#apply}。不关闭 in。
+     *
+     * @param sections 要恢复的区块（取自 {@link #listArchiveSections}），null 表示全部
+     * @throws IOException 不是有效的备份归档、缺少数据块、校验失败或读取失败
+     */
+    public PreparedArchive prepareArchive(InputStream in, Set<String> sections) throws IOException {
+        return new PreparedArchive(BackupArchive.Reader.read(in, sections, archiveTempDir()), sections);
+    }
+
+    /**
+     * 已暂存并校验通过的备份归档。用完须 {@link #close} 清理暂存的数据块，未应用也一样。
+     */
+    public final class PreparedArchive implements Closeable {
+        private final BackupArchive.Reader archive;
+        private final Set<String> sections;
 
-        JsonObject personalize = optObject(root, "personalize");
-        if (personalize != null) {
-            importStrings(personalize, PERSONALIZE_STRING_KEYS, result);
-            importLegacyCustomMotivationTag(personalize, result);
-            importInts(personalize, PERSONALIZE_INT_KEYS, result);
+        private PreparedArchive(BackupArchive.Reader archive, Set<String> sections) {
+            this.archive = archive;
+            this.sections = sections;
         }
 
-        JsonObject more = optObject(root, "more");
-        if (more != null) {
-            importInts(more, MORE_INT_KEYS, result);
+        /**
+         * 第二步：应用选中的区块。自定义 APP 列表、每-APP 设置等只在主线程写，须在主线程调用。
+         * 区块内的单个条目出错只跳过该条；数据在更早归档中的区块总会记入
+         * {@link ImportResult#missingSections}。
+         */
+        public ImportResult apply() throws IOException {
+            return applyArchive(archive, sections);
         }
 
-        JsonObject reminderProvider = optObject(root, "reminderProvider");
-        if (reminderProvider != null) {
-            importReminderProvider(reminderProvider, result);
+        @Override
+        public void close() {
+            archive.close();
         }
+    }
 
-        JsonObject doubaoTts = optObject(root, "doubaoTts");
-        if (doubaoTts != null) {
-            importDoubaoTtsConfig(doubaoTts, result);
+    private ImportResult applyArchive(BackupArchive.Reader archive, Set<String> sections) throws IOException {
+        ImportResult result = new ImportResult();
+        try {
+            BackupArchive.Manifest manifest = archive.manifest();
+            // 数据在更早归档中的区块不在可选列表里，无论选了什么都要提示用户另行导入
+            result.missingSections.putAll(manifest.elsewhere());
+            // 按清单顺序应用，密钥区块在导出时已排在 Provider 定义之后
+            for (String name : manifest.sections.keySet()) {
+                if (sections != null && !sections.contains(name)) {
+                    continue;
+                }
+                File blob = archive.blob(name);
+                if (blob == null) {
+                    continue;
+                }
+                if (SECTION_WALLPAPER.equals(name)) {
+                    restoreWallpaper(blob, result);
+                } else {
+                    importSectionBlob(name, blob, result);
+                }
+            }
+            settings.putBoolean(AppSettingsManager.KEY_FLOATING_STRICT_REMINDER_SETTINGS_CLICKED, true);
+        } finally {
+            settings.flush();
+            Share.MOTIVATE_CHANGE = true;
+        }
+        return result;
+    }
+
+    private void importSectionBlob(String name, File blob, ImportResult result) throws IOException {
+        try (JsonReader reader = new JsonReader(new BufferedReader(
+                new InputStreamReader(new FileInputStream(blob), StandardCharsets.UTF_8)))) {
+            if (!importSection(name, reader, result)) {
+                Log.w(TAG, "未知的备份区块，已忽略: " + name);
+            }
+        } catch (MalformedJsonException | EOFException | JsonParseException | IllegalStateException e) {
+            // 数据块已通过哈希校验，仍解析失败只可能是导出时的缺陷，跳过该区块
+            Log.w(TAG, "备份区块格式不正确，已跳过: " + name, e);
+            result.skipped++;
         }
+    }
 
-        // 密钥区块依赖 reminderProvider 先恢复出 Provider 定义，故放在其后处理
-        JsonObject secrets = optObject(root, "secrets");
-        if (secrets != null) {
-            importSecrets(secrets, result);
+    private void restoreWallpaper(File blob, ImportResult result) {
+        try {
+            WallpaperImageStore.restoreFromFile(context, blob);
+            result.imported++;
+        } catch (IOException e) {
+            Log.w(TAG, "恢复壁纸照片失败", e);
+            result.skipped++;
         }
+    }
 
-        // 手动导入备份说明用户已熟悉个性化设置，不再显示悬浮窗设置途径提示
-        settings.putBoolean(AppSettingsManager.KEY_FLOATING_STRICT_REMINDER_SETTINGS_CLICKED, true)
-                .commit();
-        // 目标/日期等可能已变化，标记让首页倒计时与激励文案重新计算
-        Share.MOTIVATE_CHANGE = true;
-        return result;
+    /**
+     * 读取并应用一个区块的 JSON 值（密钥区块除外，由调用方按顺序处理）。
+     *
+     * @return 是否认识该区块；不认识时 reader 未被消费
+     */
+    private boolean importSection(String name, JsonReader reader, ImportResult result) throws IOException {
+        switch (name) {
+            case SECTION_HOME:
+                importHome(reader, result);
+                return true;
+            case SECTION_PERSONALIZE: {
+                JsonObject personalize = readObject(reader);
+                if (personalize != null) {
+                    importStrings(personalize, PERSONALIZE_STRING_KEYS, result);
+                    importLegacyCustomMotivationTag(personalize, result);
+                    importInts(personalize, PERSONALIZE_INT_KEYS, result);
+                }
+                return true;
+            }
+            case SECTION_MORE: {
+                JsonObject more = readObject(reader);
+                if (more != null) {
+                    importInts(more, MORE_INT_KEYS, result);
+                }
+                return true;
+            }
+            case SECTION_REMINDER_PROVIDER: {
+                JsonObject reminderProvider = readObject(reader);
+                if (reminderProvider != null) {
+                    importReminderProvider(reminderProvider, result);
+                }
+                return true;
+            }
+            case SECTION_DOUBAO_TTS: {
+                JsonObject doubaoTts = readObject(reader);
+                if (doubaoTts != null) {
+                    importDoubaoTtsConfig(doubaoTts, result);
+                }
+                return true;
+            }
+            case SECTION_SECRETS: {
+                JsonObject secrets = readObject(reader);
+                if (secrets != null) {
+                    importSecrets(secrets, result);
+                }
+                return true;
+            }
+            case SECTION_ANSWER_HISTORY:
+                importAnswerHistory(reader, result);
+                return true;
+            default:
+                return false;
+        }
     }
 
-    private void importCustomApps(JsonObject home, ImportResult result) {
-        JsonArray arr = optArrayFromString(home, "customAppsList");
-        if (arr == null) {
+    private void importHome(JsonReader reader, ImportResult result) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
             return;
         }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "customAppsList":
+                    importCustomApps(readString(reader), result);
+                    break;
+                case "predefinedModifications":
+                    importPredefinedModifications(readString(reader), result);
+                    break;
+                case "appSettings":
+                    importPerAppSettings(reader, result);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+    }
+
+    private void importCustomApps(String json, ImportResult result) {
         CustomAppManager manager = CustomAppManager.getInstance();
-        for (JsonElement el : arr) {
-            try {
-                JsonObject o = el.getAsJsonObject();
-                boolean ok = manager.addCustomApp(
-                        o.get("appName").getAsString(),
-                        o.get("packageName").getAsString(),
-                        optString(o, "targetWord", ""),
-                        CustomApp.clampRelaxedLimitCount(optInt(o, "relaxedLimitCount", 1)),
-                        optBoolean(o, "globalBlock", false));
-                if (ok) {
-                    result.imported++;
-                } else {
-                    // 包名非法或已存在，跳过
-                    result.skipped++;
-                }
-            } catch (Exception e) {
+        forEachElementOf(json, result, el -> {
+            JsonObject o = el.getAsJsonObject();
+            boolean ok = manager.addCustomApp(
+                    o.get("appName").getAsString(),
+                    o.get("packageName").getAsString(),
+                    optString(o, "targetWord", ""),
+                    CustomApp.clampRelaxedLimitCount(optInt(o, "relaxedLimitCount", 1)),
+                    optBoolean(o, "globalBlock", false),
+                    optString(o, "targetViewIds", null));
+            if (ok) {
+                result.imported++;
+            } else {
+                // 包名非法或已存在，跳过
                 result.skipped++;
             }
-        }
+        });
     }
 
     private void importReminderProvider(JsonObject provider, ImportResult result) {
@@ -607,64 +945,130 @@ public class BackupManager {
         }
     }
 
-    private void importPredefinedModifications(JsonObject home, ImportResult result) {
-        JsonArray arr = optArrayFromString(home, "predefinedModifications");
-        if (arr == null) {
-            return;
-        }
+    private void importPredefinedModifications(String json, ImportResult result) {
         CustomAppManager manager = CustomAppManager.getInstance();
-        for (JsonElement el : arr) {
-            try {
-                JsonObject o = el.getAsJsonObject();
-                CustomApp app = new CustomApp(
-                        o.get("appName").getAsString(),
-                        o.get("packageName").getAsString(),
-                        optString(o, "targetWord", ""),
-                        CustomApp.clampRelaxedLimitCount(optInt(o, "relaxedLimitCount", 1)),
-                        optBoolean(o, "globalBlock", false));
-                manager.updatePredefinedApp(app);
-                result.imported++;
-            } catch (Exception e) {
-                result.skipped++;
-            }
-        }
+        forEachElementOf(json, result, el -> {
+            JsonObject o = el.getAsJsonObject();
+            CustomApp app = new CustomApp(
+                    o.get("appName").getAsString(),
+                    o.get("packageName").getAsString(),
+                    optString(o, "targetWord", ""),
+                    CustomApp.clampRelaxedLimitCount(optInt(o, "relaxedLimitCount", 1)),
+                    optBoolean(o, "globalBlock", false));
+            app.setTargetViewIds(optString(o, "targetViewIds", null));
+            manager.updatePredefinedApp(app);
+            result.imported++;
+        });
     }
 
-    private void importPerAppSettings(JsonObject home, ImportResult result) {
-        JsonObject appSettings = optObject(home, "appSettings");
-        if (appSettings == null) {
+    private void importPerAppSettings(JsonReader reader, ImportResult result) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
             return;
         }
-        for (Map.Entry<String, JsonElement> entry : appSettings.entrySet()) {
-            String pkg = entry.getKey();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String pkg = reader.nextName();
+            JsonElement element = JsonParser.parseReader(reader);
             try {
-                JsonObject o = entry.getValue().getAsJsonObject();
+                JsonObject o = element.getAsJsonObject();
+                // 先在副本上逐项解析，任一项格式不对整条跳过；全部成功后整条记录只写一次
+                PerAppSettings parsed = new PerAppSettings();
                 if (has(o, "hintSource")) {
-                    settings.putString(PREFIX_HINT_SOURCE + pkg, o.get("hintSource").getAsString());
+                    parsed.hintSource = o.get("hintSource").getAsString();
                 }
                 if (has(o, "hintCustomText")) {
-                    settings.putString(PREFIX_HINT_CUSTOM + pkg, o.get("hintCustomText").getAsString());
+                    parsed.hintCustom = o.get("hintCustomText").getAsString();
                 }
                 if (has(o, "floatingTopOffset")) {
-                    settings.putInt(PREFIX_FLOATING_TOP + pkg, o.get("floatingTopOffset").getAsInt());
+                    parsed.floatingTopOffset = o.get("floatingTopOffset").getAsInt();
                 }
                 if (has(o, "floatingBottomOffset")) {
-                    settings.putInt(PREFIX_FLOATING_BOTTOM + pkg,
-                            o.get("floatingBottomOffset").getAsInt());
+                    parsed.floatingBottomOffset = o.get("floatingBottomOffset").getAsInt();
                 }
                 if (has(o, "monitoringEnabled")) {
-                    settings.putBoolean(PREFIX_MONITORING + pkg,
-                            o.get("monitoringEnabled").getAsBoolean());
+                    parsed.monitoringEnabled = o.get("monitoringEnabled").getAsBoolean();
                 }
                 if (has(o, "showInterval")) {
-                    settings.putInt(PREFIX_SHOW_INTERVAL + pkg, o.get("showInterval").getAsInt());
+                    parsed.showInterval = o.get("showInterval").getAsInt();
                 }
-                settings.commit();
+                perApp.update(pkg, s -> s.mergeUserSettings(parsed));
                 result.imported++;
             } catch (Exception e) {
                 result.skipped++;
             }
         }
+        reader.endObject();
+        // 监测开关可能已变化，重建包名索引
+        CustomAppManager.getInstance().onMonitoringSettingsChanged();
+    }
+
+    private void importAnswerHistory(JsonReader reader, ImportResult result) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return;
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case HISTORY_CHALLENGE:
+                    importHistory(reader, result, ChallengeRecordStore::recordLog,
+                            ChallengeRecord.class, r -> r.timestamp, r -> true);
+                    break;
+                case HISTORY_LISTENING:
+                    importHistory(reader, result, ListeningRecordStore::recordLog,
+                            ListeningRecord.class, r -> r.timestamp, r -> true);
+                    break;
+                case HISTORY_RETELLING:
+                    importHistory(reader, result, RetellingRecordStore::recordLog,
+                            RetellingRecord.class, r -> r.timestamp, r -> true);
+                    break;
+                case HISTORY_OVERVIEW:
+                    importHistory(reader, result, AnswerOverviewStore::recordLog,
+                            AnswerOverviewRecord.class, r -> r.timestamp,
+                            r -> r.type != null && !r.type.isEmpty());
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * 导入一组答题记录：读完整组后与本机记录按时间合并（见 {@link RecordLog#mergeByTime}）。
+     * 记录以时间戳为标识，本机已有同一时间戳的（如在同一台手机上重复导入）跳过；
+     * 超出各题型上限时淘汰的是时间最早的记录，不论来自本机还是备份。
+     */
+    private <T> void importHistory(JsonReader reader, ImportResult result, HistoryLog<T> history,
+                                   Class<T> type, ToLongFunction<T> timestampOf,
+                                   Predicate<T> valid) throws IOException {
+        RecordLog<T> log;
+        try {
+            log = history.open();
+        } catch (IOException e) {
+            Log.w(TAG, "打开答题记录失败，跳过该组: " + type.getSimpleName(), e);
+            reader.skipValue();
+            return;
+        }
+        List<T> records = new ArrayList<>();
+        forEachElement(reader, result, el -> {
+            T record = gson.fromJson(el, type);
+            if (record == null || !valid.test(record)) {
+                result.skipped++;
+                return;
+            }
+            records.add(record);
+        });
+        try {
+            int added = log.mergeByTime(records, timestampOf);
+            result.imported += added;
+            result.skipped += records.size() - added;
+        } catch (IOException e) {
+            Log.w(TAG, "写入答题记录失败，跳过该组: " + type.getSimpleName(), e);
+            result.skipped += records.size();
+        }
     }
 
     private void importStrings(JsonObject obj, String[] keys, ImportResult result) {
@@ -673,7 +1077,7 @@ public class BackupManager {
                 continue;
             }
             try {
-                settings.putString(key, obj.get(key).getAsString()).commit();
+                settings.putString(key, obj.get(key).getAsString());
                 result.imported++;
             } catch (Exception e) {
                 result.skipped++;
@@ -704,7 +1108,7 @@ public class BackupManager {
                 continue;
             }
             try {
-                settings.putInt(key, obj.get(key).getAsInt()).commit();
+                settings.putInt(key, obj.get(key).getAsInt());
                 result.imported++;
             } catch (Exception e) {
                 result.skipped++;
@@ -739,15 +1143,66 @@ public class BackupManager {
         return null;
     }
 
-    private static JsonArray optArrayFromString(JsonObject parent, String name) {
-        try {
-            if (!has(parent, name)) {
-                return null;
-            }
-            JsonElement el = JsonParser.parseString(parent.get(name).getAsString());
-            return el.isJsonArray() ? el.getAsJsonArray() : null;
-        } catch (Exception e) {
+    /** 读取一个对象型的值；不是对象时跳过并返回 null。 */
+    private static JsonObject readObject(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return null;
+        }
+        return JsonParser.parseReader(reader).getAsJsonObject();
+    }
+
+    /** 读取一个字符串型的值；不是字符串时跳过并返回 null。 */
+    private static String readString(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.STRING) {
+            reader.skipValue();
             return null;
         }
+        return reader.nextString();
+    }
+
+    private interface ElementHandler {
+        void handle(JsonElement element) throws Exception;
+    }
+
+    /** 打开一组答题记录的日志。 */
+    private interface HistoryLog<T> {
+        RecordLog<T> open() throws IOException;
+    }
+
+    /**
+     * 逐个读取数组元素交给 handler；单个元素处理失败只计为跳过。不是数组时整体跳过。
+     */
+    private static void forEachElement(JsonReader reader, ImportResult result,
+                                       ElementHandler handler) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            reader.skipValue();
+            return;
+        }
+        reader.beginArray();
+        while (reader.hasNext()) {
+            JsonElement element = JsonParser.parseReader(reader);
+            try {
+                handler.handle(element);
+            } catch (Exception e) {
+                result.skipped++;
+            }
+        }
+        reader.endArray();
+    }
+
+    /**
+     * 同 {@link #forEachElement}，数组以 JSON 串的形式内嵌在备份中（如自定义 APP 列表）。
+     * 串本身无法解析时停在出错处，此前的元素照常应用。
+     */
+    private static void forEachElementOf(String json, ImportResult result, ElementHandler handler) {
+        if (json == null) {
+            return;
+        }
+        try (JsonReader reader = new JsonReader(new StringReader(json))) {
+            forEachElement(reader, result, handler);
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+            Log.w(TAG, "内嵌列表格式不正确，已忽略其余部分", e);
+        }
     }
 }
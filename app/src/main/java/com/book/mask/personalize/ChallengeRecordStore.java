@@ -1,59 +1,63 @@
 package com.book.mask.personalize;
 
+import android.util.Log;
+
 import com.book.mask.constant.QuestionConst;
-import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
-import com.tencent.mmkv.MMKV;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
- * 文本类答题记录持久化：以 Gson JSON 数组存于 MMKV，新的在前，超过上限丢弃最旧。
+ * 文本类答题记录持久化：追加写入 {@link RecordLog}，新的在前，超过上限淘汰最旧。
+ * 旧版本存于 MMKV 的 Gson JSON 数组在首次使用时迁入。
  */
 public final class ChallengeRecordStore {
 
+    private static final String TAG = "ChallengeRecordStore";
+    // 旧版本的 MMKV 键，同时用作日志目录名
     private static final String KEY = "challenge_answer_records";
 
-    private final MMKV mmkv;
-    private final Gson gson = new Gson();
-    private final Type listType = new TypeToken<ArrayList<ChallengeRecord>>() {
-    }.getType();
+    private static RecordLog<ChallengeRecord> sharedLog;
 
-    public ChallengeRecordStore() {
-        this.mmkv = SettingsStorage.open();
+    static synchronized RecordLog<ChallengeRecord> recordLog() throws IOException {
+        if (sharedLog == null) {
+            sharedLog = SettingsStorage.openRecordLog(KEY, ChallengeRecord.class,
+                    new TypeToken<ArrayList<ChallengeRecord>>() {
+                    }.getType(), KEY, RecordLog.keepLatest(QuestionConst.CHALLENGE_RECORD_MAX));
+        }
+        return sharedLog;
     }
 
-    /** 读取全部记录（新的在前）；无记录时返回空列表。 */
-    public synchronized List<ChallengeRecord> getRecords() {
-        String json = mmkv.getString(KEY, null);
-        if (json == null || json.isEmpty()) {
-            return new ArrayList<>();
-        }
+    /** 读取全部记录（新的在前）；无记录或读取失败时返回空列表。 */
+    public List<ChallengeRecord> getRecords() {
         try {
-            List<ChallengeRecord> list = gson.fromJson(json, listType);
-            return list == null ? new ArrayList<>() : list;
-        } catch (Exception e) {
+            return recordLog().readNewestFirst(QuestionConst.CHALLENGE_RECORD_MAX);
+        } catch (IOException e) {
+            Log.w(TAG, "读取文本类答题记录失败", e);
             return new ArrayList<>();
         }
     }
 
-    /** 新增一条记录，插入到最前，裁剪到上限后持久化。 */
-    public synchronized void addRecord(ChallengeRecord record) {
+    /** 新增一条记录，追加到日志末尾，超出上限的最旧一条随之淘汰。 */
+    public void addRecord(ChallengeRecord record) {
         if (record == null) {
             return;
         }
-        List<ChallengeRecord> records = getRecords();
-        records.add(0, record);
-        if (records.size() > QuestionConst.CHALLENGE_RECORD_MAX) {
-            records = new ArrayList<>(records.subList(0, QuestionConst.CHALLENGE_RECORD_MAX));
+        try {
+            recordLog().append(record);
+        } catch (IOException e) {
+            Log.w(TAG, "保存文本类答题记录失败", e);
         }
-        mmkv.putString(KEY, gson.toJson(records)).commit();
     }
 
     /** 清空全部记录。 */
-    public synchronized void clear() {
-        mmkv.removeValueForKey(KEY);
+    public void clear() {
+        try {
+            recordLog().clear();
+        } catch (IOException e) {
+            Log.w(TAG, "清空文本类答题记录失败", e);
+        }
     }
 }
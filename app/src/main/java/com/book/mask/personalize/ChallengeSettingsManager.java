@@ -3,9 +3,9 @@ package com.book.mask.personalize;
 import android.content.Context;
 
 import com.book.mask.config.ChallengeType;
+import com.book.mask.config.SettingsRepository;
 import com.book.mask.constant.QuestionConst;
 import com.book.mask.util.ArithmeticUtils.MultiplicationTier;
-import com.tencent.mmkv.MMKV;
 
 /**
  * 管理答题类型、算术题难度和英文阅读题配置。
@@ -40,10 +40,10 @@ public class ChallengeSettingsManager {
     public static final int TIMER_MODE_MINUTES = 1;
     public static final int TIMER_MODE_MINUTES_SECONDS = 2;
 
-    private final MMKV mmkv;
+    private final SettingsRepository settings;
 
     public ChallengeSettingsManager(Context context) {
-        mmkv = SettingsStorage.open();
+        settings = SettingsStorage.open();
     }
 
     /**
@@ -51,78 +51,78 @@ public class ChallengeSettingsManager {
      */
     public void setMathDifficultyMode(String mode) {
         android.util.Log.d("SettingsManager", "设置难度模式: " + mode);
-        mmkv.putString(KEY_MATH_DIFFICULTY_MODE, mode).commit();
+        settings.putString(KEY_MATH_DIFFICULTY_MODE, mode);
         android.util.Log.d("SettingsManager", "难度模式设置完成");
     }
 
     public String getMathDifficultyMode() {
-        String mode = mmkv.getString(KEY_MATH_DIFFICULTY_MODE, "default");
+        String mode = settings.getString(KEY_MATH_DIFFICULTY_MODE, "default");
         android.util.Log.d("SettingsManager", "获取难度模式: " + mode);
         return mode;
     }
 
     public void setMathAdditionDigits(int digits) {
-        mmkv.putInt(KEY_MATH_ADDITION_DIGITS, digits).commit();
+        settings.putInt(KEY_MATH_ADDITION_DIGITS, digits);
     }
 
     public int getMathAdditionDigits() {
-        return mmkv.getInt(KEY_MATH_ADDITION_DIGITS, QuestionConst.ADD_LEN_DEFAULT);
+        return settings.getInt(KEY_MATH_ADDITION_DIGITS, QuestionConst.ADD_LEN_DEFAULT);
     }
 
     public void setMathSubtractionDigits(int digits) {
-        mmkv.putInt(KEY_MATH_SUBTRACTION_DIGITS, digits).commit();
+        settings.putInt(KEY_MATH_SUBTRACTION_DIGITS, digits);
     }
 
     public int getMathSubtractionDigits() {
-        return mmkv.getInt(KEY_MATH_SUBTRACTION_DIGITS, QuestionConst.SUB_LEN_DEFAULT);
+        return settings.getInt(KEY_MATH_SUBTRACTION_DIGITS, QuestionConst.SUB_LEN_DEFAULT);
     }
 
     public void setMathMultiplicationMultiplierDigits(int digits) {
-        mmkv.putInt(KEY_MATH_MULTIPLICATION_MULTIPLIER_DIGITS, digits).commit();
+        settings.putInt(KEY_MATH_MULTIPLICATION_MULTIPLIER_DIGITS, digits);
     }
 
     public int getMathMultiplicationMultiplierDigits() {
-        return mmkv.getInt(
+        return settings.getInt(
                 KEY_MATH_MULTIPLICATION_MULTIPLIER_DIGITS,
                 QuestionConst.MUL_FIRST_LEN_DEFAULT);
     }
 
     public void setMathMultiplicationMultiplicandDigits(int digits) {
-        mmkv.putInt(KEY_MATH_MULTIPLICATION_MULTIPLICAND_DIGITS, digits).commit();
+        settings.putInt(KEY_MATH_MULTIPLICATION_MULTIPLICAND_DIGITS, digits);
     }
 
     public int getMathMultiplicationMultiplicandDigits() {
-        return mmkv.getInt(
+        return settings.getInt(
                 KEY_MATH_MULTIPLICATION_MULTIPLICAND_DIGITS,
                 QuestionConst.MUL_SECOND_LEN_DEFAULT);
     }
 
     public void setMathMultiplicationMultiplierTier(MultiplicationTier tier) {
-        mmkv.putString(
+        settings.putString(
                 KEY_MATH_MULTIPLICATION_MULTIPLIER_TIER,
-                tier.getPreferenceValue()).commit();
+                tier.getPreferenceValue());
     }
 
     public MultiplicationTier getMathMultiplicationMultiplierTier() {
-        return MultiplicationTier.fromPreferenceValue(mmkv.getString(
+        return MultiplicationTier.fromPreferenceValue(settings.getString(
                 KEY_MATH_MULTIPLICATION_MULTIPLIER_TIER,
                 MultiplicationTier.LOWER_HALF.getPreferenceValue()));
     }
 
     public void setMathMultiplicationMultiplicandTier(MultiplicationTier tier) {
-        mmkv.putString(
+        settings.putString(
                 KEY_MATH_MULTIPLICATION_MULTIPLICAND_TIER,
-                tier.getPreferenceValue()).commit();
+                tier.getPreferenceValue());
     }
 
     public MultiplicationTier getMathMultiplicationMultiplicandTier() {
-        return MultiplicationTier.fromPreferenceValue(mmkv.getString(
+        return MultiplicationTier.fromPreferenceValue(settings.getString(
                 KEY_MATH_MULTIPLICATION_MULTIPLICAND_TIER,
                 MultiplicationTier.LOWER_HALF.getPreferenceValue()));
     }
 
     public ChallengeType getChallengeType() {
-        String preferenceValue = mmkv.getString(
+        String preferenceValue = settings.getString(
                 KEY_MATH_QUESTION_TYPE, ChallengeType.MIXED.getPreferenceValue());
         ChallengeType challengeType = ChallengeType.fromPreferenceValue(preferenceValue);
         if (!QuestionConst.ENGLISH_READING_ENABLED
@@ -133,11 +133,11 @@ public class ChallengeSettingsManager {
     }
 
     public void setChallengeType(ChallengeType challengeType) {
-        mmkv.putString(KEY_MATH_QUESTION_TYPE, challengeType.getPreferenceValue()).commit();
+        settings.putString(KEY_MATH_QUESTION_TYPE, challengeType.getPreferenceValue());
     }
 
     public int getReasoningDifficultyLevel() {
-        int level = mmkv.getInt(KEY_REASONING_DIFFICULTY_LEVEL, REASONING_LEVEL_DEFAULT);
+        int level = settings.getInt(KEY_REASONING_DIFFICULTY_LEVEL, REASONING_LEVEL_DEFAULT);
         return level >= REASONING_LEVEL_MIN && level <= REASONING_LEVEL_MAX
                 ? level
                 : REASONING_LEVEL_DEFAULT;
@@ -147,21 +147,21 @@ public class ChallengeSettingsManager {
         int validLevel = level >= REASONING_LEVEL_MIN && level <= REASONING_LEVEL_MAX
                 ? level
                 : REASONING_LEVEL_DEFAULT;
-        mmkv.putInt(KEY_REASONING_DIFFICULTY_LEVEL, validLevel).commit();
+        settings.putInt(KEY_REASONING_DIFFICULTY_LEVEL, validLevel);
     }
 
     public int getChallengeTimerMode() {
-        int mode = mmkv.getInt(KEY_CHALLENGE_TIMER_MODE, TIMER_MODE_NONE);
+        int mode = settings.getInt(KEY_CHALLENGE_TIMER_MODE, TIMER_MODE_NONE);
         return clamp(mode, TIMER_MODE_NONE, TIMER_MODE_MINUTES_SECONDS);
     }
 
     public void setChallengeTimerMode(int mode) {
-        mmkv.putInt(KEY_CHALLENGE_TIMER_MODE,
-                clamp(mode, TIMER_MODE_NONE, TIMER_MODE_MINUTES_SECONDS)).commit();
+        settings.putInt(KEY_CHALLENGE_TIMER_MODE,
+                clamp(mode, TIMER_MODE_NONE, TIMER_MODE_MINUTES_SECONDS));
     }
 
     public int getEnglishReadingLength() {
-        int length = mmkv.getInt(
+        int length = settings.getInt(
                 KEY_ENGLISH_READING_LENGTH,
                 QuestionConst.ENGLISH_READING_LENGTH_DEFAULT);
         return Math.max(length, QuestionConst.ENGLISH_READING_LENGTH_MIN);
@@ -169,11 +169,11 @@ public class ChallengeSettingsManager {
 
     public void setEnglishReadingLength(int length) {
         int validLength = Math.max(length, QuestionConst.ENGLISH_READING_LENGTH_MIN);
-        mmkv.putInt(KEY_ENGLISH_READING_LENGTH, validLength).commit();
+        settings.putInt(KEY_ENGLISH_READING_LENGTH, validLength);
     }
 
     public int getRetellingStoryLength() {
-        int length = mmkv.getInt(
+        int length = settings.getInt(
                 KEY_RETELLING_STORY_LENGTH,
                 QuestionConst.RETELLING_STORY_LENGTH_DEFAULT);
         return clamp(
@@ -183,17 +183,16 @@ public class ChallengeSettingsManager {
     }
 
     public void setRetellingStoryLength(int length) {
-        mmkv.putInt(
+        settings.putInt(
                 KEY_RETELLING_STORY_LENGTH,
                 clamp(
                         length,
                         QuestionConst.RETELLING_STORY_LENGTH_MIN,
-                        QuestionConst.RETELLING_STORY_LENGTH_MAX))
-                .commit();
+                        QuestionConst.RETELLING_STORY_LENGTH_MAX));
     }
 
     public int getRetellingDisplaySeconds() {
-        int seconds = mmkv.getInt(
+        int seconds = settings.getInt(
                 KEY_RETELLING_DISPLAY_SECONDS,
                 QuestionConst.RETELLING_DISPLAY_SECONDS_DEFAULT);
         return clamp(
@@ -203,17 +202,16 @@ public class ChallengeSettingsManager {
     }
 
     public void setRetellingDisplaySeconds(int seconds) {
-        mmkv.putInt(
+        settings.putInt(
                 KEY_RETELLING_DISPLAY_SECONDS,
                 clamp(
                         seconds,
                         QuestionConst.RETELLING_DISPLAY_SECONDS_MIN,
-                        QuestionConst.RETELLING_DISPLAY_SECONDS_MAX))
-                .commit();
+                        QuestionConst.RETELLING_DISPLAY_SECONDS_MAX));
     }
 
     public int getRetellingPassScore() {
-        int score = mmkv.getInt(
+        int score = settings.getInt(
                 KEY_RETELLING_PASS_SCORE,
                 QuestionConst.RETELLING_PASS_SCORE_DEFAULT);
         return clamp(
@@ -223,13 +221,12 @@ public class ChallengeSettingsManager {
     }
 
     public void setRetellingPassScore(int score) {
-        mmkv.putInt(
+        settings.putInt(
                 KEY_RETELLING_PASS_SCORE,
                 clamp(
                         score,
                         QuestionConst.RETELLING_PASS_SCORE_MIN,
-                        QuestionConst.RETELLING_PASS_SCORE_MAX))
-                .commit();
+                        QuestionConst.RETELLING_PASS_SCORE_MAX));
     }
 
     /** getter/setter 两侧统一做范围限制，防止导入旧备份或异常值绕过界面校验。 */
@@ -2,8 +2,8 @@ package com.book.mask.personalize;
 
 import android.content.Context;
 
+import com.book.mask.config.SettingsRepository;
 import com.book.mask.util.DateUtils;
-import com.tencent.mmkv.MMKV;
 
 /**
  * 管理休闲时刻的配置、每日额度和运行状态。
@@ -87,10 +87,10 @@ public class LeisureTimeManager {
         }
     }
 
-    private final MMKV mmkv;
+    private final SettingsRepository settings;
 
     public LeisureTimeManager(Context context) {
-        mmkv = SettingsStorage.open();
+        settings = SettingsStorage.open();
     }
 
     /** 休闲时刻时长：宽松模式取当前所选档位的时长、严格模式固定 2 分钟。 */
@@ -111,12 +111,12 @@ public class LeisureTimeManager {
         if (mode == LeisureMode.RELAXED) {
             return getLargeUsedCountToday() + getShortUsedCountToday();
         }
-        String lastUsedDate = mmkv.getString(
+        String lastUsedDate = settings.getString(
                 KEY_STRICT_LEISURE_LAST_USED_DATE, "");
         if (!DateUtils.getCurrentDate().equals(lastUsedDate)) {
             return 0;
         }
-        return mmkv.getInt(KEY_STRICT_LEISURE_USED_COUNT, 0);
+        return settings.getInt(KEY_STRICT_LEISURE_USED_COUNT, 0);
     }
 
     public int getLeisureRemainingCountToday(LeisureMode mode) {
@@ -134,12 +134,12 @@ public class LeisureTimeManager {
         if (tier == null) {
             throw new IllegalArgumentException("宽松模式档位不能为 null");
         }
-        mmkv.putString(KEY_LEISURE_RELAXED_TIER, tier.name()).commit();
+        settings.putString(KEY_LEISURE_RELAXED_TIER, tier.name());
     }
 
     /** 宽松模式当前选中的档位，默认大档。 */
     public LeisureTier getSelectedRelaxedTier() {
-        String value = mmkv.getString(KEY_LEISURE_RELAXED_TIER, LeisureTier.LARGE.name());
+        String value = settings.getString(KEY_LEISURE_RELAXED_TIER, LeisureTier.LARGE.name());
         try {
             return LeisureTier.valueOf(value);
         } catch (IllegalArgumentException e) {
@@ -149,12 +149,12 @@ public class LeisureTimeManager {
 
     /** 宽松模式指定档位的解禁时长，取值收敛在该档位允许区间内。 */
     public int getRelaxedTierMinutes(LeisureTier tier) {
-        return tier.clampMinutes(mmkv.getInt(tier.minutesKey, tier.defaultMinutes));
+        return tier.clampMinutes(settings.getInt(tier.minutesKey, tier.defaultMinutes));
     }
 
     /** 保存宽松模式指定档位的解禁时长；超出允许区间时按边界收敛。 */
     public void setRelaxedTierMinutes(LeisureTier tier, int minutes) {
-        mmkv.putInt(tier.minutesKey, tier.clampMinutes(minutes)).commit();
+        settings.putInt(tier.minutesKey, tier.clampMinutes(minutes));
     }
 
     /** 宽松模式大档今日剩余次数（每天最多 2 次）。 */
@@ -178,29 +178,28 @@ public class LeisureTimeManager {
                 return false;
             }
             String currentDate = DateUtils.getCurrentDate();
-            mmkv.putInt(KEY_LEISURE_RELAXED_LARGE_USED, RELAXED_LARGE_DAILY_LIMIT)
+            settings.putInt(KEY_LEISURE_RELAXED_LARGE_USED, RELAXED_LARGE_DAILY_LIMIT)
                     .putInt(KEY_LEISURE_RELAXED_SHORT_USED, 0)
-                    .putString(KEY_LEISURE_LAST_USED_DATE, currentDate)
-                    .commit();
+                    .putString(KEY_LEISURE_LAST_USED_DATE, currentDate);
             return true;
         }
     }
 
     private int getLargeUsedCountToday() {
         return isTodayLeisureDate()
-                ? mmkv.getInt(KEY_LEISURE_RELAXED_LARGE_USED, 0)
+                ? settings.getInt(KEY_LEISURE_RELAXED_LARGE_USED, 0)
                 : 0;
     }
 
     private int getShortUsedCountToday() {
         return isTodayLeisureDate()
-                ? mmkv.getInt(KEY_LEISURE_RELAXED_SHORT_USED, 0)
+                ? settings.getInt(KEY_LEISURE_RELAXED_SHORT_USED, 0)
                 : 0;
     }
 
     private boolean isTodayLeisureDate() {
         return DateUtils.getCurrentDate()
-                .equals(mmkv.getString(KEY_LEISURE_LAST_USED_DATE, ""));
+                .equals(settings.getString(KEY_LEISURE_LAST_USED_DATE, ""));
     }
 
     /**
@@ -212,10 +211,9 @@ public class LeisureTimeManager {
         if (isTodayLeisureDate()) {
             return;
         }
-        mmkv.putInt(KEY_LEISURE_RELAXED_LARGE_USED, 0)
+        settings.putInt(KEY_LEISURE_RELAXED_LARGE_USED, 0)
                 .putInt(KEY_LEISURE_RELAXED_SHORT_USED, 0)
-                .putString(KEY_LEISURE_LAST_USED_DATE, DateUtils.getCurrentDate())
-                .commit();
+                .putString(KEY_LEISURE_LAST_USED_DATE, DateUtils.getCurrentDate());
     }
 
     public boolean isRelaxedTriggerCoolingDown() {
@@ -225,7 +223,7 @@ public class LeisureTimeManager {
     public long getRelaxedTriggerCooldownRemainingMillis() {
         return Math.max(
                 0,
-                mmkv.getLong(KEY_LEISURE_RELAXED_COOLDOWN_UNTIL, 0)
+                settings.getLong(KEY_LEISURE_RELAXED_COOLDOWN_UNTIL, 0)
                         - System.currentTimeMillis());
     }
 
@@ -254,7 +252,7 @@ public class LeisureTimeManager {
     }
 
     public boolean isLeisureTimeArmed() {
-        return mmkv.getBoolean(KEY_LEISURE_ARMED, false);
+        return settings.getBoolean(KEY_LEISURE_ARMED, false);
     }
 
     public boolean isLeisureTimeArmed(LeisureMode mode) {
@@ -288,9 +286,8 @@ public class LeisureTimeManager {
                 return false;
             }
 
-            mmkv.putString(KEY_LEISURE_ARMED_MODE, mode.preferenceValue)
-                    .putBoolean(KEY_LEISURE_ARMED, true)
-                    .commit();
+            settings.putString(KEY_LEISURE_ARMED_MODE, mode.preferenceValue)
+                    .putBoolean(KEY_LEISURE_ARMED, true);
             return true;
         }
     }
@@ -303,7 +300,7 @@ public class LeisureTimeManager {
             if (!isLeisureTimeArmed(mode)) {
                 return false;
             }
-            mmkv.putBoolean(KEY_LEISURE_ARMED, false).commit();
+            settings.putBoolean(KEY_LEISURE_ARMED, false);
             return true;
         }
     }
@@ -320,7 +317,7 @@ public class LeisureTimeManager {
             }
             LeisureMode mode = getArmedLeisureMode();
             if (isLeisureTimeActive(mode)) {
-                mmkv.putBoolean(KEY_LEISURE_ARMED, false).commit();
+                settings.putBoolean(KEY_LEISURE_ARMED, false);
                 return null;
             }
 
@@ -333,12 +330,12 @@ public class LeisureTimeManager {
 
     private LeisureMode activateRelaxedLeisure(LeisureTier tier) {
         if (isRelaxedTriggerCoolingDown()) {
-            mmkv.putBoolean(KEY_LEISURE_ARMED, false).commit();
+            settings.putBoolean(KEY_LEISURE_ARMED, false);
             return null;
         }
         LeisureTier effectiveTier = tier != null ? tier : getSelectedRelaxedTier();
         if (getRemainingCount(effectiveTier) <= 0) {
-            mmkv.putBoolean(KEY_LEISURE_ARMED, false).commit();
+            settings.putBoolean(KEY_LEISURE_ARMED, false);
             return null;
         }
 
@@ -347,15 +344,14 @@ public class LeisureTimeManager {
         String tierUsedKey = effectiveTier == LeisureTier.LARGE
                 ? KEY_LEISURE_RELAXED_LARGE_USED
                 : KEY_LEISURE_RELAXED_SHORT_USED;
-        int tierUsedCount = mmkv.getInt(tierUsedKey, 0);
+        int tierUsedCount = settings.getInt(tierUsedKey, 0);
         long now = System.currentTimeMillis();
-        mmkv.putInt(tierUsedKey, tierUsedCount + 1)
+        settings.putInt(tierUsedKey, tierUsedCount + 1)
                 .putLong(KEY_LEISURE_ACTIVE_UNTIL, now + durationMinutes * 60_000L)
                 .putLong(
                         KEY_LEISURE_RELAXED_COOLDOWN_UNTIL,
                         now + RELAXED_TRIGGER_COOLDOWN_MILLIS)
-                .putBoolean(KEY_LEISURE_ARMED, false)
-                .commit();
+                .putBoolean(KEY_LEISURE_ARMED, false);
         return LeisureMode.RELAXED;
     }
 
@@ -367,28 +363,27 @@ public class LeisureTimeManager {
 
     private LeisureMode activateStrictLeisure() {
         if (getLeisureRemainingCountToday(LeisureMode.STRICT) <= 0) {
-            mmkv.putBoolean(KEY_LEISURE_ARMED, false).commit();
+            settings.putBoolean(KEY_LEISURE_ARMED, false);
             return null;
         }
         int strictUsedCount = getLeisureUsedCountToday(LeisureMode.STRICT);
-        mmkv.putInt(KEY_STRICT_LEISURE_USED_COUNT, strictUsedCount + 1)
+        settings.putInt(KEY_STRICT_LEISURE_USED_COUNT, strictUsedCount + 1)
                 .putString(KEY_STRICT_LEISURE_LAST_USED_DATE, DateUtils.getCurrentDate())
                 .putLong(
                         KEY_STRICT_LEISURE_ACTIVE_UNTIL,
                         System.currentTimeMillis()
                                 + getLeisureDurationMinutes(LeisureMode.STRICT) * 60_000L)
-                .putBoolean(KEY_LEISURE_ARMED, false)
-                .commit();
+                .putBoolean(KEY_LEISURE_ARMED, false);
         return LeisureMode.STRICT;
     }
 
     private LeisureMode getArmedLeisureMode() {
-        return LeisureMode.fromPreferenceValue(mmkv.getString(
+        return LeisureMode.fromPreferenceValue(settings.getString(
                 KEY_LEISURE_ARMED_MODE, LeisureMode.RELAXED.preferenceValue));
     }
 
     public long getLeisureTimeRemainingMillis(LeisureMode mode) {
-        long remainingMillis = mmkv.getLong(getLeisureActiveUntilKey(mode), 0)
+        long remainingMillis = settings.getLong(getLeisureActiveUntilKey(mode), 0)
                 - System.currentTimeMillis();
         return Math.max(remainingMillis, 0);
     }
@@ -1,59 +1,63 @@
 package com.book.mask.personalize;
 
+import android.util.Log;
+
 import com.book.mask.constant.QuestionConst;
-import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
-import com.tencent.mmkv.MMKV;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
- * 听力题答题记录持久化：以 Gson JSON 数组存于 MMKV，新的在前，超过上限丢弃最旧。
+ * 听力题答题记录持久化：追加写入 {@link RecordLog}，新的在前，超过上限淘汰最旧。
+ * 旧版本存于 MMKV 的 Gson JSON 数组在首次使用时迁入。
  */
 public final class ListeningRecordStore {
 
+    private static final String TAG = "ListeningRecordStore";
+    // 旧版本的 MMKV 键，同时用作日志目录名
     private static final String KEY = "listening_answer_records";
 
-    private final MMKV mmkv;
-    private final Gson gson = new Gson();
-    private final Type listType = new TypeToken<ArrayList<ListeningRecord>>() {
-    }.getType();
+    private static RecordLog<ListeningRecord> sharedLog;
 
-    public ListeningRecordStore() {
-        this.mmkv = SettingsStorage.open();
+    static synchronized RecordLog<ListeningRecord> recordLog() throws IOException {
+        if (sharedLog == null) {
+            sharedLog = SettingsStorage.openRecordLog(KEY, ListeningRecord.class,
+                    new TypeToken<ArrayList<ListeningRecord>>() {
+                    }.getType(), KEY, RecordLog.keepLatest(QuestionConst.LISTENING_RECORD_MAX));
+        }
+        return sharedLog;
     }
 
-    /** 读取全部记录（新的在前）；无记录时返回空列表。 */
-    public synchronized List<ListeningRecord> getRecords() {
-        String json = mmkv.getString(KEY, null);
-        if (json == null || json.isEmpty()) {
-            return new ArrayList<>();
-        }
+    /** 读取全部记录（新的在前）；无记录或读取失败时返回空列表。 */
+    public List<ListeningRecord> getRecords() {
         try {
-            List<ListeningRecord> list = gson.fromJson(json, listType);
-            return list == null ? new ArrayList<>() : list;
-        } catch (Exception e) {
+            return recordLog().readNewestFirst(QuestionConst.LISTENING_RECORD_MAX);
+        } catch (IOException e) {
+            Log.w(TAG, "读取听力题答题记录失败", e);
             return new ArrayList<>();
         }
     }
 
-    /** 新增一条记录，插入到最前，裁剪到上限后持久化。 */
-    public synchronized void addRecord(ListeningRecord record) {
+    /** 新增一条记录，追加到日志末尾，超出上限的最旧一条随之淘汰。 */
+    public void addRecord(ListeningRecord record) {
         if (record == null) {
             return;
         }
-        List<ListeningRecord> records = getRecords();
-        records.add(0, record);
-        if (records.size() > QuestionConst.LISTENING_RECORD_MAX) {
-            records = new ArrayList<>(records.subList(0, QuestionConst.LISTENING_RECORD_MAX));
+        try {
+            recordLog().append(record);
+        } catch (IOException e) {
+            Log.w(TAG, "保存听力题答题记录失败", e);
         }
-        mmkv.putString(KEY, gson.toJson(records)).commit();
     }
 
     /** 清空全部记录。 */
-    public synchronized void clear() {
-        mmkv.removeValueForKey(KEY);
+    public void clear() {
+        try {
+            recordLog().clear();
+        } catch (IOException e) {
+            Log.w(TAG, "清空听力题答题记录失败", e);
+        }
     }
 }
@@ -0,0 +1,151 @@
+package com.book.mask.personalize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * 某个 APP 的全部每-APP 设置，整体编码为一个二进制记录存放，见 {@link PerAppSettingsStore}。
+ * 各字段为 null 表示从未单独设置过（走全局默认值）。
+ * <p>
+ * 编码：[版本 1 字节][字段位图 int][按位序写出的已设置字段]。新字段只能追加在末尾并占用新的位，
+ * 旧版本读到新记录时读完自己认识的字段即停，不认识的位原样忽略。
+ */
+final class PerAppSettings {
+    static final int SCHEMA_VERSION = 1;
+
+    // 字段位，顺序即编码顺序，已发布的位不得改动
+    private static final int F_HINT_SOURCE = 1;
+    private static final int F_HINT_CUSTOM = 1 << 1;
+    private static final int F_FLOATING_TOP = 1 << 2;
+    private static final int F_FLOATING_BOTTOM = 1 << 3;
+    private static final int F_MONITORING = 1 << 4;
+    private static final int F_SHOW_INTERVAL = 1 << 5;
+    private static final int F_RELAXED_COUNT = 1 << 6;
+    private static final int F_RELAXED_DATE = 1 << 7;
+    private static final int F_LAST_CLOSE_TIME = 1 << 8;
+    private static final int F_LAST_CLOSE_INTERVAL = 1 << 9;
+
+    static final PerAppSettings EMPTY = new PerAppSettings();
+
+    // 用户配置
+    String hintSource;
+    String hintCustom;
+    Integer floatingTopOffset;
+    Integer floatingBottomOffset;
+    Boolean monitoringEnabled;
+    Integer showInterval;
+    // 运行态：宽松模式当日关闭次数与日期、上次关闭时间与当时的解禁间隔
+    Integer relaxedCloseCount;
+    String lastRelaxedCloseDate;
+    Long lastCloseTime;
+    Integer lastCloseInterval;
+
+    PerAppSettings copy() {
+        PerAppSettings c = new PerAppSettings();
+        c.hintSource = hintSource;
+        c.hintCustom = hintCustom;
+        c.floatingTopOffset = floatingTopOffset;
+        c.floatingBottomOffset = floatingBottomOffset;
+        c.monitoringEnabled = monitoringEnabled;
+        c.showInterval = showInterval;
+        c.relaxedCloseCount = relaxedCloseCount;
+        c.lastRelaxedCloseDate = lastRelaxedCloseDate;
+        c.lastCloseTime = lastCloseTime;
+        c.lastCloseInterval = lastCloseInterval;
+        return c;
+    }
+
+    boolean isEmpty() {
+        return fieldMask() == 0;
+    }
+
+    /**
+     * 是否设置过任一用户配置项（不计运行态数据）。
+     */
+    boolean hasUserSettings() {
+        return hintSource != null || hintCustom != null
+                || floatingTopOffset != null || floatingBottomOffset != null
+                || monitoringEnabled != null || showInterval != null;
+    }
+
+    /**
+     * 把 other 中已设置的用户配置项覆盖到本记录，未设置的项与运行态数据保持不变。
+     */
+    void mergeUserSettings(PerAppSettings other) {
+        if (other.hintSource != null) hintSource = other.hintSource;
+        if (other.hintCustom != null) hintCustom = other.hintCustom;
+        if (other.floatingTopOffset != null) floatingTopOffset = other.floatingTopOffset;
+        if (other.floatingBottomOffset != null) floatingBottomOffset = other.floatingBottomOffset;
+        if (other.monitoringEnabled != null) monitoringEnabled = other.monitoringEnabled;
+        if (other.showInterval != null) showInterval = other.showInterval;
+    }
+
+    private int fieldMask() {
+        int mask = 0;
+        if (hintSource != null) mask |= F_HINT_SOURCE;
+        if (hintCustom != null) mask |= F_HINT_CUSTOM;
+        if (floatingTopOffset != null) mask |= F_FLOATING_TOP;
+        if (floatingBottomOffset != null) mask |= F_FLOATING_BOTTOM;
+        if (monitoringEnabled != null) mask |= F_MONITORING;
+        if (showInterval != null) mask |= F_SHOW_INTERVAL;
+        if (relaxedCloseCount != null) mask |= F_RELAXED_COUNT;
+        if (lastRelaxedCloseDate != null) mask |= F_RELAXED_DATE;
+        if (lastCloseTime != null) mask |= F_LAST_CLOSE_TIME;
+        if (lastCloseInterval != null) mask |= F_LAST_CLOSE_INTERVAL;
+        return mask;
+    }
+
+    byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            int mask = fieldMask();
+            out.writeByte(SCHEMA_VERSION);
+            out.writeInt(mask);
+            if ((mask & F_HINT_SOURCE) != 0) out.writeUTF(hintSource);
+            if ((mask & F_HINT_CUSTOM) != 0) out.writeUTF(hintCustom);
+            if ((mask & F_FLOATING_TOP) != 0) out.writeInt(floatingTopOffset);
+            if ((mask & F_FLOATING_BOTTOM) != 0) out.writeInt(floatingBottomOffset);
+            if ((mask & F_MONITORING) != 0) out.writeBoolean(monitoringEnabled);
+            if ((mask & F_SHOW_INTERVAL) != 0) out.writeInt(showInterval);
+            if ((mask & F_RELAXED_COUNT) != 0) out.writeInt(relaxedCloseCount);
+            if ((mask & F_RELAXED_DATE) != 0) out.writeUTF(lastRelaxedCloseDate);
+            if ((mask & F_LAST_CLOSE_TIME) != 0) out.writeLong(lastCloseTime);
+            if ((mask & F_LAST_CLOSE_INTERVAL) != 0) out.writeInt(lastCloseInterval);
+        } catch (IOException e) {
+            // 写入内存流不会失败
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return 解码结果；data 为 null 时返回空记录
+     * @throws IOException 数据截断或版本号非法
+     */
+    static PerAppSettings decode(byte[] data) throws IOException {
+        PerAppSettings s = new PerAppSettings();
+        if (data == null) {
+            return s;
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        int version = in.readUnsignedByte();
+        if (version < 1) {
+            throw new IOException("非法的每-APP 设置版本: " + version);
+        }
+        int mask = in.readInt();
+        if ((mask & F_HINT_SOURCE) != 0) s.hintSource = in.readUTF();
+        if ((mask & F_HINT_CUSTOM) != 0) s.hintCustom = in.readUTF();
+        if ((mask & F_FLOATING_TOP) != 0) s.floatingTopOffset = in.readInt();
+        if ((mask & F_FLOATING_BOTTOM) != 0) s.floatingBottomOffset = in.readInt();
+        if ((mask & F_MONITORING) != 0) s.monitoringEnabled = in.readBoolean();
+        if ((mask & F_SHOW_INTERVAL) != 0) s.showInterval = in.readInt();
+        if ((mask & F_RELAXED_COUNT) != 0) s.relaxedCloseCount = in.readInt();
+        if ((mask & F_RELAXED_DATE) != 0) s.lastRelaxedCloseDate = in.readUTF();
+        if ((mask & F_LAST_CLOSE_TIME) != 0) s.lastCloseTime = in.readLong();
+        if ((mask & F_LAST_CLOSE_INTERVAL) != 0) s.lastCloseInterval = in.readInt();
+        return s;
+    }
+}
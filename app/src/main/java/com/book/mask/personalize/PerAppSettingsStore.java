@@ -0,0 +1,204 @@
+package com.book.mask.personalize;
+
+import android.util.Log;
+
+import com.book.mask.config.SettingsRepository;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 每-APP 设置存储：每个包名一条 {@link PerAppSettings} 二进制记录（键 {@link #KEY_PREFIX} + 包名），
+ * 读取一个 APP 的全部设置只需一次查找。解码结果按包名缓存，记录被改写或仓库重新加载时失效。
+ * <p>
+ * 旧版本把每项设置分别存成「前缀 + 包名」的键，首次打开时一次性迁入记录并删除旧键，
+ * 迁移完成后写入 {@link #KEY_SCHEMA} 不再扫描。
+ */
+final class PerAppSettingsStore {
+    private static final String TAG = "PerAppSettingsStore";
+
+    static final String KEY_PREFIX = "per_app_";
+    // 已迁移到的记录版本
+    static final String KEY_SCHEMA = "per_app_schema";
+
+    // 旧版本的每-APP 键前缀
+    private static final String LEGACY_HINT_SOURCE = "app_hint_source_";
+    private static final String LEGACY_HINT_CUSTOM = "app_hint_custom_";
+    private static final String LEGACY_FLOATING_TOP = "app_floating_top_offset_";
+    private static final String LEGACY_FLOATING_BOTTOM = "app_floating_bottom_offset_";
+    private static final String LEGACY_MONITORING = "app_monitoring_enabled_";
+    private static final String LEGACY_SHOW_INTERVAL = "app_show_interval_";
+    private static final String LEGACY_RELAXED_COUNT = "app_relaxed_close_count_";
+    private static final String LEGACY_RELAXED_DATE = "app_last_relaxed_close_date_";
+    private static final String LEGACY_LAST_CLOSE_TIME = "app_last_close_time_";
+    private static final String LEGACY_LAST_CLOSE_INTERVAL = "app_last_close_interval_";
+
+    /**
+     * 在 {@link #update} 中修改记录。
+     */
+    interface Editor {
+        void edit(PerAppSettings settings);
+    }
+
+    private static PerAppSettingsStore instance;
+
+    private final SettingsRepository settings;
+    private final ConcurrentHashMap<String, PerAppSettings> cache = new ConcurrentHashMap<>();
+
+    static synchronized PerAppSettingsStore get() {
+        if (instance == null) {
+            instance = new PerAppSettingsStore(SettingsStorage.open());
+        }
+        return instance;
+    }
+
+    private PerAppSettingsStore(SettingsRepository settings) {
+        this.settings = settings;
+        migrateLegacyKeys();
+        settings.addListener((repository, key) -> {
+            if (key == null) {
+                cache.clear();
+            } else if (key.startsWith(KEY_PREFIX)) {
+                cache.remove(key.substring(KEY_PREFIX.length()));
+            }
+        });
+    }
+
+    /**
+     * 读取指定 APP 的设置；从未设置过时返回空记录。返回的对象由多处共享，不得修改。
+     */
+    PerAppSettings read(String packageName) {
+        if (packageName == null) {
+            return PerAppSettings.EMPTY;
+        }
+        PerAppSettings cached = cache.get(packageName);
+        if (cached != null) {
+            return cached;
+        }
+        // 与 update 互斥，避免把刚被改写前的旧值放进缓存
+        synchronized (this) {
+            cached = cache.get(packageName);
+            if (cached == null) {
+                cached = decode(packageName, settings.getBytes(KEY_PREFIX + packageName));
+                cache.put(packageName, cached);
+            }
+            return cached;
+        }
+    }
+
+    /**
+     * 读出指定 APP 的记录副本交给 editor 修改后整体写回；改完为空则删除该记录。
+     */
+    synchronized void update(String packageName, Editor editor) {
+        if (packageName == null) return;
+        PerAppSettings edited = read(packageName).copy();
+        editor.edit(edited);
+        String key = KEY_PREFIX + packageName;
+        if (edited.isEmpty()) {
+            settings.remove(key);
+        } else {
+            settings.putBytes(key, edited.encode());
+        }
+        // 写入会经监听清掉缓存，这里再放入最新值
+        cache.put(packageName, edited);
+    }
+
+    /**
+     * 删除指定 APP 的整条记录。
+     */
+    synchronized void remove(String packageName) {
+        if (packageName == null) return;
+        settings.remove(KEY_PREFIX + packageName);
+        cache.put(packageName, PerAppSettings.EMPTY);
+    }
+
+    /**
+     * 存有记录的全部包名。
+     */
+    List<String> packages() {
+        List<String> packages = new ArrayList<>();
+        for (String key : settings.allKeys()) {
+            if (key.startsWith(KEY_PREFIX) && !key.equals(KEY_SCHEMA)) {
+                packages.add(key.substring(KEY_PREFIX.length()));
+            }
+        }
+        return packages;
+    }
+
+    private static PerAppSettings decode(String packageName, byte[] data) {
+        try {
+            return PerAppSettings.decode(data);
+        } catch (IOException e) {
+            Log.w(TAG, "每-APP 设置记录损坏，按未设置处理: " + packageName, e);
+            return PerAppSettings.EMPTY;
+        }
+    }
+
+    private void migrateLegacyKeys() {
+        if (settings.getInt(KEY_SCHEMA, 0) >= PerAppSettings.SCHEMA_VERSION) {
+            return;
+        }
+        Map<String, PerAppSettings> byPackage = new LinkedHashMap<>();
+        List<String> legacyKeys = new ArrayList<>();
+        for (String key : settings.allKeys()) {
+            if (migrateLegacyKey(key, byPackage)) {
+                legacyKeys.add(key);
+            }
+        }
+        for (Map.Entry<String, PerAppSettings> entry : byPackage.entrySet()) {
+            String key = KEY_PREFIX + entry.getKey();
+            // 已有记录（如迁移中途被中断后重来）以记录为准
+            if (!settings.contains(key)) {
+                settings.putBytes(key, entry.getValue().encode());
+            }
+        }
+        for (String key : legacyKeys) {
+            settings.remove(key);
+        }
+        settings.putInt(KEY_SCHEMA, PerAppSettings.SCHEMA_VERSION);
+        settings.flush();
+        Log.i(TAG, "每-APP 设置已迁移: " + byPackage.size() + " 个 APP，"
+                + legacyKeys.size() + " 个旧键");
+    }
+
+    private boolean migrateLegacyKey(String key, Map<String, PerAppSettings> byPackage) {
+        if (key.startsWith(LEGACY_HINT_SOURCE)) {
+            legacy(byPackage, key, LEGACY_HINT_SOURCE).hintSource = settings.getString(key, null);
+        } else if (key.startsWith(LEGACY_HINT_CUSTOM)) {
+            legacy(byPackage, key, LEGACY_HINT_CUSTOM).hintCustom = settings.getString(key, null);
+        } else if (key.startsWith(LEGACY_FLOATING_TOP)) {
+            legacy(byPackage, key, LEGACY_FLOATING_TOP).floatingTopOffset = settings.getInt(key, 0);
+        } else if (key.startsWith(LEGACY_FLOATING_BOTTOM)) {
+            legacy(byPackage, key, LEGACY_FLOATING_BOTTOM).floatingBottomOffset = settings.getInt(key, 0);
+        } else if (key.startsWith(LEGACY_MONITORING)) {
+            legacy(byPackage, key, LEGACY_MONITORING).monitoringEnabled = settings.getBoolean(key, false);
+        } else if (key.startsWith(LEGACY_SHOW_INTERVAL)) {
+            legacy(byPackage, key, LEGACY_SHOW_INTERVAL).showInterval = settings.getInt(key, 0);
+        } else if (key.startsWith(LEGACY_RELAXED_COUNT)) {
+            legacy(byPackage, key, LEGACY_RELAXED_COUNT).relaxedCloseCount = settings.getInt(key, 0);
+        } else if (key.startsWith(LEGACY_RELAXED_DATE)) {
+            legacy(byPackage, key, LEGACY_RELAXED_DATE).lastRelaxedCloseDate = settings.getString(key, null);
+        } else if (key.startsWith(LEGACY_LAST_CLOSE_TIME)) {
+            legacy(byPackage, key, LEGACY_LAST_CLOSE_TIME).lastCloseTime = settings.getLong(key, 0);
+        } else if (key.startsWith(LEGACY_LAST_CLOSE_INTERVAL)) {
+            legacy(byPackage, key, LEGACY_LAST_CLOSE_INTERVAL).lastCloseInterval = settings.getInt(key, 0);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private static PerAppSettings legacy(Map<String, PerAppSettings> byPackage, String key, String prefix) {
+        String packageName = key.substring(prefix.length());
+        PerAppSettings s = byPackage.get(packageName);
+        if (s == null) {
+            s = new PerAppSettings();
+            byPackage.put(packageName, s);
+        }
+        return s;
+    }
+}
@@ -0,0 +1,576 @@
+package com.book.mask.personalize;
+
+import com.google.gson.Gson;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.ToLongFunction;
+import java.util.zip.CRC32;
+
+/**
+ * 只追加的分段记录日志：答题记录等按时间累积、只看最近若干条的历史，每新增一条只在当前分段末尾追加一帧，
+ * 不再整体反序列化、插入、重新序列化。
+ * <p>
+ * 每帧为 [正文长度][正文 CRC32][正文]，正文为所属分组名加该条记录的 Gson JSON。打开时顺序扫描全部分段，
+ * 只在内存中保留各帧的位置索引；读取时按新的在前逐条解码，访问方可随时停止。各分组按 {@link Retention}
+ * 保留最近若干条（环形淘汰），超出的旧帧只标记作废：整段作废的分段直接删除，作废帧多于有效帧时整体重写一次。
+ * 写入中途被打断留下的残缺帧在下次打开时按长度与校验识别并截掉。
+ * 重写出的分段以一个基线帧开头，表示它取代了所有编号更小的分段：改名生效后、删完旧分段前被打断的，
+ * 下次打开时按基线帧删掉旧分段，不会重复读出同一条记录。
+ * <p>
+ * 不涉及 Android 与 MMKV；所有方法互斥，可在任意线程调用。
+ */
+final class RecordLog<T> {
+
+    /**
+     * 按分组保留最近若干条。
+     */
+    interface Retention<T> {
+        String groupOf(T record);
+
+        int limitOf(String group);
+    }
+
+    /**
+     * 逐条访问记录，返回 false 时停止。
+     */
+    interface Visitor<T> {
+        boolean visit(T record);
+    }
+
+    // 每个分段最多写入的帧数，写满后新开一段
+    static final int SEGMENT_RECORDS = 64;
+    // 单帧正文上限，超出视为损坏（答题记录单条远小于此值）
+    private static final int MAX_FRAME_BYTES = 1 << 20;
+    private static final int FRAME_HEADER_BYTES = 8;
+    private static final String SEGMENT_PREFIX = "seg-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String TEMP_SUFFIX = ".tmp";
+    // 基线帧的分组名，记录的分组不会以 \0 开头
+    private static final String BASE_GROUP = "\u0000base";
+
+    private static final class Frame {
+        final int segment;
+        final long offset;
+        final int length;
+        final String group;
+        boolean dead;
+
+        Frame(int segment, long offset, int length, String group) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.group = group;
+        }
+    }
+
+    private final File dir;
+    private final Class<T> type;
+    private final Retention<T> retention;
+    private final Gson gson = new Gson();
+
+    // 全部帧，旧的在前；头部的作废帧随时弹出，中间的等重写时清理
+    private final ArrayDeque<Frame> frames = new ArrayDeque<>();
+    // 各分组仍有效的帧，旧的在前
+    private final Map<String, ArrayDeque<Frame>> liveByGroup = new HashMap<>();
+    // 分段编号 → 帧数
+    private final TreeMap<Integer, Integer> segments = new TreeMap<>();
+    private int deadCount = 0;
+    private int activeSegment = 0;
+    private long activeLength = 0;
+    private int truncatedFrames = 0;
+
+    RecordLog(File dir, Class<T> type, Retention<T> retention) throws IOException {
+        this.dir = dir;
+        this.type = type;
+        this.retention = retention;
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("无法创建记录目录: " + dir);
+        }
+        load();
+    }
+
+    /**
+     * 不分组，只保留最近 limit 条。
+     */
+    static <T> Retention<T> keepLatest(int limit) {
+        return new Retention<T>() {
+            @Override
+            public String groupOf(T record) {
+                return "";
+            }
+
+            @Override
+            public int limitOf(String group) {
+                return limit;
+            }
+        };
+    }
+
+    synchronized boolean isEmpty() {
+        return frames.isEmpty();
+    }
+
+    /** 当前有效的记录数。 */
+    synchronized int size() {
+        return frames.size() - deadCount;
+    }
+
+    /** 打开时因残缺或校验失败而丢弃的帧数。 */
+    synchronized int getTruncatedFrames() {
+        return truncatedFrames;
+    }
+
+    /** 磁盘上的分段数，仅供测试观察。 */
+    synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * 追加一条记录，并淘汰所在分组超出上限的最旧一条。
+     */
+    synchronized void append(T record) throws IOException {
+        if (segments.getOrDefault(activeSegment, 0) >= SEGMENT_RECORDS) {
+            activeSegment++;
+            activeLength = 0;
+        }
+        String group = groupOf(record);
+        byte[] frame = encodeFrame(group, record);
+        File file = segmentFile(activeSegment);
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(frame);
+        } catch (IOException e) {
+            // 写了一半的帧截掉，之后的追加仍从已知位置开始
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(activeLength);
+            } catch (IOException ignored) {
+            }
+            throw e;
+        }
+        Frame appended = new Frame(activeSegment, activeLength, frame.length - FRAME_HEADER_BYTES, group);
+        activeLength += frame.length;
+        segments.merge(activeSegment, 1, Integer::sum);
+        index(appended);
+        reclaim();
+    }
+
+    /**
+     * 从新到旧逐条解码并交给 visitor，visitor 返回 false 即停止，不解码其余记录。
+     * 解码失败的单条记录跳过。
+     */
+    synchronized void forEachNewestFirst(Visitor<T> visitor) throws IOException {
+        visit(frames.descendingIterator(), visitor);
+    }
+
+    /**
+     * 从旧到新逐条解码并交给 visitor，用于按写入顺序整体导出；其余同 {@link #forEachNewestFirst}。
+     */
+    synchronized void forEachOldestFirst(Visitor<T> visitor) throws IOException {
+        visit(frames.iterator(), visitor);
+    }
+
+    private void visit(Iterator<Frame> it, Visitor<T> visitor) throws IOException {
+        Map<Integer, RandomAccessFile> open = new HashMap<>();
+        try {
+            while (it.hasNext()) {
+                Frame frame = it.next();
+                if (frame.dead) {
+                    continue;
+                }
+                RandomAccessFile file = open.get(frame.segment);
+                if (file == null) {
+                    file = new RandomAccessFile(segmentFile(frame.segment), "r");
+                    open.put(frame.segment, file);
+                }
+                T record = decode(readBody(file, frame));
+                if (record != null && !visitor.visit(record)) {
+                    return;
+                }
+            }
+        } finally {
+            for (RandomAccessFile file : open.values()) {
+                file.close();
+            }
+        }
+    }
+
+    /**
+     * 最多读取 limit 条记录（新的在前）。
+     */
+    List<T> readNewestFirst(int limit) throws IOException {
+        List<T> records = new ArrayList<>();
+        if (limit <= 0) {
+            return records;
+        }
+        forEachNewestFirst(record -> {
+            records.add(record);
+            return records.size() < limit;
+        });
+        return records;
+    }
+
+    /**
+     * 一次性导入旧格式的记录（新的在前）：先完整写入临时文件再改名为分段，导入中途被打断不会留下半份数据。
+     * 仅在日志为空时调用。
+     */
+    synchronized void importNewestFirst(List<T> newestFirst) throws IOException {
+        if (!frames.isEmpty()) {
+            throw new IllegalStateException("记录日志非空，不能导入");
+        }
+        List<T> oldestFirst = new ArrayList<>(newestFirst);
+        Collections.reverse(oldestFirst);
+        rewrite(oldestFirst, null);
+    }
+
+    /**
+     * 并入一批记录（如从备份导入）：以 timestampOf 为标识与现有记录去重，已有的优先；合并后按时间从旧到新
+     * 整体重写，读取顺序与各分组的淘汰都按时间先后，而不是写入先后，较旧的外来记录不会挤掉本机较新的记录。
+     * 重写先完整写出新分段再替换，中途被打断不会丢失原有记录。
+     *
+     * @return 新增的条数（不含重复的）；超出保留上限的最旧记录随即作废
+     */
+    synchronized int mergeByTime(List<T> incoming, ToLongFunction<T> timestampOf) throws IOException {
+        List<T> merged = new ArrayList<>();
+        Set<Long> known = new HashSet<>();
+        forEachOldestFirst(record -> {
+            if (known.add(timestampOf.applyAsLong(record))) {
+                merged.add(record);
+            }
+            return true;
+        });
+        int added = 0;
+        for (T record : incoming) {
+            if (known.add(timestampOf.applyAsLong(record))) {
+                merged.add(record);
+                added++;
+            }
+        }
+        if (added == 0) {
+            return 0;
+        }
+        // 稳定排序：时间相同的记录保持原有先后
+        Collections.sort(merged, (a, b) ->
+                Long.compare(timestampOf.applyAsLong(a), timestampOf.applyAsLong(b)));
+        rewrite(merged, null);
+        return added;
+    }
+
+    /**
+     * 删除全部记录与分段文件。
+     */
+    synchronized void clear() throws IOException {
+        for (int segment : new ArrayList<>(segments.keySet())) {
+            deleteSegment(segment);
+        }
+        frames.clear();
+        liveByGroup.clear();
+        segments.clear();
+        deadCount = 0;
+        activeSegment = 0;
+        activeLength = 0;
+    }
+
+    private void load() throws IOException {
+        File[] files = dir.listFiles();
+        TreeMap<Integer, File> found = new TreeMap<>();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.endsWith(TEMP_SUFFIX)) {
+                    // 上次重写或导入未完成改名，内容不完整
+                    file.delete();
+                    continue;
+                }
+                int segment = parseSegment(name);
+                if (segment >= 0) {
+                    found.put(segment, file);
+                }
+            }
+        }
+        for (Map.Entry<Integer, File> entry : found.descendingMap().entrySet()) {
+            if (startsWithBase(entry.getValue())) {
+                // 上次重写已生效但未删完旧分段，旧分段的内容都已包含在基线分段中
+                Map<Integer, File> superseded = found.headMap(entry.getKey());
+                for (File file : superseded.values()) {
+                    if (!file.delete()) {
+                        throw new IOException("无法删除记录分段: " + file);
+                    }
+                }
+                superseded.clear();
+                break;
+            }
+        }
+        for (Map.Entry<Integer, File> entry : found.entrySet()) {
+            scanSegment(entry.getKey(), entry.getValue(), entry.getKey().equals(found.lastKey()));
+        }
+        if (!found.isEmpty()) {
+            activeSegment = found.lastKey();
+            activeLength = found.lastEntry().getValue().length();
+        }
+        reclaim();
+    }
+
+    private void scanSegment(int segment, File file, boolean last) throws IOException {
+        int count = 0;
+        long offset = 0;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long fileLength = raf.length();
+            while (offset + FRAME_HEADER_BYTES <= fileLength) {
+                raf.seek(offset);
+                int length = raf.readInt();
+                int crc = raf.readInt();
+                if (length <= 0 || length > MAX_FRAME_BYTES
+                        || offset + FRAME_HEADER_BYTES + length > fileLength) {
+                    break;
+                }
+                byte[] body = new byte[length];
+                raf.readFully(body);
+                if (crc32(body) != crc) {
+                    break;
+                }
+                String group = decodeGroup(body);
+                if (!BASE_GROUP.equals(group)) {
+                    index(new Frame(segment, offset, length, group));
+                    count++;
+                }
+                offset += FRAME_HEADER_BYTES + length;
+            }
+            if (offset < fileLength) {
+                truncatedFrames++;
+                if (last) {
+                    // 只截最后一段：之后的追加从完好的位置继续
+                    raf.setLength(offset);
+                }
+            }
+        }
+        segments.put(segment, count);
+    }
+
+    private void index(Frame frame) {
+        frames.addLast(frame);
+        ArrayDeque<Frame> live = liveByGroup.get(frame.group);
+        if (live == null) {
+            live = new ArrayDeque<>();
+            liveByGroup.put(frame.group, live);
+        }
+        live.addLast(frame);
+        int limit = Math.max(0, retention.limitOf(frame.group));
+        while (live.size() > limit) {
+            live.pollFirst().dead = true;
+            deadCount++;
+        }
+    }
+
+    /**
+     * 弹出头部作废帧，删除已没有有效帧的旧分段；中间作废帧过多时整体重写。
+     */
+    private void reclaim() throws IOException {
+        while (!frames.isEmpty() && frames.peekFirst().dead) {
+            frames.pollFirst();
+            deadCount--;
+        }
+        int firstLiveSegment = frames.isEmpty() ? activeSegment : frames.peekFirst().segment;
+        while (!segments.isEmpty() && segments.firstKey() < firstLiveSegment) {
+            deleteSegment(segments.pollFirstEntry().getKey());
+        }
+        if (deadCount >= SEGMENT_RECORDS && deadCount > frames.size() - deadCount) {
+            compact();
+        }
+    }
+
+    /**
+     * 把有效帧按原顺序写入一个新分段后替换全部旧分段。
+     */
+    private void compact() throws IOException {
+        List<byte[]> bodies = new ArrayList<>();
+        Map<Integer, RandomAccessFile> open = new HashMap<>();
+        try {
+            for (Frame frame : frames) {
+                if (frame.dead) {
+                    continue;
+                }
+                RandomAccessFile file = open.get(frame.segment);
+                if (file == null) {
+                    file = new RandomAccessFile(segmentFile(frame.segment), "r");
+                    open.put(frame.segment, file);
+                }
+                bodies.add(readBody(file, frame));
+            }
+        } finally {
+            for (RandomAccessFile file : open.values()) {
+                file.close();
+            }
+        }
+        rewrite(null, bodies);
+    }
+
+    /**
+     * 以 records（或已编码的 bodies）的顺序写出一个以基线帧开头的新分段，改名生效后删除其余分段并重建索引。
+     */
+    private void rewrite(List<T> records, List<byte[]> bodies) throws IOException {
+        int target = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+        File temp = new File(dir, SEGMENT_PREFIX + target + SEGMENT_SUFFIX + TEMP_SUFFIX);
+        List<Frame> written = new ArrayList<>();
+        long offset = 0;
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            byte[] base = baseFrame();
+            out.write(base);
+            offset += base.length;
+            int n = records != null ? records.size() : bodies.size();
+            for (int i = 0; i < n; i++) {
+                byte[] frame = records != null
+                        ? encodeFrame(groupOf(records.get(i)), records.get(i))
+                        : frameOf(bodies.get(i));
+                out.write(frame);
+                int length = frame.length - FRAME_HEADER_BYTES;
+                written.add(new Frame(target, offset, length, decodeGroup(frame, FRAME_HEADER_BYTES)));
+                offset += frame.length;
+            }
+            out.getFD().sync();
+        }
+        if (!temp.renameTo(segmentFile(target))) {
+            temp.delete();
+            throw new IOException("无法替换记录分段: " + temp);
+        }
+        for (int segment : new ArrayList<>(segments.keySet())) {
+            deleteSegment(segment);
+        }
+        frames.clear();
+        liveByGroup.clear();
+        segments.clear();
+        deadCount = 0;
+        segments.put(target, written.size());
+        activeSegment = target;
+        activeLength = offset;
+        for (Frame frame : written) {
+            index(frame);
+        }
+        while (!frames.isEmpty() && frames.peekFirst().dead) {
+            frames.pollFirst();
+            deadCount--;
+        }
+    }
+
+    private String groupOf(T record) {
+        String group = retention.groupOf(record);
+        return group == null ? "" : group;
+    }
+
+    private byte[] encodeFrame(String group, T record) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeUTF(group);
+        out.write(gson.toJson(record).getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        return frameOf(body.toByteArray());
+    }
+
+    private static byte[] frameOf(byte[] body) throws IOException {
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(FRAME_HEADER_BYTES + body.length);
+        DataOutputStream out = new DataOutputStream(frame);
+        out.writeInt(body.length);
+        out.writeInt(crc32(body));
+        out.write(body);
+        out.flush();
+        return frame.toByteArray();
+    }
+
+    private static byte[] baseFrame() throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeUTF(BASE_GROUP);
+        out.flush();
+        return frameOf(body.toByteArray());
+    }
+
+    /** 分段的第一帧是否为完好的基线帧。 */
+    private static boolean startsWithBase(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.length() < FRAME_HEADER_BYTES) {
+                return false;
+            }
+            int length = raf.readInt();
+            int crc = raf.readInt();
+            if (length <= 0 || length > MAX_FRAME_BYTES || FRAME_HEADER_BYTES + length > raf.length()) {
+                return false;
+            }
+            byte[] body = new byte[length];
+            raf.readFully(body);
+            return crc32(body) == crc && BASE_GROUP.equals(decodeGroup(body));
+        }
+    }
+
+    private T decode(byte[] body) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+            in.readUTF();
+            int jsonStart = body.length - in.available();
+            String json = new String(body, jsonStart, body.length - jsonStart, StandardCharsets.UTF_8);
+            return gson.fromJson(json, type);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static String decodeGroup(byte[] body) throws IOException {
+        return decodeGroup(body, 0);
+    }
+
+    private static String decodeGroup(byte[] bytes, int offset) throws IOException {
+        return new DataInputStream(new ByteArrayInputStream(
+                bytes, offset, bytes.length - offset)).readUTF();
+    }
+
+    private static byte[] readBody(RandomAccessFile file, Frame frame) throws IOException {
+        byte[] body = new byte[frame.length];
+        file.seek(frame.offset + FRAME_HEADER_BYTES);
+        file.readFully(body);
+        return body;
+    }
+
+    private static int crc32(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+        return (int) crc.getValue();
+    }
+
+    private File segmentFile(int segment) {
+        return new File(dir, SEGMENT_PREFIX + segment + SEGMENT_SUFFIX);
+    }
+
+    private void deleteSegment(int segment) throws IOException {
+        File file = segmentFile(segment);
+        if (file.exists() && !file.delete()) {
+            throw new IOException("无法删除记录分段: " + file);
+        }
+    }
+
+    private static int parseSegment(String name) {
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(),
+                    name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
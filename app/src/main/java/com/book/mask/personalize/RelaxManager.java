@@ -4,9 +4,10 @@ import android.content.Context;
 import android.util.Log;
 
 import com.book.mask.config.CustomApp;
+import com.book.mask.config.CustomAppManager;
+import com.book.mask.config.SettingsRepository;
 import com.book.mask.config.Share;
 import com.book.mask.util.DateUtils;
-import com.tencent.mmkv.MMKV;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -19,24 +20,20 @@ import java.util.Locale;
 public class RelaxManager {
     private static final String TAG = "RelaxManager";
 
-    // 每个APP独立的设置键名前缀
     private static final String KEY_DEFAULT_SHOW_INTERVAL = "default_show_interval";
-    static final String KEY_SHOW_INTERVAL = "app_show_interval_";
-    private static final String KEY_RELAXED_CLOSE_COUNT = "app_relaxed_close_count_";
-    private static final String KEY_LAST_RELAXED_CLOSE_DATE = "app_last_relaxed_close_date_";
-    private static final String KEY_LAST_CLOSE_TIME = "app_last_close_time_";
-    private static final String KEY_LAST_CLOSE_INTERVAL = "app_last_close_interval_";
-    static final String KEY_APP_MONITORING_ENABLED = "app_monitoring_enabled_";
 
     // 严格、宽松模式的各选项
     private static final int[] strictIntervalArray = {60, 120};
     private static final int[] relaxedIntervalArray = {600, 1200, 1800};
 //    private static final int[] strictIntervalArray = {3, 6, 12};
 //    private static final int[] relaxedIntervalArray = {20, 30, 40};
-    private MMKV mmkv;
+    private final SettingsRepository settings;
+    // 每个APP独立的间隔、关闭记录、宽松计数与监测开关，见 PerAppSettingsStore
+    private final PerAppSettingsStore perApp;
 
     public RelaxManager(Context context) {
-        mmkv = SettingsStorage.open();
+        settings = SettingsStorage.open();
+        perApp = PerAppSettingsStore.get();
     }
 
     // 时间格式化器
@@ -87,15 +84,15 @@ public class RelaxManager {
      * 兜底的间隔（秒），当 currentActiveApp 为空时触发
      */
     public int getDefaultInterval() {
-        return mmkv.getInt(KEY_DEFAULT_SHOW_INTERVAL, getMaxStrictInterval());
+        return settings.getInt(KEY_DEFAULT_SHOW_INTERVAL, getMaxStrictInterval());
     }
 
     /**
      * 获取指定APP的自动显示间隔（秒）
      */
     public int getAppInterval(CustomApp app) {
-        String key = KEY_SHOW_INTERVAL + app.getPackageName();
-        return mmkv.getInt(key, getMaxStrictInterval());
+        Integer interval = perApp.read(app.getPackageName()).showInterval;
+        return interval != null ? interval : getMaxStrictInterval();
     }
 
     /**
@@ -104,9 +101,8 @@ public class RelaxManager {
     public void setAppInterval(CustomApp app, int seconds) {
         String packageName = app.getPackageName();
         if (packageName == null) return;
-        
-        String key = KEY_SHOW_INTERVAL + packageName;
-        mmkv.putInt(key, seconds).commit();
+
+        perApp.update(packageName, s -> s.showInterval = seconds);
 
         android.util.Log.d("SettingsManager", "APP " + packageName + " 设置时间间隔为: " + seconds + "秒");
         android.util.Log.d("SettingsManager", "  新设置将在下次关闭悬浮窗后生效");
@@ -164,25 +160,20 @@ public class RelaxManager {
         if (packageName == null) return;
         
         String currentDate = DateUtils.getCurrentDate();
-        String countKey = KEY_RELAXED_CLOSE_COUNT + packageName;
-        String dateKey = KEY_LAST_RELAXED_CLOSE_DATE + packageName;
-        String lastDate = mmkv.getString(dateKey, "");
-        
-        int count = mmkv.getInt(countKey, 0);
-
-        if (currentDate.equals(lastDate)) {
-            // 是同一天，计数+1
-            count++;
-        } else {
-            // 是新的一天，重置为1
-            count = 1;
-        }
-
-        mmkv.putInt(countKey, count)
-             .putString(dateKey, currentDate)
-             .commit();
-        
-        android.util.Log.d("SettingsManager", "APP " + packageName + " 宽松版关闭次数增加. 当前次数: " + count + " 日期: " + currentDate);
+        int[] count = new int[1];
+        perApp.update(packageName, s -> {
+            if (currentDate.equals(s.lastRelaxedCloseDate) && s.relaxedCloseCount != null) {
+                // 是同一天，计数+1
+                count[0] = s.relaxedCloseCount + 1;
+            } else {
+                // 是新的一天，重置为1
+                count[0] = 1;
+            }
+            s.relaxedCloseCount = count[0];
+            s.lastRelaxedCloseDate = currentDate;
+        });
+
+        android.util.Log.d("SettingsManager", "APP " + packageName + " 宽松版关闭次数增加. 当前次数: " + count[0] + " 日期: " + currentDate);
     }
     
     /**
@@ -190,12 +181,10 @@ public class RelaxManager {
      */
     public int getAppRelaxedCloseCount(CustomApp app) {
         String currentDate = DateUtils.getCurrentDate();
-        String countKey = KEY_RELAXED_CLOSE_COUNT + app.getPackageName();
-        String dateKey = KEY_LAST_RELAXED_CLOSE_DATE + app.getPackageName();
-        String lastDate = mmkv.getString(dateKey, "");
-        
-        if (currentDate.equals(lastDate)) {
-            return mmkv.getInt(countKey, 0);
+        PerAppSettings s = perApp.read(app.getPackageName());
+
+        if (currentDate.equals(s.lastRelaxedCloseDate)) {
+            return s.relaxedCloseCount != null ? s.relaxedCloseCount : 0;
         }
         
         // 如果不是同一天，返回0
@@ -207,11 +196,10 @@ public class RelaxManager {
      */
     public void setAppRelaxedCloseCount(CustomApp app, int count) {
         String currentDate = DateUtils.getCurrentDate();
-        String countKey = KEY_RELAXED_CLOSE_COUNT + app.getPackageName();
-        String dateKey = KEY_LAST_RELAXED_CLOSE_DATE + app.getPackageName();
-        mmkv.putInt(countKey, count)
-             .putString(dateKey, currentDate)
-             .commit();
+        perApp.update(app.getPackageName(), s -> {
+            s.relaxedCloseCount = count;
+            s.lastRelaxedCloseDate = currentDate;
+        });
     }
     
     /**
@@ -221,14 +209,13 @@ public class RelaxManager {
         Log.d(TAG, "recordAppCloseTime:" + intervalSeconds);
         String packageName = app.getPackageName();
         if (packageName == null) return;
-        
-        String timeKey = KEY_LAST_CLOSE_TIME + packageName;
-        String intervalKey = KEY_LAST_CLOSE_INTERVAL + packageName;
+
         long currentTime = System.currentTimeMillis();
-        /* 这里是分别对 2 个 key 进行设置 */
-        mmkv.putLong(timeKey, currentTime)
-            .putInt(intervalKey, intervalSeconds)
-            .commit();
+        /* 关闭时间与间隔在同一条记录里一起写入 */
+        perApp.update(packageName, s -> {
+            s.lastCloseTime = currentTime;
+            s.lastCloseInterval = intervalSeconds;
+        });
         android.util.Log.d("SettingsManager", "记录APP " + packageName + " 关闭时间: " + formatTime(currentTime) + ", 使用间隔: " + intervalSeconds + "秒");
     }
     
@@ -236,16 +223,16 @@ public class RelaxManager {
      * 获取指定APP的上次关闭时间
      */
     public long getAppLastCloseTime(CustomApp app) {
-        String key = KEY_LAST_CLOSE_TIME + app.getPackageName();
-        return mmkv.getLong(key, 0);
+        Long time = perApp.read(app.getPackageName()).lastCloseTime;
+        return time != null ? time : 0;
     }
 
     /**
      * 获取指定APP上次关闭时使用的时间间隔（秒）
      */
     public int getAppLastCloseInterval(CustomApp app) {
-        String key = KEY_LAST_CLOSE_INTERVAL + app.getPackageName();
-        return mmkv.getInt(key, getMaxStrictInterval());
+        Integer interval = perApp.read(app.getPackageName()).lastCloseInterval;
+        return interval != null ? interval : getMaxStrictInterval();
     }
 
     /**
@@ -297,63 +284,18 @@ public class RelaxManager {
      * 获取APP监测开关状态
      */
     public Boolean isAppMonitoringEnabled(String packageName) {
-        String key = KEY_APP_MONITORING_ENABLED + packageName;
-        if (!mmkv.contains(key)) {
-            return null; // 还没有设置过
-        }
-        return mmkv.getBoolean(key, false);
+        return perApp.read(packageName).monitoringEnabled; // 还没有设置过时为 null
     }
 
     /**
      * 设置APP监测开关状态
      */
     public void setAppMonitoringEnabled(String packageName, boolean enabled) {
-        String key = KEY_APP_MONITORING_ENABLED + packageName;
-        mmkv.putBoolean(key, enabled).commit();
+        perApp.update(packageName, s -> s.monitoringEnabled = enabled);
+        CustomAppManager.getInstance().onMonitoringSettingsChanged();
         android.util.Log.d("SettingsManager", "设置APP监测状态: " + packageName + " = " + enabled);
     }
 
-    /**
-     * 清除指定APP在本管理器中的所有持久化设置（监测开关、间隔、关闭记录、宽松计数等）
-     */
-    public void clearAppSettings(String packageName) {
-        if (packageName == null) return;
-        String[] keys = new String[] {
-                KEY_SHOW_INTERVAL + packageName,
-                KEY_RELAXED_CLOSE_COUNT + packageName,
-                KEY_LAST_RELAXED_CLOSE_DATE + packageName,
-                KEY_LAST_CLOSE_TIME + packageName,
-                KEY_LAST_CLOSE_INTERVAL + packageName,
-                KEY_APP_MONITORING_ENABLED + packageName,
-        };
-        for (String key : keys) {
-            mmkv.removeValueForKey(key);
-        }
-        android.util.Log.d(TAG, "清除APP在RelaxManager中的所有设置: " + packageName);
-    }
-
-    /**
-     * 把指定APP的监测开关读入快照（未设置过则保持 null）。
-     * 仅快照用户配置项，间隔 / 关闭记录 / 宽松计数等运行态数据不纳入。
-     */
-    public void captureInto(AppSettingsSnapshot snapshot, String packageName) {
-        if (packageName == null) return;
-        Boolean monitoring = isAppMonitoringEnabled(packageName);
-        if (monitoring != null) {
-            snapshot.monitoringEnabled = monitoring;
-        }
-    }
-
-    /**
-     * 从快照恢复指定APP的监测开关（仅恢复删除前确实设置过的项）。
-     */
-    public void restoreFrom(AppSettingsSnapshot snapshot, String packageName) {
-        if (packageName == null) return;
-        if (snapshot.monitoringEnabled != null) {
-            setAppMonitoringEnabled(packageName, snapshot.monitoringEnabled);
-        }
-    }
-
     /**
      * 检查APP是否应该被监测
      */
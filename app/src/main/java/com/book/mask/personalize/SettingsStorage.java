@@ -1,15 +1,58 @@
 package com.book.mask.personalize;
 
+import android.util.Log;
+
+import com.book.mask.config.SettingsRepository;
+import com.google.gson.Gson;
 import com.tencent.mmkv.MMKV;
 
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+
 final class SettingsStorage {
 
+    private static final String TAG = "SettingsStorage";
     private static final String STORAGE_ID = "app_settings";
+    private static final String RECORD_LOG_DIR = "record_log";
 
     private SettingsStorage() {
     }
 
-    static MMKV open() {
-        return MMKV.mmkvWithID(STORAGE_ID);
+    static SettingsRepository open() {
+        return SettingsRepository.of(STORAGE_ID);
+    }
+
+    /**
+     * 打开名为 name 的记录日志（与 MMKV 同在应用私有 files 目录下）。旧版本以 Gson JSON 数组
+     * 存在 legacyKey 下的记录在日志为空时一次性迁入，迁移落盘后删除该键；迁移后、删键前被打断时，
+     * 下次打开只删键。
+     */
+    static <T> RecordLog<T> openRecordLog(String name, Class<T> type, Type legacyListType,
+                                          String legacyKey, RecordLog.Retention<T> retention)
+            throws IOException {
+        File filesDir = new File(MMKV.getRootDir()).getParentFile();
+        RecordLog<T> log = new RecordLog<>(
+                new File(new File(filesDir, RECORD_LOG_DIR), name), type, retention);
+        SettingsRepository settings = open();
+        String legacy = settings.getString(legacyKey, null);
+        if (legacy == null) {
+            return log;
+        }
+        if (log.isEmpty() && !legacy.isEmpty()) {
+            List<T> records = null;
+            try {
+                records = new Gson().fromJson(legacy, legacyListType);
+            } catch (Exception e) {
+                Log.w(TAG, "旧记录无法解析，放弃迁移: " + legacyKey, e);
+            }
+            if (records != null) {
+                log.importNewestFirst(records);
+                Log.d(TAG, "已迁移旧记录 " + records.size() + " 条: " + legacyKey);
+            }
+        }
+        settings.remove(legacyKey);
+        return log;
     }
 }
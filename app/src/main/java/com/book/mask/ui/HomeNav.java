@@ -1064,15 +1064,28 @@ public class HomeNav extends Fragment implements
 
     private void showTargetWordInputDialog(CustomApp app, TextView targetWordValue) {
         EditText input = new EditText(requireContext());
-        input.setHint("若多个关键词需空格分隔");
+        input.setHint("多个关键词用空格分隔，前后加 * 表示包含即命中");
         input.setSingleLine(true);
         input.setFilters(new android.text.InputFilter[]{new android.text.InputFilter.LengthFilter(50)});
         input.setText(app.getTargetWord());
         input.setSelection(input.length());
 
+        // 高级：关键词所在控件的 ID，配置后优先按 ID 查询，不必遍历整个页面
+        EditText viewIdInput = new EditText(requireContext());
+        viewIdInput.setHint("控件 ID（可选），多个用空格分隔");
+        viewIdInput.setSingleLine(true);
+        viewIdInput.setFilters(new android.text.InputFilter[]{new android.text.InputFilter.LengthFilter(200)});
+        viewIdInput.setText(app.getTargetViewIds());
+
+        LinearLayout container = new LinearLayout(requireContext());
+        container.setOrientation(LinearLayout.VERTICAL);
+        container.setPadding(dp(20), dp(8), dp(20), 0);
+        container.addView(input);
+        container.addView(viewIdInput);
+
         android.app.AlertDialog dialog = new android.app.AlertDialog.Builder(requireContext())
                 .setTitle("页面屏蔽关键词")
-                .setView(input)
+                .setView(container)
                 .setPositiveButton("确定", null)
                 .setNegativeButton("取消", null)
                 .create();
@@ -1085,6 +1098,7 @@ public class HomeNav extends Fragment implements
                         return;
                     }
                     app.setTargetWord(targetWord);
+                    app.setTargetViewIds(viewIdInput.getText().toString());
                     customAppManager.persistAppChange(app);
                     targetWordValue.setText(targetWord);
                     updateAppCardsDisplay();
@@ -1354,11 +1368,9 @@ public class HomeNav extends Fragment implements
                         boolean removed = customAppManager.removeCustomApp(packageName);
                         if (removed) {
                             android.util.Log.d(TAG, "已删除自定义APP: " + packageName);
-                            AppSettingsSnapshot snapshot = new AppSettingsSnapshot();
-                            appSettingsManager.captureInto(snapshot, packageName);
-                            relaxManager.captureInto(snapshot, packageName);
+                            AppSettingsSnapshot snapshot =
+                                    appSettingsManager.captureAppSettings(packageName);
                             appSettingsManager.clearAppSettings(packageName);
-                            relaxManager.clearAppSettings(packageName);
                             updateAppCardsDisplay();
                             showDeleteUndo(app, snapshot);
                         } else {
@@ -1516,8 +1528,7 @@ public class HomeNav extends Fragment implements
                             deletedApp.getRelaxedLimitCount());
                     if (restored) {
                         // 每-APP设置已在删除时清理，此处从快照一并恢复
-                        appSettingsManager.restoreFrom(snapshot, deletedApp.getPackageName());
-                        relaxManager.restoreFrom(snapshot, deletedApp.getPackageName());
+                        appSettingsManager.restoreAppSettings(deletedApp.getPackageName(), snapshot);
                         updateAppCardsDisplay();
                     }
                 });
@@ -27,6 +27,7 @@ import com.book.mask.R;
 import com.book.mask.constant.Const;
 import com.book.mask.config.CustomAppManager;
 import com.book.mask.config.CustomApp;
+import com.book.mask.config.SettingsRepository;
 import com.book.mask.lifecycle.AppLifecycleObserver;
 import com.book.mask.network.AppConfigManager;
 import com.book.mask.network.DeviceInfoReporter;
@@ -455,6 +456,13 @@ public class MainActivity extends AppCompatActivity {
         super.onSaveInstanceState(outState);
     }
 
+    @Override
+    protected void onStop() {
+        super.onStop();
+        // 退到后台后进程随时可能被回收，设置仓库中尚未落盘的写入立即写入
+        SettingsRepository.flushAll();
+    }
+
     private void registerRelaxedCountUpdateReceiver() {
         IntentFilter filter = new IntentFilter();
         filter.addAction(Const.ACTION_UPDATE_RELAXED_COUNT);
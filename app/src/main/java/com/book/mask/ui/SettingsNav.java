@@ -2,6 +2,7 @@ package com.book.mask.ui;
 
 import android.content.ActivityNotFoundException;
 import android.content.ContentValues;
+import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.net.Uri;
@@ -10,9 +11,11 @@ import android.os.Bundle;
 import android.os.Environment;
 import android.os.Handler;
 import android.os.Looper;
+import android.provider.DocumentsContract;
 import android.provider.MediaStore;
 import android.text.SpannableString;
 import android.text.Spanned;
+import android.text.TextUtils;
 import android.text.method.LinkMovementMethod;
 import android.text.style.ClickableSpan;
 import android.text.style.URLSpan;
@@ -20,6 +23,7 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Button;
+import android.widget.CheckBox;
 import android.widget.ImageView;
 import android.widget.TextView;
 
@@ -36,13 +40,16 @@ import com.book.mask.config.Share;
 import com.book.mask.network.AppConfigManager;
 import com.book.mask.network.LatestVersionManager;
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedInputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
 
 public class SettingsNav extends Fragment {
     private static final String TAG = "SettingsNav";
@@ -53,12 +60,17 @@ public class SettingsNav extends Fragment {
     private RelaxManager relaxManager;
     private SettingsDialogManager settingsDialogManager;
 
-    // 待写入用户所选文件的备份 JSON，点击导出时生成、写入完成后清空
-    private String pendingBackupJson;
+    // 待写入用户所选文件的备份导出选项，点击导出时记下、选好文件后按此边生成边写入
+    private BackupManager.ExportOptions pendingBackupExport;
+    private boolean pendingBackupArchive;
     private final ActivityResultLauncher<String> createBackupLauncher =
             registerForActivityResult(
                     new ActivityResultContracts.CreateDocument("application/json"),
                     this::onBackupDocumentCreated);
+    private final ActivityResultLauncher<String> createArchiveLauncher =
+            registerForActivityResult(
+                    new ActivityResultContracts.CreateDocument("application/zip"),
+                    this::onBackupDocumentCreated);
     private final ActivityResultLauncher<String[]> openBackupLauncher =
             registerForActivityResult(
                     new ActivityResultContracts.OpenDocument(),
@@ -263,17 +275,21 @@ public class SettingsNav extends Fragment {
         withSecretExport.setVisibility(hasSensitive ? View.VISIBLE : View.GONE);
         noSecretExport.setVisibility(hasSensitive ? View.VISIBLE : View.GONE);
 
+        CheckBox includeHistory = dialogView.findViewById(R.id.cb_backup_include_history);
+        CheckBox asArchive = dialogView.findViewById(R.id.cb_backup_archive);
+        CheckBox fullArchive = dialogView.findViewById(R.id.cb_backup_archive_full);
+        asArchive.setOnCheckedChangeListener((button, isChecked) -> fullArchive.setEnabled(isChecked));
         singleExport.setOnClickListener(v -> {
             dialog.dismiss();
-            exportBackup(backupManager, false);
+            exportBackup(false, includeHistory.isChecked(), asArchive.isChecked(), fullArchive.isChecked());
         });
         withSecretExport.setOnClickListener(v -> {
             dialog.dismiss();
-            exportBackup(backupManager, true);
+            exportBackup(true, includeHistory.isChecked(), asArchive.isChecked(), fullArchive.isChecked());
         });
         noSecretExport.setOnClickListener(v -> {
             dialog.dismiss();
-            exportBackup(backupManager, false);
+            exportBackup(false, includeHistory.isChecked(), asArchive.isChecked(), fullArchive.isChecked());
         });
         dialogView.findViewById(R.id.btn_backup_import).setOnClickListener(v -> {
             dialog.dismiss();
@@ -283,46 +299,91 @@ public class SettingsNav extends Fragment {
         dialog.show();
     }
 
-    private void exportBackup(BackupManager backupManager, boolean includeSecrets) {
-        try {
-            pendingBackupJson = backupManager.exportToJson(includeSecrets);
-        } catch (Exception e) {
-            android.util.Log.e(TAG, "生成备份失败", e);
-            UiFeedback.showError(requireContext(), "生成备份失败");
-            return;
-        }
+    private void exportBackup(boolean includeSecrets, boolean includeAnswerHistory,
+                              boolean asArchive, boolean fullArchive) {
+        BackupManager.ExportOptions options = new BackupManager.ExportOptions();
+        options.includeSecrets = includeSecrets;
+        options.includeAnswerHistory = includeAnswerHistory;
+        // 归档默认增量导出：首次为全量，之后只写入有变化的区块；勾选完整归档则每个区块都写入
+        options.incremental = asArchive && !fullArchive;
+        pendingBackupExport = options;
+        pendingBackupArchive = asArchive;
 
         String fileName = "防沉迷提醒_"
                 + new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date())
-                + ".json";
+                + (asArchive ? ".zip" : ".json");
         try {
-            createBackupLauncher.launch(fileName);
+            (asArchive ? createArchiveLauncher : createBackupLauncher).launch(fileName);
         } catch (Exception e) {
-            pendingBackupJson = null;
+            pendingBackupExport = null;
             android.util.Log.e(TAG, "无法打开文件保存界面", e);
             UiFeedback.showError(requireContext(), "无法打开文件保存界面");
         }
     }
 
     private void onBackupDocumentCreated(@Nullable Uri uri) {
-        String json = pendingBackupJson;
-        pendingBackupJson = null;
-        if (uri == null || json == null) {
-            // 用户取消，或没有待写入内容
+        BackupManager.ExportOptions options = pendingBackupExport;
+        pendingBackupExport = null;
+        if (uri == null || options == null) {
+            // 用户取消，或没有待导出内容
             return;
         }
 
-        try (OutputStream out = requireContext().getContentResolver().openOutputStream(uri)) {
+        boolean asArchive = pendingBackupArchive;
+        Context context = requireContext().getApplicationContext();
+        BackupManager backupManager = new BackupManager(context);
+        // 压缩归档、逐条写出答题记录都可能耗时，在后台线程写文件，结果回主线程提示
+        new Thread(() -> {
+            String error = writeBackup(context, uri, backupManager, options, asArchive);
+            versionBadgeHandler.post(() -> {
+                if (!isAdded()) {
+                    return;
+                }
+                if (error != null) {
+                    UiFeedback.showError(requireContext(), error);
+                } else {
+                    UiFeedback.show(requireContext(), "备份已导出");
+                }
+            });
+        }).start();
+    }
+
+    /**
+     * 在后台线程写出备份文件。
+     *
+     * @return 失败时给用户的提示，成功返回 null
+     */
+    @Nullable
+    private static String writeBackup(Context context, Uri uri, BackupManager backupManager,
+                                      BackupManager.ExportOptions options, boolean asArchive) {
+        BackupManager.ArchiveExport archiveExport = null;
+        try (OutputStream out = context.getContentResolver().openOutputStream(uri)) {
             if (out == null) {
-                UiFeedback.showError(requireContext(), "导出失败：无法写入所选文件");
-                return;
+                return "导出失败：无法写入所选文件";
+            }
+            if (asArchive) {
+                archiveExport = backupManager.exportArchive(out, options);
+            } else {
+                backupManager.exportTo(out, options);
             }
-            out.write(json.getBytes(StandardCharsets.UTF_8));
-            out.flush();
-            UiFeedback.show(requireContext(), "备份已导出");
         } catch (Exception e) {
             android.util.Log.e(TAG, "写入备份文件失败", e);
-            UiFeedback.showError(requireContext(), "导出失败：" + e.getMessage());
+            // 写到一半的文件导入时只会报格式错误，不如不留
+            deleteDocument(context, uri);
+            return "导出失败：" + e.getMessage();
+        }
+        // 文件关闭成功才算保存下来，此时才可作为下次增量导出的基准
+        if (archiveExport != null) {
+            archiveExport.commit();
+        }
+        return null;
+    }
+
+    private static void deleteDocument(Context context, Uri uri) {
+        try {
+            DocumentsContract.deleteDocument(context.getContentResolver(), uri);
+        } catch (Exception e) {
+            android.util.Log.w(TAG, "删除未写完的备份文件失败", e);
         }
     }
 
@@ -341,40 +402,141 @@ public class SettingsNav extends Fragment {
             return;
         }
 
-        String json;
+        BackupManager backupManager = new BackupManager(requireContext());
+        List<String> archiveSections;
         try (InputStream in = requireContext().getContentResolver().openInputStream(uri)) {
             if (in == null) {
                 UiFeedback.showError(requireContext(), "导入失败：无法读取所选文件");
                 return;
             }
-            json = readAll(in);
-        } catch (Exception e) {
-            android.util.Log.e(TAG, "读取备份文件失败", e);
-            UiFeedback.showError(requireContext(), "导入失败：无法读取文件");
-            return;
-        }
-
-        try {
-            BackupManager.ImportResult result =
-                    new BackupManager(requireContext()).importFromJson(json);
-            String message = "导入完成：成功 " + result.imported + " 项"
-                    + (result.skipped > 0 ? "，跳过 " + result.skipped + " 项" : "");
-            UiFeedback.show(requireContext(), message);
+            BufferedInputStream buffered = new BufferedInputStream(in);
+            if (!BackupManager.isArchive(buffered)) {
+                showImportResult(backupManager.importFrom(buffered));
+                return;
+            }
+            archiveSections = backupManager.listArchiveSections(buffered);
         } catch (Exception e) {
             android.util.Log.e(TAG, "导入备份失败", e);
             UiFeedback.showError(requireContext(),
                     "导入失败：" + (e.getMessage() != null ? e.getMessage() : "文件内容无效"));
+            return;
+        }
+        showArchiveSectionsDialog(uri, backupManager, archiveSections);
+    }
+
+    /**
+     * 备份归档可只恢复部分区块：列出归档中的区块，默认全选，由用户取舍。
+     */
+    private void showArchiveSectionsDialog(Uri uri, BackupManager backupManager, List<String> sections) {
+        if (sections.isEmpty()) {
+            importArchive(uri, backupManager, new HashSet<>());
+            return;
+        }
+        String[] labels = new String[sections.size()];
+        boolean[] checked = new boolean[sections.size()];
+        for (int i = 0; i < sections.size(); i++) {
+            labels[i] = archiveSectionLabel(sections.get(i));
+            checked[i] = true;
+        }
+        new android.app.AlertDialog.Builder(requireContext())
+                .setTitle("选择要恢复的内容")
+                .setMultiChoiceItems(labels, checked, (dialog, which, isChecked) -> checked[which] = isChecked)
+                .setPositiveButton("恢复", (dialog, which) -> {
+                    Set<String> selected = new HashSet<>();
+                    for (int i = 0; i < checked.length; i++) {
+                        if (checked[i]) {
+                            selected.add(sections.get(i));
+                        }
+                    }
+                    importArchive(uri, backupManager, selected);
+                })
+                .setNegativeButton("取消", null)
+                .show();
+    }
+
+    private void importArchive(Uri uri, BackupManager backupManager, Set<String> sections) {
+        Context context = requireContext().getApplicationContext();
+        // 解压与校验数据块在后台线程；应用各区块会改动主线程上读写的 APP 列表与设置，回主线程执行
+        new Thread(() -> {
+            BackupManager.PreparedArchive prepared = null;
+            String error = null;
+            try (InputStream in = context.getContentResolver().openInputStream(uri)) {
+                if (in == null) {
+                    error = "导入失败：无法读取所选文件";
+                } else {
+                    prepared = backupManager.prepareArchive(in, sections);
+                }
+            } catch (Exception e) {
+                android.util.Log.e(TAG, "导入备份归档失败", e);
+                error = "导入失败：" + (e.getMessage() != null ? e.getMessage() : "文件内容无效");
+            }
+            BackupManager.PreparedArchive verified = prepared;
+            String failure = error;
+            versionBadgeHandler.post(() -> applyArchive(verified, failure));
+        }).start();
+    }
+
+    /**
+     * 在主线程应用已校验的归档；用户已确认恢复，页面关闭了也照常应用，只是不再提示。
+     */
+    private void applyArchive(@Nullable BackupManager.PreparedArchive prepared, @Nullable String failure) {
+        BackupManager.ImportResult result = null;
+        String error = failure;
+        if (prepared != null) {
+            try (BackupManager.PreparedArchive archive = prepared) {
+                result = archive.apply();
+            } catch (Exception e) {
+                android.util.Log.e(TAG, "导入备份归档失败", e);
+                error = "导入失败：" + (e.getMessage() != null ? e.getMessage() : "文件内容无效");
+            }
+        }
+        if (!isAdded()) {
+            return;
+        }
+        if (error != null) {
+            UiFeedback.showError(requireContext(), error);
+        } else {
+            showImportResult(result);
+        }
+    }
+
+    private void showImportResult(BackupManager.ImportResult result) {
+        String message = "导入完成：成功 " + result.imported + " 项"
+                + (result.skipped > 0 ? "，跳过 " + result.skipped + " 项" : "");
+        if (!result.missingSections.isEmpty()) {
+            // 增量归档未含的区块在更早导出的归档中，提示用户按时间找到那份再导入
+            SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm", Locale.getDefault());
+            Set<String> times = new TreeSet<>();
+            for (Long time : result.missingSections.values()) {
+                times.add(format.format(new Date(time)));
+            }
+            message += "；另有 " + result.missingSections.size() + " 部分未变化，需导入 "
+                    + TextUtils.join("、", times) + " 导出的归档";
         }
+        UiFeedback.show(requireContext(), message);
     }
 
-    private static String readAll(InputStream in) throws Exception {
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-        byte[] chunk = new byte[4096];
-        int read;
-        while ((read = in.read(chunk)) != -1) {
-            buffer.write(chunk, 0, read);
+    private static String archiveSectionLabel(String section) {
+        switch (section) {
+            case BackupManager.SECTION_HOME:
+                return "首页（APP 列表与各 APP 设置）";
+            case BackupManager.SECTION_PERSONALIZE:
+                return "个性化";
+            case BackupManager.SECTION_MORE:
+                return "更多";
+            case BackupManager.SECTION_REMINDER_PROVIDER:
+                return "大模型配置";
+            case BackupManager.SECTION_DOUBAO_TTS:
+                return "豆包语音配置";
+            case BackupManager.SECTION_SECRETS:
+                return "密钥";
+            case BackupManager.SECTION_ANSWER_HISTORY:
+                return "答题记录";
+            case BackupManager.SECTION_WALLPAPER:
+                return "壁纸照片";
+            default:
+                return section;
         }
-        return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
     }
 
     private void openSubPage(Fragment page) {
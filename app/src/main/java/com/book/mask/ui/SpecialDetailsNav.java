@@ -15,6 +15,7 @@ import androidx.fragment.app.Fragment;
 import com.book.mask.R;
 import com.book.mask.config.PackageLogManager;
 import com.book.mask.config.Share;
+import com.book.mask.floating.FloatService;
 import com.book.mask.personalize.RelaxManager;
 
 import java.util.List;
@@ -40,6 +41,8 @@ public class SpecialDetailsNav extends Fragment {
                 .setOnClickListener(v -> showResetFloatingDialog());
         view.findViewById(R.id.row_package_log)
                 .setOnClickListener(v -> showPackageLogActionsDialog());
+        view.findViewById(R.id.row_floating_latency)
+                .setOnClickListener(v -> showLatencyReportDialog());
         return view;
     }
 
@@ -53,10 +56,7 @@ public class SpecialDetailsNav extends Fragment {
                 .create();
 
         dialogView.findViewById(R.id.btn_reset_floating_state).setOnClickListener(v -> {
-            java.util.Set<String> keys = Share.appManuallyHidden.keySet();
-            for (String key : keys) {
-                Share.appManuallyHidden.put(key, false);
-            }
+            Share.clearAllAppManuallyHidden();
             dialog.dismiss();
             UiFeedback.show(requireContext(), "所有APP悬浮窗状态已重置");
         });
@@ -103,7 +103,11 @@ public class SpecialDetailsNav extends Fragment {
                 TextView tvText = itemView.findViewById(R.id.tv_log_text);
                 Button btnCopy = itemView.findViewById(R.id.btn_copy);
                 tvText.setText((i + 1) + ". " + pkg);
-                btnCopy.setOnClickListener(b -> copyToClipboard(b, pkg));
+                btnCopy.setOnClickListener(b -> {
+                    if (copyToClipboard(pkg)) {
+                        UiFeedback.show(b, "已复制：" + pkg);
+                    }
+                });
                 container.addView(itemView);
             }
         }
@@ -114,13 +118,45 @@ public class SpecialDetailsNav extends Fragment {
             .show();
     }
 
-    private void copyToClipboard(View feedbackAnchor, String text) {
-        android.content.ClipboardManager cm = (android.content.ClipboardManager)
-                requireContext().getSystemService(android.content.Context.CLIPBOARD_SERVICE);
-        if (cm != null) {
-            cm.setPrimaryClip(android.content.ClipData.newPlainText("text", text));
-            UiFeedback.show(feedbackAnchor, "已复制：" + text);
+    private void showLatencyReportDialog() {
+        String latency = FloatService.getLatencyReport();
+        if (latency == null) {
+            UiFeedback.show(requireContext(), "悬浮窗服务未运行，暂无耗时统计");
+            return;
+        }
+        String report = latency
+                + diagnosticsSection("兜底轮询", FloatService.getPollReport())
+                + diagnosticsSection("事件限流", FloatService.getEventGovernorReport());
+        new android.app.AlertDialog.Builder(requireContext())
+                .setTitle(R.string.floating_latency_stats)
+                .setMessage(report)
+                .setPositiveButton("复制", (dialog, which) -> {
+                    if (copyToClipboard(report)) {
+                        UiFeedback.show(requireContext(), "已复制耗时统计");
+                    }
+                })
+                .setNegativeButton("关闭", null)
+                .show();
+    }
+
+    /**
+     * 耗时统计之后附带的一节诊断信息；服务已停止时为空。
+     */
+    private static String diagnosticsSection(String title, @Nullable String report) {
+        return report == null ? "" : "\n\n【" + title + "】\n" + report;
+    }
+
+    /**
+     * @return 是否已复制；提示由调用方按场景给出
+     */
+    private boolean copyToClipboard(String text) {
+        android.content.ClipboardManager cm =
+                requireContext().getSystemService(android.content.ClipboardManager.class);
+        if (cm == null) {
+            return false;
         }
+        cm.setPrimaryClip(android.content.ClipData.newPlainText("text", text));
+        return true;
     }
 
 }
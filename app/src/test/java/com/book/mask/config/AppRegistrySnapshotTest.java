@@ -0,0 +1,90 @@
+package com.book.mask.config;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class AppRegistrySnapshotTest {
+
+    private static final String XHS = "com.xingin.xhs";
+    private static final String BILI = "tv.danmaku.bili";
+    private static final String CUSTOM = "com.example.reader";
+
+    @Test
+    public void modificationOverridesPredefinedWhichOverridesCustom() {
+        CustomApp predefined = new CustomApp("小红书", XHS, "发现", 2);
+        CustomApp modified = new CustomApp("小红书", XHS, "发现 关注", 1);
+        CustomApp shadowed = new CustomApp("冒名", XHS, "任意", 1);
+        CustomApp bili = new CustomApp("哔哩哔哩", BILI, "推荐", 2);
+        CustomApp custom = new CustomApp("阅读", CUSTOM, "书架", 1);
+
+        AppRegistrySnapshot snapshot = AppRegistrySnapshot.build(
+                Collections.singletonList(modified),
+                Arrays.asList(predefined, bili),
+                Arrays.asList(shadowed, custom),
+                null, 1);
+
+        assertSame(modified, snapshot.get(XHS));
+        assertSame(bili, snapshot.get(BILI));
+        assertSame(custom, snapshot.get(CUSTOM));
+        assertNull(snapshot.get("com.example.unknown"));
+        assertNull(snapshot.get(null));
+        assertEquals(3, snapshot.size());
+    }
+
+    @Test
+    public void firstEntryWinsWithinOneList() {
+        CustomApp first = new CustomApp("阅读", CUSTOM, "书架", 1);
+        CustomApp duplicate = new CustomApp("阅读2", CUSTOM, "书城", 1);
+
+        AppRegistrySnapshot snapshot = AppRegistrySnapshot.build(null, null,
+                Arrays.asList(first, duplicate), null, 1);
+
+        assertSame(first, snapshot.get(CUSTOM));
+    }
+
+    @Test
+    public void monitoringIsFoldedInAtBuildTime() {
+        List<CustomApp> apps = Arrays.asList(
+                new CustomApp("小红书", XHS, "发现", 2),
+                new CustomApp("哔哩哔哩", BILI, "推荐", 2));
+        Set<String> enabled = new HashSet<>(Collections.singletonList(XHS));
+        int[] lookups = {0};
+
+        AppRegistrySnapshot snapshot = AppRegistrySnapshot.build(null, apps, null,
+                packageName -> {
+                    lookups[0]++;
+                    return enabled.contains(packageName);
+                }, 1);
+        int lookupsAfterBuild = lookups[0];
+
+        assertTrue(snapshot.isMonitoringResolved());
+        assertSame(apps.get(0), snapshot.getMonitored(XHS));
+        assertNull(snapshot.getMonitored(BILI));
+        assertSame(apps.get(1), snapshot.get(BILI));
+        // 查找时不再访问开关来源，开关变化须重建快照才生效
+        enabled.add(BILI);
+        assertNull(snapshot.getMonitored(BILI));
+        assertEquals(lookupsAfterBuild, lookups[0]);
+    }
+
+    @Test
+    public void unresolvedMonitoringIsReported() {
+        AppRegistrySnapshot snapshot = AppRegistrySnapshot.build(null,
+                Collections.singletonList(new CustomApp("小红书", XHS, "发现", 2)), null, null, 1);
+
+        assertFalse(snapshot.isMonitoringResolved());
+        assertFalse(AppRegistrySnapshot.EMPTY.isMonitoringResolved());
+        assertEquals(0, AppRegistrySnapshot.EMPTY.size());
+    }
+}
@@ -0,0 +1,132 @@
+package com.book.mask.config;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 对比每个事件都会走到的状态读写：原先以包名为键的多张 HashMap（String 哈希 + Boolean 装箱），
+ * 与 {@link AppRuntimeState} 的槽位数组。访问序列模拟在若干 APP 间切换：每次进入读界面状态、
+ * 手动隐藏和下次进入策略，检测后写回结论。两种实现的最终结果必须相同。
+ * 耗时对比受机器负载影响，不随单元测试运行，去掉 {@code @Ignore} 后手动执行。
+ */
+public class AppRuntimeStateBenchmarkTest {
+
+    private static final int APPS = 8;
+    private static final int EQUIVALENCE_ROUNDS = 10_000;
+    private static final int WARMUP_ROUNDS = 200_000;
+    private static final int MEASURED_ROUNDS = 2_000_000;
+
+    private static final class MapState {
+        final Map<String, String> appStates = new HashMap<>();
+        final Map<String, Boolean> appManuallyHidden = new HashMap<>();
+        final Map<String, Boolean> lastDetectionNotTarget = new HashMap<>();
+        final Map<String, Boolean> detectBeforeShowOnNextEntry = new HashMap<>();
+    }
+
+    @Test
+    public void slotTableMatchesMaps() {
+        CustomApp[] apps = newApps();
+        MapState maps = new MapState();
+        AppRuntimeState table = new AppRuntimeState();
+
+        assertEquals(runMaps(maps, apps, EQUIVALENCE_ROUNDS), runTable(table, apps, EQUIVALENCE_ROUNDS));
+        assertSameState(maps, table, apps);
+    }
+
+    @Ignore("基准测试，手动运行")
+    @Test
+    public void slotTableIsNotSlowerThanMaps() {
+        CustomApp[] apps = newApps();
+        MapState maps = new MapState();
+        AppRuntimeState table = new AppRuntimeState();
+        runMaps(maps, apps, WARMUP_ROUNDS);
+        runTable(table, apps, WARMUP_ROUNDS);
+
+        long start = System.nanoTime();
+        runMaps(maps, apps, MEASURED_ROUNDS);
+        long mapNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        runTable(table, apps, MEASURED_ROUNDS);
+        long tableNanos = System.nanoTime() - start;
+
+        assertTrue("maps=" + (mapNanos / MEASURED_ROUNDS) + "ns/op"
+                        + ", table=" + (tableNanos / MEASURED_ROUNDS) + "ns/op",
+                tableNanos <= mapNanos);
+    }
+
+    private static CustomApp[] newApps() {
+        CustomApp[] apps = new CustomApp[APPS];
+        for (int i = 0; i < APPS; i++) {
+            String packageName = "com.example.app" + i;
+            apps[i] = new CustomApp(packageName, packageName, "推荐", 1);
+        }
+        return apps;
+    }
+
+    private static void assertSameState(MapState maps, AppRuntimeState table, CustomApp[] apps) {
+        for (CustomApp app : apps) {
+            String packageName = app.getPackageName();
+            assertEquals(maps.appManuallyHidden.getOrDefault(packageName, false),
+                    table.isManuallyHidden(app));
+            assertEquals(maps.lastDetectionNotTarget.getOrDefault(packageName, false),
+                    table.isLastDetectionNotTarget(app));
+            assertEquals(maps.detectBeforeShowOnNextEntry.getOrDefault(packageName, false),
+                    table.shouldDetectBeforeShow(app));
+            assertEquals("target".equals(maps.appStates.get(packageName)),
+                    table.getState(app) == AppRuntimeState.STATE_TARGET);
+        }
+    }
+
+    private static int runMaps(MapState maps, CustomApp[] apps, int rounds) {
+        int checksum = 0;
+        for (int i = 0; i < rounds; i++) {
+            String packageName = apps[i % APPS].getPackageName();
+            boolean target = (i * 31 & 7) < 3;
+            if ("target".equals(maps.appStates.get(packageName))) {
+                checksum++;
+            }
+            if (maps.appManuallyHidden.getOrDefault(packageName, false)) {
+                checksum += 2;
+            }
+            if (maps.detectBeforeShowOnNextEntry.getOrDefault(packageName, false)) {
+                checksum += 4;
+            }
+            maps.appStates.put(packageName, target ? "target" : "not target");
+            maps.lastDetectionNotTarget.put(packageName, !target);
+            maps.detectBeforeShowOnNextEntry.put(packageName,
+                    maps.lastDetectionNotTarget.getOrDefault(packageName, false));
+            maps.appManuallyHidden.put(packageName, (i & 15) == 0);
+        }
+        return checksum;
+    }
+
+    private static int runTable(AppRuntimeState table, CustomApp[] apps, int rounds) {
+        int checksum = 0;
+        for (int i = 0; i < rounds; i++) {
+            CustomApp app = apps[i % APPS];
+            boolean target = (i * 31 & 7) < 3;
+            if (table.getState(app) == AppRuntimeState.STATE_TARGET) {
+                checksum++;
+            }
+            if (table.isManuallyHidden(app)) {
+                checksum += 2;
+            }
+            if (table.shouldDetectBeforeShow(app)) {
+                checksum += 4;
+            }
+            table.setState(app, target ? AppRuntimeState.STATE_TARGET
+                    : AppRuntimeState.STATE_NOT_TARGET);
+            table.setLastDetectionNotTarget(app, !target);
+            table.setDetectBeforeShow(app, table.isLastDetectionNotTarget(app));
+            table.setManuallyHidden(app, (i & 15) == 0);
+        }
+        return checksum;
+    }
+}
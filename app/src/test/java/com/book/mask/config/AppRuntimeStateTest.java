@@ -0,0 +1,112 @@
+package com.book.mask.config;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AppRuntimeStateTest {
+
+    private static CustomApp app(String packageName) {
+        return new CustomApp(packageName, packageName, "推荐", 1);
+    }
+
+    @Test
+    public void unknownAppHasEmptyState() {
+        AppRuntimeState state = new AppRuntimeState();
+        CustomApp app = app("com.example.a");
+
+        assertEquals(AppRuntimeState.STATE_UNKNOWN, state.getState(app));
+        assertFalse(state.isManuallyHidden(app));
+        assertFalse(state.isLastDetectionNotTarget(app));
+        assertFalse(state.shouldDetectBeforeShow(app));
+    }
+
+    @Test
+    public void stateAndFlagsAreIndependent() {
+        AppRuntimeState state = new AppRuntimeState();
+        CustomApp app = app("com.example.a");
+
+        state.setState(app, AppRuntimeState.STATE_TARGET);
+        state.setManuallyHidden(app, true);
+        state.setDetectBeforeShow(app, true);
+        state.setState(app, AppRuntimeState.STATE_NOT_TARGET);
+        state.setManuallyHidden(app, false);
+
+        assertEquals(AppRuntimeState.STATE_NOT_TARGET, state.getState(app));
+        assertFalse(state.isManuallyHidden(app));
+        assertTrue(state.shouldDetectBeforeShow(app));
+        assertFalse(state.isLastDetectionNotTarget(app));
+    }
+
+    @Test
+    public void instancesWithSamePackageShareSlot() {
+        AppRuntimeState state = new AppRuntimeState();
+        CustomApp original = app("com.example.a");
+        CustomApp edited = new CustomApp(original);
+
+        state.setManuallyHidden(original, true);
+
+        assertTrue(state.isManuallyHidden(edited));
+        assertEquals(1, state.size());
+    }
+
+    @Test
+    public void bulkClearsTouchOnlyTheirFields() {
+        AppRuntimeState state = new AppRuntimeState();
+        CustomApp a = app("com.example.a");
+        CustomApp b = app("com.example.b");
+        state.setState(a, AppRuntimeState.STATE_TARGET);
+        state.setManuallyHidden(b, true);
+        state.setLastDetectionNotTarget(a, true);
+        state.setDetectBeforeShow(b, true);
+
+        state.clearManuallyHidden();
+        assertFalse(state.isManuallyHidden(b));
+        assertEquals(AppRuntimeState.STATE_TARGET, state.getState(a));
+
+        state.clearStates();
+        assertEquals(AppRuntimeState.STATE_UNKNOWN, state.getState(a));
+        assertTrue(state.isLastDetectionNotTarget(a));
+
+        state.clearEntryHistory();
+        assertFalse(state.isLastDetectionNotTarget(a));
+        assertFalse(state.shouldDetectBeforeShow(b));
+    }
+
+    @Test
+    public void growthKeepsValuesVisibleToConcurrentReader() throws Exception {
+        AppRuntimeState state = new AppRuntimeState();
+        CustomApp watched = app("com.example.watched");
+        state.setManuallyHidden(watched, true);
+        state.setState(watched, AppRuntimeState.STATE_TARGET);
+
+        AtomicBoolean done = new AtomicBoolean(false);
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                if (!state.isManuallyHidden(watched)
+                        || state.getState(watched) != AppRuntimeState.STATE_TARGET) {
+                    failure.set("读取方看到了扩容过程中丢失的状态");
+                    return;
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 500; i++) {
+            CustomApp added = app("com.example.app" + i);
+            state.setLastDetectionNotTarget(added, true);
+        }
+        done.set(true);
+        reader.join();
+
+        assertNull(failure.get());
+        assertEquals(501, state.size());
+        assertTrue(state.isLastDetectionNotTarget(app("com.example.app499")));
+    }
+}
@@ -0,0 +1,86 @@
+package com.book.mask.config;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class KeywordMatcherTest {
+
+    @Test
+    public void exactKeywordsMatchWholeNodeTextOnly() {
+        KeywordMatcher matcher = KeywordMatcher.compile("推荐 精选 热点");
+
+        assertTrue(matcher.matches("推荐"));
+        assertTrue(matcher.matches(" 热点 "));
+        assertFalse(matcher.matches("荐"));
+        assertFalse(matcher.matches("推荐 精选"));
+        assertFalse(matcher.matches("为你推荐"));
+    }
+
+    @Test
+    public void starredKeywordsMatchAnywhereInNodeText() {
+        KeywordMatcher matcher = KeywordMatcher.compile("发现 *热榜*");
+
+        assertTrue(matcher.matches("今日热榜"));
+        assertTrue(matcher.matches("热榜"));
+        assertTrue(matcher.matches("发现"));
+        assertFalse(matcher.matches("发现页"));
+        assertFalse(matcher.matches("热门"));
+    }
+
+    @Test
+    public void containsModeFollowsFailureLinksAcrossOverlappingKeywords() {
+        KeywordMatcher matcher = KeywordMatcher.compile("*abcd* *bce*");
+
+        assertTrue(matcher.matches("xabce"));
+        assertTrue(matcher.matches("abcd"));
+        assertFalse(matcher.matches("abcbd"));
+    }
+
+    @Test
+    public void suffixKeywordIsFoundInsideLongerKeywordPath() {
+        KeywordMatcher matcher = KeywordMatcher.compile("*推荐页面* *页*");
+
+        assertTrue(matcher.matches("推荐页"));
+    }
+
+    @Test
+    public void matchesNonStringCharSequence() {
+        KeywordMatcher matcher = KeywordMatcher.compile("关注 *直播*");
+
+        assertTrue(matcher.matches(new StringBuilder("关注")));
+        assertTrue(matcher.matches(new StringBuilder("正在直播中")));
+    }
+
+    @Test
+    public void emptyTargetWordMatchesNothing() {
+        assertTrue(KeywordMatcher.compile("  ").isEmpty());
+        assertFalse(KeywordMatcher.compile(null).matches("推荐"));
+        assertFalse(KeywordMatcher.compile("* **").matches("*"));
+    }
+
+    @Test
+    public void manyKeywordsStillResolveEachOne() {
+        StringBuilder targetWord = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            targetWord.append("词").append(i).append(' ');
+        }
+        KeywordMatcher matcher = KeywordMatcher.compile(targetWord.toString());
+
+        for (int i = 0; i < 200; i++) {
+            assertTrue(matcher.matches("词" + i));
+        }
+        assertFalse(matcher.matches("词200"));
+    }
+
+    @Test
+    public void customAppRecompilesWhenTargetWordChanges() {
+        CustomApp app = new CustomApp("测试", "com.example.test", "推荐", 1);
+        assertTrue(app.getKeywordMatcher().matches("推荐"));
+
+        app.setTargetWord("关注");
+        assertFalse(app.getKeywordMatcher().matches("推荐"));
+        assertTrue(app.getKeywordMatcher().matches("关注"));
+    }
+}
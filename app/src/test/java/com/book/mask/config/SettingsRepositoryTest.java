@@ -0,0 +1,264 @@
+package com.book.mask.config;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SettingsRepositoryTest {
+
+    // 足够长，测试内不会自动落盘，由 flush() 手动触发
+    private static final long NEVER_MS = TimeUnit.HOURS.toMillis(1);
+
+    private ScheduledExecutorService executor;
+    private FakeBackend backend;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadScheduledExecutor();
+        backend = new FakeBackend();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void readsHitBackendOnlyOncePerKey() {
+        backend.data.put("count", 3);
+        SettingsRepository repository = new SettingsRepository(backend, executor, NEVER_MS);
+
+        assertEquals(3, repository.getInt("count", 0));
+        assertEquals(3, repository.getInt("count", 0));
+        assertEquals(7, repository.getInt("missing", 7));
+        assertEquals(7, repository.getInt("missing", 7));
+        assertFalse(repository.contains("missing"));
+
+        assertEquals(1, backend.reads);
+    }
+
+    @Test
+    public void writesAreVisibleImmediatelyAndFlushedAsOneBatch() {
+        SettingsRepository repository = new SettingsRepository(backend, executor, NEVER_MS);
+
+        repository.putInt("a", 1).putString("b", "x").putBoolean("c", true);
+        repository.putInt("a", 2);
+
+        assertEquals(2, repository.getInt("a", 0));
+        assertEquals("x", repository.getString("b", null));
+        assertTrue(repository.getBoolean("c", false));
+        assertTrue(backend.data.isEmpty());
+        assertEquals(3, repository.pendingCount());
+
+        repository.flush();
+
+        assertEquals(0, repository.pendingCount());
+        assertEquals(2, backend.data.get("a"));
+        assertEquals("x", backend.data.get("b"));
+        assertEquals(true, backend.data.get("c"));
+        // 同一键的多次写入只落盘最后一次
+        assertEquals(Arrays.asList("a", "b", "c"), backend.writes);
+        assertEquals(1, backend.syncs);
+
+        repository.flush();
+        assertEquals(1, backend.syncs);
+    }
+
+    @Test
+    public void scheduledFlushRunsAfterWindow() throws Exception {
+        CountDownLatch synced = new CountDownLatch(1);
+        backend.onSync = synced;
+        SettingsRepository repository = new SettingsRepository(backend, executor, 20);
+
+        repository.putLong("t", 42L);
+        repository.putLong("t", 43L);
+
+        assertTrue(synced.await(5, TimeUnit.SECONDS));
+        assertEquals(43L, backend.data.get("t"));
+        assertEquals(1, backend.syncs);
+        assertEquals(0, repository.pendingCount());
+    }
+
+    @Test
+    public void removeHidesKeyAndDeletesOnFlush() {
+        backend.data.put("gone", "v");
+        backend.data.put("kept", "k");
+        SettingsRepository repository = new SettingsRepository(backend, executor, NEVER_MS);
+
+        repository.remove("gone").putString("added", "n");
+
+        assertFalse(repository.contains("gone"));
+        assertNull(repository.getString("gone", null));
+        assertEquals(new HashSet<>(Arrays.asList("kept", "added")),
+                new HashSet<>(Arrays.asList(repository.allKeys())));
+
+        repository.flush();
+        assertFalse(backend.data.containsKey("gone"));
+        assertEquals("n", backend.data.get("added"));
+    }
+
+    @Test
+    public void listenersFireOnlyWhenValueChanges() {
+        backend.data.put("k", 1);
+        SettingsRepository repository = new SettingsRepository(backend, executor, NEVER_MS);
+        List<String> changed = new ArrayList<>();
+        SettingsRepository.OnSettingChangedListener listener = (repo, key) -> changed.add(key);
+        repository.addListener(listener);
+
+        repository.getInt("k", 0);
+        repository.putInt("k", 1);
+        repository.putInt("k", 2);
+        repository.putString("fresh", "v");
+        repository.removeListener(listener);
+        repository.putInt("k", 3);
+
+        assertEquals(Arrays.asList("k", "fresh"), changed);
+    }
+
+    @Test
+    public void bytesCompareByContent() {
+        SettingsRepository repository = new SettingsRepository(backend, executor, NEVER_MS);
+        List<String> changed = new ArrayList<>();
+        repository.addListener((repo, key) -> changed.add(key));
+
+        repository.putBytes("blob", new byte[]{1, 2});
+        repository.putBytes("blob", new byte[]{1, 2});
+        repository.putBytes("blob", new byte[]{3});
+
+        assertArrayEquals(new byte[]{3}, repository.getBytes("blob"));
+        assertNull(repository.getBytes("absent"));
+        assertEquals(Arrays.asList("blob", "blob"), changed);
+    }
+
+    @Test
+    public void jsonIsParsedOnceUntilSourceChanges() {
+        backend.data.put("tags", "[\"a\",\"b\"]");
+        SettingsRepository repository = new SettingsRepository(backend, executor, NEVER_MS);
+
+        String[] first = repository.getJson("tags", String[].class, null);
+        String[] second = repository.getJson("tags", String[].class, null);
+        assertArrayEquals(new String[]{"a", "b"}, first);
+        assertSame(first, second);
+
+        repository.putJson("tags", Arrays.asList("c"));
+        String[] third = repository.getJson("tags", String[].class, null);
+        assertArrayEquals(new String[]{"c"}, third);
+
+        String[] fallback = new String[0];
+        assertSame(fallback, repository.getJson("absent", String[].class, fallback));
+    }
+
+    @Test
+    public void reloadFlushesThenRereadsBackend() {
+        backend.data.put("k", "old");
+        SettingsRepository repository = new SettingsRepository(backend, executor, NEVER_MS);
+        List<String> changed = new ArrayList<>();
+        repository.addListener((repo, key) -> changed.add(key));
+
+        repository.putString("pending", "p");
+        assertEquals("old", repository.getString("k", null));
+        backend.data.put("k", "external");
+        assertEquals("old", repository.getString("k", null));
+
+        repository.reload();
+
+        assertEquals("p", backend.data.get("pending"));
+        assertEquals("external", repository.getString("k", null));
+        assertEquals(Arrays.asList("pending", null), changed);
+    }
+
+    private static final class FakeBackend implements SettingsRepository.Backend {
+        final Map<String, Object> data = new HashMap<>();
+        final List<String> writes = new ArrayList<>();
+        int reads = 0;
+        int syncs = 0;
+        CountDownLatch onSync;
+
+        @Override
+        public boolean contains(String key) {
+            return data.containsKey(key);
+        }
+
+        @Override
+        public String[] allKeys() {
+            return data.keySet().toArray(new String[0]);
+        }
+
+        @Override
+        public String getString(String key, String defaultValue) {
+            Object value = read(key);
+            return value instanceof String ? (String) value : defaultValue;
+        }
+
+        @Override
+        public int getInt(String key, int defaultValue) {
+            Object value = read(key);
+            return value instanceof Integer ? (Integer) value : defaultValue;
+        }
+
+        @Override
+        public long getLong(String key, long defaultValue) {
+            Object value = read(key);
+            return value instanceof Long ? (Long) value : defaultValue;
+        }
+
+        @Override
+        public float getFloat(String key, float defaultValue) {
+            Object value = read(key);
+            return value instanceof Float ? (Float) value : defaultValue;
+        }
+
+        @Override
+        public boolean getBoolean(String key, boolean defaultValue) {
+            Object value = read(key);
+            return value instanceof Boolean ? (Boolean) value : defaultValue;
+        }
+
+        @Override
+        public byte[] getBytes(String key) {
+            Object value = read(key);
+            return value instanceof byte[] ? (byte[]) value : null;
+        }
+
+        @Override
+        public synchronized void write(String key, Object value) {
+            writes.add(key);
+            if (value == null) {
+                data.remove(key);
+            } else {
+                data.put(key, value);
+            }
+        }
+
+        @Override
+        public synchronized void sync() {
+            syncs++;
+            if (onSync != null) {
+                onSync.countDown();
+            }
+        }
+
+        private Object read(String key) {
+            reads++;
+            return data.get(key);
+        }
+    }
+}
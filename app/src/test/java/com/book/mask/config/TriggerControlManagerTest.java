@@ -0,0 +1,33 @@
+package com.book.mask.config;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TriggerControlManagerTest {
+
+    @Test
+    public void signatureCombinesViewIdClassAndText() {
+        assertEquals("pkg:id/tab#android.widget.TextView#推荐",
+                TriggerControlManager.buildSignature(
+                        "pkg:id/tab", "android.widget.TextView", " 推荐 "));
+    }
+
+    @Test
+    public void signatureWithoutViewIdOrTextIsRejected() {
+        assertNull(TriggerControlManager.buildSignature(null, "android.widget.FrameLayout", null));
+        assertNull(TriggerControlManager.buildSignature(" ", "android.widget.FrameLayout", ""));
+    }
+
+    @Test
+    public void longTextIsTruncatedInSignature() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            text.append('字');
+        }
+        String signature = TriggerControlManager.buildSignature(null, "View", text);
+
+        assertEquals("#View#".length() + 40, signature.length());
+    }
+}
@@ -0,0 +1,97 @@
+package com.book.mask.floating;
+
+import com.book.mask.constant.Const;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveDebouncePolicyTest {
+
+    private static final String FAST = "com.example.fast";
+    private static final String SLOW = "com.example.slow";
+
+    @Test
+    public void unknownAppFallsBackToFixedValues() {
+        AdaptiveDebouncePolicy policy = new AdaptiveDebouncePolicy();
+
+        assertEquals(Const.CONTENT_CHECK_DEBOUNCE_MS, policy.getDebounceMillis(FAST));
+        assertEquals(Const.CONTENT_CHECK_MAX_WAIT_MS, policy.getMaxWaitMillis(FAST));
+    }
+
+    @Test
+    public void steadyFastCadenceShortensDebounceDownToFloor() {
+        AdaptiveDebouncePolicy policy = new AdaptiveDebouncePolicy();
+        feedBurst(policy, FAST, 1000, 20, 10);
+
+        long floor = Math.max(Const.ADAPTIVE_DEBOUNCE_MIN_MS,
+                1000L / Const.CONTENT_CHECK_MAX_SCANS_PER_SECOND);
+        assertEquals(floor, policy.getDebounceMillis(FAST));
+        assertTrue(policy.getDebounceMillis(FAST) < Const.CONTENT_CHECK_DEBOUNCE_MS);
+    }
+
+    @Test
+    public void slowCadenceIsCappedAtMax() {
+        AdaptiveDebouncePolicy policy = new AdaptiveDebouncePolicy();
+        feedBurst(policy, SLOW, 1000, 450, 10);
+
+        assertEquals(Const.ADAPTIVE_DEBOUNCE_MAX_MS, policy.getDebounceMillis(SLOW));
+    }
+
+    @Test
+    public void gapsBetweenBurstsAreIgnored() {
+        AdaptiveDebouncePolicy policy = new AdaptiveDebouncePolicy();
+        feedBurst(policy, FAST, 1000, 20, 5);
+        long before = policy.getDebounceMillis(FAST);
+        // 两轮之间隔了 5 秒，不应拉长轮内节奏
+        feedBurst(policy, FAST, 6000, 20, 5);
+
+        assertEquals(before, policy.getDebounceMillis(FAST));
+    }
+
+    @Test
+    public void jitterWidensDebounce() {
+        AdaptiveDebouncePolicy steady = new AdaptiveDebouncePolicy();
+        AdaptiveDebouncePolicy jittery = new AdaptiveDebouncePolicy();
+        long now = 1000;
+        for (int i = 0; i < 20; i++) {
+            steady.onContentEvent(FAST, now + i * 60L);
+            jittery.onContentEvent(FAST, now + i * 60L + (i % 2 == 0 ? 0 : 40));
+        }
+
+        assertTrue(jittery.getDebounceMillis(FAST) > steady.getDebounceMillis(FAST));
+    }
+
+    @Test
+    public void maxWaitFollowsBurstDurationWithinBounds() {
+        AdaptiveDebouncePolicy policy = new AdaptiveDebouncePolicy();
+        for (int round = 0; round < 10; round++) {
+            long start = 1000 + round * 10000L;
+            feedBurst(policy, FAST, start, 20, 21);
+            policy.onBurstFinished(FAST, start, start + 400, 21);
+        }
+
+        assertEquals(400, policy.getMaxWaitMillis(FAST));
+
+        AdaptiveDebouncePolicy shortBursts = new AdaptiveDebouncePolicy();
+        feedBurst(shortBursts, FAST, 1000, 20, 3);
+        shortBursts.onBurstFinished(FAST, 1000, 1040, 3);
+        assertEquals(Const.ADAPTIVE_MAX_WAIT_MIN_MS, shortBursts.getMaxWaitMillis(FAST));
+    }
+
+    @Test
+    public void appsAreTrackedIndependently() {
+        AdaptiveDebouncePolicy policy = new AdaptiveDebouncePolicy();
+        feedBurst(policy, FAST, 1000, 20, 10);
+
+        assertEquals(Const.CONTENT_CHECK_DEBOUNCE_MS, policy.getDebounceMillis(SLOW));
+    }
+
+    private static void feedBurst(AdaptiveDebouncePolicy policy, String packageName,
+                                  long start, long gap, int events) {
+        for (int i = 0; i < events; i++) {
+            policy.onContentEvent(packageName, start + i * gap);
+        }
+    }
+}
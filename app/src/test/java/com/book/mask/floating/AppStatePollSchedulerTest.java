@@ -0,0 +1,93 @@
+package com.book.mask.floating;
+
+import com.book.mask.constant.Const;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AppStatePollSchedulerTest {
+
+    @Test
+    public void backsOffExponentiallyUpToIdleCap() {
+        AppStatePollScheduler scheduler = new AppStatePollScheduler();
+        long delay = scheduler.start(0);
+        assertEquals(Const.APP_STATE_CHECK_INTERVAL, delay);
+
+        long previous = delay;
+        for (int i = 0; i < 20; i++) {
+            delay = scheduler.onPollFinished(false, false);
+            assertEquals(Math.min(previous * 2, Const.APP_STATE_POLL_MAX_IDLE_MS), delay);
+            previous = delay;
+        }
+        assertEquals(Const.APP_STATE_POLL_MAX_IDLE_MS, delay);
+    }
+
+    @Test
+    public void targetAppUsesLowerCap() {
+        AppStatePollScheduler scheduler = new AppStatePollScheduler();
+        scheduler.start(0);
+        long delay = 0;
+        for (int i = 0; i < 20; i++) {
+            delay = scheduler.onPollFinished(false, true);
+        }
+        assertEquals(Const.APP_STATE_POLL_MAX_ACTIVE_MS, delay);
+    }
+
+    @Test
+    public void enteringTargetClampsIdleInterval() {
+        AppStatePollScheduler scheduler = new AppStatePollScheduler();
+        scheduler.start(0);
+        for (int i = 0; i < 20; i++) {
+            scheduler.onPollFinished(false, false);
+        }
+
+        assertEquals(Const.APP_STATE_POLL_MAX_ACTIVE_MS, scheduler.clampForTarget());
+    }
+
+    @Test
+    public void discrepancyTightensToMinimum() {
+        AppStatePollScheduler scheduler = new AppStatePollScheduler();
+        scheduler.start(0);
+        for (int i = 0; i < 5; i++) {
+            scheduler.onPollFinished(false, false);
+        }
+
+        assertEquals(Const.APP_STATE_CHECK_INTERVAL, scheduler.onPollFinished(true, true));
+        assertEquals(1, scheduler.getDiscrepancies());
+        assertEquals(Const.APP_STATE_CHECK_INTERVAL * 2, scheduler.onPollFinished(false, true));
+    }
+
+    @Test
+    public void screenOffTimeIsExcludedFromFixedIntervalBaseline() {
+        AppStatePollScheduler scheduler = new AppStatePollScheduler();
+        scheduler.start(0);
+        scheduler.stop(60_000);
+        assertFalse(scheduler.isRunning());
+        long baseline = scheduler.getFixedIntervalWakeups(60_000);
+        assertEquals(60_000 / Const.APP_STATE_CHECK_INTERVAL, baseline);
+
+        // 息屏一小时不计入
+        assertEquals(baseline, scheduler.getFixedIntervalWakeups(3_660_000));
+        assertEquals(Const.APP_STATE_CHECK_INTERVAL, scheduler.start(3_660_000));
+        assertTrue(scheduler.isRunning());
+        assertEquals(baseline * 2, scheduler.getFixedIntervalWakeups(3_720_000));
+    }
+
+    @Test
+    public void steadyIdleHourNeedsFarFewerWakeupsThanFixedPolling() {
+        AppStatePollScheduler scheduler = new AppStatePollScheduler();
+        long now = 0;
+        long delay = scheduler.start(now);
+        while (now + delay <= 3_600_000) {
+            now += delay;
+            delay = scheduler.onPollFinished(false, false);
+        }
+
+        long fixed = scheduler.getFixedIntervalWakeups(3_600_000);
+        assertEquals(1800, fixed);
+        assertTrue(scheduler.getPolls() * 20 < fixed);
+    }
+}
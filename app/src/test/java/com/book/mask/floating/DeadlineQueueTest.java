@@ -0,0 +1,100 @@
+package com.book.mask.floating;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DeadlineQueueTest {
+
+    private final DeadlineQueue<String> queue = new DeadlineQueue<>();
+    private final List<String> fired = new ArrayList<>();
+
+    private Runnable record(String name) {
+        return () -> fired.add(name);
+    }
+
+    @Test
+    public void emptyQueueHasNoDeadline() {
+        assertEquals(DeadlineQueue.NONE, queue.nextDeadline());
+        assertNull(queue.pollDue(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void firesInDeadlineThenScheduleOrder() {
+        queue.schedule("b", 200, record("b"));
+        queue.schedule("a", 100, record("a"));
+        queue.schedule("c", 200, record("c"));
+
+        assertEquals(100, queue.nextDeadline());
+        drain(150);
+        assertEquals(Arrays.asList("a"), fired);
+        assertEquals(200, queue.nextDeadline());
+        drain(200);
+        assertEquals(Arrays.asList("a", "b", "c"), fired);
+        assertEquals(DeadlineQueue.NONE, queue.nextDeadline());
+    }
+
+    @Test
+    public void reschedulingReplacesPreviousDeadline() {
+        queue.schedule("auto_show:a", 100, record("first"));
+        queue.schedule("auto_show:a", 300, record("second"));
+
+        assertEquals(300, queue.getDeadline("auto_show:a"));
+        assertEquals(300, queue.nextDeadline());
+        drain(1000);
+        assertEquals(Arrays.asList("second"), fired);
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void cancelByKey() {
+        queue.schedule("a", 100, record("a"));
+        queue.schedule("b", 200, record("b"));
+
+        assertTrue(queue.cancel("a"));
+        assertFalse(queue.cancel("a"));
+        assertFalse(queue.isScheduled("a"));
+        assertEquals(200, queue.nextDeadline());
+        drain(1000);
+        assertEquals(Arrays.asList("b"), fired);
+    }
+
+    @Test
+    public void cancellationInsideActionAffectsSameBatch() {
+        queue.schedule("a", 100, () -> {
+            fired.add("a");
+            queue.cancel("b");
+            queue.schedule("c", 100, record("c"));
+        });
+        queue.schedule("b", 100, record("b"));
+
+        drain(100);
+        assertEquals(Arrays.asList("a", "c"), fired);
+    }
+
+    @Test
+    public void repeatedReschedulingKeepsHeapBounded() {
+        for (int i = 0; i < 10_000; i++) {
+            queue.schedule("transition", 1_000_000 - i, record("transition"));
+        }
+
+        assertEquals(1, queue.size());
+        assertTrue(queue.heapSize() <= 64 + 1);
+        drain(Long.MAX_VALUE);
+        assertEquals(Arrays.asList("transition"), fired);
+    }
+
+    private void drain(long now) {
+        Runnable action;
+        while ((action = queue.pollDue(now)) != null) {
+            action.run();
+        }
+    }
+}
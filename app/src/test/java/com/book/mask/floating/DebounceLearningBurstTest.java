@@ -0,0 +1,67 @@
+package com.book.mask.floating;
+
+import com.book.mask.constant.Const;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class DebounceLearningBurstTest {
+
+    private static final String APP = "com.example.app";
+    private static final String OTHER = "com.example.other";
+
+    @Test
+    public void forcedChecksDoNotTruncateLearnedBurst() {
+        AdaptiveDebouncePolicy policy = new AdaptiveDebouncePolicy();
+        DebounceLearningBurst burst = new DebounceLearningBurst();
+        for (int round = 0; round < 10; round++) {
+            long start = 1000 + round * 10000L;
+            // 每轮连续变化 700ms，超过默认 max wait，中途被强制检测一次
+            for (int i = 0; i <= 14; i++) {
+                event(burst, policy, APP, start + i * 50L);
+                if (i == 10) {
+                    burst.onCheckSubmitted(policy, true);
+                }
+            }
+            burst.onCheckSubmitted(policy, false);
+        }
+
+        assertEquals(700, policy.getMaxWaitMillis(APP));
+    }
+
+    @Test
+    public void quietGapAfterForcedCheckClosesBurst() {
+        AdaptiveDebouncePolicy policy = new AdaptiveDebouncePolicy();
+        DebounceLearningBurst burst = new DebounceLearningBurst();
+        for (int i = 0; i <= 12; i++) {
+            event(burst, policy, APP, 1000 + i * 50L);
+        }
+        burst.onCheckSubmitted(policy, true);
+        assertEquals(Const.CONTENT_CHECK_MAX_WAIT_MS, policy.getMaxWaitMillis(APP));
+
+        // 强制检测后页面再没变化，下一轮的第一个事件才结算上一轮
+        event(burst, policy, APP, 5000);
+        assertEquals(600, policy.getMaxWaitMillis(APP));
+    }
+
+    @Test
+    public void switchingAppClosesBurstUnderPreviousApp() {
+        AdaptiveDebouncePolicy policy = new AdaptiveDebouncePolicy();
+        DebounceLearningBurst burst = new DebounceLearningBurst();
+        for (int i = 0; i <= 6; i++) {
+            event(burst, policy, APP, 1000 + i * 50L);
+        }
+        burst.onCheckSubmitted(policy, true);
+        event(burst, policy, OTHER, 1320);
+
+        assertEquals(Math.max(300, Const.ADAPTIVE_MAX_WAIT_MIN_MS), policy.getMaxWaitMillis(APP));
+        assertEquals(Const.CONTENT_CHECK_MAX_WAIT_MS, policy.getMaxWaitMillis(OTHER));
+    }
+
+    private static void event(DebounceLearningBurst burst, AdaptiveDebouncePolicy policy,
+                              String packageName, long now) {
+        burst.onContentEvent(policy, packageName, now);
+        policy.onContentEvent(packageName, now);
+    }
+}
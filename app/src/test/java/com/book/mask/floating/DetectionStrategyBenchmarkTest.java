@@ -0,0 +1,151 @@
+package com.book.mask.floating;
+
+import com.book.mask.config.KeywordMatcher;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 对比三种关键词检测方式的跨进程调用次数：全量遍历（每个子节点一次 getChild）、
+ * 按控件 ID 查询（每个 ID 一次）、按文字查询（每个关键词一次）。
+ * 节点树按常见信息流页面的形状构造：顶部 Tab 栏 + 若干卡片，每张卡片有标题、作者、互动数等子节点，
+ * 经快照格式序列化再读回后交给 {@link FloatHelper} 的实际实现，三种方式的结论必须相同。
+ */
+public class DetectionStrategyBenchmarkTest {
+
+    private static final String PACKAGE = "com.example.feed";
+    private static final String TAB_ID = PACKAGE + ":id/tab_title";
+    private static final int MAX_KEYWORDS = 4;
+
+    private static final class Cost {
+        private int binderCalls;
+        private boolean matched;
+    }
+
+    @Test
+    public void targetedQueriesNeedFarFewerCrossProcessCallsThanTraversal() {
+        KeywordMatcher matcher = KeywordMatcher.compile("推荐 精选");
+        int[] cardCounts = {10, 50, 200};
+
+        for (int cards : cardCounts) {
+            for (boolean onTargetTab : new boolean[]{true, false}) {
+                ScanNode root = buildFeedPage(cards, onTargetTab);
+
+                Cost traversal = traverse(root, matcher);
+                Cost byViewId = findByViewIds(root, new String[]{TAB_ID}, matcher);
+                Cost byText = findByText(root, matcher);
+
+                assertEquals(onTargetTab, traversal.matched);
+                assertEquals(onTargetTab, byViewId.matched);
+                assertEquals(onTargetTab, byText.matched);
+                assertTrue(byViewId.binderCalls < traversal.binderCalls);
+                assertTrue(byText.binderCalls < traversal.binderCalls);
+            }
+        }
+    }
+
+    @Test
+    public void traversalCostGrowsWithPageWhileQueriesStayConstant() {
+        KeywordMatcher matcher = KeywordMatcher.compile("推荐");
+
+        Cost smallTraversal = traverse(buildFeedPage(10, false), matcher);
+        Cost largeTraversal = traverse(buildFeedPage(200, false), matcher);
+        Cost smallViewId = findByViewIds(buildFeedPage(10, false), new String[]{TAB_ID}, matcher);
+        Cost largeViewId = findByViewIds(buildFeedPage(200, false), new String[]{TAB_ID}, matcher);
+
+        assertTrue(largeTraversal.binderCalls > smallTraversal.binderCalls * 10);
+        assertEquals(smallViewId.binderCalls, largeViewId.binderCalls);
+    }
+
+    @Test
+    public void cachedPathProbeCostsOnlyPathDepth() {
+        KeywordMatcher matcher = KeywordMatcher.compile("推荐");
+        ScanNode root = buildFeedPage(200, true);
+        TextScanResult full = FloatHelper.findTargetText(root, matcher, TextScanBudget.DEFAULT,
+                null, null);
+        assertTrue(full.isMatched());
+        int[] path = full.getHitPath();
+        assertNotNull(path);
+
+        TreeSnapshotReplay.Counter counter = new TreeSnapshotReplay.Counter();
+        assertTrue(FloatHelper.probePath(TreeSnapshotReplay.counting(root, counter), path,
+                full.getHitViewId(), matcher));
+        assertEquals(path.length, counter.binderCalls);
+    }
+
+    @Test
+    public void textQueryMissIsNotTrusted() {
+        KeywordMatcher matcher = KeywordMatcher.compile("精选");
+
+        assertNull(FloatHelper.findByText(buildFeedPage(10, false), matcher, MAX_KEYWORDS));
+    }
+
+    /**
+     * 顶部 Tab 栏 + cards 张卡片。onTargetTab 为 false 时 Tab 栏文字换成非关键词（如进入了搜索页）。
+     */
+    private static ScanNode buildFeedPage(int cards, boolean onTargetTab) {
+        TreeSnapshot.Node tabBar = new TreeSnapshot.Node(null, PACKAGE + ":id/tab_bar");
+        String[] tabs = onTargetTab
+                ? new String[]{"关注", "推荐", "同城"}
+                : new String[]{"综合", "视频", "用户"};
+        for (String tab : tabs) {
+            tabBar.add(new TreeSnapshot.Node(null, PACKAGE + ":id/tab_container")
+                    .add(new TreeSnapshot.Node(tab, TAB_ID)));
+        }
+
+        TreeSnapshot.Node feed = new TreeSnapshot.Node(null, PACKAGE + ":id/feed_list");
+        for (int i = 0; i < cards; i++) {
+            TreeSnapshot.Node card = new TreeSnapshot.Node(null, PACKAGE + ":id/card");
+            card.add(new TreeSnapshot.Node("第" + i + "条内容的标题，推荐给你", PACKAGE + ":id/title"))
+                    .add(new TreeSnapshot.Node("作者" + i, PACKAGE + ":id/author"))
+                    .add(new TreeSnapshot.Node(null, PACKAGE + ":id/action_bar")
+                            .add(new TreeSnapshot.Node(String.valueOf(i * 7),
+                                    PACKAGE + ":id/like_count"))
+                            .add(new TreeSnapshot.Node(String.valueOf(i * 3),
+                                    PACKAGE + ":id/comment_count")));
+            feed.add(card);
+        }
+
+        TreeSnapshot snapshot = new TreeSnapshot();
+        snapshot.packageName = PACKAGE;
+        snapshot.root = new TreeSnapshot.Node(null, null)
+                .add(new TreeSnapshot.Node(null, PACKAGE + ":id/content")
+                        .add(feed)
+                        .add(tabBar));
+        return TreeSnapshotReplay.roundTrip(snapshot).root;
+    }
+
+    private static Cost traverse(ScanNode root, KeywordMatcher matcher) {
+        TreeSnapshotReplay.Counter counter = new TreeSnapshotReplay.Counter();
+        TextScanResult result = FloatHelper.findTargetText(
+                TreeSnapshotReplay.counting(root, counter), matcher, TextScanBudget.DEFAULT,
+                null, null);
+        return cost(counter, result);
+    }
+
+    private static Cost findByViewIds(ScanNode root, String[] viewIds, KeywordMatcher matcher) {
+        TreeSnapshotReplay.Counter counter = new TreeSnapshotReplay.Counter();
+        TextScanResult result = FloatHelper.findByViewIds(
+                TreeSnapshotReplay.counting(root, counter), viewIds, matcher);
+        return cost(counter, result);
+    }
+
+    /** 按文字查询只信任命中，未命中时记为 false。 */
+    private static Cost findByText(ScanNode root, KeywordMatcher matcher) {
+        TreeSnapshotReplay.Counter counter = new TreeSnapshotReplay.Counter();
+        TextScanResult result = FloatHelper.findByText(
+                TreeSnapshotReplay.counting(root, counter), matcher, MAX_KEYWORDS);
+        return cost(counter, result);
+    }
+
+    private static Cost cost(TreeSnapshotReplay.Counter counter, TextScanResult result) {
+        Cost cost = new Cost();
+        cost.binderCalls = counter.binderCalls;
+        cost.matched = result != null && result.isMatched();
+        return cost;
+    }
+}
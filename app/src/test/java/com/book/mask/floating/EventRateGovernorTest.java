@@ -0,0 +1,120 @@
+package com.book.mask.floating;
+
+import android.view.accessibility.AccessibilityEvent;
+
+import com.book.mask.constant.Const;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EventRateGovernorTest {
+
+    private static final String TARGET = "com.example.video";
+    private static final String OTHER = "com.example.other";
+    private static final int CONTENT = AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED;
+    private static final int STATE = AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED;
+
+    @Test
+    public void contentEventsOfOtherPackagesAreSkipped() {
+        EventRateGovernor governor = new EventRateGovernor();
+
+        assertEquals(EventRateGovernor.Verdict.NOT_TARGET,
+                governor.admit(CONTENT, OTHER, TARGET, 1000));
+        assertEquals(EventRateGovernor.Verdict.NOT_TARGET,
+                governor.admit(CONTENT, TARGET, null, 1000));
+        assertEquals(EventRateGovernor.Verdict.NOT_TARGET,
+                governor.admit(CONTENT, null, TARGET, 1000));
+        assertEquals(3, governor.getSkippedNotTarget());
+    }
+
+    @Test
+    public void windowStateEventsAlwaysPass() {
+        EventRateGovernor governor = new EventRateGovernor();
+        exhaust(governor, 1000);
+
+        assertEquals(EventRateGovernor.Verdict.PASS, governor.admit(STATE, TARGET, TARGET, 1000));
+        assertEquals(EventRateGovernor.Verdict.PASS, governor.admit(STATE, OTHER, null, 1000));
+    }
+
+    @Test
+    public void burstWithinCapacityPassesAndExcessIsThrottled() {
+        EventRateGovernor governor = new EventRateGovernor();
+        for (int i = 0; i < Const.EVENT_GOVERNOR_BURST; i++) {
+            assertEquals(EventRateGovernor.Verdict.PASS,
+                    governor.admit(CONTENT, TARGET, TARGET, 1000));
+        }
+
+        assertEquals(EventRateGovernor.Verdict.THROTTLED,
+                governor.admit(CONTENT, TARGET, TARGET, 1000));
+        assertTrue(governor.isDegraded(TARGET, 1000));
+        assertEquals(1, governor.getDegradations());
+    }
+
+    @Test
+    public void tokensRefillAtConfiguredRate() {
+        EventRateGovernor governor = new EventRateGovernor();
+        exhaust(governor, 1000);
+
+        long oneToken = 1000L / Const.EVENT_GOVERNOR_EVENTS_PER_SECOND;
+        assertEquals(EventRateGovernor.Verdict.PASS,
+                governor.admit(CONTENT, TARGET, TARGET, 1000 + oneToken));
+        assertEquals(EventRateGovernor.Verdict.THROTTLED,
+                governor.admit(CONTENT, TARGET, TARGET, 1000 + oneToken));
+    }
+
+    @Test
+    public void sustainedOverloadCountsOneDegradationUntilRecovered() {
+        EventRateGovernor governor = new EventRateGovernor();
+        long now = 1000;
+        exhaust(governor, now);
+        // 持续以两倍预算的速率到达，整段只算一次降级
+        for (int i = 0; i < 100; i++) {
+            now += 1000L / Const.EVENT_GOVERNOR_EVENTS_PER_SECOND / 2;
+            governor.admit(CONTENT, TARGET, TARGET, now);
+        }
+        assertEquals(1, governor.getDegradations());
+        assertTrue(governor.getThrottled() > 0);
+
+        now += Const.EVENT_GOVERNOR_DEGRADE_HOLD_MS;
+        assertFalse(governor.isDegraded(TARGET, now));
+        assertEquals(EventRateGovernor.Verdict.PASS, governor.admit(CONTENT, TARGET, TARGET, now));
+
+        exhaust(governor, now);
+        assertEquals(2, governor.getDegradations());
+    }
+
+    @Test
+    public void packagesHaveIndependentBudgets() {
+        EventRateGovernor governor = new EventRateGovernor();
+        exhaust(governor, 1000);
+
+        assertEquals(EventRateGovernor.Verdict.PASS, governor.admit(CONTENT, OTHER, OTHER, 1000));
+        assertFalse(governor.isDegraded(OTHER, 1000));
+    }
+
+    @Test
+    public void reportComputesScanRatePerMinute() {
+        EventRateGovernor governor = new EventRateGovernor();
+        ScanLoadMetrics metrics = new ScanLoadMetrics();
+        assertFalse(governor.shouldReport(1));
+        for (int i = 0; i < 30; i++) {
+            metrics.recordScan(4, 10);
+        }
+
+        long now = 1 + Const.EVENT_GOVERNOR_REPORT_INTERVAL_MS;
+        assertTrue(governor.shouldReport(now));
+        String report = governor.report(now, metrics);
+        assertTrue(report, report.contains("scansPerMinute=30"));
+        assertTrue(report, report.contains("scanCpuMsPerMinute=120"));
+        assertFalse(governor.shouldReport(now + 1));
+    }
+
+    private static void exhaust(EventRateGovernor governor, long now) {
+        while (governor.admit(CONTENT, TARGET, TARGET, now) == EventRateGovernor.Verdict.PASS) {
+            // 耗尽令牌
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.book.mask.floating;
+
+import android.content.ComponentCallbacks2;
+
+import com.book.mask.constant.Const;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FloatingViewPoolTest {
+
+    private static final String DOUYIN = "com.ss.android.ugc.aweme";
+    private static final String BILI = "tv.danmaku.bili";
+    private static final String ZHIHU = "com.zhihu.android";
+
+    @Test
+    public void capacityFollowsMemoryClass() {
+        assertEquals(0, FloatingViewPool.capacityForMemoryClass(64));
+        assertEquals(1, FloatingViewPool.capacityForMemoryClass(
+                Const.FLOATING_VIEW_POOL_MEMORY_CLASS_PER_VIEW_MB));
+        assertEquals(2, FloatingViewPool.capacityForMemoryClass(
+                Const.FLOATING_VIEW_POOL_MEMORY_CLASS_PER_VIEW_MB * 2));
+        assertEquals(Const.FLOATING_VIEW_POOL_MAX_SIZE,
+                FloatingViewPool.capacityForMemoryClass(4096));
+    }
+
+    @Test
+    public void acquirePrefersSameAppThenEldest() {
+        FloatingViewPool<String> pool = new FloatingViewPool<>(3);
+        pool.release(DOUYIN, "douyin-view");
+        pool.release(BILI, "bili-view");
+
+        assertEquals("bili-view", pool.acquire(BILI));
+        assertEquals("douyin-view", pool.acquire(ZHIHU));
+        assertNull(pool.acquire(DOUYIN));
+    }
+
+    @Test
+    public void releaseEvictsLeastRecentlyUsedApp() {
+        FloatingViewPool<String> pool = new FloatingViewPool<>(2);
+        pool.release(DOUYIN, "douyin-view");
+        pool.release(BILI, "bili-view");
+        pool.release(ZHIHU, "zhihu-view");
+
+        assertEquals(2, pool.size());
+        assertFalse(pool.contains(DOUYIN));
+        assertTrue(pool.contains(BILI));
+        assertTrue(pool.contains(ZHIHU));
+    }
+
+    @Test
+    public void zeroCapacityKeepsNothing() {
+        FloatingViewPool<String> pool = new FloatingViewPool<>(0);
+
+        assertFalse(pool.release(DOUYIN, "douyin-view"));
+        assertEquals(0, pool.size());
+    }
+
+    @Test
+    public void trimMemoryShrinksByLevel() {
+        assertEquals(3, FloatingViewPool.sizeAfterTrim(
+                ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE, 3));
+        assertEquals(1, FloatingViewPool.sizeAfterTrim(
+                ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW, 3));
+        assertEquals(0, FloatingViewPool.sizeAfterTrim(
+                ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL, 3));
+        assertEquals(3, FloatingViewPool.sizeAfterTrim(
+                ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN, 3));
+        assertEquals(0, FloatingViewPool.sizeAfterTrim(
+                ComponentCallbacks2.TRIM_MEMORY_COMPLETE, 3));
+
+        FloatingViewPool<String> pool = new FloatingViewPool<>(3);
+        pool.release(DOUYIN, "douyin-view");
+        pool.release(BILI, "bili-view");
+        assertEquals(1, pool.trimTo(1));
+        assertTrue(pool.contains(BILI));
+    }
+}
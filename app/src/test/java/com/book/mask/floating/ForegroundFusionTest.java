@@ -0,0 +1,85 @@
+package com.book.mask.floating;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ForegroundFusionTest {
+
+    private static final String TARGET = "com.ss.android.ugc.aweme";
+    private static final String HOME = "com.miui.home";
+    private static final String OTHER = "com.tencent.mm";
+
+    @Test
+    public void usageAgreeingWithEventConfirmsIt() {
+        ForegroundFusion.Verdict verdict = ForegroundFusion.resolve(HOME, "", HOME, TARGET);
+
+        assertEquals(HOME, verdict.packageName);
+        assertEquals(ForegroundFusion.Source.USAGE_EVENTS, verdict.decidedBy);
+        assertTrue(verdict.confirmed);
+    }
+
+    @Test
+    public void entryIsNeverDelayedByOtherSources() {
+        ForegroundFusion.Verdict verdict = ForegroundFusion.resolve(TARGET, "", HOME, null);
+
+        assertEquals(TARGET, verdict.packageName);
+        assertEquals(ForegroundFusion.Source.EVENT, verdict.decidedBy);
+        assertFalse(verdict.confirmed);
+        assertFalse(ForegroundFusion.needsActiveWindow(TARGET, null));
+        assertFalse(ForegroundFusion.needsActiveWindow(TARGET, TARGET));
+    }
+
+    @Test
+    public void unclearActiveWindowKeepsEventPackage() {
+        ForegroundFusion.Verdict verdict = ForegroundFusion.resolve(HOME, "", "", TARGET);
+
+        assertEquals(HOME, verdict.packageName);
+        assertEquals(ForegroundFusion.Source.EVENT, verdict.decidedBy);
+        assertFalse(verdict.confirmed);
+    }
+
+    @Test
+    public void activeWindowOnTargetDropsBackgroundEvent() {
+        ForegroundFusion.Verdict verdict = ForegroundFusion.resolve(HOME, TARGET, "", TARGET);
+
+        assertTrue(verdict.isDropped());
+        assertNull(verdict.packageName);
+        assertEquals(ForegroundFusion.Source.ACTIVE_WINDOW, verdict.decidedBy);
+    }
+
+    @Test
+    public void activeWindowOnTargetOutranksUsageAgreement() {
+        ForegroundFusion.Verdict verdict = ForegroundFusion.resolve(HOME, TARGET, HOME, TARGET);
+
+        assertTrue(verdict.isDropped());
+        assertEquals(ForegroundFusion.Source.ACTIVE_WINDOW, verdict.decidedBy);
+        assertFalse(verdict.confirmed);
+    }
+
+    @Test
+    public void usageAloneCannotVetoLeaving() {
+        // UsageEvents 可能晚于窗口事件写入，仍指向目标 APP 时不据此丢弃离开事件
+        ForegroundFusion.Verdict verdict = ForegroundFusion.resolve(HOME, HOME, TARGET, TARGET);
+
+        assertEquals(HOME, verdict.packageName);
+        assertEquals(ForegroundFusion.Source.EVENT, verdict.decidedBy);
+        assertFalse(verdict.confirmed);
+    }
+
+    @Test
+    public void activeWindowOverridesEventAndIsConfirmedByUsage() {
+        ForegroundFusion.Verdict unconfirmed = ForegroundFusion.resolve(HOME, OTHER, "", TARGET);
+        assertEquals(OTHER, unconfirmed.packageName);
+        assertEquals(ForegroundFusion.Source.ACTIVE_WINDOW, unconfirmed.decidedBy);
+        assertFalse(unconfirmed.confirmed);
+
+        ForegroundFusion.Verdict confirmed = ForegroundFusion.resolve(HOME, OTHER, OTHER, TARGET);
+        assertEquals(OTHER, confirmed.packageName);
+        assertEquals(ForegroundFusion.Source.USAGE_EVENTS, confirmed.decidedBy);
+        assertTrue(confirmed.confirmed);
+    }
+}
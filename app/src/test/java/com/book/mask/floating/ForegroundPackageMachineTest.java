@@ -0,0 +1,406 @@
+package com.book.mask.floating;
+
+import com.book.mask.constant.Const;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ForegroundPackageMachineTest {
+
+    private static final String TARGET = "com.ss.android.ugc.aweme";
+    private static final String OTHER_TARGET = "tv.danmaku.bili";
+    private static final String HOME = "com.miui.home";
+    private static final String SYSTEM_UI = ForegroundPackageMachine.SYSTEM_UI_PACKAGE;
+
+    private static final class FakeEnvironment implements ForegroundPackageMachine.Environment {
+        String currentTarget;
+        boolean floatingWindowVisible;
+        boolean animationDisabled;
+        String activeRoot = "";
+        String ignorable = "com.book.mask";
+
+        @Override
+        public String getCurrentTargetPackage() {
+            return currentTarget;
+        }
+
+        @Override
+        public boolean isFloatingWindowVisible() {
+            return floatingWindowVisible;
+        }
+
+        @Override
+        public boolean isAnimationDisabled() {
+            return animationDisabled;
+        }
+
+        @Override
+        public String getActiveRootPackage() {
+            return activeRoot;
+        }
+
+        @Override
+        public boolean isIgnorablePackage(String packageName) {
+            return ignorable.equals(packageName);
+        }
+    }
+
+    private FakeEnvironment environment;
+    private ForegroundPackageMachine machine;
+
+    @Before
+    public void setUp() {
+        environment = new FakeEnvironment();
+        machine = new ForegroundPackageMachine(environment, true);
+    }
+
+    @Test
+    public void enteringTargetAppliesPackage() {
+        assertCommands(machine.onPackageObserved(TARGET, "窗口事件", 0),
+                "APPLY_PACKAGE(" + TARGET + ")");
+    }
+
+    @Test
+    public void emptyPackageIsIgnored() {
+        assertCommands(machine.onPackageObserved("", "窗口事件", 0));
+        assertCommands(machine.onPackageObserved(null, "窗口事件", 0));
+    }
+
+    @Test
+    public void leavingWithVisibleWindowKeepsWarmAndSchedulesRecheck() {
+        inTargetWithVisibleWindow();
+
+        assertCommands(machine.onPackageObserved(HOME, "窗口事件", 1000),
+                "CANCEL_CONTENT_CHECK",
+                "LEAVE_TARGET_KEEP_WARM",
+                "SCHEDULE_TIMER(TRANSITION_STEP, " + Const.PACKAGE_TRANSITION_CHECK_DELAY_MS + ")");
+        assertEquals(ForegroundPackageMachine.Phase.AWAIT_RECHECK, machine.getPhase());
+        assertTrue(machine.isTransitionPending());
+        assertEquals(1000 + Const.PACKAGE_TRANSITION_CHECK_DELAY_MS,
+                machine.getTimerDeadline(ForegroundPackageMachine.Timer.TRANSITION_STEP));
+    }
+
+    @Test
+    public void eventsDuringRecheckAreIgnored() {
+        startTransition();
+
+        List<ForegroundPackageMachine.Command> commands =
+                machine.onPackageObserved(TARGET, "窗口事件", 1100);
+        assertCommands(commands, "TRACE");
+    }
+
+    @Test
+    public void recheckOnOtherPackageResumesDetection() {
+        startTransition();
+        environment.currentTarget = null;
+        environment.activeRoot = HOME;
+
+        assertCommands(fire(ForegroundPackageMachine.Timer.TRANSITION_STEP),
+                "NOTE", "APPLY_PACKAGE(" + HOME + ")");
+        assertEquals(ForegroundPackageMachine.Phase.IDLE, machine.getPhase());
+        assertFalse(machine.isTimerScheduled(ForegroundPackageMachine.Timer.TRANSITION_STEP));
+    }
+
+    @Test
+    public void recheckBackOnTargetPausesForAnimationTail() {
+        startTransition();
+        environment.currentTarget = null;
+        environment.activeRoot = TARGET;
+
+        assertCommands(fire(ForegroundPackageMachine.Timer.TRANSITION_STEP),
+                "SCHEDULE_TIMER(TRANSITION_STEP, "
+                        + PackageTransitionTiming.getEarlyReturnPauseDuration() + ")");
+        assertEquals(ForegroundPackageMachine.Phase.EARLY_RETURN_PAUSE, machine.getPhase());
+
+        assertCommands(fire(ForegroundPackageMachine.Timer.TRANSITION_STEP),
+                "NOTE", "APPLY_PACKAGE(" + TARGET + ")");
+        assertEquals(ForegroundPackageMachine.Phase.IDLE, machine.getPhase());
+    }
+
+    @Test
+    public void calibratedProfileDrivesRecheckAndEarlyReturnPause() {
+        PackageTransitionTiming.Profile fast = new PackageTransitionTiming.Profile(120, 400);
+        machine = new ForegroundPackageMachine(environment, true,
+                packageName -> TARGET.equals(packageName) ? fast : PackageTransitionTiming.DEFAULT);
+        inTargetWithVisibleWindow();
+
+        assertCommands(machine.onPackageObserved(HOME, "窗口事件", 1000),
+                "CANCEL_CONTENT_CHECK", "LEAVE_TARGET_KEEP_WARM", "SCHEDULE_TIMER(TRANSITION_STEP, 120)");
+        environment.currentTarget = null;
+
+        assertCommands(fire(ForegroundPackageMachine.Timer.TRANSITION_STEP),
+                "SCHEDULE_TIMER(TRANSITION_STEP, "
+                        + (400 - 120 + Const.TRANSITION_EARLY_RETURN_BUFFER_MS) + ")");
+    }
+
+    @Test
+    public void recheckWithUnknownPackageWaitsForLaterEvents() {
+        startTransition();
+        environment.currentTarget = null;
+        environment.activeRoot = "";
+
+        assertCommands(fire(ForegroundPackageMachine.Timer.TRANSITION_STEP), "NOTE");
+        assertEquals(ForegroundPackageMachine.Phase.IDLE, machine.getPhase());
+    }
+
+    @Test
+    public void earlyReturnPauseEndingElsewhereAppliesThatPackage() {
+        startTransition();
+        environment.currentTarget = null;
+        environment.activeRoot = TARGET;
+        fire(ForegroundPackageMachine.Timer.TRANSITION_STEP);
+        environment.activeRoot = OTHER_TARGET;
+
+        assertCommands(fire(ForegroundPackageMachine.Timer.TRANSITION_STEP),
+                "NOTE", "APPLY_PACKAGE(" + OTHER_TARGET + ")");
+    }
+
+    @Test
+    public void confirmedLeaveSkipsRecheck() {
+        inTargetWithVisibleWindow();
+
+        assertCommands(machine.onPackageObserved(HOME, "窗口事件", 1000, true),
+                "CANCEL_CONTENT_CHECK", "LEAVE_TARGET_KEEP_WARM", "APPLY_PACKAGE(" + HOME + ")");
+        assertFalse(machine.isTransitionPending());
+        assertFalse(machine.isTimerScheduled(ForegroundPackageMachine.Timer.TRANSITION_STEP));
+    }
+
+    @Test
+    public void confirmedPackageDuringRecheckEndsTransition() {
+        startTransition();
+        environment.currentTarget = null;
+
+        assertCommands(machine.onPackageObserved(TARGET, "窗口事件", 1100, true),
+                "CANCEL_TIMER(TRANSITION_STEP)", "NOTE", "APPLY_PACKAGE(" + TARGET + ")");
+        assertFalse(machine.isTransitionPending());
+    }
+
+    @Test
+    public void confirmationDoesNotBypassFloatingShowDebounce() {
+        machine.onFloatingWindowShown(0);
+
+        assertCommands(machine.onPackageObserved(HOME, "窗口事件", 100, true), "TRACE");
+    }
+
+    @Test
+    public void recheckDisabledLeavesImmediately() {
+        machine = new ForegroundPackageMachine(environment, false);
+        inTargetWithVisibleWindow();
+
+        assertCommands(machine.onPackageObserved(HOME, "窗口事件", 0),
+                "CANCEL_CONTENT_CHECK", "NOTE", "LEAVE_TARGET");
+        assertFalse(machine.isTransitionPending());
+    }
+
+    @Test
+    public void disabledAnimationsLeaveImmediately() {
+        inTargetWithVisibleWindow();
+        environment.animationDisabled = true;
+
+        assertCommands(machine.onPackageObserved(HOME, "窗口事件", 0),
+                "CANCEL_CONTENT_CHECK", "NOTE", "LEAVE_TARGET");
+        assertFalse(machine.isTransitionPending());
+    }
+
+    @Test
+    public void leavingWithoutVisibleWindowAppliesDirectly() {
+        environment.currentTarget = TARGET;
+        environment.floatingWindowVisible = false;
+
+        assertCommands(machine.onPackageObserved(HOME, "窗口事件", 0),
+                "APPLY_PACKAGE(" + HOME + ")");
+    }
+
+    @Test
+    public void systemUiIsConfirmedOnceAfterDelay() {
+        inTargetWithVisibleWindow();
+
+        assertCommands(machine.onPackageObserved(SYSTEM_UI, "窗口事件", 0),
+                "SCHEDULE_TIMER(PACKAGE_CONFIRMATION, " + Const.SYSTEM_UI_CONFIRM_DELAY_MS + ")");
+        // 后续同类事件不延长等待时间
+        assertCommands(machine.onPackageObserved(SYSTEM_UI, "窗口事件", 50));
+        assertEquals(Const.SYSTEM_UI_CONFIRM_DELAY_MS,
+                machine.getTimerDeadline(ForegroundPackageMachine.Timer.PACKAGE_CONFIRMATION));
+
+        environment.activeRoot = SYSTEM_UI;
+        assertCommands(fire(ForegroundPackageMachine.Timer.PACKAGE_CONFIRMATION),
+                "NOTE", "SET_SYSTEM_UI_SUSPENDED(true)");
+        assertTrue(machine.isSuspendedForSystemUi());
+
+        // 暂停期间再次看到 SystemUI 不重复确认；回到目标 APP 则恢复
+        assertCommands(machine.onPackageObserved(SYSTEM_UI, "窗口事件", 500));
+        assertCommands(machine.onPackageObserved(TARGET, "窗口事件", 600),
+                "APPLY_PACKAGE(" + TARGET + ")", "SET_SYSTEM_UI_SUSPENDED(false)");
+        assertFalse(machine.isSuspendedForSystemUi());
+    }
+
+    @Test
+    public void leavingWhileSuspendedForSystemUiSkipsRecheck() {
+        inTargetWithVisibleWindow();
+        machine.onPackageObserved(SYSTEM_UI, "窗口事件", 0);
+        environment.activeRoot = SYSTEM_UI;
+        fire(ForegroundPackageMachine.Timer.PACKAGE_CONFIRMATION);
+
+        assertCommands(machine.onPackageObserved(HOME, "窗口事件", 500),
+                "APPLY_PACKAGE(" + HOME + ")", "SET_SYSTEM_UI_SUSPENDED(false)");
+        assertFalse(machine.isTransitionPending());
+    }
+
+    @Test
+    public void systemUiConfirmationBackOnTargetKeepsWindow() {
+        inTargetWithVisibleWindow();
+        machine.onPackageObserved(SYSTEM_UI, "窗口事件", 0);
+        environment.activeRoot = TARGET;
+
+        assertCommands(fire(ForegroundPackageMachine.Timer.PACKAGE_CONFIRMATION), "NOTE");
+        assertFalse(machine.isSuspendedForSystemUi());
+    }
+
+    @Test
+    public void systemUiConfirmationOnOtherPackageAppliesIt() {
+        inTargetWithVisibleWindow();
+        machine.onPackageObserved(SYSTEM_UI, "窗口事件", 0);
+        environment.activeRoot = HOME;
+
+        assertCommands(fire(ForegroundPackageMachine.Timer.PACKAGE_CONFIRMATION),
+                "NOTE", "APPLY_PACKAGE(" + HOME + ")");
+    }
+
+    @Test
+    public void unclearConfirmationRetries() {
+        inTargetWithVisibleWindow();
+        machine.onPackageObserved(SYSTEM_UI, "窗口事件", 0);
+
+        environment.activeRoot = "";
+        assertCommands(fire(ForegroundPackageMachine.Timer.PACKAGE_CONFIRMATION),
+                "NOTE", "SCHEDULE_TIMER(PACKAGE_CONFIRMATION, "
+                        + ForegroundPackageMachine.UNKNOWN_PACKAGE_RETRY_DELAY_MS + ")");
+
+        environment.activeRoot = environment.ignorable;
+        assertCommands(fire(ForegroundPackageMachine.Timer.PACKAGE_CONFIRMATION),
+                "NOTE", "SCHEDULE_TIMER(PACKAGE_CONFIRMATION, "
+                        + ForegroundPackageMachine.UNKNOWN_PACKAGE_RETRY_DELAY_MS + ")");
+    }
+
+    @Test
+    public void confirmationIsDroppedWhenTargetChangedMeanwhile() {
+        inTargetWithVisibleWindow();
+        machine.onPackageObserved(SYSTEM_UI, "窗口事件", 0);
+        environment.currentTarget = OTHER_TARGET;
+        environment.activeRoot = SYSTEM_UI;
+
+        assertCommands(fire(ForegroundPackageMachine.Timer.PACKAGE_CONFIRMATION));
+        assertFalse(machine.isSuspendedForSystemUi());
+    }
+
+    @Test
+    public void observingOtherPackageCancelsPendingConfirmation() {
+        inTargetWithVisibleWindow();
+        machine.onPackageObserved(SYSTEM_UI, "窗口事件", 0);
+
+        assertCommands(machine.onPackageObserved(TARGET, "窗口事件", 50),
+                "CANCEL_TIMER(PACKAGE_CONFIRMATION)", "APPLY_PACKAGE(" + TARGET + ")");
+        assertFalse(machine.isTimerScheduled(ForegroundPackageMachine.Timer.PACKAGE_CONFIRMATION));
+        // 已取消的定时器即使仍被送达也不产生指令
+        assertCommands(machine.onTimer(ForegroundPackageMachine.Timer.PACKAGE_CONFIRMATION, 100));
+    }
+
+    @Test
+    public void floatingShowDebounceIgnoresPackagesThenRechecks() {
+        List<ForegroundPackageMachine.Command> commands = machine.onFloatingWindowShown(1000);
+        assertCommands(commands, "SCHEDULE_TIMER(FLOATING_SHOW_DEBOUNCE, "
+                + Const.FLOATING_SHOW_PACKAGE_DETECTION_DEBOUNCE_MS + ")");
+        assertTrue(machine.isPackageDetectPaused(1200));
+        assertCommands(machine.onPackageObserved(HOME, "窗口事件", 1200), "TRACE");
+
+        environment.activeRoot = HOME;
+        long end = 1000 + Const.FLOATING_SHOW_PACKAGE_DETECTION_DEBOUNCE_MS;
+        assertCommands(machine.onTimer(ForegroundPackageMachine.Timer.FLOATING_SHOW_DEBOUNCE, end),
+                "NOTE", "APPLY_PACKAGE(" + HOME + ")");
+        assertFalse(machine.isPackageDetectPaused(end));
+    }
+
+    @Test
+    public void floatingShowDebounceFiringEarlyReschedulesRemainder() {
+        machine.onFloatingWindowShown(1000);
+
+        assertCommands(machine.onTimer(ForegroundPackageMachine.Timer.FLOATING_SHOW_DEBOUNCE, 1400),
+                "SCHEDULE_TIMER(FLOATING_SHOW_DEBOUNCE, "
+                        + (Const.FLOATING_SHOW_PACKAGE_DETECTION_DEBOUNCE_MS - 400) + ")");
+        assertTrue(machine.isPackageDetectPaused(1400));
+    }
+
+    @Test
+    public void floatingShowDebounceWithUnknownPackageOnlyNotes() {
+        machine.onFloatingWindowShown(0);
+
+        assertCommands(machine.onTimer(ForegroundPackageMachine.Timer.FLOATING_SHOW_DEBOUNCE,
+                Const.FLOATING_SHOW_PACKAGE_DETECTION_DEBOUNCE_MS), "NOTE");
+    }
+
+    @Test
+    public void repeatedShowRestartsDebounce() {
+        machine.onFloatingWindowShown(0);
+
+        assertCommands(machine.onFloatingWindowShown(300),
+                "CANCEL_TIMER(FLOATING_SHOW_DEBOUNCE)",
+                "SCHEDULE_TIMER(FLOATING_SHOW_DEBOUNCE, "
+                        + Const.FLOATING_SHOW_PACKAGE_DETECTION_DEBOUNCE_MS + ")");
+        assertTrue(machine.isPackageDetectPaused(600));
+    }
+
+    @Test
+    public void detectionSuspendedCancelsTransitionAndConfirmation() {
+        startTransition();
+
+        assertCommands(machine.onDetectionSuspended(), "CANCEL_TIMER(TRANSITION_STEP)");
+        assertFalse(machine.isTransitionPending());
+        assertCommands(fire(ForegroundPackageMachine.Timer.TRANSITION_STEP));
+    }
+
+    @Test
+    public void resetCancelsEveryTimer() {
+        inTargetWithVisibleWindow();
+        machine.onPackageObserved(SYSTEM_UI, "窗口事件", 0);
+        machine.onFloatingWindowShown(0);
+
+        assertCommands(machine.reset(),
+                "CANCEL_TIMER(PACKAGE_CONFIRMATION)", "CANCEL_TIMER(FLOATING_SHOW_DEBOUNCE)");
+        assertFalse(machine.isPackageDetectPaused(1));
+        for (ForegroundPackageMachine.Timer timer : ForegroundPackageMachine.Timer.values()) {
+            assertFalse(machine.isTimerScheduled(timer));
+        }
+    }
+
+    private void inTargetWithVisibleWindow() {
+        environment.currentTarget = TARGET;
+        environment.floatingWindowVisible = true;
+        environment.activeRoot = TARGET;
+    }
+
+    private void startTransition() {
+        inTargetWithVisibleWindow();
+        machine.onPackageObserved(HOME, "窗口事件", 1000);
+    }
+
+    private List<ForegroundPackageMachine.Command> fire(ForegroundPackageMachine.Timer timer) {
+        return machine.onTimer(timer, machine.getTimerDeadline(timer));
+    }
+
+    private static void assertCommands(List<ForegroundPackageMachine.Command> commands,
+                                       String... expected) {
+        List<String> actual = new ArrayList<>();
+        for (ForegroundPackageMachine.Command command : commands) {
+            actual.add(command.toString());
+        }
+        assertEquals(Arrays.asList(expected), actual);
+    }
+}
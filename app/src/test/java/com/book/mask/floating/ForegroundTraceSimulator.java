@@ -0,0 +1,340 @@
+package com.book.mask.floating;
+
+import com.book.mask.constant.Const;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 在虚拟时钟上回放前台包名事件序列，驱动 {@link ForegroundPackageMachine}，
+ * 并按指令模拟悬浮窗的显示 / 暖态 / SystemUI 暂停，统计遮罩出现与撤下的延迟。
+ * <p>
+ * 序列文件放在 test resources 的 foreground_traces/ 下，每行一条，# 开头为注释：
+ * <pre>
+ * targets com.a com.b     目标 APP 包名
+ * animations off          系统关闭过渡动画
+ * 1000 fg com.a           真实前台切换为 com.a（即活动窗口根包名；- 表示不明确）
+ * 1000 event com.a        收到该包名的窗口事件，经 {@link ForegroundFusion} 融合后交给状态机
+ * 1000 usage com.a        UsageEvents 记录 com.a 切到前台（- 表示切换中）；不写则视为未授权
+ * 3000 poll               兜底轮询，读取当时的活动窗口包名
+ * </pre>
+ * 悬浮窗模型只关心遮罩是否覆盖屏幕：进入目标 APP 即显示，不模拟页面关键词检测。
+ */
+final class ForegroundTraceSimulator implements ForegroundPackageMachine.Environment {
+    static final String TRACE_DIR = "foreground_traces/";
+    private static final long DRAIN_MILLIS = 5000;
+
+    /** 一次真实前台切换到遮罩随之覆盖 / 撤离所用的时间；mask 为 true 表示应当覆盖到新的目标 APP。 */
+    static final class Sample {
+        final String trace;
+        final long at;
+        final boolean mask;
+        final long latency;
+
+        Sample(String trace, long at, boolean mask, long latency) {
+            this.trace = trace;
+            this.at = at;
+            this.mask = mask;
+            this.latency = latency;
+        }
+
+        @Override
+        public String toString() {
+            return trace + "@" + at + (mask ? " mask " : " unmask ") + latency + "ms";
+        }
+    }
+
+    static final class Result {
+        final List<Sample> samples = new ArrayList<>();
+        final List<ForegroundPackageMachine.Command> commands = new ArrayList<>();
+
+        List<Long> latencies(boolean mask) {
+            List<Long> values = new ArrayList<>();
+            for (Sample sample : samples) {
+                if (sample.mask == mask) {
+                    values.add(sample.latency);
+                }
+            }
+            return values;
+        }
+    }
+
+    private final String name;
+    private final Set<String> targets = new HashSet<>();
+    private final List<String[]> steps = new ArrayList<>();
+    private boolean animationDisabled;
+
+    private ForegroundPackageMachine machine;
+    private final long[] timerDeadlines = new long[ForegroundPackageMachine.Timer.values().length];
+    private Result result;
+    private long now;
+
+    private String activeRoot = "";
+    private String usageForeground = "";
+    private String currentTarget;
+    // 悬浮窗已挂载（对应 Share.isFloatingWindowVisible，暖态与 SystemUI 暂停期间仍为 true）
+    private boolean attached;
+    private boolean warm;
+    private long warmExpiresAt = -1;
+    private boolean systemUiSuspended;
+
+    // 遮罩当前覆盖的目标 APP；未覆盖时为 null
+    private String maskedPackage;
+    private long pendingSampleAt = -1;
+    private String pendingSamplePackage;
+
+    private ForegroundTraceSimulator(String name) {
+        this.name = name;
+    }
+
+    static ForegroundTraceSimulator load(String fileName) throws IOException {
+        ForegroundTraceSimulator simulator = new ForegroundTraceSimulator(fileName);
+        InputStream in = ForegroundTraceSimulator.class.getClassLoader()
+                .getResourceAsStream(TRACE_DIR + fileName);
+        if (in == null) {
+            throw new IOException("missing trace: " + fileName);
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\\s+");
+                if ("targets".equals(parts[0])) {
+                    simulator.targets.addAll(Arrays.asList(parts).subList(1, parts.length));
+                } else if ("animations".equals(parts[0])) {
+                    simulator.animationDisabled = "off".equals(parts[1]);
+                } else {
+                    simulator.steps.add(parts);
+                }
+            }
+        }
+        return simulator;
+    }
+
+    Result run(boolean recheckEnabled) {
+        machine = new ForegroundPackageMachine(this, recheckEnabled);
+        Arrays.fill(timerDeadlines, -1L);
+        result = new Result();
+        now = 0;
+        activeRoot = "";
+        usageForeground = "";
+        currentTarget = null;
+        attached = false;
+        warm = false;
+        warmExpiresAt = -1;
+        systemUiSuspended = false;
+        maskedPackage = null;
+        pendingSampleAt = -1;
+
+        long end = 0;
+        for (String[] step : steps) {
+            long at = Long.parseLong(step[0]);
+            advanceTo(at);
+            apply(step);
+            end = at;
+        }
+        advanceTo(end + DRAIN_MILLIS);
+        return result;
+    }
+
+    /**
+     * 依次触发 at 之前（含）到期的定时器；同一时刻先于序列中的事件处理。
+     */
+    private void advanceTo(long at) {
+        while (true) {
+            ForegroundPackageMachine.Timer due = null;
+            long dueAt = Long.MAX_VALUE;
+            for (ForegroundPackageMachine.Timer timer : ForegroundPackageMachine.Timer.values()) {
+                long deadline = timerDeadlines[timer.ordinal()];
+                if (deadline >= 0 && deadline <= at && deadline < dueAt) {
+                    due = timer;
+                    dueAt = deadline;
+                }
+            }
+            boolean warmDue = warm && warmExpiresAt >= 0 && warmExpiresAt <= at
+                    && warmExpiresAt < dueAt;
+            if (warmDue) {
+                now = warmExpiresAt;
+                hide();
+                continue;
+            }
+            if (due == null) {
+                break;
+            }
+            now = dueAt;
+            timerDeadlines[due.ordinal()] = -1L;
+            execute(machine.onTimer(due, now));
+        }
+        now = at;
+    }
+
+    private void apply(String[] step) {
+        switch (step[1]) {
+            case "fg":
+                activeRoot = "-".equals(step[2]) ? "" : step[2];
+                onForegroundChanged();
+                break;
+            case "event":
+                ForegroundFusion.Verdict verdict = ForegroundFusion.resolve(step[2],
+                        ForegroundFusion.needsActiveWindow(step[2], currentTarget) ? activeRoot : "",
+                        usageForeground, currentTarget);
+                if (!verdict.isDropped()) {
+                    execute(machine.onPackageObserved(verdict.packageName, "窗口事件", now,
+                            verdict.confirmed));
+                }
+                break;
+            case "usage":
+                usageForeground = "-".equals(step[2]) ? "" : step[2];
+                break;
+            case "poll":
+                if (!machine.isPackageDetectPaused(now) && !activeRoot.isEmpty()) {
+                    execute(machine.onPackageObserved(activeRoot, "定时轮询", now));
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("unknown step: " + Arrays.toString(step));
+        }
+    }
+
+    private void execute(List<ForegroundPackageMachine.Command> commands) {
+        for (ForegroundPackageMachine.Command command : commands) {
+            result.commands.add(command);
+            switch (command.type) {
+                case APPLY_PACKAGE:
+                    applyPackage(command.packageName);
+                    break;
+                case LEAVE_TARGET:
+                    currentTarget = null;
+                    hide();
+                    break;
+                case LEAVE_TARGET_KEEP_WARM:
+                    currentTarget = null;
+                    if (attached && !warm) {
+                        warm = true;
+                        warmExpiresAt = now + Const.PACKAGE_TRANSITION_WINDOW_REUSE_MS;
+                    }
+                    break;
+                case SET_SYSTEM_UI_SUSPENDED:
+                    systemUiSuspended = command.suspended;
+                    break;
+                case SCHEDULE_TIMER:
+                    timerDeadlines[command.timer.ordinal()] = now + command.delayMillis;
+                    break;
+                case CANCEL_TIMER:
+                    timerDeadlines[command.timer.ordinal()] = -1L;
+                    break;
+                default:
+                    break;
+            }
+            updateMask();
+        }
+    }
+
+    private void applyPackage(String packageName) {
+        if (targets.contains(packageName)) {
+            if (!packageName.equals(currentTarget)) {
+                currentTarget = packageName;
+                show();
+            }
+            return;
+        }
+        if (currentTarget != null) {
+            currentTarget = null;
+            hide();
+        }
+    }
+
+    /**
+     * 与 FloatingWindowManager 一致：暖态直接恢复，未挂载则重新创建；两者都算"由隐藏变为显示"。
+     */
+    private void show() {
+        boolean shownFromHidden = warm || !attached;
+        attached = true;
+        warm = false;
+        warmExpiresAt = -1;
+        if (shownFromHidden && !systemUiSuspended) {
+            updateMask();
+            execute(machine.onFloatingWindowShown(now));
+        }
+    }
+
+    private void hide() {
+        attached = false;
+        warm = false;
+        warmExpiresAt = -1;
+        updateMask();
+    }
+
+    private void onForegroundChanged() {
+        if (activeRoot.isEmpty()) {
+            // 前台不明确时没有"应当"的遮罩状态，不计样本
+            pendingSampleAt = -1;
+            return;
+        }
+        String expected = targets.contains(activeRoot) ? activeRoot : null;
+        // 遮罩本就处于应有状态（如下拉通知栏后立即收回）时不计样本
+        pendingSampleAt = equals(maskedPackage, expected) ? -1 : now;
+        pendingSamplePackage = expected;
+    }
+
+    private void updateMask() {
+        maskedPackage = attached && !warm && !systemUiSuspended ? currentTarget : null;
+        if (pendingSampleAt >= 0 && equals(maskedPackage, pendingSamplePackage)) {
+            result.samples.add(new Sample(name, pendingSampleAt, pendingSamplePackage != null,
+                    now - pendingSampleAt));
+            pendingSampleAt = -1;
+        }
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    @Override
+    public String getCurrentTargetPackage() {
+        return currentTarget;
+    }
+
+    @Override
+    public boolean isFloatingWindowVisible() {
+        return attached;
+    }
+
+    @Override
+    public boolean isAnimationDisabled() {
+        return animationDisabled;
+    }
+
+    @Override
+    public String getActiveRootPackage() {
+        return activeRoot;
+    }
+
+    @Override
+    public boolean isIgnorablePackage(String packageName) {
+        return false;
+    }
+
+    /** 最近秩百分位，values 不需要预先排序。 */
+    static long percentile(List<Long> values, double percentile) {
+        if (values.isEmpty()) {
+            return 0;
+        }
+        Long[] sorted = values.toArray(new Long[0]);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+}
@@ -0,0 +1,172 @@
+package com.book.mask.floating;
+
+import com.book.mask.constant.Const;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 回放 foreground_traces/ 下的前台切换序列，核对每次切换后遮罩覆盖 / 撤离的延迟。
+ * 逐条断言的数值即当前时序参数下的预期结果，调整复核、确认或防抖时长后需同步更新；
+ * 汇总的分布会打印出来，便于对比改动前后的差异。
+ */
+public class ForegroundTransitionSimulationTest {
+
+    private static final String[] TRACES = {
+            "enter_leave_home.trace",
+            "early_return.trace",
+            "notification_shade.trace",
+            "shade_flick.trace",
+            "unknown_retry.trace",
+            "animations_off.trace",
+            "switch_target.trace",
+            "show_debounce_leave.trace",
+            "missed_leave_event.trace",
+            "early_return_usage.trace",
+            "switch_target_usage.trace",
+            "background_window_usage.trace",
+    };
+
+    @Test
+    public void enterAndLeaveHomeReactImmediately() throws IOException {
+        assertLatencies("enter_leave_home.trace", true, "mask 0", "unmask 0");
+    }
+
+    @Test
+    public void earlyReturnWaitsForRecheckAndAnimationTail() throws IOException {
+        long expected = Const.PACKAGE_TRANSITION_CHECK_DELAY_MS
+                + PackageTransitionTiming.getEarlyReturnPauseDuration() - 200;
+        assertLatencies("early_return.trace", true, "mask 0", "unmask 0", "mask " + expected);
+    }
+
+    @Test
+    public void notificationShadeUnmasksAfterConfirmDelay() throws IOException {
+        assertLatencies("notification_shade.trace", true,
+                "mask 0", "unmask " + Const.SYSTEM_UI_CONFIRM_DELAY_MS, "mask 0");
+    }
+
+    @Test
+    public void shadeFlickLeavesMaskUntouched() throws IOException {
+        ForegroundTraceSimulator.Result result =
+                ForegroundTraceSimulator.load("shade_flick.trace").run(true);
+        assertEquals(Arrays.asList("mask 0"), describe(result));
+        assertEquals(0, count(result, ForegroundPackageMachine.Command.Type.SET_SYSTEM_UI_SUSPENDED));
+    }
+
+    @Test
+    public void unknownPackageRetriesUntilSystemUiIsSeen() throws IOException {
+        // 3100 首次确认包名不明确，3250 重试时已是 SystemUI；前台在 3180 才明确
+        assertLatencies("unknown_retry.trace", true, "mask 0", "unmask 70");
+    }
+
+    @Test
+    public void disabledAnimationsSkipRecheck() throws IOException {
+        ForegroundTraceSimulator.Result result =
+                ForegroundTraceSimulator.load("animations_off.trace").run(true);
+        assertEquals(Arrays.asList("mask 0", "unmask 0"), describe(result));
+        assertEquals(1, count(result, ForegroundPackageMachine.Command.Type.LEAVE_TARGET));
+        assertEquals(0, count(result, ForegroundPackageMachine.Command.Type.LEAVE_TARGET_KEEP_WARM));
+    }
+
+    @Test
+    public void switchingTargetsMasksNewAppAfterRecheck() throws IOException {
+        assertLatencies("switch_target.trace", true,
+                "mask 0", "mask " + Const.PACKAGE_TRANSITION_CHECK_DELAY_MS);
+    }
+
+    @Test
+    public void leaveDuringShowDebounceIsCorrectedWhenDebounceEnds() throws IOException {
+        assertLatencies("show_debounce_leave.trace", true,
+                "mask 0", "unmask " + (Const.FLOATING_SHOW_PACKAGE_DETECTION_DEBOUNCE_MS - 200));
+    }
+
+    @Test
+    public void missedLeaveEventIsCorrectedByPoll() throws IOException {
+        assertLatencies("missed_leave_event.trace", true, "mask 0", "unmask 1000");
+    }
+
+    @Test
+    public void recheckDisabledTradesFlickerForImmediateReturn() throws IOException {
+        assertLatencies("early_return.trace", false, "mask 0", "unmask 0", "mask 0");
+        // 关闭复核时离开只撤下遮罩，不采信新包名：直接切到另一个目标 APP 要等后续事件或轮询
+        assertLatencies("switch_target.trace", false, "mask 0");
+    }
+
+    @Test
+    public void usageEventsConfirmationSkipsFixedDelays() throws IOException {
+        assertLatencies("early_return_usage.trace", true, "mask 0", "unmask 0", "mask 0");
+        assertLatencies("switch_target_usage.trace", true, "mask 0", "mask 0");
+    }
+
+    @Test
+    public void backgroundWindowEventIsDroppedWhenSourcesAgree() throws IOException {
+        ForegroundTraceSimulator.Result result =
+                ForegroundTraceSimulator.load("background_window_usage.trace").run(true);
+        assertEquals(Arrays.asList("mask 0"), describe(result));
+        assertEquals(0, count(result, ForegroundPackageMachine.Command.Type.LEAVE_TARGET_KEEP_WARM));
+    }
+
+    @Test
+    public void reportsLatencyDistributionAcrossTraces() throws IOException {
+        List<Long> mask = new ArrayList<>();
+        List<Long> unmask = new ArrayList<>();
+        for (String trace : TRACES) {
+            ForegroundTraceSimulator.Result result = ForegroundTraceSimulator.load(trace).run(true);
+            mask.addAll(result.latencies(true));
+            unmask.addAll(result.latencies(false));
+        }
+
+        System.out.println("time-to-mask: " + distribution(mask));
+        System.out.println("time-to-unmask: " + distribution(unmask));
+
+        long maskBound = Const.PACKAGE_TRANSITION_CHECK_DELAY_MS
+                + PackageTransitionTiming.getEarlyReturnPauseDuration();
+        assertTrue(ForegroundTraceSimulator.percentile(mask, 100) <= maskBound);
+        assertEquals(0, ForegroundTraceSimulator.percentile(mask, 50));
+        // 撤下遮罩最慢的是漏报离开事件、只能等兜底轮询的情形
+        assertTrue(ForegroundTraceSimulator.percentile(unmask, 100)
+                <= Const.APP_STATE_CHECK_INTERVAL);
+        assertTrue(ForegroundTraceSimulator.percentile(unmask, 50)
+                <= Const.SYSTEM_UI_CONFIRM_DELAY_MS);
+    }
+
+    private static void assertLatencies(String trace, boolean recheckEnabled, String... expected)
+            throws IOException {
+        ForegroundTraceSimulator.Result result =
+                ForegroundTraceSimulator.load(trace).run(recheckEnabled);
+        assertEquals(trace, Arrays.asList(expected), describe(result));
+    }
+
+    private static List<String> describe(ForegroundTraceSimulator.Result result) {
+        List<String> described = new ArrayList<>();
+        for (ForegroundTraceSimulator.Sample sample : result.samples) {
+            described.add((sample.mask ? "mask " : "unmask ") + sample.latency);
+        }
+        return described;
+    }
+
+    private static int count(ForegroundTraceSimulator.Result result,
+                             ForegroundPackageMachine.Command.Type type) {
+        int count = 0;
+        for (ForegroundPackageMachine.Command command : result.commands) {
+            if (command.type == type) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static String distribution(List<Long> values) {
+        return "n=" + values.size()
+                + ", p50=" + ForegroundTraceSimulator.percentile(values, 50)
+                + ", p90=" + ForegroundTraceSimulator.percentile(values, 90)
+                + ", max=" + ForegroundTraceSimulator.percentile(values, 100);
+    }
+}
@@ -0,0 +1,59 @@
+package com.book.mask.floating;
+
+import com.book.mask.config.KeywordMatcher;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IncrementalScanStateTest {
+
+    private static final String PKG = "com.example";
+    private static final long TTL = 3000;
+
+    @Test
+    public void baselineExpiresAfterTtl() {
+        IncrementalScanState state = new IncrementalScanState();
+        state.rememberNotFound(PKG, 1000);
+
+        assertTrue(state.hasNotFoundBaseline(PKG, 1000 + TTL, TTL));
+        assertFalse(state.hasNotFoundBaseline(PKG, 1001 + TTL, TTL));
+        assertFalse(state.hasNotFoundBaseline("com.other", 1000, TTL));
+    }
+
+    @Test
+    public void cancelledBatchWithKeywordForcesFullScan() {
+        KeywordMatcher matcher = KeywordMatcher.compile("推荐");
+        TreeSnapshot.Node feed = new TreeSnapshot.Node(null, "com.example:id/feed");
+        TreeSnapshot.Node header = new TreeSnapshot.Node("标题", null);
+        TreeSnapshot.Node root = new TreeSnapshot.Node(null, null).add(header).add(feed);
+
+        // 全量扫描确认页面无关键词，记下基线
+        IncrementalScanState state = new IncrementalScanState();
+        assertFalse(FloatHelper.findTargetText(root, matcher, TextScanBudget.DEFAULT, null, null)
+                .isMatched());
+        state.rememberNotFound(PKG, 1000);
+
+        // feed 子树里出现了关键词，但带着这批变化的扫描被新请求取消
+        feed.add(new TreeSnapshot.Node("推荐", null));
+        state.onChangesDiscarded(new ContentChangeBatch());
+
+        // 下一批只涉及 header；若仍沿用基线只重扫 header，就会漏掉 feed 中的关键词
+        header.text = "新标题";
+        assertFalse(FloatHelper.findTargetText(header, matcher, TextScanBudget.DEFAULT, null, null)
+                .isMatched());
+        assertFalse(state.hasNotFoundBaseline(PKG, 1100, TTL));
+        assertTrue(FloatHelper.findTargetText(root, matcher, TextScanBudget.DEFAULT, null, null)
+                .isMatched());
+    }
+
+    @Test
+    public void discardingNoChangesKeepsBaseline() {
+        IncrementalScanState state = new IncrementalScanState();
+        state.rememberNotFound(PKG, 1000);
+        state.onChangesDiscarded(null);
+
+        assertTrue(state.hasNotFoundBaseline(PKG, 1100, TTL));
+    }
+}
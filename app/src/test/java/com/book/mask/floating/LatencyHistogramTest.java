@@ -0,0 +1,75 @@
+package com.book.mask.floating;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    private static final double EPSILON = 1e-9;
+
+    @Test
+    public void bucketsAreInclusiveUpperBounds() {
+        assertEquals(0, LatencyHistogram.bucketOf(0));
+        assertEquals(0, LatencyHistogram.bucketOf(4));
+        assertEquals(1, LatencyHistogram.bucketOf(4.1));
+        assertEquals(2, LatencyHistogram.bucketOf(16.7));
+        assertEquals(3, LatencyHistogram.bucketOf(16.8));
+        assertEquals(LatencyHistogram.BUCKET_UPPER_BOUNDS_MS.length,
+                LatencyHistogram.bucketOf(5000));
+    }
+
+    @Test
+    public void percentilesUseNearestRankWithinWindow() {
+        LatencyHistogram histogram = new LatencyHistogram(10);
+        for (int i = 1; i <= 10; i++) {
+            histogram.record(i * 10);
+        }
+
+        assertEquals(10, histogram.count());
+        assertEquals(50.0, histogram.percentile(0.5), EPSILON);
+        assertEquals(90.0, histogram.percentile(0.9), EPSILON);
+        assertEquals(100.0, histogram.max(), EPSILON);
+        assertEquals(10.0, histogram.percentile(0.0), EPSILON);
+    }
+
+    @Test
+    public void oldSamplesRollOutOfBucketsAndPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram(3);
+        histogram.record(2);
+        histogram.record(2);
+        histogram.record(2);
+        histogram.record(600);
+        histogram.record(600);
+
+        assertEquals(3, histogram.count());
+        assertEquals(5, histogram.totalRecorded());
+        int[] buckets = histogram.getBucketCounts();
+        assertEquals(1, buckets[0]);
+        assertEquals(2, buckets[LatencyHistogram.bucketOf(600)]);
+        assertEquals(600.0, histogram.percentile(0.5), EPSILON);
+    }
+
+    @Test
+    public void negativeDurationsClampToZero() {
+        LatencyHistogram histogram = new LatencyHistogram(4);
+        histogram.record(-3);
+
+        assertEquals(0.0, histogram.max(), EPSILON);
+        assertEquals(1, histogram.getBucketCounts()[0]);
+    }
+
+    @Test
+    public void emptyHistogramFormatsAllBuckets() {
+        LatencyHistogram histogram = new LatencyHistogram(4);
+        String line = histogram.format();
+
+        assertTrue(line, line.startsWith("n=0 p50=0.0"));
+        assertTrue(line, line.contains("≤16.7:0"));
+        assertTrue(line, line.endsWith(">1000:0"));
+        assertArrayEquals(new int[LatencyHistogram.BUCKET_UPPER_BOUNDS_MS.length + 1],
+                histogram.getBucketCounts());
+    }
+}
@@ -0,0 +1,99 @@
+package com.book.mask.floating;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyTracerTest {
+
+    private static final double EPSILON = 1e-9;
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void recordsEachStageForThePath() {
+        LatencyTracer tracer = new LatencyTracer(8);
+        long id = tracer.onShown(LatencyTracer.ShowPath.COLD_INFLATE, 0, 12 * MS);
+        assertTrue(tracer.isAwaitingDraw());
+        assertTrue(tracer.onFirstDraw(id, 30 * MS));
+        assertFalse(tracer.isAwaitingDraw());
+        assertTrue(tracer.onTouch(530 * MS));
+
+        assertEquals(12.0, max(tracer, LatencyTracer.ShowPath.COLD_INFLATE,
+                LatencyTracer.Stage.DECISION_TO_ATTACH), EPSILON);
+        assertEquals(18.0, max(tracer, LatencyTracer.ShowPath.COLD_INFLATE,
+                LatencyTracer.Stage.ATTACH_TO_DRAW), EPSILON);
+        assertEquals(30.0, max(tracer, LatencyTracer.ShowPath.COLD_INFLATE,
+                LatencyTracer.Stage.DECISION_TO_DRAW), EPSILON);
+        assertEquals(500.0, max(tracer, LatencyTracer.ShowPath.COLD_INFLATE,
+                LatencyTracer.Stage.DRAW_TO_TOUCH), EPSILON);
+        assertNull(tracer.getHistogram(LatencyTracer.ShowPath.WARM_RESUME,
+                LatencyTracer.Stage.DECISION_TO_ATTACH));
+    }
+
+    @Test
+    public void onlyFirstDrawAndFirstTouchCount() {
+        LatencyTracer tracer = new LatencyTracer(8);
+        long id = tracer.onShown(LatencyTracer.ShowPath.WARM_RESUME, 0, MS);
+        assertFalse(tracer.onTouch(2 * MS));
+        assertTrue(tracer.onFirstDraw(id, 5 * MS));
+        assertFalse(tracer.onFirstDraw(id, 20 * MS));
+        assertTrue(tracer.onTouch(100 * MS));
+        assertFalse(tracer.onTouch(200 * MS));
+
+        assertEquals(1, tracer.getHistogram(LatencyTracer.ShowPath.WARM_RESUME,
+                LatencyTracer.Stage.ATTACH_TO_DRAW).count());
+        assertEquals(1, tracer.getHistogram(LatencyTracer.ShowPath.WARM_RESUME,
+                LatencyTracer.Stage.DRAW_TO_TOUCH).count());
+    }
+
+    @Test
+    public void staleDrawFromEarlierShowIsIgnored() {
+        LatencyTracer tracer = new LatencyTracer(8);
+        long first = tracer.onShown(LatencyTracer.ShowPath.POOLED_VIEW, 0, MS);
+        long second = tracer.onShown(LatencyTracer.ShowPath.TRANSITION_REUSE, 10 * MS, 11 * MS);
+
+        assertFalse(tracer.onFirstDraw(first, 12 * MS));
+        assertTrue(tracer.onFirstDraw(second, 20 * MS));
+        assertNull(tracer.getHistogram(LatencyTracer.ShowPath.POOLED_VIEW,
+                LatencyTracer.Stage.ATTACH_TO_DRAW));
+        assertEquals(10.0, max(tracer, LatencyTracer.ShowPath.TRANSITION_REUSE,
+                LatencyTracer.Stage.DECISION_TO_DRAW), EPSILON);
+    }
+
+    @Test
+    public void hidingAbandonsPendingStages() {
+        LatencyTracer tracer = new LatencyTracer(8);
+        long id = tracer.onShown(LatencyTracer.ShowPath.SYSTEM_UI_RESUME, 0, MS);
+        tracer.onHidden();
+
+        assertFalse(tracer.onFirstDraw(id, 5 * MS));
+        assertFalse(tracer.onTouch(9 * MS));
+        assertEquals(1, tracer.getHistogram(LatencyTracer.ShowPath.SYSTEM_UI_RESUME,
+                LatencyTracer.Stage.DECISION_TO_ATTACH).count());
+        assertNull(tracer.getHistogram(LatencyTracer.ShowPath.SYSTEM_UI_RESUME,
+                LatencyTracer.Stage.ATTACH_TO_DRAW));
+    }
+
+    @Test
+    public void reportListsOnlyPathsWithSamples() {
+        LatencyTracer tracer = new LatencyTracer(8);
+        assertTrue(tracer.buildReport().endsWith("暂无记录"));
+
+        long id = tracer.onShown(LatencyTracer.ShowPath.COLD_INFLATE, 0, MS);
+        tracer.onFirstDraw(id, 3 * MS);
+        String report = tracer.buildReport();
+
+        assertTrue(report, report.contains("[新建 View]"));
+        assertTrue(report, report.contains("决策→首帧: n=1"));
+        assertFalse(report, report.contains("首帧→首次触摸"));
+        assertFalse(report, report.contains("[暖窗口恢复]"));
+    }
+
+    private static double max(LatencyTracer tracer, LatencyTracer.ShowPath path,
+                              LatencyTracer.Stage stage) {
+        return tracer.getHistogram(path, stage).max();
+    }
+}
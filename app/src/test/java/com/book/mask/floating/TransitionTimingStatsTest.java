@@ -0,0 +1,157 @@
+package com.book.mask.floating;
+
+import com.book.mask.constant.Const;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TransitionTimingStatsTest {
+
+    private static final String TARGET = "com.ss.android.ugc.aweme";
+    private static final String HOME = "com.miui.home";
+
+    @Test
+    public void tooFewSamplesKeepDefaultProfile() {
+        TransitionTimingStats stats = new TransitionTimingStats();
+        for (int i = 0; i < Const.TRANSITION_CALIBRATION_MIN_SAMPLES - 1; i++) {
+            stats.add(50, 200);
+        }
+
+        assertFalse(stats.isCalibrated());
+        assertSame(PackageTransitionTiming.DEFAULT, stats.toProfile());
+    }
+
+    @Test
+    public void profileFollowsP95PlusMargin() {
+        TransitionTimingStats stats = new TransitionTimingStats();
+        for (int i = 0; i < 19; i++) {
+            stats.add(100, 500);
+        }
+        stats.add(200, 700);
+
+        assertTrue(stats.isCalibrated());
+        PackageTransitionTiming.Profile profile = stats.toProfile();
+        assertEquals(100 + Const.TRANSITION_CALIBRATION_MARGIN_MS, profile.checkDelayMs);
+        assertEquals(500 + Const.TRANSITION_CALIBRATION_MARGIN_MS, profile.animationDurationMs);
+        assertEquals(500 - 100 + Const.TRANSITION_EARLY_RETURN_BUFFER_MS,
+                profile.getEarlyReturnPauseDuration());
+    }
+
+    @Test
+    public void profileIsClampedToBounds() {
+        TransitionTimingStats fast = new TransitionTimingStats();
+        TransitionTimingStats slow = new TransitionTimingStats();
+        for (int i = 0; i < Const.TRANSITION_CALIBRATION_MIN_SAMPLES; i++) {
+            fast.add(0, 0);
+            slow.add(5000, 9000);
+        }
+
+        assertEquals(Const.TRANSITION_CHECK_DELAY_MIN_MS, fast.toProfile().checkDelayMs);
+        assertEquals(Const.TRANSITION_ANIMATION_MIN_MS, fast.toProfile().animationDurationMs);
+        assertEquals(Const.TRANSITION_CHECK_DELAY_MAX_MS, slow.toProfile().checkDelayMs);
+        assertEquals(Const.TRANSITION_ANIMATION_MAX_MS, slow.toProfile().animationDurationMs);
+    }
+
+    @Test
+    public void oldestSamplesAreEvicted() {
+        TransitionTimingStats stats = new TransitionTimingStats();
+        for (int i = 0; i < Const.TRANSITION_CALIBRATION_MAX_SAMPLES; i++) {
+            stats.add(400, 1500);
+        }
+        for (int i = 0; i < Const.TRANSITION_CALIBRATION_MAX_SAMPLES; i++) {
+            stats.add(60, 250);
+        }
+
+        assertEquals(Const.TRANSITION_CALIBRATION_MAX_SAMPLES, stats.size());
+        assertEquals(60, TransitionTimingStats.percentile(stats.activeRootLag, 95));
+        assertEquals(250, TransitionTimingStats.percentile(stats.settle, 95));
+    }
+
+    @Test
+    public void percentileUsesNearestRank() {
+        assertEquals(0, TransitionTimingStats.percentile(new int[0], 95));
+        assertEquals(2, TransitionTimingStats.percentile(new int[]{3, 1, 2}, 50));
+        assertEquals(2, TransitionTimingStats.percentile(new int[]{4, 1, 2, 3}, 50));
+        assertEquals(4, TransitionTimingStats.percentile(new int[]{4, 1, 2, 3}, 95));
+    }
+
+    @Test
+    public void samplingMeasuresActiveRootLagAndSettle() {
+        TransitionTimingStats.Sampling sampling = new TransitionTimingStats.Sampling(TARGET, 1000);
+        sampling.onWindowEvent(TARGET, 1000);
+        sampling.onWindowEvent(TARGET, 1050);
+        sampling.onWindowEvent(HOME, 1120);
+        sampling.onWindowEvent(HOME, 1400);
+
+        assertArrayEquals(new int[]{120, 400}, sampling.finish());
+    }
+
+    @Test
+    public void activeRootAlreadyMovedCountsAsNoLag() {
+        TransitionTimingStats.Sampling sampling = new TransitionTimingStats.Sampling(TARGET, 1000);
+        sampling.onWindowEvent(HOME, 1000);
+        sampling.onWindowEvent("", 1200);
+        sampling.onWindowEvent(HOME, 1300);
+
+        assertArrayEquals(new int[]{0, 300}, sampling.finish());
+    }
+
+    @Test
+    public void returningToAppIsMeasuredNotDiscarded() {
+        TransitionTimingStats.Sampling stayed = new TransitionTimingStats.Sampling(TARGET, 1000);
+        stayed.onWindowEvent(TARGET, 1000);
+        stayed.onWindowEvent(TARGET, 1200);
+        assertArrayEquals(new int[]{0, 200}, stayed.finish());
+
+        // 活动窗口短暂切到桌面又回到该 APP：最后一次变化才是复核能读到稳定结果的时刻
+        TransitionTimingStats.Sampling returned = new TransitionTimingStats.Sampling(TARGET, 1000);
+        returned.onWindowEvent(HOME, 1000);
+        returned.onWindowEvent(TARGET, 1200);
+        returned.onWindowEvent(TARGET, 1300);
+        assertArrayEquals(new int[]{200, 300}, returned.finish());
+
+        assertNull(new TransitionTimingStats.Sampling(TARGET, 1000).finish());
+    }
+
+    @Test
+    public void transientReturnsRaiseP95() {
+        TransitionTimingStats stats = new TransitionTimingStats();
+        for (int i = 0; i < 18; i++) {
+            TransitionTimingStats.Sampling clean = new TransitionTimingStats.Sampling(TARGET, 0);
+            clean.onWindowEvent(TARGET, 0);
+            clean.onWindowEvent(HOME, 100);
+            clean.onWindowEvent(HOME, 300);
+            int[] sample = clean.finish();
+            stats.add(sample[0], sample[1]);
+        }
+        for (int i = 0; i < 2; i++) {
+            TransitionTimingStats.Sampling bounced = new TransitionTimingStats.Sampling(TARGET, 0);
+            bounced.onWindowEvent(TARGET, 0);
+            bounced.onWindowEvent(HOME, 100);
+            bounced.onWindowEvent(TARGET, 450);
+            bounced.onWindowEvent(TARGET, 600);
+            int[] sample = bounced.finish();
+            stats.add(sample[0], sample[1]);
+        }
+
+        assertEquals(20, stats.size());
+        assertEquals(450, TransitionTimingStats.percentile(stats.activeRootLag, 95));
+        assertEquals(600, TransitionTimingStats.percentile(stats.settle, 95));
+    }
+
+    @Test
+    public void eventsAfterWindowAreIgnored() {
+        TransitionTimingStats.Sampling sampling = new TransitionTimingStats.Sampling(TARGET, 1000);
+        sampling.onWindowEvent(HOME, 1100);
+        sampling.onWindowEvent(TARGET, 1000 + Const.TRANSITION_CALIBRATION_WINDOW_MS + 1);
+
+        assertTrue(sampling.isExpired(1000 + Const.TRANSITION_CALIBRATION_WINDOW_MS + 1));
+        assertArrayEquals(new int[]{100, 100}, sampling.finish());
+    }
+}
@@ -0,0 +1,145 @@
+package com.book.mask.floating;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 节点树快照回放工具：读取 test/resources/tree_snapshots 下的录制文件，并用 {@link Counter}
+ * 统计检测过程中的跨进程调用次数（每次 getChild、每次按 ID / 文字查询各计一次）。
+ */
+final class TreeSnapshotReplay {
+
+    static final class Counter {
+        int binderCalls;
+    }
+
+    private TreeSnapshotReplay() {
+    }
+
+    /** 录制目录下的全部快照，按文件名排序。 */
+    static List<TreeSnapshot> loadAll() throws IOException {
+        URL url = TreeSnapshotReplay.class.getClassLoader().getResource("tree_snapshots");
+        if (url == null) {
+            throw new IOException("找不到 tree_snapshots 资源目录");
+        }
+        File[] files;
+        try {
+            files = new File(url.toURI()).listFiles((dir, name) -> name.endsWith(".json"));
+        } catch (URISyntaxException e) {
+            throw new IOException(e);
+        }
+        List<TreeSnapshot> snapshots = new ArrayList<>();
+        if (files == null) {
+            return snapshots;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            try (Reader reader = new InputStreamReader(
+                    new FileInputStream(file), StandardCharsets.UTF_8)) {
+                snapshots.add(TreeSnapshot.fromJson(reader));
+            }
+        }
+        return snapshots;
+    }
+
+    /** 经过一次序列化再读回，确保回放的是录制文件格式能表达的内容。 */
+    static TreeSnapshot roundTrip(TreeSnapshot snapshot) {
+        return TreeSnapshot.fromJson(new StringReader(snapshot.toJson()));
+    }
+
+    static ScanNode counting(ScanNode node, Counter counter) {
+        return node == null ? null : new CountingNode(node, counter);
+    }
+
+    private static final class CountingNode implements ScanNode {
+        private final ScanNode delegate;
+        private final Counter counter;
+
+        private CountingNode(ScanNode delegate, Counter counter) {
+            this.delegate = delegate;
+            this.counter = counter;
+        }
+
+        @Override
+        public int getChildCount() {
+            return delegate.getChildCount();
+        }
+
+        @Override
+        public ScanNode getChild(int index) {
+            counter.binderCalls++;
+            return counting(delegate.getChild(index), counter);
+        }
+
+        @Override
+        public ScanNode getParent() {
+            counter.binderCalls++;
+            return counting(delegate.getParent(), counter);
+        }
+
+        @Override
+        public CharSequence getText() {
+            return delegate.getText();
+        }
+
+        @Override
+        public CharSequence getContentDescription() {
+            return delegate.getContentDescription();
+        }
+
+        @Override
+        public String getViewIdResourceName() {
+            return delegate.getViewIdResourceName();
+        }
+
+        @Override
+        public boolean isVisibleToUser() {
+            return delegate.isVisibleToUser();
+        }
+
+        @Override
+        public List<ScanNode> findByViewId(String viewId) {
+            counter.binderCalls++;
+            return wrapAll(delegate.findByViewId(viewId));
+        }
+
+        @Override
+        public List<ScanNode> findByText(String text) {
+            counter.binderCalls++;
+            return wrapAll(delegate.findByText(text));
+        }
+
+        @Override
+        public void recycle() {
+            delegate.recycle();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof CountingNode && delegate.equals(((CountingNode) o).delegate);
+        }
+
+        @Override
+        public int hashCode() {
+            return delegate.hashCode();
+        }
+
+        private List<ScanNode> wrapAll(List<ScanNode> nodes) {
+            List<ScanNode> wrapped = new ArrayList<>(nodes.size());
+            for (ScanNode node : nodes) {
+                wrapped.add(new CountingNode(node, counter));
+            }
+            return wrapped;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.book.mask.floating;
+
+import com.book.mask.config.KeywordMatcher;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 回放 test/resources/tree_snapshots 下的节点树快照：全量遍历的结论须与录制时线上结论一致，
+ * 按控件 ID、按文字查询与命中路径探测的结论须与全量遍历一致。新录制的快照放入该目录即自动纳入回归。
+ */
+public class TreeSnapshotReplayTest {
+
+    @Test
+    public void strategiesAgreeWithRecordedVerdicts() throws Exception {
+        List<TreeSnapshot> snapshots = TreeSnapshotReplay.loadAll();
+        assertFalse(snapshots.isEmpty());
+
+        for (TreeSnapshot snapshot : snapshots) {
+            KeywordMatcher matcher = KeywordMatcher.compile(snapshot.targetWord);
+            String label = snapshot.packageName + "@" + snapshot.recordedAt;
+
+            TreeSnapshotReplay.Counter traversalCalls = new TreeSnapshotReplay.Counter();
+            TextScanResult traversal = FloatHelper.findTargetText(
+                    TreeSnapshotReplay.counting(snapshot.root, traversalCalls), matcher,
+                    TextScanBudget.DEFAULT, null, null);
+            if (snapshot.matched != null && !snapshot.truncated) {
+                assertEquals(label, snapshot.matched, traversal.isMatched());
+            }
+
+            TextScanResult byViewId = FloatHelper.findByViewIds(
+                    snapshot.root, snapshot.targetViewIds, matcher);
+            if (byViewId != null) {
+                assertEquals(label, traversal.isMatched(), byViewId.isMatched());
+            }
+
+            TextScanResult byText = FloatHelper.findByText(snapshot.root, matcher, Integer.MAX_VALUE);
+            assertEquals(label, traversal.isMatched(), byText != null);
+
+            if (traversal.isMatched()) {
+                assertTrue(label, FloatHelper.probePath(snapshot.root, traversal.getHitPath(),
+                        traversal.getHitViewId(), matcher));
+            }
+            // 全量遍历每个节点至多取一次
+            assertTrue(label, traversalCalls.binderCalls <= snapshot.countNodes());
+        }
+    }
+
+    @Test
+    public void missingChildrenKeepTheirIndexAfterRoundTrip() {
+        TreeSnapshot snapshot = new TreeSnapshot();
+        snapshot.packageName = "com.example";
+        snapshot.root = new TreeSnapshot.Node(null, null)
+                .add(null)
+                .add(new TreeSnapshot.Node("推荐", "com.example:id/tab"));
+
+        TreeSnapshot restored = TreeSnapshotReplay.roundTrip(snapshot);
+        assertEquals(2, restored.root.getChildCount());
+        assertNull(restored.root.getChild(0));
+
+        TextScanResult result = FloatHelper.findTargetText(restored.root,
+                KeywordMatcher.compile("推荐"), TextScanBudget.DEFAULT, null, null);
+        assertTrue(result.isMatched());
+        assertArrayEquals(new int[]{1}, result.getHitPath());
+        assertEquals("com.example:id/tab", result.getHitViewId());
+    }
+
+    @Test
+    public void relocatesByViewIdAfterLayoutShift() {
+        TreeSnapshot snapshot = new TreeSnapshot();
+        snapshot.root = new TreeSnapshot.Node(null, null)
+                .add(new TreeSnapshot.Node("横幅", null))
+                .add(new TreeSnapshot.Node(null, null)
+                        .add(new TreeSnapshot.Node("推荐", "com.example:id/tab")));
+        KeywordMatcher matcher = KeywordMatcher.compile("推荐");
+
+        // 录制文件不含父节点，读回后须能重建，才能从命中节点回溯路径
+        TreeSnapshot restored = TreeSnapshotReplay.roundTrip(snapshot);
+        int[] path = FloatHelper.relocateByViewId(restored.root, "com.example:id/tab", matcher, 64);
+        assertArrayEquals(new int[]{1, 0}, path);
+        assertTrue(FloatHelper.probePath(restored.root, path, "com.example:id/tab", matcher));
+        assertNull(FloatHelper.relocateByViewId(restored.root, "com.example:id/none", matcher, 64));
+        assertNull(FloatHelper.relocateByViewId(restored.root, "com.example:id/tab", matcher, 1));
+    }
+
+    @Test
+    public void budgetExhaustionReplaysAsPartialResult() {
+        TreeSnapshot.Node root = new TreeSnapshot.Node(null, null);
+        for (int i = 0; i < 20; i++) {
+            root.add(new TreeSnapshot.Node("条目" + i, null));
+        }
+        root.add(new TreeSnapshot.Node("推荐", null));
+
+        TextScanResult result = FloatHelper.findTargetText(root, KeywordMatcher.compile("推荐"),
+                new TextScanBudget(10, 1000), null, null);
+        assertTrue(result.isPartial());
+        assertEquals(10, result.getVisitedNodes());
+    }
+
+    @Test(expected = com.google.gson.JsonParseException.class)
+    public void newerFormatIsRejected() {
+        TreeSnapshot.fromJson(new StringReader("{\"format\":99,\"root\":{}}"));
+    }
+}
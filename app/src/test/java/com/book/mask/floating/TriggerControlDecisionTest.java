@@ -0,0 +1,50 @@
+package com.book.mask.floating;
+
+import com.book.mask.constant.Const;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TriggerControlDecisionTest {
+    private static final String PACKAGE = "target.package";
+    private static final String SIGNATURE = "target.package:id/tab#android.widget.TextView#首页";
+
+    @Test
+    public void learnsWhenFreshClickTurnsNonTargetPageIntoTarget() {
+        TriggerControlDecision.Click click = new TriggerControlDecision.Click(PACKAGE, SIGNATURE, 1000);
+
+        assertTrue(TriggerControlDecision.shouldLearn(click, PACKAGE, "not target", true, 1500));
+    }
+
+    @Test
+    public void doesNotLearnOnFirstEntryOrWithoutStateChange() {
+        TriggerControlDecision.Click click = new TriggerControlDecision.Click(PACKAGE, SIGNATURE, 1000);
+
+        assertFalse(TriggerControlDecision.shouldLearn(click, PACKAGE, null, true, 1500));
+        assertFalse(TriggerControlDecision.shouldLearn(click, PACKAGE, "target", true, 1500));
+        assertFalse(TriggerControlDecision.shouldLearn(click, PACKAGE, "not target", false, 1500));
+    }
+
+    @Test
+    public void expiredOrForeignClickIsNotLearned() {
+        TriggerControlDecision.Click click = new TriggerControlDecision.Click(PACKAGE, SIGNATURE, 1000);
+        long expired = 1000 + Const.TRIGGER_CONTROL_CLICK_FRESH_MS + 1;
+
+        assertFalse(TriggerControlDecision.shouldLearn(click, PACKAGE, "not target", true, expired));
+        assertFalse(TriggerControlDecision.shouldLearn(click, "other.package", "not target", true, 1500));
+        assertFalse(TriggerControlDecision.shouldLearn(null, PACKAGE, "not target", true, 1500));
+    }
+
+    @Test
+    public void missWithinGraceWaitsAndMissAfterGraceRejects() {
+        assertEquals(TriggerControlDecision.Verdict.CONFIRM,
+                TriggerControlDecision.onVerificationResult(true, 1000, 1800));
+        assertEquals(TriggerControlDecision.Verdict.WAIT,
+                TriggerControlDecision.onVerificationResult(false, 1000, 1800));
+        assertEquals(TriggerControlDecision.Verdict.REJECT,
+                TriggerControlDecision.onVerificationResult(false, 1800, 1800));
+    }
+}
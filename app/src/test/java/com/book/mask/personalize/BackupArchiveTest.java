@@ -0,0 +1,216 @@
+package com.book.mask.personalize;
+
+import com.google.gson.Gson;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BackupArchiveTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTripsSectionsAndSharesIdenticalBlobs() throws IOException {
+        BackupArchive.Writer writer = writer(100L);
+        writer.add("home", text("{\"a\":1}"), null);
+        writer.add("more", text("{}"), null);
+        writer.add("doubaoTts", text("{}"), null);
+        byte[] archive = writeTo(writer);
+
+        assertEquals(2, blobEntryCount(archive));
+        try (BackupArchive.Reader reader = read(archive, null)) {
+            assertEquals(100L, reader.manifest().exportTime);
+            assertEquals("{\"a\":1}", contentOf(reader.blob("home")));
+            assertEquals("{}", contentOf(reader.blob("more")));
+            assertEquals("{}", contentOf(reader.blob("doubaoTts")));
+        }
+        assertTempDirEmpty();
+    }
+
+    @Test
+    public void unchangedSectionsStayInEarlierArchive() throws IOException {
+        BackupArchive.Writer first = writer(100L);
+        first.add("home", text("same"), null);
+        first.add("more", text("old"), null);
+        writeTo(first);
+        BackupArchive.Manifest base = first.manifest();
+
+        BackupArchive.Writer second = writer(200L);
+        assertFalse(second.add("home", text("same"), base.sections.get("home")));
+        assertTrue(second.add("more", text("new"), base.sections.get("more")));
+        byte[] archive = writeTo(second);
+
+        assertEquals(1, blobEntryCount(archive));
+        try (BackupArchive.Reader reader = read(archive, null)) {
+            BackupArchive.Manifest manifest = reader.manifest();
+            assertFalse(manifest.contains("home"));
+            assertEquals(100L, manifest.sections.get("home").archiveTime);
+            assertNull(reader.blob("home"));
+            assertEquals("new", contentOf(reader.blob("more")));
+        }
+    }
+
+    @Test
+    public void sectionsInEarlierArchiveAreReportedWhateverTheSelection() throws IOException {
+        BackupArchive.Writer first = writer(100L);
+        first.add("home", text("same"), null);
+        first.add("more", text("old"), null);
+        first.add("wallpaper", text("jpeg"), null);
+        writeTo(first);
+        BackupArchive.Manifest base = first.manifest();
+
+        BackupArchive.Writer second = writer(200L);
+        second.add("home", text("same"), base.sections.get("home"));
+        second.add("more", text("new"), base.sections.get("more"));
+        second.add("wallpaper", text("png"), base.sections.get("wallpaper"));
+        byte[] archive = writeTo(second);
+
+        // 可选列表只含数据在本归档中的区块，用户从中取消了壁纸
+        BackupArchive.Manifest listed = BackupArchive.Reader.readManifest(new ByteArrayInputStream(archive));
+        assertFalse(listed.contains("home"));
+        try (BackupArchive.Reader reader = read(archive, Collections.singleton("more"))) {
+            assertEquals(Collections.singletonMap("home", 100L), reader.manifest().elsewhere());
+            assertEquals("new", contentOf(reader.blob("more")));
+            assertNull(reader.blob("wallpaper"));
+        }
+    }
+
+    @Test
+    public void readsOnlyWantedSections() throws IOException {
+        BackupArchive.Writer writer = writer(100L);
+        writer.add("home", text("h"), null);
+        writer.add("wallpaper", text("jpeg"), null);
+        byte[] archive = writeTo(writer);
+
+        try (BackupArchive.Reader reader = read(archive, Collections.singleton("wallpaper"))) {
+            assertNull(reader.blob("home"));
+            assertEquals("jpeg", contentOf(reader.blob("wallpaper")));
+        }
+    }
+
+    @Test
+    public void tamperedBlobIsRejected() throws IOException {
+        BackupArchive.Writer writer = writer(100L);
+        writer.add("home", text("original"), null);
+        BackupArchive.Manifest manifest = writer.manifest();
+        String hash = manifest.sections.get("home").hash;
+        writeTo(writer);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            zip.putNextEntry(new ZipEntry(BackupArchive.MANIFEST_ENTRY));
+            zip.write(new Gson().toJson(manifest).getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+            zip.putNextEntry(new ZipEntry(BackupArchive.BLOB_PREFIX + hash));
+            zip.write("modified".getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+
+        expectIOException(bytes.toByteArray());
+        assertTempDirEmpty();
+    }
+
+    @Test
+    public void missingBlobIsRejected() throws IOException {
+        BackupArchive.Writer writer = writer(100L);
+        writer.add("home", text("h"), null);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            zip.putNextEntry(new ZipEntry(BackupArchive.MANIFEST_ENTRY));
+            zip.write(new Gson().toJson(writer.manifest()).getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        writer.close();
+
+        expectIOException(bytes.toByteArray());
+    }
+
+    @Test
+    public void nonArchiveIsRejected() {
+        expectIOException("{\"version\":1}".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private BackupArchive.Writer writer(long exportTime) throws IOException {
+        return new BackupArchive.Writer(tempDir(), 1, exportTime);
+    }
+
+    private BackupArchive.Reader read(byte[] archive, Set<String> wanted) throws IOException {
+        return BackupArchive.Reader.read(new ByteArrayInputStream(archive), wanted, tempDir());
+    }
+
+    private File tempDir() {
+        return new File(folder.getRoot(), "tmp");
+    }
+
+    private void assertTempDirEmpty() {
+        String[] left = tempDir().list();
+        assertNotNull(left);
+        assertEquals(0, left.length);
+    }
+
+    private void expectIOException(byte[] archive) {
+        try {
+            read(archive, null).close();
+            fail("expected IOException");
+        } catch (IOException expected) {
+            // ok
+        }
+    }
+
+    private static BackupArchive.BlobWriter text(String value) {
+        return out -> out.write(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] writeTo(BackupArchive.Writer writer) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            writer.writeTo(out);
+        } finally {
+            writer.close();
+        }
+        return out.toByteArray();
+    }
+
+    private static int blobEntryCount(byte[] archive) throws IOException {
+        int count = 0;
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (entry.getName().startsWith(BackupArchive.BLOB_PREFIX)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static String contentOf(File file) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream in = new FileInputStream(file)) {
+            BackupArchive.copy(in, bytes);
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,138 @@
+package com.book.mask.personalize;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PerAppSettingsTest {
+
+    @Test
+    public void roundTripsAllFields() throws IOException {
+        PerAppSettings s = new PerAppSettings();
+        s.hintSource = "llm";
+        s.hintCustom = "先把今天的单词背完";
+        s.floatingTopOffset = 130;
+        s.floatingBottomOffset = -4;
+        s.monitoringEnabled = false;
+        s.showInterval = 1200;
+        s.relaxedCloseCount = 3;
+        s.lastRelaxedCloseDate = "2026-10-17";
+        s.lastCloseTime = 1_790_000_000_000L;
+        s.lastCloseInterval = 60;
+
+        PerAppSettings d = PerAppSettings.decode(s.encode());
+
+        assertEquals("llm", d.hintSource);
+        assertEquals("先把今天的单词背完", d.hintCustom);
+        assertEquals(Integer.valueOf(130), d.floatingTopOffset);
+        assertEquals(Integer.valueOf(-4), d.floatingBottomOffset);
+        assertEquals(Boolean.FALSE, d.monitoringEnabled);
+        assertEquals(Integer.valueOf(1200), d.showInterval);
+        assertEquals(Integer.valueOf(3), d.relaxedCloseCount);
+        assertEquals("2026-10-17", d.lastRelaxedCloseDate);
+        assertEquals(Long.valueOf(1_790_000_000_000L), d.lastCloseTime);
+        assertEquals(Integer.valueOf(60), d.lastCloseInterval);
+    }
+
+    @Test
+    public void unsetFieldsStayNullAndCostNothing() throws IOException {
+        PerAppSettings s = new PerAppSettings();
+        assertTrue(s.isEmpty());
+        // 版本 + 位图
+        assertEquals(5, s.encode().length);
+
+        s.showInterval = 600;
+        PerAppSettings d = PerAppSettings.decode(s.encode());
+        assertFalse(d.isEmpty());
+        assertEquals(Integer.valueOf(600), d.showInterval);
+        assertNull(d.hintSource);
+        assertNull(d.monitoringEnabled);
+        assertNull(d.lastCloseTime);
+    }
+
+    @Test
+    public void nullDataDecodesAsEmpty() throws IOException {
+        assertTrue(PerAppSettings.decode(null).isEmpty());
+    }
+
+    @Test
+    public void newerVersionWithTrailingUnknownFieldIsReadable() throws IOException {
+        PerAppSettings s = new PerAppSettings();
+        s.hintSource = "custom";
+        s.lastCloseInterval = 120;
+        byte[] current = s.encode();
+
+        // 模拟新版本：版本号 +1，追加一个占用更高位的未知字段
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(PerAppSettings.SCHEMA_VERSION + 1);
+        int mask = ((current[1] & 0xFF) << 24) | ((current[2] & 0xFF) << 16)
+                | ((current[3] & 0xFF) << 8) | (current[4] & 0xFF);
+        out.writeInt(mask | (1 << 20));
+        out.write(current, 5, current.length - 5);
+        out.writeUTF("unknown");
+        out.flush();
+
+        PerAppSettings d = PerAppSettings.decode(bytes.toByteArray());
+        assertEquals("custom", d.hintSource);
+        assertEquals(Integer.valueOf(120), d.lastCloseInterval);
+    }
+
+    @Test
+    public void truncatedOrInvalidDataIsRejected() {
+        PerAppSettings s = new PerAppSettings();
+        s.hintCustom = "abc";
+        byte[] data = s.encode();
+        expectIOException(Arrays.copyOf(data, data.length - 1));
+        expectIOException(new byte[]{0, 0, 0, 0, 0});
+        expectIOException(new byte[0]);
+    }
+
+    @Test
+    public void mergeOverridesOnlySetUserFields() {
+        PerAppSettings target = new PerAppSettings();
+        target.hintSource = "old";
+        target.floatingTopOffset = 10;
+        target.lastCloseTime = 5L;
+
+        PerAppSettings incoming = new PerAppSettings();
+        incoming.hintSource = "new";
+        incoming.monitoringEnabled = true;
+        incoming.lastCloseTime = 99L;
+
+        target.mergeUserSettings(incoming);
+
+        assertEquals("new", target.hintSource);
+        assertEquals(Integer.valueOf(10), target.floatingTopOffset);
+        assertEquals(Boolean.TRUE, target.monitoringEnabled);
+        // 运行态数据不随配置合并
+        assertEquals(Long.valueOf(5L), target.lastCloseTime);
+    }
+
+    @Test
+    public void copyIsIndependent() {
+        PerAppSettings s = new PerAppSettings();
+        s.showInterval = 60;
+        PerAppSettings c = s.copy();
+        c.showInterval = 1800;
+        assertEquals(Integer.valueOf(60), s.showInterval);
+    }
+
+    private static void expectIOException(byte[] data) {
+        try {
+            PerAppSettings.decode(data);
+            fail("expected IOException");
+        } catch (IOException expected) {
+            // ok
+        }
+    }
+}
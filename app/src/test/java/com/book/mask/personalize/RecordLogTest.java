@@ -0,0 +1,278 @@
+package com.book.mask.personalize;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RecordLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    static final class Item {
+        String group;
+        int n;
+
+        Item(String group, int n) {
+            this.group = group;
+            this.n = n;
+        }
+    }
+
+    private static final RecordLog.Retention<Item> PER_GROUP = new RecordLog.Retention<Item>() {
+        @Override
+        public String groupOf(Item record) {
+            return record.group;
+        }
+
+        @Override
+        public int limitOf(String group) {
+            return "a".equals(group) ? 3 : 1;
+        }
+    };
+
+    @Test
+    public void readsNewestFirstAndKeepsLatest() throws IOException {
+        RecordLog<Item> log = open(RecordLog.keepLatest(2));
+        log.append(new Item("", 1));
+        log.append(new Item("", 2));
+        log.append(new Item("", 3));
+
+        assertEquals(Arrays.asList(3, 2), numbers(log.readNewestFirst(10)));
+        assertEquals(Arrays.asList(3), numbers(log.readNewestFirst(1)));
+        assertEquals(2, log.size());
+    }
+
+    @Test
+    public void retentionIsPerGroupAndSurvivesReopen() throws IOException {
+        RecordLog<Item> log = open(PER_GROUP);
+        for (int i = 1; i <= 6; i++) {
+            log.append(new Item(i % 2 == 0 ? "a" : "b", i));
+        }
+        assertEquals(Arrays.asList(6, 5, 4, 2), numbers(log.readNewestFirst(Integer.MAX_VALUE)));
+
+        RecordLog<Item> reopened = open(PER_GROUP);
+        assertEquals(Arrays.asList(6, 5, 4, 2), numbers(reopened.readNewestFirst(Integer.MAX_VALUE)));
+        reopened.append(new Item("a", 7));
+        assertEquals(Arrays.asList(7, 6, 5, 4), numbers(reopened.readNewestFirst(Integer.MAX_VALUE)));
+    }
+
+    @Test
+    public void fullyExpiredSegmentsAreDeleted() throws IOException {
+        RecordLog<Item> log = open(RecordLog.keepLatest(2));
+        for (int i = 0; i < RecordLog.SEGMENT_RECORDS * 10; i++) {
+            log.append(new Item("", i));
+        }
+
+        assertTrue(log.segmentCount() <= 2);
+        assertEquals(log.segmentCount(), segmentFiles().length);
+        int last = RecordLog.SEGMENT_RECORDS * 10 - 1;
+        assertEquals(Arrays.asList(last, last - 1), numbers(open(RecordLog.keepLatest(2))
+                .readNewestFirst(Integer.MAX_VALUE)));
+    }
+
+    @Test
+    public void interleavedExpiryIsCompacted() throws IOException {
+        RecordLog<Item> log = open(PER_GROUP);
+        log.append(new Item("a", -1));
+        for (int i = 0; i < RecordLog.SEGMENT_RECORDS * 8; i++) {
+            log.append(new Item("b", i));
+        }
+
+        // "a" 的唯一一条钉住了第一个分段，其后的作废帧只能靠整体重写回收
+        assertTrue(log.segmentCount() <= 3);
+        int last = RecordLog.SEGMENT_RECORDS * 8 - 1;
+        assertEquals(Arrays.asList(last, -1), numbers(log.readNewestFirst(Integer.MAX_VALUE)));
+        assertEquals(Arrays.asList(last, -1), numbers(open(PER_GROUP).readNewestFirst(Integer.MAX_VALUE)));
+    }
+
+    @Test
+    public void tornTailIsTruncatedOnOpen() throws IOException {
+        RecordLog<Item> log = open(RecordLog.keepLatest(10));
+        log.append(new Item("", 1));
+        log.append(new Item("", 2));
+        File segment = segmentFiles()[0];
+        long goodLength = segment.length();
+        try (FileOutputStream out = new FileOutputStream(segment, true)) {
+            out.write(new byte[]{0, 0, 0, 40, 1, 2, 3});
+        }
+
+        RecordLog<Item> reopened = open(RecordLog.keepLatest(10));
+        assertEquals(1, reopened.getTruncatedFrames());
+        assertEquals(goodLength, segment.length());
+        reopened.append(new Item("", 3));
+        assertEquals(Arrays.asList(3, 2, 1),
+                numbers(open(RecordLog.keepLatest(10)).readNewestFirst(Integer.MAX_VALUE)));
+    }
+
+    @Test
+    public void checksumMismatchDropsFrame() throws IOException {
+        RecordLog<Item> log = open(RecordLog.keepLatest(10));
+        log.append(new Item("", 1));
+        log.append(new Item("", 2));
+        File segment = segmentFiles()[0];
+        try (RandomAccessFile raf = new RandomAccessFile(segment, "rw")) {
+            raf.seek(raf.length() - 2);
+            raf.write('9');
+        }
+
+        RecordLog<Item> reopened = open(RecordLog.keepLatest(10));
+        assertEquals(Arrays.asList(1), numbers(reopened.readNewestFirst(Integer.MAX_VALUE)));
+        assertEquals(1, reopened.getTruncatedFrames());
+    }
+
+    @Test
+    public void visitorStopsEarly() throws IOException {
+        RecordLog<Item> log = open(RecordLog.keepLatest(10));
+        for (int i = 0; i < 5; i++) {
+            log.append(new Item("", i));
+        }
+        List<Integer> seen = new ArrayList<>();
+        log.forEachNewestFirst(record -> {
+            seen.add(record.n);
+            return seen.size() < 2;
+        });
+
+        assertEquals(Arrays.asList(4, 3), seen);
+    }
+
+    @Test
+    public void oldestFirstSkipsExpiredRecords() throws IOException {
+        RecordLog<Item> log = open(PER_GROUP);
+        for (int i = 1; i <= 6; i++) {
+            log.append(new Item(i % 2 == 0 ? "a" : "b", i));
+        }
+        List<Integer> seen = new ArrayList<>();
+        log.forEachOldestFirst(record -> {
+            seen.add(record.n);
+            return true;
+        });
+
+        assertEquals(Arrays.asList(2, 4, 5, 6), seen);
+    }
+
+    @Test
+    public void importsLegacyNewestFirstOnce() throws IOException {
+        RecordLog<Item> log = open(PER_GROUP);
+        log.importNewestFirst(Arrays.asList(new Item("a", 3), new Item("b", 2), new Item("b", 1)));
+
+        assertEquals(Arrays.asList(3, 2), numbers(log.readNewestFirst(Integer.MAX_VALUE)));
+        log.append(new Item("a", 4));
+        assertEquals(Arrays.asList(4, 3, 2), numbers(open(PER_GROUP).readNewestFirst(Integer.MAX_VALUE)));
+        try {
+            log.importNewestFirst(Arrays.asList(new Item("a", 9)));
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void unfinishedRewriteIsDiscarded() throws IOException {
+        RecordLog<Item> log = open(RecordLog.keepLatest(10));
+        log.append(new Item("", 1));
+        File stray = new File(folder.getRoot(), "log/seg-1.log.tmp");
+        try (FileOutputStream out = new FileOutputStream(stray)) {
+            out.write(new byte[]{1, 2, 3});
+        }
+
+        RecordLog<Item> reopened = open(RecordLog.keepLatest(10));
+        assertFalse(stray.exists());
+        assertEquals(Arrays.asList(1), numbers(reopened.readNewestFirst(Integer.MAX_VALUE)));
+    }
+
+    @Test
+    public void segmentsLeftBehindByInterruptedCompactionAreDropped() throws IOException {
+        RecordLog<Item> log = open(PER_GROUP);
+        log.append(new Item("a", -1));
+        for (int i = 0; i < RecordLog.SEGMENT_RECORDS * 8; i++) {
+            log.append(new Item("b", i));
+        }
+        File[] compacted = segmentFiles();
+
+        // 重写分段已改名生效、旧分段还没删就被打断：放回一个编号更小的旧分段
+        RecordLog<Item> old = new RecordLog<>(new File(folder.getRoot(), "old"), Item.class, PER_GROUP);
+        old.append(new Item("a", -1));
+        old.append(new Item("b", 0));
+        File stale = new File(folder.getRoot(), "log/seg-0.log");
+        assertFalse(stale.exists());
+        assertTrue(new File(folder.getRoot(), "old/seg-0.log").renameTo(stale));
+
+        int last = RecordLog.SEGMENT_RECORDS * 8 - 1;
+        RecordLog<Item> reopened = open(PER_GROUP);
+        assertFalse(stale.exists());
+        assertEquals(compacted.length, segmentFiles().length);
+        assertEquals(Arrays.asList(last, -1), numbers(reopened.readNewestFirst(Integer.MAX_VALUE)));
+    }
+
+    @Test
+    public void mergingOlderRecordsIntoFullLogKeepsNewest() throws IOException {
+        RecordLog<Item> log = open(RecordLog.keepLatest(2));
+        log.append(new Item("", 30));
+        log.append(new Item("", 40));
+
+        // 备份里的记录都比本机旧：按时间合并后被淘汰的是它们，不是本机较新的记录
+        int added = log.mergeByTime(Arrays.asList(new Item("", 10), new Item("", 20)), item -> item.n);
+        assertEquals(2, added);
+        assertEquals(Arrays.asList(40, 30), numbers(log.readNewestFirst(Integer.MAX_VALUE)));
+        assertEquals(Arrays.asList(40, 30),
+                numbers(open(RecordLog.keepLatest(2)).readNewestFirst(Integer.MAX_VALUE)));
+    }
+
+    @Test
+    public void mergeInterleavesByTimeAndSkipsDuplicates() throws IOException {
+        RecordLog<Item> log = open(PER_GROUP);
+        log.append(new Item("a", 10));
+        log.append(new Item("a", 30));
+
+        int added = log.mergeByTime(Arrays.asList(
+                new Item("a", 20), new Item("a", 30), new Item("a", 40), new Item("a", 20)), item -> item.n);
+        assertEquals(2, added);
+        assertEquals(Arrays.asList(40, 30, 20), numbers(log.readNewestFirst(Integer.MAX_VALUE)));
+
+        assertEquals(0, log.mergeByTime(Arrays.asList(new Item("a", 40)), item -> item.n));
+        log.append(new Item("a", 50));
+        assertEquals(Arrays.asList(50, 40, 30), numbers(open(PER_GROUP).readNewestFirst(Integer.MAX_VALUE)));
+    }
+
+    @Test
+    public void clearRemovesSegments() throws IOException {
+        RecordLog<Item> log = open(RecordLog.keepLatest(10));
+        log.append(new Item("", 1));
+        log.clear();
+
+        assertTrue(log.isEmpty());
+        assertEquals(0, segmentFiles().length);
+        log.append(new Item("", 2));
+        assertEquals(Arrays.asList(2), numbers(open(RecordLog.keepLatest(10)).readNewestFirst(10)));
+    }
+
+    private RecordLog<Item> open(RecordLog.Retention<Item> retention) throws IOException {
+        return new RecordLog<>(new File(folder.getRoot(), "log"), Item.class, retention);
+    }
+
+    private File[] segmentFiles() {
+        File[] files = new File(folder.getRoot(), "log").listFiles((dir, name) -> name.endsWith(".log"));
+        return files == null ? new File[0] : files;
+    }
+
+    private static List<Integer> numbers(List<Item> items) {
+        List<Integer> numbers = new ArrayList<>();
+        for (Item item : items) {
+            numbers.add(item.n);
+        }
+        return numbers;
+    }
+}